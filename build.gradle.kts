@@ -28,10 +28,14 @@ fun _appSystemProperties() =
 
 val javaVersion = 17
 
+val vectorModuleName = "jdk.incubator.vector"
+
 val projectName = project.name
 
-val packageName     = "onda"
-val mainClassName   = "uk.blankaspect.${packageName}.OndaApp"
+val packageName         = "onda"
+val mainClassName       = "uk.blankaspect.${packageName}.OndaApp"
+val benchmarkClassName  = "uk.blankaspect.${packageName}.CodecBenchmark"
+val streamTestClassName = "uk.blankaspect.common.audio.WaveStreamTest"
 
 val buildDir    = layout.buildDirectory.get().getAsFile().toString()
 val jarDir      = _path(buildDir, "bin")
@@ -39,12 +43,48 @@ val jarFilename = "onda.jar"
 
 //----------------------------------------------------------------------
 
+// Source sets
+
+sourceSets {
+    create("vector") {
+        compileClasspath += sourceSets["main"].output
+    }
+    create("benchmark") {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output + sourceSets["vector"].output
+    }
+    create("streamTest") {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
+//----------------------------------------------------------------------
+
 // Compile
 
 tasks.compileJava {
     options.release.set(javaVersion)
 }
 
+tasks.named<JavaCompile>("compileVectorJava") {
+    options.release.set(javaVersion)
+    options.compilerArgs.addAll(listOf("--add-modules", vectorModuleName))
+}
+
+tasks.named<JavaCompile>("compileBenchmarkJava") {
+    options.release.set(javaVersion)
+}
+
+tasks.named<JavaCompile>("compileStreamTestJava") {
+    options.release.set(javaVersion)
+}
+
+tasks.check {
+    dependsOn(tasks.named("benchmarkClasses"))
+    dependsOn(tasks.named("runStreamTest"))
+}
+
 //----------------------------------------------------------------------
 
 // Create executable JAR
@@ -53,6 +93,7 @@ tasks.jar {
     destinationDirectory.set(file(jarDir))
     archiveFileName.set(jarFilename)
     setPreserveFileTimestamps(true)
+    from(sourceSets["vector"].output)
     manifest {
         attributes(
             "Application-Name" to projectName,
@@ -66,7 +107,7 @@ tasks.jar {
 // Run main class
 
 tasks.register<JavaExec>("runMain") {
-    classpath = sourceSets["main"].runtimeClasspath
+    classpath = sourceSets["main"].runtimeClasspath + sourceSets["vector"].output
     mainClass.set(mainClassName)
 
     systemProperties(_appSystemProperties())
@@ -83,3 +124,22 @@ tasks.register<JavaExec>("runJar") {
 }
 
 //----------------------------------------------------------------------
+
+// Run codec benchmark
+
+tasks.register<JavaExec>("runBenchmark") {
+    classpath = sourceSets["benchmark"].runtimeClasspath
+    mainClass.set(benchmarkClassName)
+    jvmArgs("--add-modules", vectorModuleName)
+}
+
+//----------------------------------------------------------------------
+
+// Run test of reading a WAVE file from a pipe
+
+tasks.register<JavaExec>("runStreamTest") {
+    classpath = sourceSets["streamTest"].runtimeClasspath
+    mainClass.set(streamTestClassName)
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,691 @@
+/*====================================================================*\
+
+CodecBenchmark.java
+
+Class: codec benchmark.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import uk.blankaspect.common.number.NumberCodec;
+
+//----------------------------------------------------------------------
+
+
+// CLASS: CODEC BENCHMARK
+
+
+/**
+ * This class measures the time taken by the sample-data codec of the Onda application on synthetic sample data.  It is
+ * not part of the application; it is compiled from the {@code benchmark} source set and run with the {@code
+ * runBenchmark} task of the Gradle build script, whose arguments name the scenarios to run:
+ * <pre>
+ *   gradle runBenchmark --args="conversion encoding parallel vector"
+ * </pre>
+ * <ul>
+ *   <li>{@code conversion} compares the per-value methods of {@link NumberCodec} with its bulk methods.</li>
+ *   <li>{@code encoding} encodes and decodes sample data of several bit depths and numbers of channels with the
+ *       default kernel and the array kernel of {@link OndaDataOutput}, and encodes mono and stereo sample data with
+ *       the specialised kernels for those numbers of channels and with the generic kernel.</li>
+ *   <li>{@code parallel} encodes sample data of many channels serially and in parallel, and decodes sample data of
+ *       many channels whose predictors have been selected serially and in parallel.</li>
+ *   <li>{@code vector} analyses blocks of sample values with the scalar {@linkplain AnalysisKernel analysis kernel}
+ *       and with the kernel that uses the Vector API.</li>
+ * </ul>
+ * <p>
+ * If no scenario is named, all of them are run.  Each measurement is the shortest of {@link #NUM_RUNS} runs that
+ * follow {@link #NUM_WARM_UP_RUNS} runs to warm up the JIT compiler.  The sample data are encoded in the format of
+ * version 0, whose block encoder contains the kernels that are measured.  The encoding scenarios also check that the
+ * decoded data are identical to the original data and that the compressed data of each kernel are identical.
+ * </p>
+ * <p>
+ * The times depend on the host, so results should be compared only with results from the same host.  The number of
+ * available processors is printed with the results of the {@code parallel} scenario, because the encoder and decoder
+ * work serially if there is only one.  The {@code runBenchmark} task adds the module of the Vector API to the JVM, so the
+ * encoder uses the kernel that uses the API; the {@code vector} scenario reports if the module is absent.
+ * </p>
+ */
+
+class CodecBenchmark
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The number of runs whose times are ignored. */
+	private static final	int	NUM_WARM_UP_RUNS	= 10;
+
+	/** The number of runs whose shortest time is reported. */
+	private static final	int	NUM_RUNS	= 30;
+
+	/** The number of samples in the sample data of a scenario. */
+	private static final	int	NUM_SAMPLES	= 1 << 21;
+
+	/** The number of sample frames in a block. */
+	private static final	int	BLOCK_LENGTH	= 256;
+
+	/** The key length of the encoder. */
+	private static final	int	KEY_LENGTH	= 4;
+
+	/** The seed of the generator of the noise in the sample data. */
+	private static final	long	SEED	= 1;
+
+	private static final	String	CONVERSION_STR	= "conversion";
+	private static final	String	ENCODING_STR	= "encoding";
+	private static final	String	PARALLEL_STR	= "parallel";
+	private static final	String	VECTOR_STR		= "vector";
+
+	private static final	String	USAGE_STR		= "Usage: CodecBenchmark [conversion] [encoding] [parallel] [vector]";
+	private static final	String	MISMATCH_STR	= "The decoded sample data differ from the original data.";
+	private static final	String	KERNELS_STR		= "The compressed data of the kernels differ.";
+	private static final	String	HISTOGRAMS_STR	= "The histograms of the analysis kernels differ.";
+	private static final	String	NO_VECTOR_STR	= "The module of the Vector API is not present.";
+
+////////////////////////////////////////////////////////////////////////
+//  Member interfaces
+////////////////////////////////////////////////////////////////////////
+
+
+	// INTERFACE: OPERATION
+
+
+	/**
+	 * This functional interface defines the method that performs one run of a measured operation.
+	 */
+
+	@FunctionalInterface
+	private interface IOperation
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Methods
+	////////////////////////////////////////////////////////////////////
+
+		void run()
+			throws IOException;
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private CodecBenchmark()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	public static void main(
+		String[]	args)
+		throws IOException
+	{
+		// Get scenarios
+		String[] scenarios = (args.length == 0)
+									? new String[] { CONVERSION_STR, ENCODING_STR, PARALLEL_STR, VECTOR_STR }
+									: args;
+
+		// Run scenarios
+		for (String scenario : scenarios)
+		{
+			switch (scenario)
+			{
+				case CONVERSION_STR:
+					runConversion();
+					break;
+
+				case ENCODING_STR:
+					runEncoding();
+					break;
+
+				case PARALLEL_STR:
+					runParallel();
+					break;
+
+				case VECTOR_STR:
+					runVector();
+					break;
+
+				default:
+					System.err.println(USAGE_STR);
+					System.exit(1);
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Compares the per-value conversions of {@link NumberCodec} with the bulk conversions.
+	 *
+	 * @throws IOException
+	 *           never; the conversions perform no I/O.
+	 */
+
+	private static void runConversion()
+		throws IOException
+	{
+		System.out.println("Conversion of " + NUM_SAMPLES + " samples (ms): per value / bulk");
+
+		byte[] data16 = createPcmData(2, 1);
+		byte[] data24 = createPcmData(3, 1);
+		byte[] bytes = new byte[NUM_SAMPLES * 4];
+		int[] values = new int[NUM_SAMPLES];
+
+		// Decode little-endian values
+		for (int bytesPerValue = 2; bytesPerValue <= 3; bytesPerValue++)
+		{
+			byte[] data = (bytesPerValue == 2) ? data16 : data24;
+			int length = bytesPerValue;
+			double perValueTime = measure(() ->
+			{
+				for (int i = 0, offset = 0; i < NUM_SAMPLES; i++, offset += length)
+					values[i] = NumberCodec.bytesToIntLE(data, offset, length);
+			});
+			double bulkTime = measure(() -> NumberCodec.bytesToIntsLE(data, 0, values, 0, NUM_SAMPLES, length));
+			printResult("decode " + (8 * bytesPerValue) + "-bit LE", perValueTime, bulkTime);
+		}
+
+		// Reverse byte order of values
+		for (int bytesPerValue = 2; bytesPerValue <= 3; bytesPerValue++)
+		{
+			byte[] data = (bytesPerValue == 2) ? data16 : data24;
+			int length = bytesPerValue;
+			double perValueTime = measure(() ->
+			{
+				for (int offset = 0; offset < data.length; offset += length)
+					NumberCodec.intToBytesBE(NumberCodec.bytesToIntLE(data, offset, length), data, offset, length);
+			});
+			double bulkTime = measure(() -> NumberCodec.reverseByteOrder(data, 0, data.length, length));
+			printResult("reverse " + (8 * bytesPerValue) + "-bit", perValueTime, bulkTime);
+		}
+
+		// Widen 16-bit values to 24 bits
+		double perValueTime = measure(() ->
+		{
+			for (int i = 0; i < NUM_SAMPLES; i++)
+				NumberCodec.intToBytesLE(NumberCodec.bytesToIntLE(data16, 2 * i, 2) << 8, bytes, 3 * i, 3);
+		});
+		double bulkTime = measure(() -> NumberCodec.changeWidthLE(data16, 0, 2, bytes, 0, 3, NUM_SAMPLES));
+		printResult("widen 16 -> 24", perValueTime, bulkTime);
+
+		// Narrow 24-bit values to 16 bits
+		perValueTime = measure(() ->
+		{
+			for (int i = 0; i < NUM_SAMPLES; i++)
+			{
+				int value = Math.round(NumberCodec.bytesToIntLE(data24, 3 * i, 3) / 256.0f);
+				NumberCodec.intToBytesLE(value, bytes, 2 * i, 2);
+			}
+		});
+		bulkTime = measure(() -> NumberCodec.changeWidthLE(data24, 0, 3, bytes, 0, 2, NUM_SAMPLES));
+		printResult("narrow 24 -> 16", perValueTime, bulkTime);
+
+		System.out.println();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes and decodes sample data of several bit depths and numbers of channels with each analysis kernel, and
+	 * encodes mono and stereo sample data with the specialised kernels and with the generic kernel.  The mono and
+	 * stereo data are analysed with the array kernel, which is faster than the default kernel, so that the kernels
+	 * that write the values of a block take a larger part of the encoding time.
+	 *
+	 * @throws IOException
+	 *           if an error occurred when encoding or decoding the sample data.
+	 */
+
+	private static void runEncoding()
+		throws IOException
+	{
+		System.out.println("Encoding of " + NUM_SAMPLES + " samples (ms): encode / decode");
+		System.out.println(String.format("  %-18s %-17s %s", "", "default kernel", "array kernel"));
+
+		for (int bytesPerSample = 2; bytesPerSample <= 3; bytesPerSample++)
+		{
+			for (int numChannels : new int[] { 1, 2, 6, 16 })
+			{
+				byte[] data = createPcmData(bytesPerSample, numChannels);
+				double[] defaultTimes = measureCodec(data, bytesPerSample, numChannels, false, false, false);
+				double[] arrayTimes = measureCodec(data, bytesPerSample, numChannels, true, false, false);
+				String label = (8 * bytesPerSample) + "-bit, " + numChannels + " ch";
+				System.out.println(String.format("  %-18s %6.1f / %6.1f    %6.1f / %6.1f", label, defaultTimes[0],
+												 defaultTimes[1], arrayTimes[0], arrayTimes[1]));
+			}
+		}
+
+		System.out.println();
+		System.out.println("Encoding of " + NUM_SAMPLES
+							+ " samples, array kernel (ms): specialised kernel / generic kernel");
+
+		for (int bytesPerSample = 2; bytesPerSample <= 3; bytesPerSample++)
+		{
+			for (int numChannels = 1; numChannels <= 2; numChannels++)
+			{
+				byte[] data = createPcmData(bytesPerSample, numChannels);
+				double specialisedTime = measureCodec(data, bytesPerSample, numChannels, true, false, false)[0];
+				double genericTime = measureCodec(data, bytesPerSample, numChannels, true, false, true)[0];
+				printResult((8 * bytesPerSample) + "-bit, " + numChannels + " ch", specialisedTime, genericTime);
+			}
+		}
+
+		System.out.println();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes 16-bit sample data of many channels with the array kernel, serially and in parallel.  Then encodes the
+	 * sample data with decorrelated channels and selected predictors (the format of version 3), and decodes them
+	 * serially and in parallel.
+	 *
+	 * @throws IOException
+	 *           if an error occurred when encoding or decoding the sample data.
+	 */
+
+	private static void runParallel()
+		throws IOException
+	{
+		System.out.println("Parallel encoding of " + NUM_SAMPLES + " samples (ms), "
+							+ Runtime.getRuntime().availableProcessors() + " available processors: serial / parallel");
+
+		for (int numChannels : new int[] { 8, 16, 64 })
+		{
+			byte[] data = createPcmData(2, numChannels);
+			double serialTime = measureCodec(data, 2, numChannels, true, false, false)[0];
+			double parallelTime = measureCodec(data, 2, numChannels, true, true, false)[0];
+			printResult(numChannels + " ch", serialTime, parallelTime);
+		}
+
+		System.out.println("Parallel decoding of " + NUM_SAMPLES + " samples with selected predictors (ms): "
+							+ "serial / parallel");
+
+		for (int numChannels : new int[] { 8, 16, 64 })
+		{
+			byte[] data = createPcmData(2, numChannels);
+			double serialTime = measurePredictedDecoding(data, 2, numChannels, false);
+			double parallelTime = measurePredictedDecoding(data, 2, numChannels, true);
+			printResult(numChannels + " ch", serialTime, parallelTime);
+		}
+
+		System.out.println();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Analyses blocks of sample values of a single channel with the scalar analysis kernel and with the kernel that
+	 * uses the Vector API: the second-order differences of each block are computed, and a histogram of their bit
+	 * lengths is made.  The histograms of the two kernels are compared.
+	 *
+	 * @throws IOException
+	 *           never; the analysis performs no I/O.
+	 */
+
+	private static void runVector()
+		throws IOException
+	{
+		AnalysisKernel vectorKernel = AnalysisKernel.getVectorKernel();
+		if (vectorKernel == null)
+		{
+			System.out.println(NO_VECTOR_STR);
+			System.out.println();
+			return;
+		}
+
+		System.out.println("Analysis of " + NUM_SAMPLES + " samples in blocks of " + BLOCK_LENGTH
+							+ " (ms): scalar kernel / vector kernel");
+
+		for (int bytesPerSample = 2; bytesPerSample <= 3; bytesPerSample++)
+		{
+			// Create sample values
+			byte[] data = createPcmData(bytesPerSample, 1);
+			int[] values = new int[NUM_SAMPLES];
+			NumberCodec.bytesToIntsLE(data, 0, values, 0, NUM_SAMPLES, bytesPerSample);
+
+			// Analyse sample values with each kernel
+			int[] scalarCounts = new int[Integer.SIZE + 1];
+			int[] vectorCounts = new int[Integer.SIZE + 1];
+			double scalarTime = measure(() -> analyse(AnalysisKernel.SCALAR, values, scalarCounts));
+			double vectorTime = measure(() -> analyse(vectorKernel, values, vectorCounts));
+			if (!Arrays.equals(scalarCounts, vectorCounts))
+				throw new IllegalStateException(HISTOGRAMS_STR);
+			printResult((8 * bytesPerSample) + "-bit", scalarTime, vectorTime);
+		}
+
+		System.out.println();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Analyses the specified sample values in blocks of {@link #BLOCK_LENGTH} with the specified kernel, and sets the
+	 * specified histogram to the sum of the histograms of the blocks.
+	 *
+	 * @param kernel
+	 *          the analysis kernel.
+	 * @param values
+	 *          the sample values.
+	 * @param counts
+	 *          the histogram of the bit lengths of the second-order differences of all the blocks.
+	 */
+
+	private static void analyse(
+		AnalysisKernel	kernel,
+		int[]			values,
+		int[]			counts)
+	{
+		int[] epsilons = new int[BLOCK_LENGTH];
+		int[] blockCounts = new int[counts.length];
+		Arrays.fill(counts, 0);
+		for (int offset = 0; offset < values.length; offset += BLOCK_LENGTH)
+		{
+			int length = Math.min(values.length - offset, BLOCK_LENGTH);
+			System.arraycopy(values, offset, epsilons, 0, length);
+			kernel.computeEpsilons(epsilons, length);
+			kernel.countBitLengths(epsilons, 1, length, blockCounts);
+			for (int i = 0; i < counts.length; i++)
+				counts[i] += blockCounts[i];
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the shortest time taken by an operation.
+	 *
+	 * @param  operation
+	 *           the operation.
+	 * @return the shortest time (in milliseconds) of {@link #NUM_RUNS} runs of {@code operation}, excluding the runs
+	 *         that warm up the JIT compiler.
+	 * @throws IOException
+	 *           if an error occurred when performing the operation.
+	 */
+
+	private static double measure(
+		IOperation	operation)
+		throws IOException
+	{
+		long minTime = Long.MAX_VALUE;
+		for (int i = 0; i < NUM_WARM_UP_RUNS + NUM_RUNS; i++)
+		{
+			long startTime = System.nanoTime();
+			operation.run();
+			long time = System.nanoTime() - startTime;
+			if (i >= NUM_WARM_UP_RUNS)
+				minTime = Math.min(minTime, time);
+		}
+		return (double)minTime * 1.0e-6;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes and decodes the specified sample data, and returns the shortest times taken by each.  The decoded sample
+	 * data are compared with the original data, and the compressed data of each kernel are compared with those of
+	 * the default kernel.
+	 *
+	 * @param  data
+	 *           the little-endian sample data.
+	 * @param  bytesPerSample
+	 *           the number of bytes per sample.
+	 * @param  numChannels
+	 *           the number of channels.
+	 * @param  arrayAnalysis
+	 *           if {@code true}, blocks will be analysed with the array kernel.
+	 * @param  parallel
+	 *           if {@code true}, the channels of a block will be encoded in parallel.
+	 * @param  genericKernel
+	 *           if {@code true}, the values of every block will be written by the generic kernel.
+	 * @return an array whose elements are the shortest encoding time and the shortest decoding time (in milliseconds).
+	 * @throws IOException
+	 *           if an error occurred when encoding or decoding the sample data.
+	 */
+
+	private static double[] measureCodec(
+		byte[]	data,
+		int		bytesPerSample,
+		int		numChannels,
+		boolean	arrayAnalysis,
+		boolean	parallel,
+		boolean	genericKernel)
+		throws IOException
+	{
+		int sampleLength = 8 * bytesPerSample;
+		int blockSize = BLOCK_LENGTH * numChannels * bytesPerSample;
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream(data.length);
+
+		// Encode sample data
+		double encodingTime = measure(() ->
+		{
+			outStream.reset();
+			OndaDataOutput dataOutput =
+					new OndaDataOutput(numChannels, sampleLength, KEY_LENGTH, new DataOutputStream(outStream));
+			dataOutput.setArrayAnalysis(arrayAnalysis);
+			dataOutput.setParallel(parallel);
+			dataOutput.setGenericKernel(genericKernel);
+			for (int offset = 0; offset < data.length; offset += blockSize)
+			{
+				int length = Math.min(data.length - offset, blockSize);
+				dataOutput.writePcmBlock(data, offset, length / bytesPerSample, bytesPerSample);
+			}
+			dataOutput.close();
+		});
+		byte[] compressedData = outStream.toByteArray();
+
+		// Decode compressed data
+		byte[] decodedData = new byte[data.length];
+		double decodingTime = measure(() ->
+		{
+			OndaDataInput dataInput = new OndaDataInput(compressedData.length, numChannels, sampleLength, KEY_LENGTH,
+														new DataInputStream(new ByteArrayInputStream(compressedData)));
+			for (int offset = 0; offset < data.length; offset += blockSize)
+			{
+				int length = Math.min(data.length - offset, blockSize);
+				dataInput.readPcmBlock(decodedData, offset, length / bytesPerSample, bytesPerSample);
+			}
+		});
+
+		// Check decoded data and compressed data
+		if (!Arrays.equals(data, decodedData))
+			throw new IllegalStateException(MISMATCH_STR);
+		if (arrayAnalysis || genericKernel)
+		{
+			byte[] defaultData = encode(data, bytesPerSample, numChannels);
+			if (!Arrays.equals(compressedData, defaultData))
+				throw new IllegalStateException(KERNELS_STR);
+		}
+
+		return new double[] { encodingTime, decodingTime };
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes the specified sample data once with decorrelated channels and selected predictors, then decodes them and
+	 * returns the shortest time taken.  The decoded sample data are compared with the original data.
+	 *
+	 * @param  data
+	 *           the little-endian sample data.
+	 * @param  bytesPerSample
+	 *           the number of bytes per sample.
+	 * @param  numChannels
+	 *           the number of channels.
+	 * @param  parallel
+	 *           if {@code true}, the channels of a block will be decoded in parallel.
+	 * @return the shortest decoding time (in milliseconds).
+	 * @throws IOException
+	 *           if an error occurred when encoding or decoding the sample data.
+	 */
+
+	private static double measurePredictedDecoding(
+		byte[]	data,
+		int		bytesPerSample,
+		int		numChannels,
+		boolean	parallel)
+		throws IOException
+	{
+		int sampleLength = 8 * bytesPerSample;
+		int blockSize = BLOCK_LENGTH * numChannels * bytesPerSample;
+
+		// Encode sample data
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream(data.length);
+		OndaDataOutput dataOutput =
+				new OndaDataOutput(numChannels, sampleLength, KEY_LENGTH, new DataOutputStream(outStream));
+		dataOutput.setVersion(OndaFile.PREDICTOR_SELECTION_VERSION);
+		for (int offset = 0; offset < data.length; offset += blockSize)
+		{
+			int length = Math.min(data.length - offset, blockSize);
+			dataOutput.writePcmBlock(data, offset, length / bytesPerSample, bytesPerSample);
+		}
+		dataOutput.close();
+		byte[] compressedData = outStream.toByteArray();
+
+		// Decode compressed data
+		byte[] decodedData = new byte[data.length];
+		double decodingTime = measure(() ->
+		{
+			OndaDataInput dataInput = new OndaDataInput(compressedData.length, numChannels, sampleLength, KEY_LENGTH,
+														new DataInputStream(new ByteArrayInputStream(compressedData)));
+			dataInput.setChannelDecorrelation(true);
+			dataInput.setPredictorSelection(true);
+			dataInput.setParallel(parallel);
+			for (int offset = 0; offset < data.length; offset += blockSize)
+			{
+				int length = Math.min(data.length - offset, blockSize);
+				dataInput.readPcmBlock(decodedData, offset, length / bytesPerSample, bytesPerSample);
+			}
+		});
+
+		// Check decoded data
+		if (!Arrays.equals(data, decodedData))
+			throw new IllegalStateException(MISMATCH_STR);
+
+		return decodingTime;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes the specified sample data once with the default kernel.
+	 *
+	 * @param  data
+	 *           the little-endian sample data.
+	 * @param  bytesPerSample
+	 *           the number of bytes per sample.
+	 * @param  numChannels
+	 *           the number of channels.
+	 * @return the compressed data.
+	 * @throws IOException
+	 *           if an error occurred when encoding the sample data.
+	 */
+
+	private static byte[] encode(
+		byte[]	data,
+		int		bytesPerSample,
+		int		numChannels)
+		throws IOException
+	{
+		int blockSize = BLOCK_LENGTH * numChannels * bytesPerSample;
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream(data.length);
+		OndaDataOutput dataOutput =
+				new OndaDataOutput(numChannels, 8 * bytesPerSample, KEY_LENGTH, new DataOutputStream(outStream));
+		for (int offset = 0; offset < data.length; offset += blockSize)
+		{
+			int length = Math.min(data.length - offset, blockSize);
+			dataOutput.writePcmBlock(data, offset, length / bytesPerSample, bytesPerSample);
+		}
+		dataOutput.close();
+		return outStream.toByteArray();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Creates little-endian sample data of {@link #NUM_SAMPLES} samples.  Each channel is a sine wave of its own
+	 * frequency at a quarter of full scale, to which uniform noise of 64 quanta is added.
+	 *
+	 * @param  bytesPerSample
+	 *           the number of bytes per sample.
+	 * @param  numChannels
+	 *           the number of channels.
+	 * @return the sample data.
+	 */
+
+	private static byte[] createPcmData(
+		int	bytesPerSample,
+		int	numChannels)
+	{
+		Random random = new Random(SEED);
+		int numSampleFrames = NUM_SAMPLES / numChannels;
+		double amplitude = 1 << (8 * bytesPerSample - 2);
+		byte[] data = new byte[numSampleFrames * numChannels * bytesPerSample];
+		int offset = 0;
+		for (int i = 0; i < numSampleFrames; i++)
+		{
+			for (int j = 0; j < numChannels; j++)
+			{
+				int value = (int)(Math.sin(0.01 * i * (j + 1)) * amplitude) + random.nextInt(64) - 32;
+				NumberCodec.intToBytesLE(value, data, offset, bytesPerSample);
+				offset += bytesPerSample;
+			}
+		}
+		return data;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Prints a line of the results of a scenario.
+	 *
+	 * @param label
+	 *          the label of the line.
+	 * @param time1
+	 *          the first time (in milliseconds).
+	 * @param time2
+	 *          the second time (in milliseconds).
+	 */
+
+	private static void printResult(
+		String	label,
+		double	time1,
+		double	time2)
+	{
+		System.out.println(String.format("  %-18s %6.1f / %6.1f", label, time1, time2));
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
@@ -18,10 +18,10 @@ package uk.blankaspect.common.audio;
 // IMPORTS
 
 
+import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -67,8 +67,13 @@ public class AiffFile
 
 	public static final		IffId	IFF_GROUP_ID	= new IffId("FORM");
 	public static final		IffId	AIFF_TYPE_ID	= new IffId("AIFF");
+	public static final		IffId	AIFC_TYPE_ID	= new IffId("AIFC");
 	public static final		IffId	AIFF_COMMON_ID	= new IffId("COMM");
 	public static final		IffId	AIFF_DATA_ID	= new IffId("SSND");
+	public static final		IffId	AIFC_VERSION_ID	= new IffId("FVER");
+
+	/** The timestamp of version 1 of the AIFF-C specification, which is the content of an FVER chunk. */
+	private static final	int		AIFC_VERSION1	= 0xA2805140;
 
 	private static final	int		SOUND_DATA_OFFSET_SIZE			= 4;
 	private static final	int		SOUND_DATA_BLOCK_LENGTH_SIZE	= 4;
@@ -84,6 +89,8 @@ public class AiffFile
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
+	private	boolean			littleEndian;
+	private	boolean			extendedFormat;
 	private	List<IffChunk>	chunks;
 
 ////////////////////////////////////////////////////////////////////////
@@ -160,53 +167,6 @@ public class AiffFile
 
 	//------------------------------------------------------------------
 
-	private static byte[] reverseByteOrder(byte[] data,
-										   int    offset,
-										   int    length,
-										   int    bytesPerSample)
-	{
-		byte temp = 0;
-		int endOffset = offset + length;
-		switch (bytesPerSample)
-		{
-			case 2:
-				while (offset < endOffset)
-				{
-					temp = data[offset];
-					data[offset] = data[offset + 1];
-					data[offset + 1] = temp;
-					offset += bytesPerSample;
-				}
-				break;
-
-			case 3:
-				while (offset < endOffset)
-				{
-					temp = data[offset];
-					data[offset] = data[offset + 2];
-					data[offset + 2] = temp;
-					offset += bytesPerSample;
-				}
-				break;
-
-			case 4:
-				while (offset < endOffset)
-				{
-					temp = data[offset];
-					data[offset] = data[offset + 3];
-					data[offset + 3] = temp;
-					temp = data[offset + 1];
-					data[offset + 1] = data[offset + 2];
-					data[offset + 2] = temp;
-					offset += bytesPerSample;
-				}
-				break;
-		}
-		return data;
-	}
-
-	//------------------------------------------------------------------
-
 ////////////////////////////////////////////////////////////////////////
 //  Instance methods : overriding methods
 ////////////////////////////////////////////////////////////////////////
@@ -221,11 +181,19 @@ public class AiffFile
 
 	//------------------------------------------------------------------
 
+	@Override
+	public boolean hasExtendedFormat()
+	{
+		return extendedFormat;
+	}
+
+	//------------------------------------------------------------------
+
 	@Override
 	public void read(FormFile.IChunkReader chunkReader)
 		throws AppException
 	{
-		new IffFormFile(file).read(chunkReader);
+		readForm(new IffFormFile(file), chunkReader);
 	}
 
 	//------------------------------------------------------------------
@@ -252,17 +220,11 @@ public class AiffFile
 			if (readLength > 0)
 			{
 				double factor = 1.0 / getMaxInputSampleValue(bytesPerSample);
-				if (bytesPerSample == 1)
-				{
-					for (int i = 0; i < readLength; i++)
-						buffer[offset++] = (double)(inBuffer[i] ^ (byte)0x80) * factor;
-				}
-				else
-				{
-					for (int i = 0; i < readLength; i += bytesPerSample)
-						buffer[offset++] = (double)NumberCodec.bytesToIntBE(inBuffer, i, bytesPerSample) * factor;
-					readLength /= bytesPerSample;
-				}
+				readLength /= bytesPerSample;
+				int[] values = new int[readLength];
+				bytesToInts(inBuffer, values, readLength);
+				for (int i = 0; i < readLength; i++)
+					buffer[offset++] = (double)values[i] * factor;
 			}
 			return readLength;
 		}
@@ -282,14 +244,14 @@ public class AiffFile
 		throws AppException
 	{
 		ChunkReader reader = new ChunkReader(sampleFormat, bytesPerSample, outStream, filter);
-		new IffFormFile(file).read(reader);
+		readForm(new IffFormFile(file), reader);
 		return reader.getData();
 	}
 
 	//------------------------------------------------------------------
 
 	@Override
-	protected int readGroupHeader()
+	protected long readGroupHeader()
 		throws AppException
 	{
 		try
@@ -300,14 +262,11 @@ public class AiffFile
 
 			// Test for AIFF group
 			IffGroup group = new IffGroup(buffer);
-			if (!group.getGroupId().equals(IFF_GROUP_ID) ||
-				 !group.getTypeId().equals(AIFF_TYPE_ID))
+			if (!group.getGroupId().equals(IFF_GROUP_ID) || !isTypeId(group.getTypeId()))
 				throw new FileException(ErrorId.NOT_AN_AIFF_FILE, file);
 
 			// Test group size
-			int groupSize = IffChunk.getSize(buffer, IffId.SIZE);
-			if (groupSize < 0)
-				throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
+			long groupSize = IffChunk.getSize(buffer, IffId.SIZE) & FormFile.MAX_SIZE;
 			if (groupSize > raFile.length() - Chunk.HEADER_SIZE)
 				throw new FileException(AudioFile.ErrorId.MALFORMED_FILE, file);
 
@@ -333,17 +292,65 @@ public class AiffFile
 			chunks.add(DATA_CHUNK);
 		}
 
+		// Get data of a preserved Common chunk; an AIFF-C Common chunk determines the byte order of the sample data
+		byte[] commonData = null;
+		littleEndian = false;
+		for (IffChunk chunk : chunks)
+		{
+			if (chunk.getId().equals(AIFF_COMMON_ID))
+			{
+				if (chunk.getSize() > 0)
+					commonData = chunk.loadData();
+				break;
+			}
+		}
+		if ((commonData != null) && (commonData.length > 0))
+			littleEndian = validateCommonData(commonData).isLittleEndian();
+		else
+			commonData = null;
+
+		// An AIFF-C file must have an FVER chunk
+		boolean aifc = (commonData != null) && (commonData.length >= Attributes.CHUNK_SIZE2);
+		if (aifc && (getChunk(AIFC_VERSION_ID) == null))
+		{
+			byte[] data = new byte[Chunk.SIZE_SIZE];
+			NumberCodec.intToBytesBE(AIFC_VERSION1, data);
+			chunks.add(0, new IffChunk(AIFC_VERSION_ID, data));
+		}
+
+		// Create chunk writer
+		ChunkWriter chunkWriter = new ChunkWriter(sampleDataInput, inputKind, commonData);
+
+		// Test whether the group is too large for the size field of its header
+		long groupSize = IffId.SIZE;
+		for (IffChunk chunk : chunks)
+		{
+			long size = chunkWriter.getSize(chunk);
+			groupSize += Chunk.HEADER_SIZE + size + (size & 1);
+		}
+		if (groupSize > FormFile.MAX_SIZE)
+			throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
+
 		// Write file
-		new IffFormFile(file).write(AIFF_TYPE_ID, new ChunkWriter(sampleDataInput, inputKind));
+		writeForm(new IffFormFile(file), aifc ? AIFC_TYPE_ID : AIFF_TYPE_ID, groupSize, chunkWriter);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected long getChunkSize(IffId  id,
+								byte[] buffer,
+								int    offset)
+	{
+		return IffChunk.getSize(buffer, offset) & FormFile.MAX_SIZE;
 	}
 
 	//------------------------------------------------------------------
 
 	@Override
-	protected int getChunkSize(byte[] buffer,
-							   int    offset)
+	protected IffId getFormatChunkId()
 	{
-		return IffChunk.getSize(buffer, offset);
+		return AIFF_COMMON_ID;
 	}
 
 	//------------------------------------------------------------------
@@ -387,14 +394,16 @@ public class AiffFile
 			throw new IllegalStateException(FILE_IS_NOT_OPEN_STR);
 
 		// Find chunk
-		int chunkSize = findChunk(id);
+		long chunkSize = findChunk(id);
 		if (chunkSize < 0)
 			return null;
+		if (chunkSize > Integer.MAX_VALUE)
+			throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
 
 		// Read chunk
 		try
 		{
-			byte[] buffer = new byte[chunkSize];
+			byte[] buffer = new byte[(int)chunkSize];
 			raFile.readFully(buffer);
 			return new IffChunk(id, buffer);
 		}
@@ -410,15 +419,16 @@ public class AiffFile
 
 	//------------------------------------------------------------------
 
-	private void parseCommonChunk(RandomAccessFile raFile,
-								  int              chunkSize)
+	private void parseCommonChunk(DataInput dataInput,
+								  long      chunkSize)
 		throws AppException, IOException
 	{
-		if ((chunkSize != Attributes.CHUNK_SIZE1) && (chunkSize < Attributes.CHUNK_SIZE2))
+		if (((chunkSize != Attributes.CHUNK_SIZE1) && (chunkSize < Attributes.CHUNK_SIZE2))
+				|| (chunkSize > Attributes.MAX_CHUNK_SIZE))
 			throw new FileException(ErrorId.INVALID_COMMON_CHUNK, file);
 
-		byte[] buffer = new byte[chunkSize];
-		raFile.readFully(buffer);
+		byte[] buffer = new byte[(int)chunkSize];
+		dataInput.readFully(buffer);
 
 		Attributes attributes = null;
 		try
@@ -429,8 +439,10 @@ public class AiffFile
 		{
 			throw new FileException(ErrorId.INVALID_COMMON_CHUNK, file);
 		}
-		if (attributes.compressed)
+		if (!attributes.isPcm())
 			throw new IffException(ErrorId.UNSUPPORTED_FORMAT, file, AIFF_COMMON_ID);
+		littleEndian = attributes.isLittleEndian();
+		extendedFormat = (chunkSize != Attributes.CHUNK_SIZE1);
 		numChannels = attributes.numChannels;
 		bitsPerSample = attributes.bitsPerSample;
 		if (bitsPerSample > MAX_BITS_PER_SAMPLE)
@@ -443,6 +455,69 @@ public class AiffFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Tests whether the specified data of a Common chunk describe the same uncompressed format as the attributes of
+	 * this file, and returns the attributes that are parsed from the data.
+	 *
+	 * @param  data
+	 *           the data of the Common chunk.
+	 * @return the attributes that were parsed from {@code data}.
+	 * @throws AppException
+	 *           if the Common chunk is invalid or is inconsistent with the attributes of this file.
+	 */
+
+	private Attributes validateCommonData(byte[] data)
+		throws AppException
+	{
+		if (((data.length != Attributes.CHUNK_SIZE1) && (data.length < Attributes.CHUNK_SIZE2))
+				|| (data.length > Attributes.MAX_CHUNK_SIZE))
+			throw new FileException(ErrorId.INVALID_COMMON_CHUNK, file);
+
+		Attributes attributes = null;
+		try
+		{
+			attributes = new Attributes(data);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new FileException(ErrorId.INVALID_COMMON_CHUNK, file);
+		}
+		if (!attributes.isPcm() || (attributes.numChannels != numChannels)
+				|| (attributes.bitsPerSample != bitsPerSample) || (attributes.sampleRate != sampleRate))
+			throw new FileException(ErrorId.INCONSISTENT_COMMON_CHUNK, file);
+		return attributes;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the specified identifier is the form type of an AIFF or AIFF-C file.
+	 */
+
+	private boolean isTypeId(IffId id)
+	{
+		return id.equals(AIFF_TYPE_ID) || id.equals(AIFC_TYPE_ID);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decodes sample values in the byte order of the sample data of this file.
+	 */
+
+	private void bytesToInts(byte[] src,
+							 int[]  dest,
+							 int    count)
+	{
+		int bytesPerSample = getBytesPerSample();
+		if (littleEndian)
+			NumberCodec.bytesToIntsLE(src, 0, dest, 0, count, bytesPerSample);
+		else
+			NumberCodec.bytesToIntsBE(src, 0, dest, 0, count, bytesPerSample);
+	}
+
+	//------------------------------------------------------------------
+
 ////////////////////////////////////////////////////////////////////////
 //  Enumerated types
 ////////////////////////////////////////////////////////////////////////
@@ -466,7 +541,7 @@ public class AiffFile
 		("The file is not a valid AIFF file."),
 
 		UNSUPPORTED_FORMAT
-		("This program cannot process AIFF files in compressed format."),
+		("This program cannot process AIFF-C files in compressed format."),
 
 		UNSUPPORTED_BITS_PER_SAMPLE
 		("This program cannot process AIFF files with a resolution of more than 32 bits per sample."),
@@ -486,6 +561,9 @@ public class AiffFile
 		INVALID_COMMON_CHUNK
 		("The Common chunk is invalid."),
 
+		INCONSISTENT_COMMON_CHUNK
+		("The preserved Common chunk is inconsistent with the attributes of the file."),
+
 		MULTIPLE_DATA_CHUNKS
 		("The file has more than one data chunk."),
 
@@ -496,7 +574,7 @@ public class AiffFile
 		("The size of the data chunk is inconsistent with the number of sample frames."),
 
 		FILE_IS_TOO_LARGE
-		("This program cannot process AIFF files that are larger than 2GB."),
+		("This program cannot write AIFF files that are larger than 4GB."),
 
 		NOT_ENOUGH_MEMORY
 		("There was not enough memory to read the file.");
@@ -561,28 +639,32 @@ public class AiffFile
 				NUM_CHANNELS_SIZE + NUM_SAMPLE_FRAMES_SIZE + BITS_PER_SAMPLE_SIZE + SAMPLE_RATE_SIZE;
 		private static final	int		CHUNK_SIZE2	= CHUNK_SIZE1 + IffId.SIZE;
 
+		private static final	int		MAX_COMPRESSION_NAME_SIZE	= 256;
+		private static final	int		MAX_CHUNK_SIZE				= CHUNK_SIZE2 + MAX_COMPRESSION_NAME_SIZE;
+
 		private static final	int		SAMPLE_RATE_EXPONENT_BIAS	= 16383;
 
 		private static final	IffId	NONE_ID	= new IffId("NONE");
+		private static final	IffId	SOWT_ID	= new IffId("sowt");
 
 	////////////////////////////////////////////////////////////////////
 	//  Instance variables
 	////////////////////////////////////////////////////////////////////
 
 		int		numChannels;
-		int		numSampleFrames;
+		long	numSampleFrames;
 		int		bitsPerSample;
 		int		sampleRate;
-		boolean	compressed;
+		IffId	compressionType;
 
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
 	////////////////////////////////////////////////////////////////////
 
-		private Attributes(int numChannels,
-						   int bitsPerSample,
-						   int numSampleFrames,
-						   int sampleRate)
+		private Attributes(int  numChannels,
+						   int  bitsPerSample,
+						   long numSampleFrames,
+						   int  sampleRate)
 		{
 			this.numChannels = numChannels;
 			this.numSampleFrames = numSampleFrames;
@@ -613,7 +695,7 @@ public class AiffFile
 			numChannels = NumberCodec.bytesToUIntBE(data, offset, NUM_CHANNELS_SIZE);
 			offset += NUM_CHANNELS_SIZE;
 
-			numSampleFrames = NumberCodec.bytesToUIntBE(data, offset, NUM_SAMPLE_FRAMES_SIZE);
+			numSampleFrames = NumberCodec.bytesToUIntBE(data, offset, NUM_SAMPLE_FRAMES_SIZE) & 0xFFFFFFFFL;
 			offset += NUM_SAMPLE_FRAMES_SIZE;
 
 			bitsPerSample = NumberCodec.bytesToUIntBE(data, offset, BITS_PER_SAMPLE_SIZE);
@@ -639,7 +721,27 @@ public class AiffFile
 			}
 
 			if (data.length >= CHUNK_SIZE2)
-				compressed = new IffId(data, offset).equals(NONE_ID);
+				compressionType = new IffId(data, offset);
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Returns {@code true} if these attributes describe uncompressed sample data: the Common chunk of an AIFF file,
+		 * or the Common chunk of an AIFF-C file with the compression type {@code NONE} (big-endian) or {@code sowt}
+		 * (little-endian).
+		 */
+
+		public boolean isPcm()
+		{
+			return (compressionType == null) || compressionType.equals(NONE_ID) || compressionType.equals(SOWT_ID);
+		}
+
+		//--------------------------------------------------------------
+
+		public boolean isLittleEndian()
+		{
+			return (compressionType != null) && compressionType.equals(SOWT_ID);
 		}
 
 		//--------------------------------------------------------------
@@ -659,7 +761,7 @@ public class AiffFile
 			NumberCodec.uIntToBytesBE(numChannels, buffer, offset, NUM_CHANNELS_SIZE);
 			offset += NUM_CHANNELS_SIZE;
 
-			NumberCodec.uIntToBytesBE(numSampleFrames, buffer, offset, NUM_SAMPLE_FRAMES_SIZE);
+			NumberCodec.uIntToBytesBE((int)numSampleFrames, buffer, offset, NUM_SAMPLE_FRAMES_SIZE);
 			offset += NUM_SAMPLE_FRAMES_SIZE;
 
 			NumberCodec.uIntToBytesBE(bitsPerSample, buffer, offset, BITS_PER_SAMPLE_SIZE);
@@ -730,14 +832,12 @@ public class AiffFile
 	////////////////////////////////////////////////////////////////////
 
 		@Override
-		public void beginReading(RandomAccessFile raFile,
-								 IffId            typeId,
-								 int              size)
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
 			throws AppException
 		{
-			if (size < 0)
-				throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
-			if (!typeId.equals(AIFF_TYPE_ID))
+			if (!isTypeId(typeId))
 				throw new FileException(ErrorId.NOT_AN_AIFF_FILE, file);
 			chunks.clear();
 		}
@@ -745,9 +845,9 @@ public class AiffFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void read(RandomAccessFile raFile,
-						 IffId            id,
-						 int              size)
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
 			throws AppException, IOException
 		{
 
@@ -758,7 +858,7 @@ public class AiffFile
 				if (chunks.contains(COMMON_CHUNK))
 					throw new FileException(ErrorId.MULTIPLE_COMMON_CHUNKS, file);
 
-				parseCommonChunk(raFile, size);
+				parseCommonChunk(dataInput, size);
 				chunks.add(COMMON_CHUNK);
 			}
 
@@ -776,28 +876,32 @@ public class AiffFile
 
 				// Skip padding before sample data
 				byte[] buffer = new byte[SOUND_DATA_HEADER_SIZE];
-				raFile.readFully(buffer);
+				dataInput.readFully(buffer);
 				int offset = NumberCodec.bytesToIntBE(buffer, 0, SOUND_DATA_OFFSET_SIZE);
 				if (offset < 0)
 					throw new FileException(ErrorId.INVALID_DATA_CHUNK, file);
-				raFile.skipBytes(offset);
+				dataInput.skipBytes(offset);
 
 				// Read and parse sample data
-				int dataSize = numSampleFrames * getBytesPerSampleFrame();
+				long dataSize = numSampleFrames * getBytesPerSampleFrame();
 				if (size < SOUND_DATA_HEADER_SIZE + offset + dataSize)
 					throw new FileException(ErrorId.INCONSISTENT_DATA_SIZE, file);
 
+				// Test whether sample data can be read into a buffer
+				if ((outStream == null) && (sampleFormat != SampleFormat.NONE) && (dataSize > Integer.MAX_VALUE))
+					throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
+
 				try
 				{
 					switch (sampleFormat)
 					{
 						case INTEGER:
-							sampleData = parseIntegerData(raFile, dataSize, bytesPerSample,
+							sampleData = parseIntegerData(dataInput, dataSize, bytesPerSample,
 														  (IByteDataOutputStream)outStream);
 							break;
 
 						case DOUBLE:
-							sampleData = parseDoubleData(raFile, dataSize, bytesPerSample,
+							sampleData = parseDoubleData(dataInput, dataSize, bytesPerSample,
 														 (IDoubleDataOutputStream)outStream);
 							break;
 
@@ -818,10 +922,12 @@ public class AiffFile
 
 			else if ((filter != null) && filter.accept(id) && (sampleFormat != SampleFormat.NONE))
 			{
+				if (size > Integer.MAX_VALUE)
+					throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
 				try
 				{
-					byte[] buffer = new byte[size];
-					raFile.readFully(buffer);
+					byte[] buffer = new byte[(int)size];
+					dataInput.readFully(buffer);
 					chunks.add(new IffChunk(id, buffer));
 				}
 				catch (OutOfMemoryError e)
@@ -834,7 +940,7 @@ public class AiffFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void endReading(RandomAccessFile raFile)
+		public void endReading(DataInput dataInput)
 			throws AppException
 		{
 			// Test for critical chunks
@@ -857,8 +963,8 @@ public class AiffFile
 
 		//--------------------------------------------------------------
 
-		private byte[] parseIntegerData(RandomAccessFile      raFile,
-										int                   dataSize,
+		private byte[] parseIntegerData(DataInput             dataInput,
+										long                  dataSize,
 										int                   bytesPerSample,
 										IByteDataOutputStream outStream)
 			throws AppException, IOException
@@ -875,22 +981,24 @@ public class AiffFile
 			{
 				if (outStream == null)
 				{
-					outBuffer = new byte[dataSize];
-					raFile.readFully(outBuffer);
-					reverseByteOrder(outBuffer, 0, outBuffer.length, inBytesPerSample);
+					outBuffer = new byte[(int)dataSize];
+					dataInput.readFully(outBuffer);
+					if (!littleEndian)
+						NumberCodec.reverseByteOrder(outBuffer, 0, outBuffer.length, inBytesPerSample);
 				}
 				else
 				{
 					int bufferLength = BUFFER_LENGTH * inBytesPerSample;
 					outBuffer = new byte[bufferLength];
-					int lengthRemaining = dataSize;
+					long lengthRemaining = dataSize;
 					while (lengthRemaining > 0)
 					{
 						int inLength = bufferLength;
 						if (inLength > lengthRemaining)
-							inLength = lengthRemaining;
-						raFile.readFully(outBuffer, 0, inLength);
-						reverseByteOrder(outBuffer, 0, inLength, inBytesPerSample);
+							inLength = (int)lengthRemaining;
+						dataInput.readFully(outBuffer, 0, inLength);
+						if (!littleEndian)
+							NumberCodec.reverseByteOrder(outBuffer, 0, inLength, inBytesPerSample);
 						outStream.write(outBuffer, 0, inLength);
 						lengthRemaining -= inLength;
 					}
@@ -901,57 +1009,30 @@ public class AiffFile
 			// stream
 			else
 			{
-				int delta = bytesPerSample - inBytesPerSample;
-				double factor = (delta < 0) ? getMaxInputSampleValue(bytesPerSample) /
-																getMaxInputSampleValue(inBytesPerSample)
-											: 0.0;
 				int inBufferLength = BUFFER_LENGTH * inBytesPerSample;
 				byte[] inBuffer = new byte[inBufferLength];
-				outBuffer = new byte[((outStream == null) ? dataSize / inBytesPerSample : BUFFER_LENGTH) *
+				outBuffer = new byte[((outStream == null) ? (int)(dataSize / inBytesPerSample) : BUFFER_LENGTH) *
 																							bytesPerSample];
 				int outIndex = 0;
-				int lengthRemaining = dataSize;
+				long lengthRemaining = dataSize;
 				while (lengthRemaining > 0)
 				{
 					int inLength = inBufferLength;
 					if (inLength > lengthRemaining)
-						inLength = lengthRemaining;
-					raFile.readFully(inBuffer, 0, inLength);
-					if (delta > 0)
-					{
-						int inIndex = 0;
-						if (inBytesPerSample == 1)
-						{
-							while (inIndex < inLength)
-							{
-								for (int i = 0; i < delta; i++)
-									outBuffer[outIndex++] = 0;
-								outBuffer[outIndex++] = (byte)(inBuffer[inIndex++] ^ 0x80);
-							}
-						}
-						else
-						{
-							while (inIndex < inLength)
-							{
-								for (int i = 0; i < delta; i++)
-									outBuffer[outIndex++] = 0;
-								for (int i = 0; i < inBytesPerSample; i++)
-									outBuffer[outIndex++] = inBuffer[inIndex++];
-							}
-						}
-					}
-					else
-					{
-						int inIndex = 0;
-						while (inIndex < inLength)
-						{
-							int value = (int)Math.round((double)NumberCodec.bytesToIntBE(inBuffer, inIndex,
-																						 inBytesPerSample) * factor);
-							NumberCodec.intToBytesBE(value, outBuffer, outIndex, bytesPerSample);
-							inIndex += inBytesPerSample;
-							outIndex += bytesPerSample;
-						}
-					}
+						inLength = (int)lengthRemaining;
+					dataInput.readFully(inBuffer, 0, inLength);
+
+					// Convert samples to little-endian
+					if (!littleEndian)
+						NumberCodec.reverseByteOrder(inBuffer, 0, inLength, inBytesPerSample);
+
+					// Widen or narrow samples: a narrowed value is rounded to the nearest multiple of the scale
+					// factor, as it would be by Math.round()
+					int numSamples = inLength / inBytesPerSample;
+					NumberCodec.changeWidthLE(inBuffer, 0, inBytesPerSample, outBuffer, outIndex, bytesPerSample,
+											  numSamples);
+					outIndex += numSamples * bytesPerSample;
+
 					if (outStream != null)
 					{
 						outStream.write(outBuffer, 0, outIndex);
@@ -967,8 +1048,8 @@ public class AiffFile
 
 		//--------------------------------------------------------------
 
-		private double[] parseDoubleData(RandomAccessFile        raFile,
-										 int                     dataSize,
+		private double[] parseDoubleData(DataInput               dataInput,
+										 long                    dataSize,
 										 int                     bytesPerSample,
 										 IDoubleDataOutputStream outStream)
 			throws AppException, IOException
@@ -980,9 +1061,10 @@ public class AiffFile
 			double factor = 1.0 / getMaxInputSampleValue(inBytesPerSample);
 			int inBufferLength = BUFFER_LENGTH * inBytesPerSample;
 			byte[] inBuffer = new byte[inBufferLength];
-			double[] outBuffer = new double[(outStream == null) ? dataSize / inBytesPerSample : BUFFER_LENGTH];
+			int[] values = new int[BUFFER_LENGTH];
+			double[] outBuffer = new double[(outStream == null) ? (int)(dataSize / inBytesPerSample) : BUFFER_LENGTH];
 			int outIndex = 0;
-			int lengthRemaining = dataSize;
+			long lengthRemaining = dataSize;
 
 			// Read sample data from file and write them to buffer or output stream
 			while (lengthRemaining > 0)
@@ -990,23 +1072,14 @@ public class AiffFile
 				// Read sample data from file
 				int inLength = inBufferLength;
 				if (inLength > lengthRemaining)
-					inLength = lengthRemaining;
-				raFile.readFully(inBuffer, 0, inLength);
+					inLength = (int)lengthRemaining;
+				dataInput.readFully(inBuffer, 0, inLength);
 
 				// Convert sample values to floating point
-				if (inBytesPerSample == 1)
-				{
-					for (int i = 0; i < inLength; i++)
-						outBuffer[outIndex++] = (double)(inBuffer[i] ^ (byte)0x80) * factor;
-				}
-				else
-				{
-					for (int i = 0; i < inLength; i += inBytesPerSample)
-					{
-						outBuffer[outIndex++] =
-								(double)NumberCodec.bytesToIntBE(inBuffer, i, inBytesPerSample) * factor;
-					}
-				}
+				int numSamples = inLength / inBytesPerSample;
+				bytesToInts(inBuffer, values, numSamples);
+				for (int i = 0; i < numSamples; i++)
+					outBuffer[outIndex++] = (double)values[i] * factor;
 
 				// Write data to output stream
 				if (outStream != null)
@@ -1043,6 +1116,7 @@ public class AiffFile
 
 		private	IDataInput		sampleDataInput;
 		private	IDataInput.Kind	inputKind;
+		private	byte[]			commonData;
 		private	int				chunkIndex;
 
 	////////////////////////////////////////////////////////////////////
@@ -1050,11 +1124,18 @@ public class AiffFile
 	////////////////////////////////////////////////////////////////////
 
 		private ChunkWriter(IDataInput      sampleDataInput,
-							IDataInput.Kind inputKind)
+							IDataInput.Kind inputKind,
+							byte[]          commonData)
 		{
 			this.sampleDataInput = sampleDataInput;
 			this.inputKind = inputKind;
-			numSampleFrames = (int)(getDataLength() / getBytesPerSampleFrame());
+			numSampleFrames = getDataLength() / getBytesPerSampleFrame();
+			if (commonData != null)
+			{
+				this.commonData = commonData.clone();
+				NumberCodec.uIntToBytesBE((int)numSampleFrames, this.commonData, Attributes.NUM_CHANNELS_SIZE,
+										  Attributes.NUM_SAMPLE_FRAMES_SIZE);
+			}
 		}
 
 		//--------------------------------------------------------------
@@ -1064,7 +1145,7 @@ public class AiffFile
 	////////////////////////////////////////////////////////////////////
 
 		@Override
-		public void beginWriting(RandomAccessFile raFile)
+		public void beginWriting(DataOutput dataOutput)
 		{
 			// do nothing
 		}
@@ -1080,31 +1161,41 @@ public class AiffFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void write(RandomAccessFile raFile,
-						  IffId            id)
+		public long getSize()
+		{
+			return getSize(chunks.get(chunkIndex - 1));
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void write(DataOutput dataOutput,
+						  IffId      id)
 			throws AppException, IOException
 		{
 			// Common chunk
 			if (id.equals(AIFF_COMMON_ID))
-				raFile.write(new Attributes(numChannels, bitsPerSample, numSampleFrames, sampleRate).get());
+				dataOutput.write((commonData == null)
+										? new Attributes(numChannels, bitsPerSample, numSampleFrames, sampleRate).get()
+										: commonData);
 
 			// Data chunk
 			else if (id.equals(AIFF_DATA_ID))
-				writeData(raFile);
+				writeData(dataOutput);
 
-			// Ancillary chunk
+			// Ancillary chunk: the chunk whose ID was returned by the last call to getNextId()
 			else
 			{
-				IffChunk chunk = getChunk(id);
-				if (chunk != null)
-					raFile.write(chunk.getData());
+				byte[] data = chunks.get(chunkIndex - 1).loadData();
+				if (data != null)
+					dataOutput.write(data);
 			}
 		}
 
 		//--------------------------------------------------------------
 
 		@Override
-		public void endWriting(RandomAccessFile raFile)
+		public void endWriting(DataOutput dataOutput)
 		{
 			// do nothing
 		}
@@ -1115,6 +1206,23 @@ public class AiffFile
 	//  Instance methods
 	////////////////////////////////////////////////////////////////////
 
+		/**
+		 * Returns the size of the data that will be written for the specified chunk.  The data of a Common chunk that
+		 * was not preserved are created from the attributes of the file.
+		 */
+
+		private long getSize(IffChunk chunk)
+		{
+			IffId id = chunk.getId();
+			if (id.equals(AIFF_DATA_ID))
+				return SOUND_DATA_HEADER_SIZE + getDataLength();
+			if (id.equals(AIFF_COMMON_ID))
+				return (commonData == null) ? Attributes.CHUNK_SIZE1 : commonData.length;
+			return chunk.getSize();
+		}
+
+		//--------------------------------------------------------------
+
 		private long getDataLength()
 		{
 			long length = sampleDataInput.getLength();
@@ -1165,7 +1273,8 @@ public class AiffFile
 						blockLength = ((IByteDataInputStream)sampleDataInput).read(buffer, 0, blockLength);
 						if (blockLength < 0)
 							throw new AppException(ErrorId.FAILED_TO_READ_SAMPLE_DATA);
-						reverseByteOrder(buffer, 0, blockLength, bytesPerSample);
+						if (!littleEndian)
+							NumberCodec.reverseByteOrder(buffer, 0, blockLength, bytesPerSample);
 						dataOutput.write(buffer, 0, blockLength);
 					}
 					break;
@@ -1180,7 +1289,8 @@ public class AiffFile
 						IByteDataSource.ByteData data = ((IByteDataSource)sampleDataInput).getData();
 						if (data == null)
 							throw new AppException(ErrorId.FAILED_TO_READ_SAMPLE_DATA);
-						reverseByteOrder(data.data, data.offset, data.length, bytesPerSample);
+						if (!littleEndian)
+							NumberCodec.reverseByteOrder(data.data, data.offset, data.length, bytesPerSample);
 						dataOutput.write(data.data, data.offset, data.length);
 						offset += data.length;
 					}
@@ -1210,6 +1320,8 @@ public class AiffFile
 								blockLength *= 3;
 								break;
 						}
+						if (littleEndian)
+							NumberCodec.reverseByteOrder(outBuffer, 0, blockLength, getBytesPerSample());
 						dataOutput.write(outBuffer, 0, blockLength);
 					}
 					break;
@@ -1236,6 +1348,8 @@ public class AiffFile
 								setSampleData24(data.data, data.offset, buffer, 0, data.length);
 								break;
 						}
+						if (littleEndian)
+							NumberCodec.reverseByteOrder(buffer, 0, buffer.length, getBytesPerSample());
 						dataOutput.write(buffer);
 						offset += buffer.length;
 					}
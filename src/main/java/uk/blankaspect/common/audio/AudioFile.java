@@ -18,13 +18,19 @@ package uk.blankaspect.common.audio;
 // IMPORTS
 
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 
 import java.nio.channels.OverlappingFileLockException;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import uk.blankaspect.common.bytedata.IByteDataInputStream;
@@ -44,6 +50,7 @@ import uk.blankaspect.common.iff.FormFile;
 import uk.blankaspect.common.iff.Group;
 import uk.blankaspect.common.iff.IffException;
 import uk.blankaspect.common.iff.IffId;
+import uk.blankaspect.common.iff.RiffFormFile;
 
 import uk.blankaspect.common.misc.IDataInput;
 import uk.blankaspect.common.misc.IStringKeyed;
@@ -94,10 +101,15 @@ public abstract class AudioFile
 	protected	File				file;
 	protected	int					numChannels;
 	protected	int					bitsPerSample;
+	protected	boolean				floatingPoint;
 	protected	int					sampleRate;
-	protected	int					numSampleFrames;
+	protected	long				numSampleFrames;
 	protected	long				sampleDataOffset;
 	protected	RandomAccessFile	raFile;
+	protected	InputStream			inStream;
+	protected	OutputStream		outStream;
+	private		StreamReader		streamReader;
+	private		List<IffId>			trailingChunkIds;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -289,7 +301,7 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
-	protected abstract int readGroupHeader()
+	protected abstract long readGroupHeader()
 		throws AppException;
 
 	//------------------------------------------------------------------
@@ -300,8 +312,14 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
-	protected abstract int getChunkSize(byte[] buffer,
-										int    offset);
+	protected abstract long getChunkSize(IffId  id,
+										 byte[] buffer,
+										 int    offset)
+		throws AppException;
+
+	//------------------------------------------------------------------
+
+	protected abstract IffId getFormatChunkId();
 
 	//------------------------------------------------------------------
 
@@ -348,6 +366,20 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Returns {@code true} if the sample values of this file are IEEE 754 floating-point values rather than integers.
+	 * The integer read methods return the bits of floating-point sample values unchanged.
+	 *
+	 * @return {@code true} if the sample values of this file are floating-point values.
+	 */
+
+	public boolean isFloatingPoint()
+	{
+		return floatingPoint;
+	}
+
+	//------------------------------------------------------------------
+
 	public int getSampleRate()
 	{
 		return sampleRate;
@@ -355,7 +387,7 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
-	public int getNumSampleFrames()
+	public long getNumSampleFrames()
 	{
 		return numSampleFrames;
 	}
@@ -376,6 +408,22 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Returns {@code true} if the format chunk of this file contains information that is not determined by the number
+	 * of channels, the sample size and the sample rate, so that the data of the chunk must be preserved if the file is
+	 * to be reproduced exactly.  This implementation returns {@code false}.
+	 *
+	 * @return {@code true} if the format chunk of this file contains information that is not determined by the number
+	 *         of channels, the sample size and the sample rate.
+	 */
+
+	public boolean hasExtendedFormat()
+	{
+		return false;
+	}
+
+	//------------------------------------------------------------------
+
 	public void setNumChannels(int numChannels)
 	{
 		this.numChannels = numChannels;
@@ -390,6 +438,20 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Sets the kind of the sample values of this file.  The kind must be set before the file is written.
+	 *
+	 * @param floatingPoint
+	 *          if {@code true}, the sample values of this file will be IEEE 754 floating-point values.
+	 */
+
+	public void setFloatingPoint(boolean floatingPoint)
+	{
+		this.floatingPoint = floatingPoint;
+	}
+
+	//------------------------------------------------------------------
+
 	public void setSampleRate(int sampleRate)
 	{
 		this.sampleRate = sampleRate;
@@ -397,6 +459,38 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Sets the input stream from which this file will be read.  If an input stream is set, the read methods that parse
+	 * the chunks of the file read them sequentially from the stream instead of from the file, which need not exist.
+	 * The stream is not closed by this object.
+	 *
+	 * @param inStream
+	 *          the input stream from which the file will be read, or {@code null} to read from the file.
+	 */
+
+	public void setInputStream(InputStream inStream)
+	{
+		this.inStream = inStream;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the output stream to which this file will be written.  If an output stream is set, the write methods write
+	 * the file sequentially to the stream instead of to the file, so the size of every chunk must be known before the
+	 * chunk is written.  The stream is flushed but not closed by this object.
+	 *
+	 * @param outStream
+	 *          the output stream to which the file will be written, or {@code null} to write to the file.
+	 */
+
+	public void setOutputStream(OutputStream outStream)
+	{
+		this.outStream = outStream;
+	}
+
+	//------------------------------------------------------------------
+
 	/**
 	 * @throws IllegalStateException
 	 */
@@ -474,7 +568,7 @@ public abstract class AudioFile
 	 * @throws IllegalStateException
 	 */
 
-	public void seekSampleFrame(int index)
+	public void seekSampleFrame(long index)
 		throws AppException
 	{
 		// Validate sample frame index
@@ -642,6 +736,64 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Reads this file from its input stream in a single pass, and writes its integer sample data to the specified
+	 * output stream.  The chunks that precede the sample data are passed to the specified header reader, which is also
+	 * passed the header of the data chunk but not its data.  The {@link FormFile.IChunkReader#endReading(DataInput)
+	 * endReading} method of the header reader is called when all the attributes of this file are known and before the
+	 * first sample data are written to the output stream, so that a consumer of the sample data may be set up.  The
+	 * data of the format chunk are passed to this file before they are passed to the header reader.  Ancillary chunks
+	 * that follow the sample data are skipped; their identifiers are available from {@link #getTrailingChunkIds()}
+	 * after this method returns.
+	 *
+	 * @param  outStream
+	 *           the output stream to which the sample data will be written.
+	 * @param  headerReader
+	 *           the chunk reader to which the chunks that precede the sample data will be passed.
+	 * @throws IllegalStateException
+	 *           if the input stream of this file has not been set.
+	 * @throws AppException
+	 *           if the file is invalid, an error occurred when reading the input stream, or the header reader or
+	 *           output stream throws an exception.
+	 */
+
+	public void readStream(IByteDataOutputStream outStream,
+						   FormFile.IChunkReader headerReader)
+		throws AppException
+	{
+		if (inStream == null)
+			throw new IllegalStateException();
+
+		trailingChunkIds = new ArrayList<>();
+		streamReader = new StreamReader(headerReader, outStream);
+		try
+		{
+			read(SampleFormat.INTEGER, 0, streamReader, null);
+		}
+		finally
+		{
+			streamReader = null;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the identifiers of the ancillary chunks that followed the sample data when this file was last read with
+	 * {@link #readStream(IByteDataOutputStream, FormFile.IChunkReader)}.  Those chunks are skipped, because the chunks
+	 * that precede the sample data have already been passed to the header reader.
+	 *
+	 * @return a list of the identifiers of the ancillary chunks that followed the sample data, which is empty if
+	 *         there were none or if this file has not been read from a stream.
+	 */
+
+	public List<IffId> getTrailingChunkIds()
+	{
+		return (trailingChunkIds == null) ? List.of() : trailingChunkIds;
+	}
+
+	//------------------------------------------------------------------
+
 	public void write(IByteDataInputStream sampleDataStream)
 		throws AppException
 	{
@@ -686,7 +838,66 @@ public abstract class AudioFile
 
 	//------------------------------------------------------------------
 
-	protected int findChunk(IffId id)
+	/**
+	 * Reads the chunks of this file with the specified form file and chunk reader, either from the input stream of
+	 * this file, if it has been set, or from the file.
+	 *
+	 * @param  formFile
+	 *           the form file that will parse the group of this file.
+	 * @param  chunkReader
+	 *           the reader of the chunks of the group.
+	 * @throws AppException
+	 *           if the file is invalid or an error occurred when reading it.
+	 */
+
+	protected void readForm(FormFile              formFile,
+							FormFile.IChunkReader chunkReader)
+		throws AppException
+	{
+		if (inStream == null)
+			formFile.read(chunkReader);
+		else if (streamReader == null)
+			formFile.read(inStream, chunkReader);
+		else
+		{
+			streamReader.chunkReader = chunkReader;
+			formFile.read(inStream, streamReader);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the chunks of this file with the specified form file and chunk writer, either to the output stream of
+	 * this file, if it has been set, or to the file.
+	 *
+	 * @param  formFile
+	 *           the form file that will write the group of this file.
+	 * @param  typeId
+	 *           the type identifier of the group.
+	 * @param  groupSize
+	 *           the size of the group, which is required only if the group is written to a stream.
+	 * @param  chunkWriter
+	 *           the writer of the chunks of the group.
+	 * @throws AppException
+	 *           if an error occurred when writing the file.
+	 */
+
+	protected void writeForm(FormFile              formFile,
+							 IffId                 typeId,
+							 long                  groupSize,
+							 FormFile.IChunkWriter chunkWriter)
+		throws AppException
+	{
+		if (outStream == null)
+			formFile.write(typeId, chunkWriter);
+		else
+			formFile.write(outStream, typeId, groupSize, chunkWriter);
+	}
+
+	//------------------------------------------------------------------
+
+	protected long findChunk(IffId id)
 		throws AppException
 	{
 		// Search for chunk
@@ -696,7 +907,7 @@ public abstract class AudioFile
 			raFile.seek(0);
 
 			// Read group header
-			int groupSize = readGroupHeader();
+			long groupSize = readGroupHeader();
 
 			// Initialise variables
 			long groupOffset = IffId.SIZE;
@@ -725,7 +936,7 @@ public abstract class AudioFile
 				{
 					throw new FileException(ErrorId.ILLEGAL_CHUNK_ID, file);
 				}
-				int chunkSize = getChunkSize(buffer, IffId.SIZE);
+				long chunkSize = getChunkSize(chunkId, buffer, IffId.SIZE);
 
 				// Test whether chunk extends beyond end of group
 				groupOffset += Chunk.HEADER_SIZE;
@@ -829,7 +1040,7 @@ public abstract class AudioFile
 
 		private interface FilenameExtensions
 		{
-			String[]	AIFF	= { ".aif", ".aiff" };
+			String[]	AIFF	= { ".aif", ".aiff", ".aifc" };
 			String[]	WAVE	= { ".wav", ".wave" };
 		}
 
@@ -881,6 +1092,15 @@ public abstract class AudioFile
 		public static Kind forId(IffId groupId,
 								 IffId typeId)
 		{
+			// An RF64 or BW64 group is the 64-bit form of a RIFF group
+			if (RiffFormFile.isRf64GroupId(groupId))
+				groupId = RiffFormFile.GROUP_ID;
+
+			// An AIFF-C form is handled by the AIFF file kind
+			if (typeId.equals(AiffFile.AIFC_TYPE_ID))
+				typeId = AiffFile.AIFF_TYPE_ID;
+
+			// Search for kind
 			for (Kind value : values())
 			{
 				if (value.groupId.equals(groupId) && value.typeId.equals(typeId))
@@ -891,6 +1111,47 @@ public abstract class AudioFile
 
 		//--------------------------------------------------------------
 
+		/**
+		 * Returns the kind of audio file whose group header is at the start of the specified input stream.  The
+		 * header is read without being consumed: the position of the stream is reset to the start of the header.
+		 *
+		 * @param  inStream
+		 *           the input stream, which must support marking.
+		 * @return the kind of audio file whose group header is at the start of {@code inStream}, or {@code null} if
+		 *         the header does not denote a known kind of audio file.
+		 * @throws IllegalArgumentException
+		 *           if {@code inStream} does not support marking.
+		 * @throws AppException
+		 *           if an error occurred when reading the input stream.
+		 */
+
+		public static Kind forStream(InputStream inStream)
+			throws AppException
+		{
+			if (!inStream.markSupported())
+				throw new IllegalArgumentException();
+
+			try
+			{
+				inStream.mark(Group.HEADER_SIZE);
+				byte[] buffer = inStream.readNBytes(Group.HEADER_SIZE);
+				inStream.reset();
+				return (buffer.length < Group.HEADER_SIZE)
+									? null
+									: forId(new IffId(buffer), new IffId(buffer, Chunk.HEADER_SIZE));
+			}
+			catch (IllegalArgumentException e)
+			{
+				return null;
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.ERROR_READING_FILE, null, e);
+			}
+		}
+
+		//--------------------------------------------------------------
+
 		public static Kind forFile(File file)
 			throws AppException
 		{
@@ -1037,6 +1298,165 @@ public abstract class AudioFile
 
 	//==================================================================
 
+////////////////////////////////////////////////////////////////////////
+//  Member classes : inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: STREAM READER
+
+
+	/**
+	 * This class implements the chunk reader that is used when a file is read from a stream in a single pass.  It
+	 * passes the format chunk to both the chunk reader of the file and a header reader, the other chunks that precede
+	 * the sample data to the header reader alone, and the sample data and any subsequent chunks to the chunk reader of
+	 * the file.  It is also the output stream of the sample data, so that the header reader can be told that the
+	 * header is complete before the first sample data are written to the destination output stream.
+	 */
+
+	private class StreamReader
+		implements FormFile.IChunkReader, IByteDataOutputStream
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		/** The maximum size of a format chunk that will be buffered. */
+		private static final	int	MAX_FORMAT_CHUNK_SIZE	= 1 << 16;
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	FormFile.IChunkReader	headerReader;
+		private	IByteDataOutputStream	outStream;
+		private	FormFile.IChunkReader	chunkReader;
+		private	DataInput				emptyInput;
+		private	boolean					headerEnded;
+		private	boolean					dataRead;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private StreamReader(FormFile.IChunkReader headerReader,
+							 IByteDataOutputStream outStream)
+		{
+			this.headerReader = headerReader;
+			this.outStream = outStream;
+			emptyInput = new DataInputStream(InputStream.nullInputStream());
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : FormFile.IChunkReader interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
+			throws AppException
+		{
+			chunkReader.beginReading(dataInput, typeId, size);
+			headerReader.beginReading(dataInput, typeId, size);
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
+			throws AppException, IOException
+		{
+			// Chunk that follows the sample data: only the format chunk is used, so record the ID of any other chunk
+			if (dataRead)
+			{
+				chunkReader.read(dataInput, id, size);
+				if (!id.equals(getFormatChunkId()))
+					trailingChunkIds.add(id);
+			}
+
+			// Format chunk: buffer the data and pass them to both readers
+			else if (id.equals(getFormatChunkId()) && (size <= MAX_FORMAT_CHUNK_SIZE))
+			{
+				byte[] data = new byte[(int)size];
+				dataInput.readFully(data);
+				chunkReader.read(new DataInputStream(new ByteArrayInputStream(data)), id, size);
+				headerReader.read(new DataInputStream(new ByteArrayInputStream(data)), id, size);
+			}
+
+			// Data chunk: end the header before the sample data are written
+			else if (id.equals(getDataChunkId()))
+			{
+				headerReader.read(emptyInput, id, size);
+				chunkReader.read(dataInput, id, size);
+				endHeader();
+				dataRead = true;
+			}
+
+			// Ancillary chunk that precedes the sample data
+			else
+				headerReader.read(dataInput, id, size);
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void endReading(DataInput dataInput)
+			throws AppException, IOException
+		{
+			chunkReader.endReading(dataInput);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : IByteDataOutputStream interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public void write(byte[] buffer,
+						  int    offset,
+						  int    length)
+			throws AppException
+		{
+			try
+			{
+				endHeader();
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.ERROR_READING_FILE, file, e);
+			}
+			outStream.write(buffer, offset, length);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		private void endHeader()
+			throws AppException, IOException
+		{
+			if (!headerEnded)
+			{
+				headerEnded = true;
+				headerReader.endReading(emptyInput);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 }
 
 //----------------------------------------------------------------------
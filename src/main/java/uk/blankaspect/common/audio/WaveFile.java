@@ -18,13 +18,15 @@ package uk.blankaspect.common.audio;
 // IMPORTS
 
 
+import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import uk.blankaspect.common.bytedata.IByteDataInputStream;
 import uk.blankaspect.common.bytedata.IByteDataOutputStream;
@@ -102,6 +104,7 @@ public class WaveFile
 					WaveFile waveFile)
 	{
 		this(file, waveFile.numChannels, waveFile.bitsPerSample, waveFile.sampleRate);
+		floatingPoint = waveFile.floatingPoint;
 	}
 
 	//------------------------------------------------------------------
@@ -163,11 +166,19 @@ public class WaveFile
 
 	//------------------------------------------------------------------
 
+	@Override
+	public boolean hasExtendedFormat()
+	{
+		return extendedFormat;
+	}
+
+	//------------------------------------------------------------------
+
 	@Override
 	public void read(FormFile.IChunkReader chunkReader)
 		throws AppException
 	{
-		new RiffFormFile(file).read(chunkReader);
+		readForm(new RiffFormFile(file), chunkReader);
 	}
 
 	//------------------------------------------------------------------
@@ -201,9 +212,11 @@ public class WaveFile
 				}
 				else
 				{
-					for (int i = 0; i < readLength; i += bytesPerSample)
-						buffer[offset++] = (double)NumberCodec.bytesToIntLE(inBuffer, i, bytesPerSample) * factor;
 					readLength /= bytesPerSample;
+					int[] values = new int[readLength];
+					NumberCodec.bytesToIntsLE(inBuffer, 0, values, 0, readLength, bytesPerSample);
+					for (int i = 0; i < readLength; i++)
+						buffer[offset++] = (double)values[i] * factor;
 				}
 			}
 			return readLength;
@@ -224,14 +237,14 @@ public class WaveFile
 		throws AppException
 	{
 		ChunkReader reader = new ChunkReader(sampleFormat, bytesPerSample, outStream, filter);
-		new RiffFormFile(file).read(reader);
+		readForm(new RiffFormFile(file), reader);
 		return reader.getData();
 	}
 
 	//------------------------------------------------------------------
 
 	@Override
-	protected int readGroupHeader()
+	protected long readGroupHeader()
 		throws AppException
 	{
 		try
@@ -242,14 +255,30 @@ public class WaveFile
 
 			// Test for WAVE group
 			RiffGroup group = new RiffGroup(buffer);
-			if (!group.getGroupId().equals(RIFF_GROUP_ID) ||
+			if (!RiffFormFile.isRiffGroupId(group.getGroupId()) ||
 				 !group.getTypeId().equals(WAVE_TYPE_ID))
 				throw new FileException(ErrorId.NOT_A_WAVE_FILE, file);
 
+			// Read ds64 chunk of RF64 file
+			sizeTable = null;
+			if (RiffFormFile.isRf64GroupId(group.getGroupId()))
+			{
+				try
+				{
+					sizeTable = RiffFormFile.readDs64Chunk(raFile);
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new FileException(AudioFile.ErrorId.ILLEGAL_CHUNK_ID, file);
+				}
+				if (sizeTable == null)
+					throw new FileException(AudioFile.ErrorId.MALFORMED_FILE, file);
+			}
+
 			// Test group size
-			int groupSize = RiffChunk.getSize(buffer, IffId.SIZE);
-			if (groupSize < 0)
-				throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
+			long groupSize = RiffChunk.getSize(buffer, IffId.SIZE) & FormFile.MAX_SIZE;
+			if ((groupSize == FormFile.MAX_SIZE) && (sizeTable != null))
+				groupSize = sizeTable.getGroupSize();
 			if (groupSize > raFile.length() - Chunk.HEADER_SIZE)
 				throw new FileException(AudioFile.ErrorId.MALFORMED_FILE, file);
 
@@ -275,17 +304,54 @@ public class WaveFile
 			chunks.add(DATA_CHUNK);
 		}
 
-		// Write file
-		new RiffFormFile(file).write(WAVE_TYPE_ID, new ChunkWriter(sampleDataInput, inputKind));
+		// Create chunk writer
+		ChunkWriter chunkWriter = new ChunkWriter(sampleDataInput, inputKind);
+
+		// Calculate size of group
+		long dataLength = chunkWriter.getDataLength();
+		long groupSize = IffId.SIZE;
+		for (RiffChunk chunk : chunks)
+		{
+			long size = chunkWriter.getSize(chunk);
+			groupSize += Chunk.HEADER_SIZE + size + (size & 1);
+		}
+
+		// Write file; if the group is too large for the size field of a RIFF header, write an RF64 file
+		RiffFormFile formFile = new RiffFormFile(file);
+		if (groupSize > FormFile.MAX_SIZE)
+			formFile.setRf64(dataLength / getBytesPerSampleFrame(), dataLength);
+		writeForm(formFile, WAVE_TYPE_ID, groupSize, chunkWriter);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected long getChunkSize(IffId  id,
+								byte[] buffer,
+								int    offset)
+		throws AppException
+	{
+		long size = RiffChunk.getSize(buffer, offset) & FormFile.MAX_SIZE;
+		if ((size == FormFile.MAX_SIZE) && (sizeTable != null))
+		{
+			try
+			{
+				size = sizeTable.removeChunkSize(id);
+			}
+			catch (NoSuchElementException e)
+			{
+				throw new IffException(AudioFile.ErrorId.MALFORMED_FILE, file, id);
+			}
+		}
+		return size;
 	}
 
 	//------------------------------------------------------------------
 
 	@Override
-	protected int getChunkSize(byte[] buffer,
-							   int    offset)
+	protected IffId getFormatChunkId()
 	{
-		return RiffChunk.getSize(buffer, offset);
+		return WAVE_FORMAT_ID;
 	}
 
 	//------------------------------------------------------------------
@@ -302,6 +368,35 @@ public class WaveFile
 //  Instance methods
 ////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Returns the number of bits of each sample that contain valid data.  The value may be less than the number of bits
+	 * per sample only in a file whose format chunk has the {@code WAVE_FORMAT_EXTENSIBLE} form.
+	 *
+	 * @return the number of valid bits per sample.
+	 */
+
+	public int getValidBitsPerSample()
+	{
+		return (validBitsPerSample == 0) ? bitsPerSample : validBitsPerSample;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the mask that specifies the assignment of channels to speaker positions.  A value of zero denotes that
+	 * the assignment is not specified, which is always the case unless the format chunk of the file has the {@code
+	 * WAVE_FORMAT_EXTENSIBLE} form.
+	 *
+	 * @return the channel mask.
+	 */
+
+	public int getChannelMask()
+	{
+		return channelMask;
+	}
+
+	//------------------------------------------------------------------
+
 	public RiffChunk getChunk(IffId id)
 	{
 		for (RiffChunk chunk : chunks)
@@ -329,14 +424,16 @@ public class WaveFile
 			throw new IllegalStateException(FILE_IS_NOT_OPEN_STR);
 
 		// Find chunk
-		int chunkSize = findChunk(id);
+		long chunkSize = findChunk(id);
 		if (chunkSize < 0)
 			return null;
+		if (chunkSize > Integer.MAX_VALUE)
+			throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
 
 		// Read chunk
 		try
 		{
-			byte[] buffer = new byte[chunkSize];
+			byte[] buffer = new byte[(int)chunkSize];
 			raFile.readFully(buffer);
 			return new RiffChunk(id, buffer);
 		}
@@ -352,26 +449,59 @@ public class WaveFile
 
 	//------------------------------------------------------------------
 
-	private void parseFormatChunk(RandomAccessFile raFile,
-								  int              chunkSize)
+	private void parseFormatChunk(DataInput dataInput,
+								  long      chunkSize)
 		throws AppException, IOException
 	{
-		if ((chunkSize != Attributes.CHUNK_SIZE1) && (chunkSize < Attributes.CHUNK_SIZE2))
+		if (((chunkSize != Attributes.CHUNK_SIZE1) && (chunkSize < Attributes.CHUNK_SIZE2))
+				|| (chunkSize > Attributes.MAX_CHUNK_SIZE))
 			throw new FileException(ErrorId.INVALID_FORMAT_CHUNK, file);
 
-		byte[] buffer = new byte[chunkSize];
-		raFile.readFully(buffer);
+		byte[] buffer = new byte[(int)chunkSize];
+		dataInput.readFully(buffer);
 
 		Attributes attributes = new Attributes(buffer);
-		if (attributes.kind != Attributes.UNCOMPRESSED)
+		floatingPoint = attributes.isFloat();
+		if (!attributes.isPcm() && !floatingPoint)
 			throw new IffException(ErrorId.UNSUPPORTED_FORMAT, file, WAVE_FORMAT_ID);
 		numChannels = attributes.numChannels;
 		bitsPerSample = attributes.bitsPerSample;
+		if (floatingPoint && (bitsPerSample != Attributes.FLOAT_BITS_PER_SAMPLE))
+			throw new FileException(ErrorId.UNSUPPORTED_FLOAT_BITS_PER_SAMPLE, file);
 		if (bitsPerSample > MAX_BITS_PER_SAMPLE)
 			throw new FileException(ErrorId.UNSUPPORTED_BITS_PER_SAMPLE, file);
+		if (attributes.validBitsPerSample > bitsPerSample)
+			throw new FileException(ErrorId.INVALID_FORMAT_CHUNK, file);
 		sampleRate = attributes.samplesPerSecond;
 		if (attributes.bytesPerSecond != getBytesPerSampleFrame() * sampleRate)
 			throw new FileException(ErrorId.INCONSISTENT_AVERAGE_BYTES_PER_SECOND, file);
+		validBitsPerSample = attributes.validBitsPerSample;
+		channelMask = attributes.channelMask;
+		extendedFormat = (chunkSize != attributes.getStandardSize());
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Tests whether the specified data of a format chunk describe the same PCM or floating-point format as the
+	 * attributes of this file.
+	 *
+	 * @param  data
+	 *           the data of the format chunk.
+	 * @throws AppException
+	 *           if the format chunk is invalid or is inconsistent with the attributes of this file.
+	 */
+
+	private void validateFormatData(byte[] data)
+		throws AppException
+	{
+		if ((data.length < Attributes.CHUNK_SIZE1) || (data.length > Attributes.MAX_CHUNK_SIZE))
+			throw new FileException(ErrorId.INVALID_FORMAT_CHUNK, file);
+
+		Attributes attributes = new Attributes(data);
+		if (!(floatingPoint ? attributes.isFloat() : attributes.isPcm()) || (attributes.numChannels != numChannels)
+				|| (attributes.bitsPerSample != bitsPerSample) || (attributes.samplesPerSecond != sampleRate))
+			throw new FileException(ErrorId.INCONSISTENT_FORMAT_CHUNK, file);
 	}
 
 	//------------------------------------------------------------------
@@ -380,7 +510,11 @@ public class WaveFile
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	List<RiffChunk>	chunks;
+	private	int						validBitsPerSample;
+	private	int						channelMask;
+	private	boolean					extendedFormat;
+	private	List<RiffChunk>			chunks;
+	private	FormFile.SizeTable		sizeTable;
 
 ////////////////////////////////////////////////////////////////////////
 //  Enumerated types
@@ -410,6 +544,9 @@ public class WaveFile
 		UNSUPPORTED_BITS_PER_SAMPLE
 		("This program cannot process WAVE files with a resolution of more than 32 bits per sample."),
 
+		UNSUPPORTED_FLOAT_BITS_PER_SAMPLE
+		("This program can process WAVE files with floating-point samples only at 32 bits per sample."),
+
 		INCONSISTENT_AVERAGE_BYTES_PER_SECOND
 		("The bytes-per-second value in the format chunk is not consistent with the sample size and " +
 			"sample rate."),
@@ -426,15 +563,15 @@ public class WaveFile
 		INVALID_FORMAT_CHUNK
 		("The Format chunk is invalid."),
 
+		INCONSISTENT_FORMAT_CHUNK
+		("The preserved Format chunk is inconsistent with the attributes of the file."),
+
 		MULTIPLE_DATA_CHUNKS
 		("The file has more than one data chunk."),
 
 		INCONSISTENT_DATA_SIZE
 		("The size of the data chunk is inconsistent with the data format."),
 
-		FILE_IS_TOO_LARGE
-		("This program cannot process WAVE files that are larger than 2GB."),
-
 		NOT_ENOUGH_MEMORY
 		("There was not enough memory to read the file.");
 
@@ -498,28 +635,64 @@ public class WaveFile
 				+ BITS_PER_SAMPLE_SIZE;
 		private static final	int	CHUNK_SIZE2	= CHUNK_SIZE1 + 2;
 
+		private static final	int	EXTENSION_SIZE_SIZE			= 2;
+		private static final	int	VALID_BITS_PER_SAMPLE_SIZE	= 2;
+		private static final	int	CHANNEL_MASK_SIZE			= 4;
+		private static final	int	SUBFORMAT_SIZE				= 16;
+
+		private static final	int	EXTENSIBLE_EXTENSION_SIZE	=
+				VALID_BITS_PER_SAMPLE_SIZE + CHANNEL_MASK_SIZE + SUBFORMAT_SIZE;
+		private static final	int	CHUNK_SIZE3					= CHUNK_SIZE2 + EXTENSIBLE_EXTENSION_SIZE;
+
+		private static final	int	MAX_EXTENSION_SIZE	= 0xFFFF;
+		private static final	int	MAX_CHUNK_SIZE		= CHUNK_SIZE2 + MAX_EXTENSION_SIZE;
+
 		private static final	int	UNCOMPRESSED	= 1;
+		private static final	int	IEEE_FLOAT		= 3;
+		private static final	int	EXTENSIBLE		= 0xFFFE;
+
+		private static final	int	FLOAT_BITS_PER_SAMPLE	= 32;
+
+		// The GUID of the PCM subformat, KSDATAFORMAT_SUBTYPE_PCM, in the byte order of a format chunk.  Its first two
+		// bytes are the format tag of PCM data.
+		private static final	byte[]	PCM_SUBFORMAT	=
+		{
+			(byte)0x01, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x10, (byte)0x00,
+			(byte)0x80, (byte)0x00, (byte)0x00, (byte)0xAA, (byte)0x00, (byte)0x38, (byte)0x9B, (byte)0x71
+		};
+
+		// The GUID of the IEEE floating-point subformat, KSDATAFORMAT_SUBTYPE_IEEE_FLOAT, in the byte order of a format
+		// chunk.  Its first two bytes are the format tag of IEEE floating-point data.
+		private static final	byte[]	FLOAT_SUBFORMAT	=
+		{
+			(byte)0x03, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x10, (byte)0x00,
+			(byte)0x80, (byte)0x00, (byte)0x00, (byte)0xAA, (byte)0x00, (byte)0x38, (byte)0x9B, (byte)0x71
+		};
 
 	////////////////////////////////////////////////////////////////////
 	//  Instance variables
 	////////////////////////////////////////////////////////////////////
 
-		int	kind;
-		int	numChannels;
-		int	samplesPerSecond;
-		int	bytesPerSecond;
-		int	blockAlign;
-		int	bitsPerSample;
+		int		kind;
+		int		numChannels;
+		int		samplesPerSecond;
+		int		bytesPerSecond;
+		int		blockAlign;
+		int		bitsPerSample;
+		int		validBitsPerSample;
+		int		channelMask;
+		byte[]	subformat;
 
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
 	////////////////////////////////////////////////////////////////////
 
-		private Attributes(int numChannels,
-						   int bitsPerSample,
-						   int sampleRate)
+		private Attributes(int     numChannels,
+						   int     bitsPerSample,
+						   int     sampleRate,
+						   boolean floatingPoint)
 		{
-			kind = UNCOMPRESSED;
+			kind = floatingPoint ? IEEE_FLOAT : UNCOMPRESSED;
 			this.numChannels = numChannels;
 			samplesPerSecond = sampleRate;
 			int bytesPerSampleFrame = numChannels * bitsPerSampleToBytesPerSample(bitsPerSample);
@@ -561,13 +734,74 @@ public class WaveFile
 
 			bitsPerSample = NumberCodec.bytesToUIntLE(data, offset, BITS_PER_SAMPLE_SIZE);
 			offset += BITS_PER_SAMPLE_SIZE;
+
+			if ((kind == EXTENSIBLE) && (data.length >= CHUNK_SIZE3))
+			{
+				int extensionSize = NumberCodec.bytesToUIntLE(data, offset, EXTENSION_SIZE_SIZE);
+				offset += EXTENSION_SIZE_SIZE;
+
+				if (extensionSize >= EXTENSIBLE_EXTENSION_SIZE)
+				{
+					validBitsPerSample = NumberCodec.bytesToUIntLE(data, offset, VALID_BITS_PER_SAMPLE_SIZE);
+					offset += VALID_BITS_PER_SAMPLE_SIZE;
+
+					channelMask = NumberCodec.bytesToIntLE(data, offset, CHANNEL_MASK_SIZE);
+					offset += CHANNEL_MASK_SIZE;
+
+					subformat = Arrays.copyOfRange(data, offset, offset + SUBFORMAT_SIZE);
+					offset += SUBFORMAT_SIZE;
+				}
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Returns {@code true} if these attributes describe uncompressed PCM data, either with the {@code
+		 * WAVE_FORMAT_PCM} format tag or with the {@code WAVE_FORMAT_EXTENSIBLE} format tag and the PCM subformat.
+		 *
+		 * @return {@code true} if these attributes describe uncompressed PCM data.
+		 */
+
+		public boolean isPcm()
+		{
+			return (kind == UNCOMPRESSED) || ((kind == EXTENSIBLE) && Arrays.equals(subformat, PCM_SUBFORMAT));
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Returns {@code true} if these attributes describe IEEE floating-point data, either with the {@code
+		 * WAVE_FORMAT_IEEE_FLOAT} format tag or with the {@code WAVE_FORMAT_EXTENSIBLE} format tag and the IEEE
+		 * floating-point subformat.
+		 *
+		 * @return {@code true} if these attributes describe IEEE floating-point data.
+		 */
+
+		public boolean isFloat()
+		{
+			return (kind == IEEE_FLOAT) || ((kind == EXTENSIBLE) && Arrays.equals(subformat, FLOAT_SUBFORMAT));
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Returns the size of the format chunk that is created from these attributes.  The chunk of a format other than
+		 * PCM has an extension-size field, whose value is zero.
+		 *
+		 * @return the size (in bytes) of the format chunk that is created from these attributes.
+		 */
+
+		public int getStandardSize()
+		{
+			return (kind == UNCOMPRESSED) ? CHUNK_SIZE1 : CHUNK_SIZE2;
 		}
 
 		//--------------------------------------------------------------
 
 		public byte[] get()
 		{
-			byte[] buffer = new byte[CHUNK_SIZE1];
+			byte[] buffer = new byte[getStandardSize()];
 			put(buffer, 0);
 			return buffer;
 		}
@@ -648,13 +882,11 @@ public class WaveFile
 	////////////////////////////////////////////////////////////////////
 
 		@Override
-		public void beginReading(RandomAccessFile raFile,
-								 IffId            typeId,
-								 int              size)
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
 			throws AppException
 		{
-			if (size < 0)
-				throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
 			if (!typeId.equals(WAVE_TYPE_ID))
 				throw new FileException(ErrorId.NOT_A_WAVE_FILE, file);
 			chunks.clear();
@@ -663,9 +895,9 @@ public class WaveFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void read(RandomAccessFile raFile,
-						 IffId            id,
-						 int              size)
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
 			throws AppException, IOException
 		{
 
@@ -676,7 +908,7 @@ public class WaveFile
 				if (chunks.contains(FORMAT_CHUNK))
 					throw new FileException(ErrorId.MULTIPLE_FORMAT_CHUNKS, file);
 
-				parseFormatChunk(raFile, size);
+				parseFormatChunk(dataInput, size);
 				chunks.add(FORMAT_CHUNK);
 			}
 
@@ -697,18 +929,22 @@ public class WaveFile
 					throw new FileException(ErrorId.INCONSISTENT_DATA_SIZE, file);
 				numSampleFrames = size / getBytesPerSampleFrame();
 
+				// Test whether sample data can be read into a buffer
+				if ((outStream == null) && (sampleFormat != SampleFormat.NONE) && (size > Integer.MAX_VALUE))
+					throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
+
 				// Read and parse sample data
 				try
 				{
 					switch (sampleFormat)
 					{
 						case INTEGER:
-							sampleData = parseIntegerData(raFile, size, bytesPerSample,
+							sampleData = parseIntegerData(dataInput, size, bytesPerSample,
 														  (IByteDataOutputStream)outStream);
 							break;
 
 						case DOUBLE:
-							sampleData = parseDoubleData(raFile, size, bytesPerSample,
+							sampleData = parseDoubleData(dataInput, size, bytesPerSample,
 														 (IDoubleDataOutputStream)outStream);
 							break;
 
@@ -729,10 +965,12 @@ public class WaveFile
 
 			else if ((filter != null) && filter.accept(id) && (sampleFormat != SampleFormat.NONE))
 			{
+				if (size > Integer.MAX_VALUE)
+					throw new IffException(ErrorId.NOT_ENOUGH_MEMORY, file, id);
 				try
 				{
-					byte[] buffer = new byte[size];
-					raFile.readFully(buffer);
+					byte[] buffer = new byte[(int)size];
+					dataInput.readFully(buffer);
 					chunks.add(new RiffChunk(id, buffer));
 				}
 				catch (OutOfMemoryError e)
@@ -745,7 +983,7 @@ public class WaveFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void endReading(RandomAccessFile raFile)
+		public void endReading(DataInput dataInput)
 			throws AppException
 		{
 			// Test for critical chunks
@@ -768,8 +1006,8 @@ public class WaveFile
 
 		//--------------------------------------------------------------
 
-		private byte[] parseIntegerData(RandomAccessFile      raFile,
-										int                   dataSize,
+		private byte[] parseIntegerData(DataInput             dataInput,
+										long                  dataSize,
 										int                   bytesPerSample,
 										IByteDataOutputStream outStream)
 			throws AppException, IOException
@@ -786,20 +1024,20 @@ public class WaveFile
 			{
 				if (outStream == null)
 				{
-					outBuffer = new byte[dataSize];
-					raFile.readFully(outBuffer);
+					outBuffer = new byte[(int)dataSize];
+					dataInput.readFully(outBuffer);
 				}
 				else
 				{
 					int bufferLength = BUFFER_LENGTH * inBytesPerSample;
 					outBuffer = new byte[bufferLength];
-					int lengthRemaining = dataSize;
+					long lengthRemaining = dataSize;
 					while (lengthRemaining > 0)
 					{
 						int inLength = bufferLength;
 						if (inLength > lengthRemaining)
-							inLength = lengthRemaining;
-						raFile.readFully(outBuffer, 0, inLength);
+							inLength = (int)lengthRemaining;
+						dataInput.readFully(outBuffer, 0, inLength);
 						outStream.write(outBuffer, 0, inLength);
 						lengthRemaining -= inLength;
 					}
@@ -810,57 +1048,33 @@ public class WaveFile
 			// stream
 			else
 			{
-				int delta = bytesPerSample - inBytesPerSample;
-				double factor = (delta < 0) ? getMaxInputSampleValue(bytesPerSample) /
-																getMaxInputSampleValue(inBytesPerSample)
-											: 0.0;
 				int inBufferLength = BUFFER_LENGTH * inBytesPerSample;
 				byte[] inBuffer = new byte[inBufferLength];
-				outBuffer = new byte[((outStream == null) ? dataSize / inBytesPerSample : BUFFER_LENGTH) *
+				outBuffer = new byte[((outStream == null) ? (int)(dataSize / inBytesPerSample) : BUFFER_LENGTH) *
 																							bytesPerSample];
 				int outIndex = 0;
-				int lengthRemaining = dataSize;
+				long lengthRemaining = dataSize;
 				while (lengthRemaining > 0)
 				{
 					int inLength = inBufferLength;
 					if (inLength > lengthRemaining)
-						inLength = lengthRemaining;
-					raFile.readFully(inBuffer, 0, inLength);
-					if (delta > 0)
-					{
-						int inIndex = 0;
-						if (inBytesPerSample == 1)
-						{
-							while (inIndex < inLength)
-							{
-								for (int i = 0; i < delta; i++)
-									outBuffer[outIndex++] = 0;
-								outBuffer[outIndex++] = (byte)(inBuffer[inIndex++] ^ 0x80);
-							}
-						}
-						else
-						{
-							while (inIndex < inLength)
-							{
-								for (int i = 0; i < delta; i++)
-									outBuffer[outIndex++] = 0;
-								for (int i = 0; i < inBytesPerSample; i++)
-									outBuffer[outIndex++] = inBuffer[inIndex++];
-							}
-						}
-					}
-					else
+						inLength = (int)lengthRemaining;
+					dataInput.readFully(inBuffer, 0, inLength);
+
+					// Convert 8-bit samples from unsigned to signed
+					if (inBytesPerSample == 1)
 					{
-						int inIndex = 0;
-						while (inIndex < inLength)
-						{
-							int value = (int)Math.round((double)NumberCodec.bytesToIntLE(inBuffer, inIndex,
-																						 inBytesPerSample) * factor);
-							NumberCodec.intToBytesLE(value, outBuffer, outIndex, bytesPerSample);
-							inIndex += inBytesPerSample;
-							outIndex += bytesPerSample;
-						}
+						for (int i = 0; i < inLength; i++)
+							inBuffer[i] ^= (byte)0x80;
 					}
+
+					// Widen or narrow samples: a narrowed value is rounded to the nearest multiple of the scale
+					// factor, as it would be by Math.round()
+					int numSamples = inLength / inBytesPerSample;
+					NumberCodec.changeWidthLE(inBuffer, 0, inBytesPerSample, outBuffer, outIndex, bytesPerSample,
+											  numSamples);
+					outIndex += numSamples * bytesPerSample;
+
 					if (outStream != null)
 					{
 						outStream.write(outBuffer, 0, outIndex);
@@ -876,8 +1090,8 @@ public class WaveFile
 
 		//--------------------------------------------------------------
 
-		private double[] parseDoubleData(RandomAccessFile        raFile,
-										 int                     dataSize,
+		private double[] parseDoubleData(DataInput               dataInput,
+										 long                    dataSize,
 										 int                     bytesPerSample,
 										 IDoubleDataOutputStream outStream)
 			throws AppException, IOException
@@ -889,9 +1103,10 @@ public class WaveFile
 			double factor = 1.0 / getMaxInputSampleValue(inBytesPerSample);
 			int inBufferLength = BUFFER_LENGTH * inBytesPerSample;
 			byte[] inBuffer = new byte[inBufferLength];
-			double[] outBuffer = new double[(outStream == null) ? dataSize / inBytesPerSample : BUFFER_LENGTH];
+			int[] values = new int[BUFFER_LENGTH];
+			double[] outBuffer = new double[(outStream == null) ? (int)(dataSize / inBytesPerSample) : BUFFER_LENGTH];
 			int outIndex = 0;
-			int lengthRemaining = dataSize;
+			long lengthRemaining = dataSize;
 
 			// Read sample data from file and write them to buffer or output stream
 			while (lengthRemaining > 0)
@@ -899,8 +1114,8 @@ public class WaveFile
 				// Read sample data from file
 				int inLength = inBufferLength;
 				if (inLength > lengthRemaining)
-					inLength = lengthRemaining;
-				raFile.readFully(inBuffer, 0, inLength);
+					inLength = (int)lengthRemaining;
+				dataInput.readFully(inBuffer, 0, inLength);
 
 				// Convert sample values to floating point
 				if (inBytesPerSample == 1)
@@ -910,11 +1125,10 @@ public class WaveFile
 				}
 				else
 				{
-					for (int i = 0; i < inLength; i += inBytesPerSample)
-					{
-						outBuffer[outIndex++] =
-								(double)NumberCodec.bytesToIntLE(inBuffer, i, inBytesPerSample) * factor;
-					}
+					int numSamples = inLength / inBytesPerSample;
+					NumberCodec.bytesToIntsLE(inBuffer, 0, values, 0, numSamples, inBytesPerSample);
+					for (int i = 0; i < numSamples; i++)
+						outBuffer[outIndex++] = (double)values[i] * factor;
 				}
 
 				// Write data to output stream
@@ -972,7 +1186,7 @@ public class WaveFile
 	////////////////////////////////////////////////////////////////////
 
 		@Override
-		public void beginWriting(RandomAccessFile raFile)
+		public void beginWriting(DataOutput dataOutput)
 		{
 			// do nothing
 		}
@@ -988,31 +1202,47 @@ public class WaveFile
 		//--------------------------------------------------------------
 
 		@Override
-		public void write(RandomAccessFile raFile,
-						  IffId            id)
+		public long getSize()
+		{
+			return getSize(chunks.get(chunkIndex - 1));
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void write(DataOutput dataOutput,
+						  IffId      id)
 			throws AppException, IOException
 		{
-			// Format chunk
+			// Format chunk: write the data of a preserved chunk if they are consistent with the attributes of the
+			// file, otherwise create the data from the attributes
 			if (id.equals(WAVE_FORMAT_ID))
-				raFile.write(new Attributes(numChannels, bitsPerSample, sampleRate).get());
+			{
+				byte[] data = chunks.get(chunkIndex - 1).loadData();
+				if ((data == null) || (data.length == 0))
+					data = new Attributes(numChannels, bitsPerSample, sampleRate, floatingPoint).get();
+				else
+					validateFormatData(data);
+				dataOutput.write(data);
+			}
 
 			// Data chunk
 			else if (id.equals(WAVE_DATA_ID))
-				writeData(raFile);
+				writeData(dataOutput);
 
-			// Ancillary chunk
+			// Ancillary chunk: the chunk whose ID was returned by the last call to getNextId()
 			else
 			{
-				RiffChunk chunk = getChunk(id);
-				if (chunk != null)
-					raFile.write(chunk.getData());
+				byte[] data = chunks.get(chunkIndex - 1).loadData();
+				if (data != null)
+					dataOutput.write(data);
 			}
 		}
 
 		//--------------------------------------------------------------
 
 		@Override
-		public void endWriting(RandomAccessFile raFile)
+		public void endWriting(DataOutput dataOutput)
 		{
 			// do nothing
 		}
@@ -1023,6 +1253,23 @@ public class WaveFile
 	//  Instance methods
 	////////////////////////////////////////////////////////////////////
 
+		/**
+		 * Returns the size of the data that will be written for the specified chunk.  The data of a format chunk that
+		 * was not preserved are created from the attributes of the file.
+		 */
+
+		private long getSize(RiffChunk chunk)
+		{
+			IffId id = chunk.getId();
+			if (id.equals(WAVE_DATA_ID))
+				return getDataLength();
+			if (id.equals(WAVE_FORMAT_ID) && (chunk.getSize() == 0))
+				return new Attributes(numChannels, bitsPerSample, sampleRate, floatingPoint).getStandardSize();
+			return chunk.getSize();
+		}
+
+		//--------------------------------------------------------------
+
 		private long getDataLength()
 		{
 			long length = sampleDataInput.getLength();
@@ -22,6 +22,8 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import uk.blankaspect.common.exception.AppException;
+
 //----------------------------------------------------------------------
 
 
@@ -42,8 +44,10 @@ public abstract class Chunk
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	protected	IffId	id;
-	protected	byte[]	data;
+	protected	IffId		id;
+	protected	byte[]		data;
+	protected	int			sourceSize;
+	protected	IDataSource	dataSource;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -113,7 +117,7 @@ public abstract class Chunk
 
 	public int getSize()
 	{
-		return (data == null) ? 0 : data.length;
+		return (dataSource == null) ? (data == null) ? 0 : data.length : sourceSize;
 	}
 
 	//------------------------------------------------------------------
@@ -125,6 +129,23 @@ public abstract class Chunk
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Returns the data of this chunk.  If the data of this chunk are provided by a {@linkplain IDataSource data
+	 * source}, they are obtained from the source, and a reference to them is not retained by this chunk.
+	 *
+	 * @return the data of this chunk.
+	 * @throws AppException
+	 *           if an error occurred when obtaining the data from the data source of this chunk.
+	 */
+
+	public byte[] loadData()
+		throws AppException
+	{
+		return (dataSource == null) ? data : dataSource.getData();
+	}
+
+	//------------------------------------------------------------------
+
 	public int getExtent()
 	{
 		int offset = HEADER_SIZE + getSize();
@@ -169,6 +190,7 @@ public abstract class Chunk
 	{
 		this.id = id;
 		this.data = data;
+		dataSource = null;
 	}
 
 	//------------------------------------------------------------------
@@ -181,6 +203,31 @@ public abstract class Chunk
 		this.id = id;
 		this.data = new byte[length];
 		System.arraycopy(data, offset, this.data, 0, length);
+		dataSource = null;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the identifier of this chunk and a source from which the data of the chunk will be obtained when {@link
+	 * #loadData()} is called.
+	 *
+	 * @param id
+	 *          the identifier of the chunk.
+	 * @param size
+	 *          the size of the data that will be provided by {@code dataSource}.
+	 * @param dataSource
+	 *          the source of the data of the chunk.
+	 */
+
+	public void set(IffId       id,
+					int         size,
+					IDataSource dataSource)
+	{
+		this.id = id;
+		data = null;
+		sourceSize = size;
+		this.dataSource = dataSource;
 	}
 
 	//------------------------------------------------------------------
@@ -217,6 +264,36 @@ public abstract class Chunk
 
 	//------------------------------------------------------------------
 
+////////////////////////////////////////////////////////////////////////
+//  Member interfaces
+////////////////////////////////////////////////////////////////////////
+
+
+	// DATA SOURCE INTERFACE
+
+
+	/**
+	 * This functional interface defines the method that must be implemented by a source of the data of a chunk whose
+	 * data are obtained only when they are required.
+	 */
+
+	@FunctionalInterface
+	public interface IDataSource
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Methods
+	////////////////////////////////////////////////////////////////////
+
+		byte[] getData()
+			throws AppException;
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 }
 
 //----------------------------------------------------------------------
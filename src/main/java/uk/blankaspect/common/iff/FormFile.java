@@ -18,16 +18,27 @@ package uk.blankaspect.common.iff;
 // IMPORTS
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 
 import java.nio.channels.OverlappingFileLockException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import uk.blankaspect.common.exception.AppException;
 import uk.blankaspect.common.exception.FileException;
@@ -44,6 +55,23 @@ import uk.blankaspect.common.filesystem.FilenameUtils;
 public abstract class FormFile
 {
 
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The maximum value of the size field of a group or chunk header, which is an unsigned 32-bit integer. */
+	public static final	long	MAX_SIZE	= 0xFFFFFFFFL;
+
+	/**
+	 * The minimum size of a chunk that is treated as a placeholder when a group is read from a stream.  A program that
+	 * writes a RIFF file to a pipe cannot go back to write the sizes of the group and its last chunk, so it writes
+	 * {@link #MAX_SIZE} or, like SoX, 0x7FFFF000 instead.
+	 */
+	public static final	long	MIN_PLACEHOLDER_SIZE	= 0x7FFFF000L;
+
+	/** The prefix of the name of a temporary file to which a chunk of unknown size is copied. */
+	private static final	String	TEMP_FILE_PREFIX	= "iff";
+
 ////////////////////////////////////////////////////////////////////////
 //  Enumerated types
 ////////////////////////////////////////////////////////////////////////
@@ -100,7 +128,16 @@ public abstract class FormFile
 		("The file is malformed."),
 
 		ILLEGAL_CHUNK_ID
-		("The file contains an illegal chunk identifier.");
+		("The file contains an illegal chunk identifier."),
+
+		NO_SIZE_FOR_CHUNK
+		("The file does not specify the size of the chunk."),
+
+		FILE_IS_TOO_LARGE
+		("The file is too large for its format."),
+
+		CHUNK_IS_TOO_LARGE
+		("The chunk is too large for the format of the file.");
 
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
@@ -149,21 +186,21 @@ public abstract class FormFile
 	//  Methods
 	////////////////////////////////////////////////////////////////////
 
-		void beginReading(RandomAccessFile raFile,
-						  IffId            typeId,
-						  int              size)
+		void beginReading(DataInput dataInput,
+						  IffId     typeId,
+						  long      size)
 			throws AppException;
 
 		//--------------------------------------------------------------
 
-		void read(RandomAccessFile raFile,
-				  IffId            id,
-				  int              size)
+		void read(DataInput dataInput,
+				  IffId     id,
+				  long      size)
 			throws AppException, IOException;
 
 		//--------------------------------------------------------------
 
-		void endReading(RandomAccessFile raFile)
+		void endReading(DataInput dataInput)
 			throws AppException, IOException;
 
 		//--------------------------------------------------------------
@@ -183,7 +220,7 @@ public abstract class FormFile
 	//  Methods
 	////////////////////////////////////////////////////////////////////
 
-		void beginWriting(RandomAccessFile raFile)
+		void beginWriting(DataOutput dataOutput)
 			throws AppException, IOException;
 
 		//--------------------------------------------------------------
@@ -192,13 +229,25 @@ public abstract class FormFile
 
 		//--------------------------------------------------------------
 
-		void write(RandomAccessFile raFile,
-				   IffId            id)
+		/**
+		 * Returns the size of the data of the chunk whose identifier was returned by the last call to {@link
+		 * #getNextId()}.  The size is required when the group is written to a stream, because the header of a chunk
+		 * is written before its data and cannot be revised afterwards.
+		 *
+		 * @return the size of the data of the current chunk.
+		 */
+
+		long getSize();
+
+		//--------------------------------------------------------------
+
+		void write(DataOutput dataOutput,
+				   IffId      id)
 			throws AppException, IOException;
 
 		//--------------------------------------------------------------
 
-		void endWriting(RandomAccessFile raFile)
+		void endWriting(DataOutput dataOutput)
 			throws AppException, IOException;
 
 		//--------------------------------------------------------------
@@ -272,25 +321,25 @@ public abstract class FormFile
 	//  Instance methods : ChunkReader interface
 	////////////////////////////////////////////////////////////////////
 
-		public void beginReading(RandomAccessFile raFile,
-								 IffId            typeId,
-								 int              size)
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
 		{
 			idList.groupTypeId = typeId;
 		}
 
 		//--------------------------------------------------------------
 
-		public void read(RandomAccessFile raFile,
-						 IffId            id,
-						 int              size)
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
 		{
 			idList.chunkIds.add(id);
 		}
 
 		//--------------------------------------------------------------
 
-		public void endReading(RandomAccessFile raFile)
+		public void endReading(DataInput dataInput)
 		{
 			// do nothing
 		}
@@ -307,6 +356,264 @@ public abstract class FormFile
 
 	//==================================================================
 
+
+	// COUNTING INPUT STREAM CLASS
+
+
+	/**
+	 * This class implements an input stream that keeps count of the bytes that have been read from an underlying
+	 * stream, so that the position of a chunk can be determined when a group is read from a stream that does not
+	 * support random access.  Bytes are skipped by reading them, because the underlying stream may not support
+	 * skipping (for example, a pipe).
+	 */
+
+	private static class CountingInputStream
+		extends FilterInputStream
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		private static final	int	SKIP_BUFFER_LENGTH	= 1 << 13;  // 8192
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CountingInputStream(InputStream inStream)
+		{
+			super(inStream);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			int value = in.read();
+			if (value >= 0)
+				++position;
+			else
+				endOfStream = true;
+			return value;
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public int read(byte[] buffer,
+						int    offset,
+						int    length)
+			throws IOException
+		{
+			int readLength = in.read(buffer, offset, length);
+			if (readLength > 0)
+				position += readLength;
+			else if (readLength < 0)
+				endOfStream = true;
+			return readLength;
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public long skip(long length)
+			throws IOException
+		{
+			if (skipBuffer == null)
+				skipBuffer = new byte[SKIP_BUFFER_LENGTH];
+			int readLength = read(skipBuffer, 0, (int)Math.min(length, skipBuffer.length));
+			return Math.max(readLength, 0);
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Copies bytes from this stream to the specified output stream until the specified number of bytes have been
+		 * copied or the end of this stream is reached.
+		 *
+		 * @param  outStream
+		 *           the output stream to which the bytes will be copied.
+		 * @param  length
+		 *           the maximum number of bytes that will be copied.
+		 * @return the number of bytes that were copied.
+		 * @throws IOException
+		 *           if an error occurred when reading this stream or writing the output stream.
+		 */
+
+		private long transferTo(OutputStream outStream,
+								long         length)
+			throws IOException
+		{
+			if (skipBuffer == null)
+				skipBuffer = new byte[SKIP_BUFFER_LENGTH];
+			long lengthRemaining = length;
+			while (lengthRemaining > 0)
+			{
+				int readLength = read(skipBuffer, 0, (int)Math.min(lengthRemaining, skipBuffer.length));
+				if (readLength < 0)
+					break;
+				outStream.write(skipBuffer, 0, readLength);
+				lengthRemaining -= readLength;
+			}
+			return length - lengthRemaining;
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Skips the specified number of bytes of this stream, or as many as remain before the end of the stream.
+		 *
+		 * @param  length
+		 *           the maximum number of bytes that will be skipped.
+		 * @throws IOException
+		 *           if an error occurred when reading this stream.
+		 */
+
+		private void skipUpTo(long length)
+			throws IOException
+		{
+			while (length > 0)
+			{
+				long skipLength = skip(length);
+				if (skipLength == 0)
+					break;
+				length -= skipLength;
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	long	position;
+		private	boolean	endOfStream;
+		private	byte[]	skipBuffer;
+
+	}
+
+	//==================================================================
+
+
+	// SIZE TABLE CLASS
+
+
+	/**
+	 * This class encapsulates the sizes of a group and its chunks in a file whose format allows sizes that do not fit
+	 * into the 32-bit size field of a group or chunk header to be stored in a separate chunk.  A size field whose
+	 * value is {@link #MAX_SIZE} denotes a size that is stored in the table.
+	 */
+
+	public static class SizeTable
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Creates a new instance of a size table.
+		 *
+		 * @param id
+		 *          the identifier of the chunk that contains the table.
+		 * @param groupSize
+		 *          the size of the group.
+		 */
+
+		public SizeTable(IffId id,
+						 long  groupSize)
+		{
+			this.id = id;
+			this.groupSize = groupSize;
+			chunkIds = new ArrayList<>();
+			chunkSizes = new ArrayList<>();
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		public IffId getId()
+		{
+			return id;
+		}
+
+		//--------------------------------------------------------------
+
+		public long getGroupSize()
+		{
+			return groupSize;
+		}
+
+		//--------------------------------------------------------------
+
+		public void addChunkSize(IffId id,
+								 long  size)
+		{
+			chunkIds.add(id);
+			chunkSizes.add(size);
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Removes the first entry for the chunk with the specified identifier from this table, and returns the size of
+		 * the chunk.  Entries for chunks that have the same identifier are removed in the order in which they were
+		 * added to the table.
+		 *
+		 * @param  id
+		 *           the identifier of the chunk.
+		 * @return the size of the chunk.
+		 * @throws NoSuchElementException
+		 *           if the table does not contain an entry for the chunk.
+		 */
+
+		public long removeChunkSize(IffId id)
+		{
+			int index = chunkIds.indexOf(id);
+			if (index < 0)
+				throw new NoSuchElementException();
+			chunkIds.remove(index);
+			return chunkSizes.remove(index);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	IffId		id;
+		private	long		groupSize;
+		private	List<IffId>	chunkIds;
+		private	List<Long>	chunkSizes;
+
+	}
+
+	//==================================================================
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
@@ -331,8 +638,19 @@ public abstract class FormFile
 //  Abstract methods
 ////////////////////////////////////////////////////////////////////////
 
-	protected abstract int getChunkSize(byte[] sizeBytes,
-										int    offset);
+	/**
+	 * Returns the size of a group or chunk from the size field of its header.  The size field is interpreted as an
+	 * unsigned integer.
+	 *
+	 * @param  sizeBytes
+	 *           the buffer that contains the size field.
+	 * @param  offset
+	 *           the offset of the size field in {@code sizeBytes}.
+	 * @return the size of the group or chunk.
+	 */
+
+	protected abstract long getChunkSize(byte[] sizeBytes,
+										 int    offset);
 
 	//------------------------------------------------------------------
 
@@ -360,6 +678,195 @@ public abstract class FormFile
 
 	//------------------------------------------------------------------
 
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : hooks
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns {@code true} if the specified identifier is a valid group identifier for this form file.  This
+	 * implementation accepts only the group identifier that was passed to the constructor.
+	 *
+	 * @param  id
+	 *           the group identifier that will be tested.
+	 * @return {@code true} if {@code id} is a valid group identifier for this form file.
+	 */
+
+	protected boolean isGroupId(IffId id)
+	{
+		return id.equals(groupId);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a table of sizes that do not fit into the size fields of the group and chunk headers.  This method is
+	 * called after the group header has been read, and the file pointer is positioned at the first chunk of the
+	 * group.  This implementation returns {@code null}.
+	 *
+	 * @param  dataInput
+	 *           the file or stream from which the table will be read.
+	 * @param  groupId
+	 *           the identifier from the group header.
+	 * @return the size table, or {@code null} if there is no size table.
+	 * @throws AppException
+	 *           if the table is invalid.
+	 * @throws IOException
+	 *           if an error occurred when reading the file or stream.
+	 */
+
+	protected SizeTable readSizeTable(DataInput dataInput,
+									  IffId     groupId)
+		throws AppException, IOException
+	{
+		return null;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the identifier that will be written to the group header.  This implementation returns the group
+	 * identifier that was passed to the constructor.
+	 *
+	 * @return the identifier that will be written to the group header.
+	 */
+
+	protected IffId getWriteGroupId()
+	{
+		return groupId;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes any chunks that must precede the chunks of the chunk writer.  This method is called after the group
+	 * header has been written.  This implementation does nothing.
+	 *
+	 * @param  raFile
+	 *           the file to which the chunks will be written.
+	 * @throws IOException
+	 *           if an error occurred when writing the file.
+	 */
+
+	protected void beginWritingGroup(RandomAccessFile raFile)
+		throws IOException
+	{
+		// do nothing
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the size of a chunk to its header.
+	 *
+	 * @param  raFile
+	 *           the file to which the size will be written.
+	 * @param  chunkOffset
+	 *           the offset of the chunk header in the file.
+	 * @param  id
+	 *           the identifier of the chunk.
+	 * @param  size
+	 *           the size of the chunk.
+	 * @throws AppException
+	 *           if {@code size} is too large for the size field of the chunk header.
+	 * @throws IOException
+	 *           if an error occurred when writing the file.
+	 */
+
+	protected void writeChunkSize(RandomAccessFile raFile,
+								  long             chunkOffset,
+								  IffId            id,
+								  long             size)
+		throws AppException, IOException
+	{
+		if (size > MAX_SIZE)
+			throw new IffException(ErrorId.CHUNK_IS_TOO_LARGE, file, id);
+		writeSize(raFile, chunkOffset + IffId.SIZE, size);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the size of the group to the group header.  This method is called after all the chunks of the group have
+	 * been written.
+	 *
+	 * @param  raFile
+	 *           the file to which the size will be written.
+	 * @param  size
+	 *           the size of the group.
+	 * @throws AppException
+	 *           if {@code size} is too large for the size field of the group header.
+	 * @throws IOException
+	 *           if an error occurred when writing the file.
+	 */
+
+	protected void writeGroupSize(RandomAccessFile raFile,
+								  long             size)
+		throws AppException, IOException
+	{
+		if (size > MAX_SIZE)
+			throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
+		writeSize(raFile, IffId.SIZE, size);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the group header and any chunks that must precede the chunks of the chunk writer when the group is written
+	 * to a stream.  The sizes of a group that is written to a stream cannot be revised after its chunks have been
+	 * written, so they must all be known when the group header is written.
+	 *
+	 * @param  dataOutput
+	 *           the stream to which the group header will be written.
+	 * @param  typeId
+	 *           the type identifier of the group.
+	 * @param  size
+	 *           the size of the chunks of the chunk writer, including their headers and padding, and of the type
+	 *           identifier.
+	 * @throws AppException
+	 *           if {@code size} is too large for the size field of the group header.
+	 * @throws IOException
+	 *           if an error occurred when writing the stream.
+	 */
+
+	protected void writeStreamGroupHeader(DataOutput dataOutput,
+										  IffId      typeId,
+										  long       size)
+		throws AppException, IOException
+	{
+		if (size > MAX_SIZE)
+			throw new FileException(ErrorId.FILE_IS_TOO_LARGE, file);
+		writeGroupHeader(dataOutput, getWriteGroupId(), typeId, (int)size);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the header of a chunk when the group is written to a stream.
+	 *
+	 * @param  dataOutput
+	 *           the stream to which the chunk header will be written.
+	 * @param  id
+	 *           the identifier of the chunk.
+	 * @param  size
+	 *           the size of the chunk.
+	 * @throws AppException
+	 *           if {@code size} is too large for the size field of the chunk header.
+	 * @throws IOException
+	 *           if an error occurred when writing the stream.
+	 */
+
+	protected void writeStreamChunkHeader(DataOutput dataOutput,
+										  IffId      id,
+										  long       size)
+		throws AppException, IOException
+	{
+		if (size > MAX_SIZE)
+			throw new IffException(ErrorId.CHUNK_IS_TOO_LARGE, file, id);
+		writeChunkHeader(dataOutput, id, (int)size);
+	}
+
+	//------------------------------------------------------------------
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance methods
 ////////////////////////////////////////////////////////////////////////
@@ -440,7 +947,7 @@ public abstract class FormFile
 				try
 				{
 					group = createGroup(buffer);
-					if (!group.getGroupId().equals(groupId))
+					if (!isGroupId(group.getGroupId()))
 						throw new IllegalArgumentException();
 				}
 				catch (IllegalArgumentException e)
@@ -448,8 +955,13 @@ public abstract class FormFile
 					throw new FileException(ErrorId.INCORRECT_FORMAT, file, groupId.toString());
 				}
 
+				// Read any table of large sizes
+				SizeTable sizeTable = readSizeTable(raFile, group.getGroupId());
+
 				// Test group size
-				int groupSize = getChunkSize(buffer, IffId.SIZE);
+				long groupSize = getChunkSize(buffer, IffId.SIZE);
+				if ((groupSize == MAX_SIZE) && (sizeTable != null))
+					groupSize = sizeTable.getGroupSize();
 				if (groupSize > raFile.length() - Chunk.HEADER_SIZE)
 					throw new FileException(ErrorId.MALFORMED_FILE, file);
 
@@ -483,15 +995,27 @@ public abstract class FormFile
 					{
 						throw new FileException(ErrorId.ILLEGAL_CHUNK_ID, file);
 					}
-					int chunkSize = getChunkSize(buffer, IffId.SIZE);
+					long chunkSize = getChunkSize(buffer, IffId.SIZE);
+					if ((chunkSize == MAX_SIZE) && (sizeTable != null))
+					{
+						try
+						{
+							chunkSize = sizeTable.removeChunkSize(chunkId);
+						}
+						catch (NoSuchElementException e)
+						{
+							throw new IffException(ErrorId.NO_SIZE_FOR_CHUNK, file, chunkId);
+						}
+					}
 
 					// Test whether chunk extends beyond end of group
 					groupOffset += Chunk.HEADER_SIZE;
 					if (chunkSize > groupSize - groupOffset)
 						throw new IffException(ErrorId.MALFORMED_FILE, file, chunkId);
 
-					// Read chunk
-					chunkReader.read(raFile, chunkId, chunkSize);
+					// Read chunk, unless it is the size table
+					if ((sizeTable == null) || !chunkId.equals(sizeTable.getId()))
+						chunkReader.read(raFile, chunkId, chunkSize);
 
 					// Increment group offset
 					groupOffset += chunkSize;
@@ -538,6 +1062,185 @@ public abstract class FormFile
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Reads a group sequentially from the specified input stream, and calls the specified chunk reader on each chunk of
+	 * the group.  Unlike {@link #read(IChunkReader)}, this method does not require random access: the chunks are read
+	 * in the order in which they occur, and any data of a chunk that are not read by the chunk reader are skipped
+	 * before the next chunk header is read.  The input stream is not closed.
+	 * <p>
+	 * A group whose size is {@link #MAX_SIZE} and that has no table of sizes is taken to extend to the end of the
+	 * stream.  A chunk whose size is at least {@link #MIN_PLACEHOLDER_SIZE} may be larger than the data that remain in
+	 * the stream, so it is copied to a temporary file, up to its size or the end of the stream, and passed to the chunk
+	 * reader with the size of the data that were copied.  If the end of the stream is reached, the chunk is the last
+	 * chunk of the group.
+	 * </p>
+	 *
+	 * @param  inStream
+	 *           the input stream from which the group will be read.
+	 * @param  chunkReader
+	 *           the chunk reader that will be called on each chunk of the group.
+	 * @throws AppException
+	 *           if the group is invalid or an error occurred when reading the input stream.
+	 */
+
+	public void read(InputStream  inStream,
+					 IChunkReader chunkReader)
+		throws AppException
+	{
+		CountingInputStream countingStream = new CountingInputStream(inStream);
+		DataInputStream dataInput = new DataInputStream(countingStream);
+		try
+		{
+			// Read group header
+			byte[] buffer = new byte[Group.HEADER_SIZE];
+			dataInput.readFully(buffer);
+
+			// Test group
+			Group group = null;
+			try
+			{
+				group = createGroup(buffer);
+				if (!isGroupId(group.getGroupId()))
+					throw new IllegalArgumentException();
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new FileException(ErrorId.INCORRECT_FORMAT, file, groupId.toString());
+			}
+
+			// Read any table of large sizes
+			SizeTable sizeTable = readSizeTable(dataInput, group.getGroupId());
+
+			// Get group size; it cannot be tested against the length of the stream, and a group of unknown size extends
+			// to the end of the stream
+			long groupSize = getChunkSize(buffer, IffId.SIZE);
+			if (groupSize == MAX_SIZE)
+				groupSize = (sizeTable == null) ? Long.MAX_VALUE : sizeTable.getGroupSize();
+
+			// Begin reading chunks
+			chunkReader.beginReading(dataInput, group.getTypeId(), groupSize);
+
+			// Initialise variables
+			long groupOffset = countingStream.position - Chunk.HEADER_SIZE;
+			buffer = new byte[Chunk.HEADER_SIZE];
+
+			// Call reader on each chunk in group
+			while (groupOffset < groupSize)
+			{
+				// Test whether chunk header extends beyond end of group
+				if (groupOffset + Chunk.HEADER_SIZE > groupSize)
+					throw new FileException(ErrorId.MALFORMED_FILE, file);
+
+				// Read chunk header; a group of unknown size ends at the end of the stream
+				int value = countingStream.read();
+				if ((value < 0) && (groupSize == Long.MAX_VALUE))
+					break;
+				buffer[0] = (byte)value;
+				dataInput.readFully(buffer, 1, buffer.length - 1);
+
+				// Get chunk ID and size
+				IffId chunkId = null;
+				try
+				{
+					chunkId = new IffId(buffer);
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new FileException(ErrorId.ILLEGAL_CHUNK_ID, file);
+				}
+				long chunkSize = getChunkSize(buffer, IffId.SIZE);
+				if ((chunkSize == MAX_SIZE) && (sizeTable != null))
+				{
+					try
+					{
+						chunkSize = sizeTable.removeChunkSize(chunkId);
+					}
+					catch (NoSuchElementException e)
+					{
+						throw new IffException(ErrorId.NO_SIZE_FOR_CHUNK, file, chunkId);
+					}
+				}
+
+				// If the size of the chunk may be a placeholder, read the chunk from a copy of its data
+				groupOffset += Chunk.HEADER_SIZE;
+				if (chunkSize >= MIN_PLACEHOLDER_SIZE)
+				{
+					// Copy chunk to temporary file
+					File tempFile = null;
+					try
+					{
+						tempFile = File.createTempFile(TEMP_FILE_PREFIX, null);
+					}
+					catch (IOException | SecurityException e)
+					{
+						throw new AppException(ErrorId.FAILED_TO_CREATE_TEMPORARY_FILE, e);
+					}
+					try
+					{
+						try (OutputStream outStream = new BufferedOutputStream(new FileOutputStream(tempFile)))
+						{
+							chunkSize = countingStream.transferTo(outStream, chunkSize);
+						}
+
+						// Test whether chunk extends beyond end of group
+						if (chunkSize > groupSize - groupOffset)
+							throw new IffException(ErrorId.MALFORMED_FILE, file, chunkId);
+
+						// Read chunk
+						try (InputStream inStream0 = new BufferedInputStream(new FileInputStream(tempFile)))
+						{
+							chunkReader.read(new DataInputStream(inStream0), chunkId, chunkSize);
+						}
+					}
+					finally
+					{
+						tempFile.delete();
+					}
+
+					// If end of stream was reached, chunk was last chunk of group
+					if (countingStream.endOfStream)
+						break;
+				}
+
+				// ... otherwise, read chunk from stream
+				else
+				{
+					// Test whether chunk extends beyond end of group
+					if (chunkSize > groupSize - groupOffset)
+						throw new IffException(ErrorId.MALFORMED_FILE, file, chunkId);
+
+					// Read chunk, unless it is the size table
+					if ((sizeTable == null) || !chunkId.equals(sizeTable.getId()))
+						chunkReader.read(dataInput, chunkId, chunkSize);
+				}
+
+				// Increment group offset
+				groupOffset += chunkSize;
+				if ((chunkSize & 1) != 0)
+					++groupOffset;
+
+				// Skip any data of chunk that were not read, and any padding that lies within the group; the group
+				// ends at the end of the stream if its size is unknown
+				long length = Chunk.HEADER_SIZE + Math.min(groupOffset, groupSize) - countingStream.position;
+				if (length < 0)
+					throw new IffException(ErrorId.MALFORMED_FILE, file, chunkId);
+				if (groupSize == Long.MAX_VALUE)
+					countingStream.skipUpTo(length);
+				else
+					dataInput.skipNBytes(length);
+			}
+
+			// End reading chunks
+			chunkReader.endReading(dataInput);
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.ERROR_READING_FILE, file, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
 	public void write(IffId        typeId,
 					  IChunkWriter chunkWriter)
 		throws AppException
@@ -603,7 +1306,8 @@ public abstract class FormFile
 			try
 			{
 				// Write group header
-				writeGroupHeader(raFile, groupId, typeId, 0);
+				writeGroupHeader(raFile, getWriteGroupId(), typeId, 0);
+				beginWritingGroup(raFile);
 
 				// Begin writing chunks
 				chunkWriter.beginWriting(raFile);
@@ -632,7 +1336,7 @@ public abstract class FormFile
 							raFile.write(0);
 
 						// Write size of data into chunk header
-						writeSize(raFile, chunkOffset + IffId.SIZE, (int)dataSize);
+						writeChunkSize(raFile, chunkOffset, id, dataSize);
 
 						// Seek end of file
 						raFile.seek(raFile.length());
@@ -643,7 +1347,7 @@ public abstract class FormFile
 				chunkWriter.endWriting(raFile);
 
 				// Write group size into FORM header
-				writeSize(raFile, IffId.SIZE, (int)raFile.length() - Chunk.HEADER_SIZE);
+				writeGroupSize(raFile, raFile.length() - Chunk.HEADER_SIZE);
 			}
 			catch (IOException e)
 			{
@@ -715,14 +1419,85 @@ public abstract class FormFile
 
 	//------------------------------------------------------------------
 
-	private void writeSize(RandomAccessFile raFile,
-						   long             offset,
-						   int              size)
+	/**
+	 * Writes a group sequentially to the specified output stream.  Unlike {@link #write(IffId, IChunkWriter)}, this
+	 * method does not require random access, so the size of the group and the size of each chunk must be known before
+	 * they are written: the former is specified by the caller, and the latter is obtained from the chunk writer.  The
+	 * output stream is flushed but not closed.
+	 *
+	 * @param  outStream
+	 *           the output stream to which the group will be written.
+	 * @param  typeId
+	 *           the type identifier of the group.
+	 * @param  size
+	 *           the size of the group: the size of the chunks of the chunk writer, including their headers and
+	 *           padding, and of the type identifier.
+	 * @param  chunkWriter
+	 *           the chunk writer that will write the data of each chunk.
+	 * @throws AppException
+	 *           if a size is too large for the format of the group or an error occurred when writing the output
+	 *           stream.
+	 */
+
+	public void write(OutputStream outStream,
+					  IffId        typeId,
+					  long         size,
+					  IChunkWriter chunkWriter)
+		throws AppException
+	{
+		try
+		{
+			// Write group header
+			DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(outStream));
+			writeStreamGroupHeader(dataOutput, typeId, size);
+
+			// Begin writing chunks
+			chunkWriter.beginWriting(dataOutput);
+
+			// Write chunks
+			while (true)
+			{
+				// Get ID of next chunk
+				IffId id = chunkWriter.getNextId();
+				if (id == null)
+					break;
+
+				// Write chunk
+				if (!id.equals(new IffId()))
+				{
+					// Write chunk header
+					long dataSize = chunkWriter.getSize();
+					writeStreamChunkHeader(dataOutput, id, dataSize);
+
+					// Write chunk data
+					chunkWriter.write(dataOutput, id);
+
+					// Pad chunk to even length
+					if ((dataSize & 1) != 0)
+						dataOutput.write(0);
+				}
+			}
+
+			// End writing chunks
+			chunkWriter.endWriting(dataOutput);
+			dataOutput.flush();
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.ERROR_WRITING_FILE, file, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	protected void writeSize(RandomAccessFile raFile,
+							 long             offset,
+							 long             size)
 		throws IOException
 	{
 		raFile.seek(offset);
 		byte[] sizeBuffer = new byte[Chunk.SIZE_SIZE];
-		putSize(size, sizeBuffer);
+		putSize((int)size, sizeBuffer);
 		raFile.write(sizeBuffer);
 	}
 
@@ -81,7 +81,8 @@ public class IffException
 	@Override
 	protected String getPrefix()
 	{
-		return getPathname(file) + "\n" + CHUNK_ID_STR + ": '" + chunkId + "'";
+		String chunkIdStr = CHUNK_ID_STR + ": '" + chunkId + "'\n";
+		return (file == null) ? chunkIdStr : getPathname(file) + "\n" + chunkIdStr;
 	}
 
 	//------------------------------------------------------------------
@@ -54,10 +54,10 @@ public class IffFormFile
 ////////////////////////////////////////////////////////////////////////
 
 	@Override
-	protected int getChunkSize(byte[] sizeBytes,
-							   int    offset)
+	protected long getChunkSize(byte[] sizeBytes,
+								int    offset)
 	{
-		return IffChunk.getSize(sizeBytes, offset);
+		return IffChunk.getSize(sizeBytes, offset) & MAX_SIZE;
 	}
 
 	//------------------------------------------------------------------
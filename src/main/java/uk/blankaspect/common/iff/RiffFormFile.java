@@ -18,9 +18,16 @@ package uk.blankaspect.common.iff;
 // IMPORTS
 
 
+import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import uk.blankaspect.common.exception.AppException;
+import uk.blankaspect.common.exception.FileException;
+
+import uk.blankaspect.common.number.NumberCodec;
 
 //----------------------------------------------------------------------
 
@@ -36,7 +43,37 @@ public class RiffFormFile
 //  Constants
 ////////////////////////////////////////////////////////////////////////
 
-	private static final	IffId	GROUP_ID	= new IffId("RIFF");
+	/** The group identifier of a RIFF file. */
+	public static final		IffId	GROUP_ID		= new IffId("RIFF");
+
+	/** The group identifier of an RF64 file (EBU Tech 3306). */
+	public static final		IffId	RF64_GROUP_ID	= new IffId("RF64");
+
+	/** The group identifier of a BW64 file (ITU-R BS.2088). */
+	public static final		IffId	BW64_GROUP_ID	= new IffId("BW64");
+
+	/** The identifier of the chunk that contains the 64-bit sizes of an RF64 or BW64 file. */
+	public static final		IffId	DS64_ID			= new IffId("ds64");
+
+	/** The identifier of the chunk whose 64-bit size is stored in a dedicated field of the ds64 chunk. */
+	private static final	IffId	DATA_ID			= new IffId("data");
+
+	private static final	int		SIZE64_SIZE			= 8;
+	private static final	int		TABLE_LENGTH_SIZE	= 4;
+	private static final	int		DS64_SIZE			= 3 * SIZE64_SIZE + TABLE_LENGTH_SIZE;
+	private static final	int		TABLE_ENTRY_SIZE	= IffId.SIZE + SIZE64_SIZE;
+
+	private static final	int		MAX_TABLE_LENGTH	= 1 << 16;
+
+	private static final	long	MAX_DS64_SIZE		= DS64_SIZE + (long)MAX_TABLE_LENGTH * TABLE_ENTRY_SIZE;
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	boolean	rf64;
+	private	long	sampleCount;
+	private	long	dataSize;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -49,15 +86,142 @@ public class RiffFormFile
 
 	//------------------------------------------------------------------
 
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns {@code true} if the specified identifier is the group identifier of a RIFF, RF64 or BW64 file.
+	 *
+	 * @param  id
+	 *           the identifier that will be tested.
+	 * @return {@code true} if {@code id} is the group identifier of a RIFF, RF64 or BW64 file.
+	 */
+
+	public static boolean isRiffGroupId(IffId id)
+	{
+		return id.equals(GROUP_ID) || isRf64GroupId(id);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the specified identifier is the group identifier of an RF64 or BW64 file.
+	 *
+	 * @param  id
+	 *           the identifier that will be tested.
+	 * @return {@code true} if {@code id} is the group identifier of an RF64 or BW64 file.
+	 */
+
+	public static boolean isRf64GroupId(IffId id)
+	{
+		return id.equals(RF64_GROUP_ID) || id.equals(BW64_GROUP_ID);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the ds64 chunk of an RF64 or BW64 file.  The chunk must be the first chunk of the group, and the file
+	 * pointer must be positioned at its header.  On return, the file pointer is positioned at the end of the ds64
+	 * chunk.
+	 *
+	 * @param  raFile
+	 *           the file from which the chunk will be read.
+	 * @return a size table that contains the sizes from the ds64 chunk, or {@code null} if the first chunk of the
+	 *         group is not a valid ds64 chunk.
+	 * @throws IllegalArgumentException
+	 *           if the ds64 chunk contains an illegal chunk identifier.
+	 * @throws IOException
+	 *           if an error occurred when reading the file.
+	 */
+
+	public static SizeTable readDs64Chunk(RandomAccessFile raFile)
+		throws IOException
+	{
+		return readDs64Chunk(raFile, raFile.length() - raFile.getFilePointer() - Chunk.HEADER_SIZE);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the ds64 chunk of an RF64 or BW64 file from the specified file or stream, which must be positioned at the
+	 * header of the chunk.  On return, the file or stream is positioned at the end of the ds64 chunk.
+	 *
+	 * @param  dataInput
+	 *           the file or stream from which the chunk will be read.
+	 * @param  maxChunkSize
+	 *           the maximum size of the chunk.
+	 * @return a size table that contains the sizes from the ds64 chunk, or {@code null} if the chunk is not a valid
+	 *         ds64 chunk.
+	 * @throws IllegalArgumentException
+	 *           if the ds64 chunk contains an illegal chunk identifier.
+	 * @throws IOException
+	 *           if an error occurred when reading the file or stream.
+	 */
+
+	public static SizeTable readDs64Chunk(DataInput dataInput,
+										  long      maxChunkSize)
+		throws IOException
+	{
+		// Read chunk header
+		byte[] buffer = new byte[Chunk.HEADER_SIZE];
+		dataInput.readFully(buffer);
+		long chunkSize = RiffChunk.getSize(buffer, IffId.SIZE) & MAX_SIZE;
+		if (!DS64_ID.equals(new IffId(buffer)) || (chunkSize < DS64_SIZE) || (chunkSize > maxChunkSize))
+			return null;
+
+		// Read chunk data
+		buffer = new byte[(int)chunkSize];
+		dataInput.readFully(buffer);
+		if ((chunkSize & 1) != 0)
+			dataInput.readByte();
+
+		// Create size table from fixed fields
+		SizeTable sizeTable = new SizeTable(DS64_ID, get64(buffer, 0));
+		sizeTable.addChunkSize(DATA_ID, get64(buffer, SIZE64_SIZE));
+
+		// Add entries of table
+		int tableLength = NumberCodec.bytesToIntLE(buffer, 3 * SIZE64_SIZE, TABLE_LENGTH_SIZE);
+		if ((tableLength < 0) || (tableLength > MAX_TABLE_LENGTH) ||
+			 (tableLength * TABLE_ENTRY_SIZE > chunkSize - DS64_SIZE))
+			return null;
+		int offset = DS64_SIZE;
+		for (int i = 0; i < tableLength; i++)
+		{
+			sizeTable.addChunkSize(new IffId(buffer, offset), get64(buffer, offset + IffId.SIZE));
+			offset += TABLE_ENTRY_SIZE;
+		}
+		return sizeTable;
+	}
+
+	//------------------------------------------------------------------
+
+	private static long get64(byte[] buffer,
+							  int    offset)
+	{
+		return NumberCodec.bytesToLongLE(buffer, offset, SIZE64_SIZE);
+	}
+
+	//------------------------------------------------------------------
+
+	private static void put64(long   value,
+							  byte[] buffer,
+							  int    offset)
+	{
+		NumberCodec.longToBytesLE(value, buffer, offset, SIZE64_SIZE);
+	}
+
+	//------------------------------------------------------------------
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance methods : overriding methods
 ////////////////////////////////////////////////////////////////////////
 
 	@Override
-	protected int getChunkSize(byte[] sizeBytes,
-							   int    offset)
+	protected long getChunkSize(byte[] sizeBytes,
+								int    offset)
 	{
-		return RiffChunk.getSize(sizeBytes, offset);
+		return RiffChunk.getSize(sizeBytes, offset) & MAX_SIZE;
 	}
 
 	//------------------------------------------------------------------
@@ -106,6 +270,177 @@ public class RiffFormFile
 
 	//------------------------------------------------------------------
 
+	@Override
+	protected boolean isGroupId(IffId id)
+	{
+		return isRiffGroupId(id);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected SizeTable readSizeTable(DataInput dataInput,
+									  IffId     groupId)
+		throws AppException, IOException
+	{
+		// A RIFF file has no size table
+		if (!isRf64GroupId(groupId))
+			return null;
+
+		// Read ds64 chunk
+		SizeTable sizeTable = null;
+		try
+		{
+			// The size of the ds64 chunk is bounded by the length of a file, or by the maximum length of its table if
+			// the chunk is read from a stream
+			sizeTable = (dataInput instanceof RandomAccessFile raFile) ? readDs64Chunk(raFile)
+																	   : readDs64Chunk(dataInput, MAX_DS64_SIZE);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new FileException(ErrorId.ILLEGAL_CHUNK_ID, getFile());
+		}
+		if (sizeTable == null)
+			throw new FileException(ErrorId.MALFORMED_FILE, getFile());
+		return sizeTable;
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected IffId getWriteGroupId()
+	{
+		return rf64 ? RF64_GROUP_ID : GROUP_ID;
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected void beginWritingGroup(RandomAccessFile raFile)
+		throws IOException
+	{
+		// Write placeholder for ds64 chunk; its fields are set when the size of the group is written
+		if (rf64)
+		{
+			RiffChunk.writeHeader(raFile, DS64_ID, DS64_SIZE);
+			raFile.write(new byte[DS64_SIZE]);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected void writeChunkSize(RandomAccessFile raFile,
+								  long             chunkOffset,
+								  IffId            id,
+								  long             size)
+		throws AppException, IOException
+	{
+		// In an RF64 file, the size of the data chunk is stored only in the ds64 chunk
+		if (rf64 && id.equals(DATA_ID))
+		{
+			dataSize = size;
+			writeSize(raFile, chunkOffset + IffId.SIZE, MAX_SIZE);
+		}
+		else
+			super.writeChunkSize(raFile, chunkOffset, id, size);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected void writeGroupSize(RandomAccessFile raFile,
+								  long             size)
+		throws AppException, IOException
+	{
+		// Write size of group
+		if (!rf64)
+		{
+			super.writeGroupSize(raFile, size);
+			return;
+		}
+
+		// Write placeholder for size to group header
+		writeSize(raFile, IffId.SIZE, MAX_SIZE);
+
+		// Write fields of ds64 chunk
+		byte[] buffer = new byte[DS64_SIZE];
+		put64(size, buffer, 0);
+		put64(dataSize, buffer, SIZE64_SIZE);
+		put64(sampleCount, buffer, 2 * SIZE64_SIZE);
+		raFile.seek(Group.HEADER_SIZE + Chunk.HEADER_SIZE);
+		raFile.write(buffer);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected void writeStreamGroupHeader(DataOutput dataOutput,
+										  IffId      typeId,
+										  long       size)
+		throws AppException, IOException
+	{
+		// Write group header
+		if (!rf64)
+		{
+			super.writeStreamGroupHeader(dataOutput, typeId, size);
+			return;
+		}
+
+		// Write group header with placeholder for size, followed by ds64 chunk, whose fields must all be known
+		// in advance
+		writeGroupHeader(dataOutput, RF64_GROUP_ID, typeId, (int)MAX_SIZE);
+		RiffChunk.writeHeader(dataOutput, DS64_ID, DS64_SIZE);
+		byte[] buffer = new byte[DS64_SIZE];
+		put64(size + Chunk.HEADER_SIZE + DS64_SIZE, buffer, 0);
+		put64(dataSize, buffer, SIZE64_SIZE);
+		put64(sampleCount, buffer, 2 * SIZE64_SIZE);
+		dataOutput.write(buffer);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	protected void writeStreamChunkHeader(DataOutput dataOutput,
+										  IffId      id,
+										  long       size)
+		throws AppException, IOException
+	{
+		// In an RF64 file, the size of the data chunk is stored only in the ds64 chunk
+		if (rf64 && id.equals(DATA_ID))
+			writeChunkHeader(dataOutput, id, (int)MAX_SIZE);
+		else
+			super.writeStreamChunkHeader(dataOutput, id, size);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Causes the file to be written in the RF64 format, in which the sizes of the RIFF group and the data chunk are
+	 * stored in a ds64 chunk instead of the 32-bit size fields of their headers.  The format is required for files that
+	 * are larger than 4 GiB.
+	 *
+	 * @param sampleCount
+	 *          the number of sample frames in the data chunk.
+	 * @param dataSize
+	 *          the size of the data chunk.  When the file is written to a stream, the ds64 chunk precedes the data
+	 *          chunk, so its size must be known in advance.
+	 */
+
+	public void setRf64(long sampleCount,
+						long dataSize)
+	{
+		rf64 = true;
+		this.sampleCount = sampleCount;
+		this.dataSize = dataSize;
+	}
+
+	//------------------------------------------------------------------
+
 }
 
 //----------------------------------------------------------------------
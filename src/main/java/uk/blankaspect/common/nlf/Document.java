@@ -35,6 +35,14 @@ import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
 import uk.blankaspect.common.filesystem.FilenameUtils;
 
 //----------------------------------------------------------------------
@@ -292,6 +300,10 @@ public class Document
 		if (raFile != null)
 			throw new NlfUncheckedException(ExceptionId.FILE_IS_OPEN_ON_DOCUMENT);
 
+		// Begin event
+		ReadEvent event = new ReadEvent();
+		event.begin();
+
 		// Open, read and parse file
 		try
 		{
@@ -333,6 +345,16 @@ public class Document
 			{
 				throw new NlfException(ExceptionId.ERROR_READING_FILE, file, e);
 			}
+
+			// Commit event
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.file = file.getPath();
+				event.fileSize = file.length();
+				event.littleEndian = littleEndian;
+				event.commit();
+			}
 		}
 		catch (NlfException e)
 		{
@@ -393,6 +415,10 @@ public class Document
 		if (raFile != null)
 			throw new NlfUncheckedException(ExceptionId.FILE_IS_OPEN_ON_DOCUMENT);
 
+		// Begin event
+		WriteEvent event = new WriteEvent();
+		event.begin();
+
 		// Write file
 		File tempFile = null;
 		boolean oldFileDeleted = false;
@@ -502,6 +528,16 @@ public class Document
 			{
 				throw new NlfException(ExceptionId.FAILED_TO_RENAME_FILE, tempFile, e);
 			}
+
+			// Commit event
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.file = file.getPath();
+				event.fileSize = file.length();
+				event.littleEndian = littleEndian;
+				event.commit();
+			}
 		}
 		catch (NlfException e)
 		{
@@ -1222,6 +1258,82 @@ public class Document
 
 	//==================================================================
 
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: READ EVENT
+
+
+	/**
+	 * This class implements a Java Flight Recorder event that covers the reading and parsing of a document by {@link
+	 * #read(File)}.  The event is disabled by default.
+	 */
+
+	@Name("uk.blankaspect.common.nlf.DocumentRead")
+	@Label("NLF document read")
+	@Description("The reading and parsing of the structure of a Nested-List File")
+	@Category("Nested-List File")
+	@Enabled(false)
+	private static class ReadEvent
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("File")
+		String	file;
+
+		@Label("File size")
+		@DataAmount
+		long	fileSize;
+
+		@Label("Little-endian")
+		boolean	littleEndian;
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: WRITE EVENT
+
+
+	/**
+	 * This class implements a Java Flight Recorder event that covers the writing of a document, including the data of
+	 * its chunks, by {@link #write(File)}.  The event is disabled by default.
+	 */
+
+	@Name("uk.blankaspect.common.nlf.DocumentWrite")
+	@Label("NLF document write")
+	@Description("The writing of a Nested-List File, including the data of its chunks")
+	@Category("Nested-List File")
+	@Enabled(false)
+	private static class WriteEvent
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("File")
+		String	file;
+
+		@Label("File size")
+		@DataAmount
+		long	fileSize;
+
+		@Label("Little-endian")
+		boolean	littleEndian;
+
+	}
+
+	//==================================================================
+
 ////////////////////////////////////////////////////////////////////////
 //  Member classes : inner classes
 ////////////////////////////////////////////////////////////////////////
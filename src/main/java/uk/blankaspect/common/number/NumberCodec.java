@@ -15,16 +15,52 @@ package uk.blankaspect.common.number;
 //----------------------------------------------------------------------
 
 
+// IMPORTS
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteOrder;
+
+//----------------------------------------------------------------------
+
+
 // CLASS: METHODS FOR ENCODING AND DECODING NUMBERS
 
 
 /**
  * This class contains utility methods for encoding and decoding numbers.
+ * <p>
+ * In addition to methods that convert a single value, the class has methods that convert arrays of values of one, two,
+ * three or four bytes in bulk.  The bulk methods have a separate loop for each width, and access two-byte and
+ * four-byte values through views of the byte array, so that the JIT compiler can combine the byte accesses.
+ * </p>
  */
 
 public class NumberCodec
 {
 
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** A view of a byte array as an array of big-endian 16-bit values. */
+	private static final	VarHandle	SHORT_BE	=
+			MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+	/** A view of a byte array as an array of little-endian 16-bit values. */
+	private static final	VarHandle	SHORT_LE	=
+			MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** A view of a byte array as an array of big-endian 32-bit values. */
+	private static final	VarHandle	INT_BE	=
+			MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	/** A view of a byte array as an array of little-endian 32-bit values. */
+	private static final	VarHandle	INT_LE	=
+			MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
 ////////////////////////////////////////////////////////////////////////
@@ -991,6 +1027,445 @@ public class NumberCodec
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Converts the specified number of big-endian byte sequences of the specified length to signed integers, and stores
+	 * the integers in the specified array.
+	 *
+	 * @param  src
+	 *           the array that contains the byte sequences.
+	 * @param  srcOffset
+	 *           the offset to the first byte sequence in {@code src}.
+	 * @param  dest
+	 *           the array in which the integers will be stored.
+	 * @param  destOffset
+	 *           the offset in {@code dest} at which the first integer will be stored.
+	 * @param  count
+	 *           the number of values that will be converted.
+	 * @param  bytesPerValue
+	 *           the length of each byte sequence, which must be 1, 2, 3 or 4.
+	 * @throws IllegalArgumentException
+	 *           if {@code bytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void bytesToIntsBE(
+		byte[]	src,
+		int		srcOffset,
+		int[]	dest,
+		int		destOffset,
+		int		count,
+		int		bytesPerValue)
+	{
+		int endOffset = destOffset + count;
+		switch (bytesPerValue)
+		{
+			case 1:
+				while (destOffset < endOffset)
+					dest[destOffset++] = src[srcOffset++];
+				break;
+
+			case 2:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = (short)SHORT_BE.get(src, srcOffset);
+					srcOffset += 2;
+				}
+				break;
+
+			case 3:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = (src[srcOffset] << 16) | ((short)SHORT_BE.get(src, srcOffset + 1) & 0xFFFF);
+					srcOffset += 3;
+				}
+				break;
+
+			case 4:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = (int)INT_BE.get(src, srcOffset);
+					srcOffset += 4;
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Converts the specified number of little-endian byte sequences of the specified length to signed integers, and
+	 * stores the integers in the specified array.
+	 *
+	 * @param  src
+	 *           the array that contains the byte sequences.
+	 * @param  srcOffset
+	 *           the offset to the first byte sequence in {@code src}.
+	 * @param  dest
+	 *           the array in which the integers will be stored.
+	 * @param  destOffset
+	 *           the offset in {@code dest} at which the first integer will be stored.
+	 * @param  count
+	 *           the number of values that will be converted.
+	 * @param  bytesPerValue
+	 *           the length of each byte sequence, which must be 1, 2, 3 or 4.
+	 * @throws IllegalArgumentException
+	 *           if {@code bytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void bytesToIntsLE(
+		byte[]	src,
+		int		srcOffset,
+		int[]	dest,
+		int		destOffset,
+		int		count,
+		int		bytesPerValue)
+	{
+		int endOffset = destOffset + count;
+		switch (bytesPerValue)
+		{
+			case 1:
+				while (destOffset < endOffset)
+					dest[destOffset++] = src[srcOffset++];
+				break;
+
+			case 2:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = (short)SHORT_LE.get(src, srcOffset);
+					srcOffset += 2;
+				}
+				break;
+
+			case 3:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = ((short)SHORT_LE.get(src, srcOffset) & 0xFFFF) | (src[srcOffset + 2] << 16);
+					srcOffset += 3;
+				}
+				break;
+
+			case 4:
+				while (destOffset < endOffset)
+				{
+					dest[destOffset++] = (int)INT_LE.get(src, srcOffset);
+					srcOffset += 4;
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Converts the specified number of signed integers to big-endian byte sequences of the specified length, and stores
+	 * the sequences in the specified array.  The high-order bytes of an integer that do not fit in a sequence are
+	 * discarded.
+	 *
+	 * @param  src
+	 *           the array that contains the integers.
+	 * @param  srcOffset
+	 *           the offset to the first integer in {@code src}.
+	 * @param  dest
+	 *           the array in which the byte sequences will be stored.
+	 * @param  destOffset
+	 *           the offset in {@code dest} at which the first byte sequence will be stored.
+	 * @param  count
+	 *           the number of values that will be converted.
+	 * @param  bytesPerValue
+	 *           the length of each byte sequence, which must be 1, 2, 3 or 4.
+	 * @throws IllegalArgumentException
+	 *           if {@code bytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void intsToBytesBE(
+		int[]	src,
+		int		srcOffset,
+		byte[]	dest,
+		int		destOffset,
+		int		count,
+		int		bytesPerValue)
+	{
+		int endOffset = srcOffset + count;
+		switch (bytesPerValue)
+		{
+			case 1:
+				while (srcOffset < endOffset)
+					dest[destOffset++] = (byte)src[srcOffset++];
+				break;
+
+			case 2:
+				while (srcOffset < endOffset)
+				{
+					SHORT_BE.set(dest, destOffset, (short)src[srcOffset++]);
+					destOffset += 2;
+				}
+				break;
+
+			case 3:
+				while (srcOffset < endOffset)
+				{
+					int value = src[srcOffset++];
+					dest[destOffset] = (byte)(value >> 16);
+					SHORT_BE.set(dest, destOffset + 1, (short)value);
+					destOffset += 3;
+				}
+				break;
+
+			case 4:
+				while (srcOffset < endOffset)
+				{
+					INT_BE.set(dest, destOffset, src[srcOffset++]);
+					destOffset += 4;
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Converts the specified number of signed integers to little-endian byte sequences of the specified length, and
+	 * stores the sequences in the specified array.  The high-order bytes of an integer that do not fit in a sequence
+	 * are discarded.
+	 *
+	 * @param  src
+	 *           the array that contains the integers.
+	 * @param  srcOffset
+	 *           the offset to the first integer in {@code src}.
+	 * @param  dest
+	 *           the array in which the byte sequences will be stored.
+	 * @param  destOffset
+	 *           the offset in {@code dest} at which the first byte sequence will be stored.
+	 * @param  count
+	 *           the number of values that will be converted.
+	 * @param  bytesPerValue
+	 *           the length of each byte sequence, which must be 1, 2, 3 or 4.
+	 * @throws IllegalArgumentException
+	 *           if {@code bytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void intsToBytesLE(
+		int[]	src,
+		int		srcOffset,
+		byte[]	dest,
+		int		destOffset,
+		int		count,
+		int		bytesPerValue)
+	{
+		int endOffset = srcOffset + count;
+		switch (bytesPerValue)
+		{
+			case 1:
+				while (srcOffset < endOffset)
+					dest[destOffset++] = (byte)src[srcOffset++];
+				break;
+
+			case 2:
+				while (srcOffset < endOffset)
+				{
+					SHORT_LE.set(dest, destOffset, (short)src[srcOffset++]);
+					destOffset += 2;
+				}
+				break;
+
+			case 3:
+				while (srcOffset < endOffset)
+				{
+					int value = src[srcOffset++];
+					SHORT_LE.set(dest, destOffset, (short)value);
+					dest[destOffset + 2] = (byte)(value >> 16);
+					destOffset += 3;
+				}
+				break;
+
+			case 4:
+				while (srcOffset < endOffset)
+				{
+					INT_LE.set(dest, destOffset, src[srcOffset++]);
+					destOffset += 4;
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reverses the order of the bytes of each of the values in the specified part of the specified array.  A value
+	 * whose bytes do not all lie within the part of the array is not changed.
+	 *
+	 * @param  data
+	 *           the array that contains the values.
+	 * @param  offset
+	 *           the offset to the first value in {@code data}.
+	 * @param  length
+	 *           the length of the part of {@code data} that contains the values.
+	 * @param  bytesPerValue
+	 *           the number of bytes in each value, which must be 1, 2, 3 or 4.
+	 * @throws IllegalArgumentException
+	 *           if {@code bytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void reverseByteOrder(
+		byte[]	data,
+		int		offset,
+		int		length,
+		int		bytesPerValue)
+	{
+		if ((bytesPerValue < 1) || (bytesPerValue > 4))
+			throw new IllegalArgumentException();
+
+		int endOffset = offset + length - length % bytesPerValue;
+		switch (bytesPerValue)
+		{
+			case 1:
+				break;
+
+			case 2:
+				while (offset < endOffset)
+				{
+					SHORT_LE.set(data, offset, (short)SHORT_BE.get(data, offset));
+					offset += 2;
+				}
+				break;
+
+			case 3:
+				while (offset < endOffset)
+				{
+					byte temp = data[offset];
+					data[offset] = data[offset + 2];
+					data[offset + 2] = temp;
+					offset += 3;
+				}
+				break;
+
+			case 4:
+				while (offset < endOffset)
+				{
+					INT_LE.set(data, offset, (int)INT_BE.get(data, offset));
+					offset += 4;
+				}
+				break;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Converts the specified number of little-endian signed values from one width to another.
+	 * <p>
+	 * A value is widened by appending low-order zero bytes to it (ie, it is multiplied by 2<sup>8<i>n</i></sup>, where
+	 * <i>n</i> is the difference between the widths).  A value is narrowed by dividing it by 2<sup>8<i>n</i></sup> and
+	 * rounding the quotient to the nearest integer, with halves rounded towards positive infinity; a quotient that is
+	 * rounded up beyond the range of the narrower width wraps around.
+	 * </p>
+	 * <p>
+	 * The source and destination ranges must not overlap.
+	 * </p>
+	 *
+	 * @param  src
+	 *           the array that contains the values that will be converted.
+	 * @param  srcOffset
+	 *           the offset to the first value in {@code src}.
+	 * @param  srcBytesPerValue
+	 *           the number of bytes in each source value, which must be 1, 2, 3 or 4.
+	 * @param  dest
+	 *           the array in which the converted values will be stored.
+	 * @param  destOffset
+	 *           the offset in {@code dest} at which the first converted value will be stored.
+	 * @param  destBytesPerValue
+	 *           the number of bytes in each converted value, which must be 1, 2, 3 or 4.
+	 * @param  count
+	 *           the number of values that will be converted.
+	 * @throws IllegalArgumentException
+	 *           if {@code srcBytesPerValue} or {@code destBytesPerValue} is not 1, 2, 3 or 4.
+	 */
+
+	public static void changeWidthLE(
+		byte[]	src,
+		int		srcOffset,
+		int		srcBytesPerValue,
+		byte[]	dest,
+		int		destOffset,
+		int		destBytesPerValue,
+		int		count)
+	{
+		if ((srcBytesPerValue < 1) || (srcBytesPerValue > 4) || (destBytesPerValue < 1) || (destBytesPerValue > 4))
+			throw new IllegalArgumentException();
+
+		// Same width
+		if (srcBytesPerValue == destBytesPerValue)
+		{
+			System.arraycopy(src, srcOffset, dest, destOffset, count * srcBytesPerValue);
+			return;
+		}
+
+		// 16 bits to 24 bits
+		int endOffset = destOffset + count * destBytesPerValue;
+		if ((srcBytesPerValue == 2) && (destBytesPerValue == 3))
+		{
+			while (destOffset < endOffset)
+			{
+				dest[destOffset] = 0;
+				SHORT_LE.set(dest, destOffset + 1, (short)SHORT_LE.get(src, srcOffset));
+				srcOffset += 2;
+				destOffset += 3;
+			}
+		}
+
+		// 24 bits to 16 bits
+		else if ((srcBytesPerValue == 3) && (destBytesPerValue == 2))
+		{
+			while (destOffset < endOffset)
+			{
+				int value = ((short)SHORT_LE.get(src, srcOffset) & 0xFFFF) | (src[srcOffset + 2] << 16);
+				SHORT_LE.set(dest, destOffset, (short)((value + 0x80) >> 8));
+				srcOffset += 3;
+				destOffset += 2;
+			}
+		}
+
+		// Other widening
+		else if (srcBytesPerValue < destBytesPerValue)
+		{
+			int shift = (destBytesPerValue - srcBytesPerValue) << 3;
+			while (destOffset < endOffset)
+			{
+				intToBytesLE(bytesToIntLE(src, srcOffset, srcBytesPerValue) << shift, dest, destOffset,
+							 destBytesPerValue);
+				srcOffset += srcBytesPerValue;
+				destOffset += destBytesPerValue;
+			}
+		}
+
+		// Other narrowing
+		else
+		{
+			int shift = (srcBytesPerValue - destBytesPerValue) << 3;
+			long half = 1L << shift - 1;
+			while (destOffset < endOffset)
+			{
+				long value = bytesToIntLE(src, srcOffset, srcBytesPerValue);
+				intToBytesLE((int)((value + half) >> shift), dest, destOffset, destBytesPerValue);
+				srcOffset += srcBytesPerValue;
+				destOffset += destBytesPerValue;
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
 }
 
 //----------------------------------------------------------------------
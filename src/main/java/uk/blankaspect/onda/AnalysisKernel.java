@@ -0,0 +1,180 @@
+/*====================================================================*\
+
+AnalysisKernel.java
+
+Analysis kernel interface.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.util.Arrays;
+
+//----------------------------------------------------------------------
+
+
+// ANALYSIS KERNEL INTERFACE
+
+
+/**
+ * This interface defines the operations on arrays of sample values with which the encoder analyses a channel of a
+ * block: the computation of second-order differences and the histogram of their bit lengths.  The operations are
+ * performed by {@link EncodingCost}, which delegates them to the kernel that is returned by {@link #getInstance()}.
+ * <p>
+ * The scalar kernel, {@link #SCALAR}, is written for the auto-vectoriser of the JIT compiler.  If the incubator module
+ * {@code jdk.incubator.vector} is present in the boot layer (that is, the JVM was started with {@code --add-modules
+ * jdk.incubator.vector}), a kernel that uses the Vector API is used instead.  That kernel is compiled from the {@code
+ * vector} source set of the build, so that the rest of the application does not depend on the module; it is loaded
+ * reflectively, and the scalar kernel is used if it cannot be loaded.  Both kernels produce the same results.
+ * </p>
+ */
+
+interface AnalysisKernel
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The name of the module of the Vector API. */
+	String	VECTOR_MODULE_NAME	= "jdk.incubator.vector";
+
+	/** The name of the class of the kernel that uses the Vector API. */
+	String	VECTOR_KERNEL_CLASS_NAME	= "uk.blankaspect.onda.VectorAnalysisKernel";
+
+	/** The scalar kernel. */
+	AnalysisKernel	SCALAR	= new AnalysisKernel()
+	{
+		@Override
+		public void computeEpsilons(
+			int[]	values,
+			int		numValues)
+		{
+			for (int i = numValues - 1; i >= 2; i--)
+				values[i] = values[i] - 2 * values[i - 1] + values[i - 2];
+			if (numValues > 1)
+				values[1] -= 2 * values[0];
+		}
+
+		@Override
+		public void countBitLengths(
+			int[]	epsilons,
+			int		startIndex,
+			int		endIndex,
+			int[]	counts)
+		{
+			Arrays.fill(counts, 0);
+			for (int i = startIndex; i < endIndex; i++)
+				++counts[EncodingCost.getBitLength(epsilons[i])];
+		}
+
+		@Override
+		public String getName()
+		{
+			return "scalar";
+		}
+	};
+
+////////////////////////////////////////////////////////////////////////
+//  Methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Replaces the specified values with their second-order differences.  The differences are computed from the end of
+	 * the array backwards so that each difference overwrites a value that is no longer needed.
+	 *
+	 * @param values
+	 *          the values, which will be replaced by their second-order differences.
+	 * @param numValues
+	 *          the number of values.
+	 */
+
+	void computeEpsilons(
+		int[]	values,
+		int		numValues);
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Makes a histogram of the bit lengths of the magnitudes of the specified second-order differences.
+	 *
+	 * @param epsilons
+	 *          the second-order differences.
+	 * @param startIndex
+	 *          the index of the first difference that will be counted.
+	 * @param endIndex
+	 *          the index after the last difference that will be counted.
+	 * @param counts
+	 *          the histogram, whose length must be at least 33.
+	 */
+
+	void countBitLengths(
+		int[]	epsilons,
+		int		startIndex,
+		int		endIndex,
+		int[]	counts);
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the name of this kernel.
+	 *
+	 * @return the name of this kernel.
+	 */
+
+	String getName();
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns a new instance of the kernel that uses the Vector API if the module of the API is present in the boot
+	 * layer and the kernel can be loaded; otherwise, returns the scalar kernel.  A kernel that uses the Vector API has
+	 * a buffer of its own, so it must not be shared between threads.
+	 *
+	 * @return the kernel that should be used for the analysis of channels.
+	 */
+
+	static AnalysisKernel getInstance()
+	{
+		AnalysisKernel kernel = getVectorKernel();
+		return (kernel == null) ? SCALAR : kernel;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the kernel that uses the Vector API.
+	 *
+	 * @return the kernel that uses the Vector API, or {@code null} if the module of the API is not present in the boot
+	 *         layer or the kernel cannot be loaded.
+	 */
+
+	static AnalysisKernel getVectorKernel()
+	{
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE_NAME).isEmpty())
+			return null;
+		try
+		{
+			return (AnalysisKernel)Class.forName(VECTOR_KERNEL_CLASS_NAME).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError | ClassCastException e)
+		{
+			return null;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
@@ -109,25 +109,44 @@ class AppConfig
 	private interface Key
 	{
 		String	APPEARANCE					= "appearance";
+		String	ARRAY_ANALYSIS				= "arrayAnalysis";
+		String	BACK_REFERENCE_TABLE_SIZE	= "backReferenceTableSize";
+		String	BACK_REFERENCE_WINDOW_SIZE	= "backReferenceWindowSize";
+		String	BACK_REFERENCES				= "backReferences";
+		String	BLOCK_CONTINUITY			= "blockContinuity";
 		String	BLOCK_LENGTH				= "blockLength";
+		String	CHANNEL_DECORRELATION		= "channelDecorrelation";
 		String	CHARACTER_ENCODING			= "characterEncoding";
 		String	CHUNK_FILTER				= "chunkFilter";
 		String	COMPRESS					= "compress";
 		String	COMPRESSION					= "compression";
 		String	CONFIGURATION				= OndaApp.NAME_KEY + "Configuration";
+		String	CONSTANT_CHANNELS			= "constantChannels";
+		String	EFFORT						= "effort";
 		String	EXPAND						= "expand";
+		String	FILE						= "file";
 		String	FILTER						= "filter";
 		String	FONT						= "font";
 		String	GENERAL						= "general";
 		String	IGNORE_FILENAME_CASE		= "ignoreFilenameCase";
 		String	INDEX						= "index";
+		String	LOG							= "log";
 		String	LOOK_AND_FEEL				= "lookAndFeel";
 		String	MAIN_WINDOW_LOCATION		= "mainWindowLocation";
+		String	MAX_FILE_SIZE				= "maxFileSize";
+		String	MAX_NUM_LINES				= "maxNumLines";
+		String	NUM_FILES					= "numFiles";
+		String	PARALLEL_ENCODING			= "parallelEncoding";
 		String	PATH						= "path";
+		String	PREDICTOR_SELECTION			= "predictorSelection";
+		String	PRIVATE_DATA_LEVEL			= "privateDataLevel";
+		String	RICE_CODING					= "riceCoding";
 		String	SELECT_TEXT_ON_FOCUS_GAINED	= "selectTextOnFocusGained";
 		String	SHOW_OVERALL_PROGRESS		= "showOverallProgress";
 		String	TEXT_ANTIALIASING			= "textAntialiasing";
 		String	VALIDATE					= "validate";
+		String	VARIABLE_BLOCK_LENGTH		= "variableBlockLength";
+		String	WASTED_BITS					= "wastedBits";
 	}
 
 ////////////////////////////////////////////////////////////////////////
@@ -1109,6 +1128,917 @@ class AppConfig
 	//==================================================================
 
 
+	// PROPERTY CLASS: COMPRESSION LEVEL OF PRIVATE DATA
+
+
+	private class CPPrivateDataCompressionLevel
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPPrivateDataCompressionLevel()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.PRIVATE_DATA_LEVEL),
+				  PrivateData.MIN_COMPRESSION_LEVEL, PrivateData.MAX_COMPRESSION_LEVEL);
+			value = PrivateData.DEFAULT_COMPRESSION_LEVEL;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getPrivateDataCompressionLevel()
+	{
+		return cpPrivateDataCompressionLevel.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setPrivateDataCompressionLevel(int value)
+	{
+		cpPrivateDataCompressionLevel.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPPrivateDataCompressionLevel	cpPrivateDataCompressionLevel	= new CPPrivateDataCompressionLevel();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: ARRAY KERNEL FOR ANALYSIS OF BLOCKS
+
+
+	private class CPArrayAnalysis
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPArrayAnalysis()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.ARRAY_ANALYSIS));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isArrayAnalysis()
+	{
+		return cpArrayAnalysis.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setArrayAnalysis(boolean value)
+	{
+		cpArrayAnalysis.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPArrayAnalysis	cpArrayAnalysis	= new CPArrayAnalysis();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: PARALLEL ENCODING OF CHANNELS
+
+
+	private class CPParallelEncoding
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPParallelEncoding()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.PARALLEL_ENCODING));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isParallelEncoding()
+	{
+		return cpParallelEncoding.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setParallelEncoding(boolean value)
+	{
+		cpParallelEncoding.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPParallelEncoding	cpParallelEncoding	= new CPParallelEncoding();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: DECORRELATION OF PAIRS OF CHANNELS
+
+
+	private class CPChannelDecorrelation
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPChannelDecorrelation()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.CHANNEL_DECORRELATION));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isChannelDecorrelation()
+	{
+		return cpChannelDecorrelation.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setChannelDecorrelation(boolean value)
+	{
+		cpChannelDecorrelation.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPChannelDecorrelation	cpChannelDecorrelation	= new CPChannelDecorrelation();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: SELECTION OF PREDICTORS
+
+
+	private class CPPredictorSelection
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPPredictorSelection()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.PREDICTOR_SELECTION));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isPredictorSelection()
+	{
+		return cpPredictorSelection.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setPredictorSelection(boolean value)
+	{
+		cpPredictorSelection.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPPredictorSelection	cpPredictorSelection	= new CPPredictorSelection();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: RICE CODING OF RESIDUALS
+
+
+	private class CPRiceCoding
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPRiceCoding()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.RICE_CODING));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isRiceCoding()
+	{
+		return cpRiceCoding.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setRiceCoding(boolean value)
+	{
+		cpRiceCoding.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPRiceCoding	cpRiceCoding	= new CPRiceCoding();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: VARIABLE BLOCK LENGTH
+
+
+	private class CPVariableBlockLength
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPVariableBlockLength()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.VARIABLE_BLOCK_LENGTH));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isVariableBlockLength()
+	{
+		return cpVariableBlockLength.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setVariableBlockLength(boolean value)
+	{
+		cpVariableBlockLength.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPVariableBlockLength	cpVariableBlockLength	= new CPVariableBlockLength();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: CONSTANT CHANNELS
+
+
+	private class CPConstantChannels
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPConstantChannels()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.CONSTANT_CHANNELS));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isConstantChannels()
+	{
+		return cpConstantChannels.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setConstantChannels(boolean value)
+	{
+		cpConstantChannels.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPConstantChannels	cpConstantChannels	= new CPConstantChannels();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: WASTED BITS
+
+
+	private class CPWastedBits
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPWastedBits()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.WASTED_BITS));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isWastedBits()
+	{
+		return cpWastedBits.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setWastedBits(boolean value)
+	{
+		cpWastedBits.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPWastedBits	cpWastedBits	= new CPWastedBits();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: BLOCK CONTINUITY
+
+
+	private class CPBlockContinuity
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPBlockContinuity()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.BLOCK_CONTINUITY));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isBlockContinuity()
+	{
+		return cpBlockContinuity.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setBlockContinuity(boolean value)
+	{
+		cpBlockContinuity.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPBlockContinuity	cpBlockContinuity	= new CPBlockContinuity();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: BACK REFERENCES
+
+
+	private class CPBackReferences
+		extends Property.BooleanProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPBackReferences()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.BACK_REFERENCES));
+			value = false;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public boolean isBackReferences()
+	{
+		return cpBackReferences.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setBackReferences(boolean value)
+	{
+		cpBackReferences.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPBackReferences	cpBackReferences	= new CPBackReferences();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: SIZE OF BACK-REFERENCE WINDOW
+
+
+	private class CPBackReferenceWindowSize
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPBackReferenceWindowSize()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.BACK_REFERENCE_WINDOW_SIZE),
+				  BackReference.MIN_WINDOW_SIZE, BackReference.MAX_WINDOW_SIZE);
+			value = BackReference.DEFAULT_WINDOW_SIZE;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getBackReferenceWindowSize()
+	{
+		return cpBackReferenceWindowSize.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setBackReferenceWindowSize(int value)
+	{
+		cpBackReferenceWindowSize.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPBackReferenceWindowSize	cpBackReferenceWindowSize	= new CPBackReferenceWindowSize();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: SIZE OF BACK-REFERENCE HASH TABLE
+
+
+	private class CPBackReferenceTableSize
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPBackReferenceTableSize()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.BACK_REFERENCE_TABLE_SIZE),
+				  BackReference.MIN_TABLE_SIZE, BackReference.MAX_TABLE_SIZE);
+			value = BackReference.DEFAULT_TABLE_SIZE;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getBackReferenceTableSize()
+	{
+		return cpBackReferenceTableSize.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setBackReferenceTableSize(int value)
+	{
+		cpBackReferenceTableSize.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPBackReferenceTableSize	cpBackReferenceTableSize	= new CPBackReferenceTableSize();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: COMPRESSION EFFORT
+
+
+	private class CPEffort
+		extends Property.EnumProperty<Effort>
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPEffort()
+		{
+			super(concatenateKeys(Key.COMPRESSION, Key.EFFORT), Effort.class);
+			value = Effort.DEFAULT;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public Effort getEffort()
+	{
+		return cpEffort.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setEffort(Effort value)
+	{
+		cpEffort.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPEffort	cpEffort	= new CPEffort();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: MAXIMUM NUMBER OF LINES OF LOG
+
+
+	private class CPLogMaxNumLines
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPLogMaxNumLines()
+		{
+			super(concatenateKeys(Key.LOG, Key.MAX_NUM_LINES), Log.MIN_MAX_NUM_LINES, Log.MAX_MAX_NUM_LINES);
+			value = Log.DEFAULT_MAX_NUM_LINES;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getLogMaxNumLines()
+	{
+		return cpLogMaxNumLines.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setLogMaxNumLines(int value)
+	{
+		cpLogMaxNumLines.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPLogMaxNumLines	cpLogMaxNumLines	= new CPLogMaxNumLines();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: PATHNAME OF LOG FILE
+
+
+	private class CPLogPathname
+		extends Property.StringProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPLogPathname()
+		{
+			super(concatenateKeys(Key.LOG, Key.FILE));
+			value = "";
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public String getLogPathname()
+	{
+		return cpLogPathname.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public File getLogFile()
+	{
+		String pathname = getLogPathname();
+		return pathname.isEmpty() ? null : new File(PathnameUtils.parsePathname(pathname));
+	}
+
+	//------------------------------------------------------------------
+
+	public void setLogPathname(String value)
+	{
+		cpLogPathname.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPLogPathname	cpLogPathname	= new CPLogPathname();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: MAXIMUM SIZE OF LOG FILE
+
+
+	private class CPLogMaxFileSize
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPLogMaxFileSize()
+		{
+			super(concatenateKeys(Key.LOG, Key.MAX_FILE_SIZE), Log.MIN_MAX_FILE_SIZE, Log.MAX_MAX_FILE_SIZE);
+			value = Log.DEFAULT_MAX_FILE_SIZE;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getLogMaxFileSize()
+	{
+		return cpLogMaxFileSize.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setLogMaxFileSize(int value)
+	{
+		cpLogMaxFileSize.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPLogMaxFileSize	cpLogMaxFileSize	= new CPLogMaxFileSize();
+
+	//==================================================================
+
+
+	// PROPERTY CLASS: NUMBER OF LOG FILES
+
+
+	private class CPLogNumFiles
+		extends Property.IntegerProperty
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private CPLogNumFiles()
+		{
+			super(concatenateKeys(Key.LOG, Key.NUM_FILES), Log.MIN_NUM_FILES, Log.MAX_NUM_FILES);
+			value = Log.DEFAULT_NUM_FILES;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance methods : associated methods in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	public int getLogNumFiles()
+	{
+		return cpLogNumFiles.getValue();
+	}
+
+	//------------------------------------------------------------------
+
+	public void setLogNumFiles(int value)
+	{
+		cpLogNumFiles.setValue(value);
+	}
+
+	//------------------------------------------------------------------
+
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+//  Instance variables : associated variables in enclosing class
+//::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+	private	CPLogNumFiles	cpLogNumFiles	= new CPLogNumFiles();
+
+	//==================================================================
+
+
 	// PROPERTY CLASS: PATHNAME OF COMPRESSION DIRECTORY
 
 
@@ -49,12 +49,16 @@ interface AppConstants
 	// Filename extensions
 	String	AIFF_FILENAME_EXTENSION1		= ".aif";
 	String	AIFF_FILENAME_EXTENSION2		= ".aiff";
+	String	AIFF_FILENAME_EXTENSION3		= ".aifc";
 	String	COMPRESSED_FILENAME_EXTENSION	= ".onda";
 	String	WAVE_FILENAME_EXTENSION1		= ".wav";
 	String	WAVE_FILENAME_EXTENSION2		= ".wave";
 	String	XML_FILENAME_EXTENSION			= ".xml";
 	String[]	AUDIO_FILENAME_EXTENSIONS	=
-			{ AIFF_FILENAME_EXTENSION1, AIFF_FILENAME_EXTENSION2, WAVE_FILENAME_EXTENSION1, WAVE_FILENAME_EXTENSION2 };
+			{
+				AIFF_FILENAME_EXTENSION1, AIFF_FILENAME_EXTENSION2, AIFF_FILENAME_EXTENSION3,
+				WAVE_FILENAME_EXTENSION1, WAVE_FILENAME_EXTENSION2
+			};
 
 	// Filters for file choosers
 	FilenameSuffixFilter AUDIO_FILE_FILTER		=
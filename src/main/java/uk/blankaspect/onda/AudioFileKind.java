@@ -50,7 +50,8 @@ enum AudioFileKind
 	AIFF
 	(
 		AudioFile.Kind.AIFF,
-		CriticalIds.AIFF
+		CriticalIds.AIFF,
+		false
 	)
 	{
 		@Override
@@ -63,7 +64,8 @@ enum AudioFileKind
 	WAVE
 	(
 		AudioFile.Kind.WAVE,
-		CriticalIds.WAVE
+		CriticalIds.WAVE,
+		true
 	)
 	{
 		@Override
@@ -94,10 +96,12 @@ enum AudioFileKind
 ////////////////////////////////////////////////////////////////////////
 
 	private AudioFileKind(AudioFile.Kind fileKind,
-						  IffId[]        criticalIds)
+						  IffId[]        criticalIds,
+						  boolean        floatingPoint)
 	{
 		this.fileKind = fileKind;
 		this.criticalIds = criticalIds;
+		this.floatingPoint = floatingPoint;
 	}
 
 	//------------------------------------------------------------------
@@ -182,6 +186,33 @@ enum AudioFileKind
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Returns the ID of the chunk that describes the format of the sample data, which is the first of the critical
+	 * chunks.
+	 *
+	 * @return the ID of the format chunk.
+	 */
+
+	public IffId getFormatId()
+	{
+		return criticalIds[0];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if a file of this kind may contain floating-point sample data.
+	 *
+	 * @return {@code true} if a file of this kind may contain floating-point sample data.
+	 */
+
+	public boolean isFloatingPointSupported()
+	{
+		return floatingPoint;
+	}
+
+	//------------------------------------------------------------------
+
 	public AudioFile createFile(File file)
 	{
 		return fileKind.createFile(file);
@@ -205,6 +236,7 @@ enum AudioFileKind
 
 	private	AudioFile.Kind	fileKind;
 	private	IffId[]			criticalIds;
+	private	boolean			floatingPoint;
 
 }
 
@@ -0,0 +1,387 @@
+/*====================================================================*\
+
+BackReference.java
+
+Back reference to earlier sample data class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.util.Arrays;
+
+//----------------------------------------------------------------------
+
+
+// BACK REFERENCE TO EARLIER SAMPLE DATA CLASS
+
+
+/**
+ * This class provides the constants and the operations on the <i>reference window</i> of the sample data of a file of
+ * version 9, in which a segment may be encoded as a <i>back reference</i> to an identical run of earlier sample frames.
+ * The reference window is a circular buffer of the most recent sample frames, whose length is a power of two.
+ * <p>
+ * The first segment of the sample data of a file of version 9 begins with the binary logarithm of the length of the
+ * reference window, or zero if back references are disabled.  If back references are enabled, each segment begins with
+ * a flag that denotes whether it is a back reference, which is followed by the distance (in sample frames) from the
+ * start of the referenced frames to the start of the segment, less one.  The referenced frames may overlap the segment,
+ * in which case they are copied frame by frame, so that a segment may repeat a shorter run of frames.
+ * </p>
+ * <p>
+ * The encoder finds candidate references with a hash table of <i>anchors</i>: the hash of each run of {@link
+ * #ANCHOR_LENGTH} frames that starts at a multiple of {@link #ANCHOR_INTERVAL} frames is mapped to the position of the
+ * run.  The runs that start at each of the first {@link #ANCHOR_INTERVAL} frames of a segment are looked up in the
+ * table, and a candidate is accepted only if the referenced frames are identical to the frames of the segment.
+ * </p>
+ */
+
+class BackReference
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The length (in bits) of the binary logarithm of the length of the reference window. */
+	public static final	int	WINDOW_ORDER_LENGTH	= 5;
+
+	/** The maximum binary logarithm of the length of the reference window. */
+	public static final	int	MAX_WINDOW_ORDER	= 30;
+
+	/** The number of sample frames in an anchor. */
+	public static final	int	ANCHOR_LENGTH	= 16;
+
+	/** The interval (in sample frames) between the start positions of the anchors that are added to the hash table. */
+	public static final	int	ANCHOR_INTERVAL	= 16;
+
+	/** The minimum size (in MiB) of the reference window. */
+	public static final	int	MIN_WINDOW_SIZE		= 1;
+
+	/** The maximum size (in MiB) of the reference window. */
+	public static final	int	MAX_WINDOW_SIZE		= 1024;
+
+	/** The default size (in MiB) of the reference window. */
+	public static final	int	DEFAULT_WINDOW_SIZE	= 16;
+
+	/** The minimum size (in MiB) of the hash table of anchors. */
+	public static final	int	MIN_TABLE_SIZE		= 1;
+
+	/** The maximum size (in MiB) of the hash table of anchors. */
+	public static final	int	MAX_TABLE_SIZE		= 256;
+
+	/** The default size (in MiB) of the hash table of anchors. */
+	public static final	int	DEFAULT_TABLE_SIZE	= 1;
+
+	/** The minimum number of sample frames in a reference window whose capacity is increased. */
+	private static final	int	MIN_WINDOW_CAPACITY	= 1 << 12;
+
+	/** The multiplier of the hash of an anchor. */
+	private static final	long	HASH_MULTIPLIER	= 0x9E3779B97F4A7C15L;
+
+	/** The size (in bytes) of a mebibyte. */
+	private static final	int	MEBIBYTE	= 1 << 20;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private BackReference()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the binary logarithm of the length of the largest reference window whose sample values do not exceed the
+	 * specified size.
+	 *
+	 * @param  windowSize
+	 *           the maximum size (in MiB) of the reference window.
+	 * @param  numChannels
+	 *           the number of channels in the sample data.
+	 * @return the binary logarithm of the length (in sample frames) of the reference window, from 0 to {@link
+	 *         #MAX_WINDOW_ORDER} inclusive, or 0 if a window of the specified size cannot hold two sample frames.
+	 */
+
+	public static int getWindowOrder(
+		int	windowSize,
+		int	numChannels)
+	{
+		long numFrames = (long)windowSize * MEBIBYTE / (Integer.BYTES * numChannels);
+		return (numFrames < 2) ? 0 : Math.min(63 - Long.numberOfLeadingZeros(numFrames), MAX_WINDOW_ORDER);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the binary logarithm of the number of entries of the largest hash table of anchors whose entries do not
+	 * exceed the specified size.
+	 *
+	 * @param  tableSize
+	 *           the maximum size (in MiB) of the hash table.
+	 * @return the binary logarithm of the number of entries of the hash table.
+	 */
+
+	public static int getTableOrder(
+		int	tableSize)
+	{
+		return 63 - Long.numberOfLeadingZeros((long)tableSize * MEBIBYTE / Integer.BYTES);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the hash of the anchor that starts at the specified sample frame of an array of interleaved sample
+	 * values.  The frames of the anchor are found by masking their indices, so that the array may be a reference
+	 * window.
+	 *
+	 * @param  values
+	 *           the interleaved sample values.
+	 * @param  offset
+	 *           the offset in {@code values} of the sample frame whose index is zero.
+	 * @param  frameIndex
+	 *           the index of the first sample frame of the anchor.
+	 * @param  frameMask
+	 *           the mask that is applied to the index of each sample frame of the anchor: the capacity (in sample
+	 *           frames) of a reference window less one, or -1 for a linear array.
+	 * @param  numChannels
+	 *           the number of channels in the sample data.
+	 * @return the hash of the anchor.
+	 */
+
+	public static long getAnchorHash(
+		int[]	values,
+		int		offset,
+		long	frameIndex,
+		int		frameMask,
+		int		numChannels)
+	{
+		long hash = 0;
+		for (int i = 0; i < ANCHOR_LENGTH; i++)
+		{
+			int index = offset + (int)(frameIndex + i & frameMask) * numChannels;
+			for (int j = 0; j < numChannels; j++)
+				hash = (hash + values[index + j]) * HASH_MULTIPLIER;
+		}
+		return hash;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the entry of a hash table of anchors that corresponds to the specified hash.  The index is
+	 * taken from the high-order bits of the hash, which depend on every sample value of the anchor.
+	 *
+	 * @param  hash
+	 *           the hash of an anchor.
+	 * @param  tableOrder
+	 *           the binary logarithm of the number of entries of the hash table.
+	 * @return the index of the entry of the hash table that corresponds to {@code hash}.
+	 */
+
+	public static int getTableIndex(
+		long	hash,
+		int		tableOrder)
+	{
+		return (int)(hash >>> 64 - tableOrder);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns a reference window whose capacity is large enough for the specified number of sample frames, up to the
+	 * length of the window.  The capacity of a window is increased by powers of two as sample frames are added to it,
+	 * so that the window is not allocated in full for short sample data.  Until the capacity reaches the length of the
+	 * window, the window does not wrap around, and its sample frames are copied to the new window at the same indices.
+	 *
+	 * @param  window
+	 *           the reference window, which may be {@code null}.
+	 * @param  numFrames
+	 *           the number of sample frames that will have been added to the window.
+	 * @param  windowOrder
+	 *           the binary logarithm of the length of the window.
+	 * @param  numChannels
+	 *           the number of channels in the sample data.
+	 * @return {@code window}, if its capacity is large enough, or a new window that contains the sample values of
+	 *         {@code window}.
+	 */
+
+	public static int[] ensureCapacity(
+		int[]	window,
+		long	numFrames,
+		int		windowOrder,
+		int		numChannels)
+	{
+		int capacity = (window == null) ? 0 : window.length / numChannels;
+		long required = Math.min(numFrames, 1L << windowOrder);
+		if (capacity < required)
+		{
+			int newCapacity = Math.max(MIN_WINDOW_CAPACITY, Integer.highestOneBit((int)required - 1) << 1);
+			newCapacity = Math.min(newCapacity, 1 << windowOrder);
+			window = (window == null) ? new int[newCapacity * numChannels]
+									  : Arrays.copyOf(window, newCapacity * numChannels);
+		}
+		return window;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Copies the specified sample frames to a reference window.
+	 *
+	 * @param window
+	 *          the reference window, whose capacity must be large enough for the sample frames.
+	 * @param position
+	 *          the index of the first of the sample frames in the sample data.
+	 * @param data
+	 *          the interleaved sample values that will be copied.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numFrames
+	 *          the number of sample frames that will be copied.
+	 * @param numChannels
+	 *          the number of channels in the sample data.
+	 */
+
+	public static void append(
+		int[]	window,
+		long	position,
+		int[]	data,
+		int		offset,
+		int		numFrames,
+		int		numChannels)
+	{
+		int capacity = window.length / numChannels;
+		if (numFrames > capacity)
+		{
+			offset += (numFrames - capacity) * numChannels;
+			position += numFrames - capacity;
+			numFrames = capacity;
+		}
+		int index = (int)(position & capacity - 1);
+		int length = Math.min(numFrames, capacity - index);
+		System.arraycopy(data, offset, window, index * numChannels, length * numChannels);
+		System.arraycopy(data, offset + length * numChannels, window, 0, (numFrames - length) * numChannels);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Copies the sample frames that are referenced by a segment from a reference window.  The referenced frames that
+	 * overlap the segment are copied from the segment itself in runs that are no longer than the distance of the
+	 * reference.
+	 *
+	 * @param window
+	 *          the reference window, which must contain the sample frames that precede the segment.
+	 * @param position
+	 *          the index of the first sample frame of the segment in the sample data.
+	 * @param distance
+	 *          the distance (in sample frames) from the start of the referenced frames to the start of the segment.
+	 * @param data
+	 *          the array in which the sample values of the segment will be stored.
+	 * @param offset
+	 *          the start offset of the sample values of the segment in {@code data}.
+	 * @param numFrames
+	 *          the number of sample frames in the segment.
+	 * @param numChannels
+	 *          the number of channels in the sample data.
+	 */
+
+	public static void copy(
+		int[]	window,
+		long	position,
+		int		distance,
+		int[]	data,
+		int		offset,
+		int		numFrames,
+		int		numChannels)
+	{
+		// Copy frames that precede segment from window
+		int capacity = window.length / numChannels;
+		int numWindowFrames = Math.min(distance, numFrames);
+		int index = (int)(position - distance & capacity - 1);
+		int length = Math.min(numWindowFrames, capacity - index);
+		System.arraycopy(window, index * numChannels, data, offset, length * numChannels);
+		System.arraycopy(window, 0, data, offset + length * numChannels, (numWindowFrames - length) * numChannels);
+
+		// Copy frames that overlap segment from segment
+		for (int i = distance; i < numFrames; i += distance)
+		{
+			System.arraycopy(data, offset + (i - distance) * numChannels, data, offset + i * numChannels,
+							 Math.min(distance, numFrames - i) * numChannels);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the sample frames of a segment are identical to the frames at the specified distance
+	 * before them.
+	 *
+	 * @param  window
+	 *           the reference window, which must contain the sample frames that precede the segment.
+	 * @param  position
+	 *           the index of the first sample frame of the segment in the sample data.
+	 * @param  distance
+	 *           the distance (in sample frames) from the start of the referenced frames to the start of the segment.
+	 * @param  data
+	 *           the interleaved sample values of the segment.
+	 * @param  offset
+	 *           the start offset of the sample values of the segment in {@code data}.
+	 * @param  numFrames
+	 *           the number of sample frames in the segment.
+	 * @param  numChannels
+	 *           the number of channels in the sample data.
+	 * @return {@code true} if the segment is identical to the frames at {@code distance} before it.
+	 */
+
+	public static boolean matches(
+		int[]	window,
+		long	position,
+		int		distance,
+		int[]	data,
+		int		offset,
+		int		numFrames,
+		int		numChannels)
+	{
+		// Compare frames that precede segment in window
+		int capacity = window.length / numChannels;
+		int numWindowFrames = Math.min(distance, numFrames);
+		int index = (int)(position - distance & capacity - 1);
+		int length = Math.min(numWindowFrames, capacity - index) * numChannels;
+		if (!Arrays.equals(window, index * numChannels, index * numChannels + length, data, offset, offset + length))
+			return false;
+		int endOffset = offset + numWindowFrames * numChannels;
+		if (!Arrays.equals(window, 0, endOffset - offset - length, data, offset + length, endOffset))
+			return false;
+
+		// Compare frames that overlap segment
+		int shift = distance * numChannels;
+		endOffset = offset + numFrames * numChannels;
+		return (distance >= numFrames)
+				|| Arrays.equals(data, offset, endOffset - shift, data, offset + shift, endOffset);
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
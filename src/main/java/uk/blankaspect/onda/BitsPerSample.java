@@ -25,18 +25,21 @@ enum BitsPerSample
 //  Constants
 ////////////////////////////////////////////////////////////////////////
 
-	_16 (16, 4),
-	_24 (24, 5);
+	_16       (16, 4, false),
+	_24       (24, 5, false),
+	_32_FLOAT (32, 5, true);
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
 ////////////////////////////////////////////////////////////////////////
 
-	private BitsPerSample(int numBits,
-						  int keyLength)
+	private BitsPerSample(int     numBits,
+						  int     keyLength,
+						  boolean floatingPoint)
 	{
 		this.numBits = numBits;
 		this.keyLength = keyLength;
+		this.floatingPoint = floatingPoint;
 	}
 
 	//------------------------------------------------------------------
@@ -45,11 +48,12 @@ enum BitsPerSample
 //  Class methods
 ////////////////////////////////////////////////////////////////////////
 
-	public static BitsPerSample forNumBits(int numBits)
+	public static BitsPerSample forNumBits(int     numBits,
+										   boolean floatingPoint)
 	{
 		for (BitsPerSample value : values())
 		{
-			if (value.numBits == numBits)
+			if ((value.numBits == numBits) && (value.floatingPoint == floatingPoint))
 				return value;
 		}
 		return null;
@@ -94,12 +98,20 @@ enum BitsPerSample
 
 	//------------------------------------------------------------------
 
+	public boolean isFloatingPoint()
+	{
+		return floatingPoint;
+	}
+
+	//------------------------------------------------------------------
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	int	numBits;
-	private	int	keyLength;
+	private	int		numBits;
+	private	int		keyLength;
+	private	boolean	floatingPoint;
 
 }
 
@@ -0,0 +1,312 @@
+/*====================================================================*\
+
+ChannelDecorrelation.java
+
+Channel decorrelation enumeration.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// CHANNEL DECORRELATION ENUMERATION
+
+
+/**
+ * This is an enumeration of the ways in which a pair of adjacent channels of a block of sample data may be
+ * transformed before it is encoded, so that the correlation between the channels can be exploited.  Each constant
+ * transforms the left and right sample values (<i>L</i>, <i>R</i>) of a sample frame into a pair of values from which
+ * they can be restored, where the side value <i>S</i> is <i>L</i> &minus; <i>R</i> and the mid value <i>M</i> is
+ * (<i>L</i> + <i>R</i>) &gt;&gt; 1.
+ * <p>
+ * A side value needs one more bit than a sample value.  The mid value discards the low-order bit of <i>L</i> +
+ * <i>R</i>, which is restored from the low-order bit of <i>S</i>.  The inverse transforms use only addition,
+ * subtraction and shifts, so they restore the low-order bits of the sample values correctly even if the decoded values
+ * are correct only modulo 2<sup><i>n</i></sup>, where <i>n</i> is the encoded length of a value.
+ * </p>
+ */
+
+enum ChannelDecorrelation
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The channels are encoded as (<i>L</i>, <i>R</i>), as they are in blocks without decorrelation.
+	 */
+	LEFT_RIGHT
+	(Source.LEFT, Source.RIGHT),
+
+	/**
+	 * The channels are encoded as (<i>L</i>, <i>S</i>).
+	 */
+	LEFT_SIDE
+	(Source.LEFT, Source.SIDE),
+
+	/**
+	 * The channels are encoded as (<i>S</i>, <i>R</i>).
+	 */
+	SIDE_RIGHT
+	(Source.SIDE, Source.RIGHT),
+
+	/**
+	 * The channels are encoded as (<i>M</i>, <i>S</i>).
+	 */
+	MID_SIDE
+	(Source.MID, Source.SIDE);
+
+	/** The length (in bits) of the code of a decorrelation in a block. */
+	public static final	int	CODE_LENGTH	= 2;
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// SOURCES OF ENCODED VALUES
+
+
+	/**
+	 * This is an enumeration of the values from which an encoded channel of a pair may be derived.
+	 */
+
+	enum Source
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		LEFT,
+		RIGHT,
+		SIDE,
+		MID;
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Returns the length (in bits) of a value of this source.
+		 *
+		 * @param  sampleLength
+		 *           the length (in bits) of a sample value.
+		 * @return the length (in bits) of a value of this source.
+		 */
+
+		public int getValueLength(
+			int	sampleLength)
+		{
+			return (this == SIDE) ? sampleLength + 1 : sampleLength;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private ChannelDecorrelation(
+		Source	source0,
+		Source	source1)
+	{
+		this.source0 = source0;
+		this.source1 = source1;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the decorrelation that has the specified code.
+	 *
+	 * @param  code
+	 *           the code of the decorrelation, which must be between 0 and 3 inclusive.
+	 * @return the decorrelation whose code is {@code code}.
+	 */
+
+	public static ChannelDecorrelation forCode(
+		int	code)
+	{
+		return values()[code];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the code of this decorrelation in a block.
+	 *
+	 * @return the code of this decorrelation in a block.
+	 */
+
+	public int getCode()
+	{
+		return ordinal();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the source of the values of the specified encoded channel of a pair.
+	 *
+	 * @param  index
+	 *           the index of the encoded channel within the pair: 0 or 1.
+	 * @return the source of the values of the encoded channel whose index is {@code index}.
+	 */
+
+	public Source getSource(
+		int	index)
+	{
+		return (index == 0) ? source0 : source1;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Transforms the sample values of a pair of adjacent channels of a block of interleaved sample data, and stores the
+	 * encoded values at the corresponding positions of another array.
+	 *
+	 * @param src
+	 *          the interleaved sample values.
+	 * @param srcOffset
+	 *          the offset to the left sample value of the first sample frame in {@code src}.
+	 * @param dest
+	 *          the array in which the encoded values will be stored.
+	 * @param destOffset
+	 *          the offset in {@code dest} at which the first encoded value will be stored.
+	 * @param numSampleFrames
+	 *          the number of sample frames.
+	 * @param numChannels
+	 *          the number of channels, which is the distance between the sample frames of the arrays.
+	 */
+
+	public void transform(
+		int[]	src,
+		int		srcOffset,
+		int[]	dest,
+		int		destOffset,
+		int		numSampleFrames,
+		int		numChannels)
+	{
+		int endOffset = srcOffset + numSampleFrames * numChannels;
+		switch (this)
+		{
+			case LEFT_RIGHT:
+				for (int i = srcOffset, j = destOffset; i < endOffset; i += numChannels, j += numChannels)
+				{
+					dest[j] = src[i];
+					dest[j + 1] = src[i + 1];
+				}
+				break;
+
+			case LEFT_SIDE:
+				for (int i = srcOffset, j = destOffset; i < endOffset; i += numChannels, j += numChannels)
+				{
+					int left = src[i];
+					dest[j] = left;
+					dest[j + 1] = left - src[i + 1];
+				}
+				break;
+
+			case SIDE_RIGHT:
+				for (int i = srcOffset, j = destOffset; i < endOffset; i += numChannels, j += numChannels)
+				{
+					int right = src[i + 1];
+					dest[j] = src[i] - right;
+					dest[j + 1] = right;
+				}
+				break;
+
+			case MID_SIDE:
+				for (int i = srcOffset, j = destOffset; i < endOffset; i += numChannels, j += numChannels)
+				{
+					int left = src[i];
+					int right = src[i + 1];
+					dest[j] = left + right >> 1;
+					dest[j + 1] = left - right;
+				}
+				break;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Restores in place the sample values of a pair of adjacent channels of a block of interleaved data from the
+	 * decoded values of the pair.
+	 *
+	 * @param data
+	 *          the interleaved decoded values, which will be replaced by the sample values.
+	 * @param offset
+	 *          the offset to the first decoded value of the first sample frame in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames.
+	 * @param numChannels
+	 *          the number of channels, which is the distance between the sample frames of {@code data}.
+	 */
+
+	public void restore(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames,
+		int		numChannels)
+	{
+		int endOffset = offset + numSampleFrames * numChannels;
+		switch (this)
+		{
+			case LEFT_RIGHT:
+				break;
+
+			case LEFT_SIDE:
+				for (int i = offset; i < endOffset; i += numChannels)
+					data[i + 1] = data[i] - data[i + 1];
+				break;
+
+			case SIDE_RIGHT:
+				for (int i = offset; i < endOffset; i += numChannels)
+					data[i] += data[i + 1];
+				break;
+
+			case MID_SIDE:
+				for (int i = offset; i < endOffset; i += numChannels)
+				{
+					int side = data[i + 1];
+					int mid = data[i] << 1 | side & 1;
+					data[i] = mid + side >> 1;
+					data[i + 1] = mid - side >> 1;
+				}
+				break;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	Source	source0;
+	private	Source	source1;
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,277 @@
+/*====================================================================*\
+
+ChannelDecorrelator.java
+
+Channel decorrelator class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// CHANNEL DECORRELATOR CLASS
+
+
+/**
+ * This class selects the {@linkplain ChannelDecorrelation decorrelation} of a pair of adjacent channels of a block of
+ * sample data.  The left, right, side and mid values of the pair are derived from its sample values, and the
+ * decorrelation whose transformed channels have the smallest encoded length, according to the {@linkplain
+ * EncodingCost cost model} of the encoder, is selected.
+ * <p>
+ * A decorrelator has its own buffers, so different decorrelators may be used concurrently for different pairs of
+ * channels.
+ * </p>
+ */
+
+class ChannelDecorrelator
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of a decorrelator for blocks of the specified length.
+	 *
+	 * @param numChannels
+	 *          the number of channels in a block.
+	 * @param sampleLength
+	 *          the length (in bits) of a sample value.
+	 * @param keyLength
+	 *          the length (in bits) of an encoding key.
+	 * @param numSampleFrames
+	 *          the maximum number of sample frames in a block.
+	 */
+
+	public ChannelDecorrelator(
+		int	numChannels,
+		int	sampleLength,
+		int	keyLength,
+		int	numSampleFrames)
+	{
+		// Initialise instance variables
+		this.numChannels = numChannels;
+		this.sampleLength = sampleLength;
+		this.keyLength = keyLength;
+		int numSources = ChannelDecorrelation.Source.values().length;
+		sourceEpsilons = new int[numSources][numSampleFrames];
+		sourceBitLengthCounts = new int[numSources][Integer.SIZE + 1];
+		sourceFirstBitLengths = new int[numSources];
+		excessCounts = new int[sampleLength + 1];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns {@code true} if either channel of the pair whose decorrelation was last selected is constant.
+	 *
+	 * @return {@code true} if either channel of the last pair is constant, in which case the pair was left
+	 *         untransformed and no histograms of its sources were made.
+	 */
+
+	public boolean hasConstantChannel()
+	{
+		return constantChannel;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Selects the decorrelation of a pair of adjacent channels of a block.
+	 * <p>
+	 * If the removal of wasted bits is enabled and the pair of channels has wasted bits, the sources are derived from
+	 * the shifted sample values.  If constant channels are enabled and either channel is constant, the pair is left
+	 * untransformed: a constant channel is encoded as a single value, and the other channel is no larger than any
+	 * transform of the pair.
+	 * </p>
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @param  channel
+	 *           the index of the first channel of the pair.
+	 * @param  wastedBits
+	 *           if {@code true}, the wasted bits of the pair will be removed.
+	 * @param  constantChannels
+	 *           if {@code true}, a pair with a constant channel will be left untransformed.
+	 * @return the decorrelation of the pair.
+	 */
+
+	public ChannelDecorrelation select(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames,
+		int		channel,
+		boolean	wastedBits,
+		boolean	constantChannels)
+	{
+		// De-interleave sample values of pair of channels, and derive side and mid values from them
+		this.channel = channel;
+		int[] left = sourceEpsilons[ChannelDecorrelation.Source.LEFT.ordinal()];
+		int[] right = sourceEpsilons[ChannelDecorrelation.Source.RIGHT.ordinal()];
+		int[] side = sourceEpsilons[ChannelDecorrelation.Source.SIDE.ordinal()];
+		int[] mid = sourceEpsilons[ChannelDecorrelation.Source.MID.ordinal()];
+		int bits = 0;
+		for (int i = 0, j = offset + channel; i < numSampleFrames; i++, j += numChannels)
+		{
+			int leftValue = data[j];
+			int rightValue = data[j + 1];
+			left[i] = leftValue;
+			right[i] = rightValue;
+			side[i] = leftValue - rightValue;
+			mid[i] = leftValue + rightValue >> 1;
+			bits |= leftValue | rightValue;
+		}
+
+		// If removal of wasted bits is enabled and the pair of channels has wasted bits, derive the sources from the
+		// shifted sample values.  The mid values keep one fewer wasted bit than the others, so the shifted mid value is
+		// the sum of the shifted sample values, which is not halved.
+		int shift = wastedBits ? WastedBits.getShift(bits, sampleLength) : 0;
+		if (shift > 0)
+		{
+			for (int i = 0; i < numSampleFrames; i++)
+			{
+				int leftValue = left[i] >> shift;
+				int rightValue = right[i] >> shift;
+				left[i] = leftValue;
+				right[i] = rightValue;
+				side[i] = leftValue - rightValue;
+				mid[i] = leftValue + rightValue;
+			}
+		}
+
+		// If constant channels are enabled and either channel is constant, leave the pair untransformed
+		constantChannel = constantChannels && (EncodingCost.isConstant(left, 0, numSampleFrames)
+												|| EncodingCost.isConstant(right, 0, numSampleFrames));
+		if (constantChannel)
+		{
+			decorrelation = ChannelDecorrelation.LEFT_RIGHT;
+			return decorrelation;
+		}
+
+		// Compute second-order differences of each source, and make histogram of their bit lengths.  The first
+		// difference is counted separately because it is excluded from the excess counts of the first channel of the
+		// block.
+		for (int i = 0; i < sourceEpsilons.length; i++)
+		{
+			int[] epsilons = sourceEpsilons[i];
+			EncodingCost.computeEpsilons(epsilons, numSampleFrames);
+			EncodingCost.countBitLengths(epsilons, 1, numSampleFrames, sourceBitLengthCounts[i]);
+			sourceFirstBitLengths[i] = (numSampleFrames > 0) ? EncodingCost.getBitLength(epsilons[0]) : -1;
+		}
+
+		// Select the decorrelation whose transformed channels have the smallest encoded length
+		decorrelation = null;
+		long minOutputLength = Long.MAX_VALUE;
+		for (ChannelDecorrelation candidate : ChannelDecorrelation.values())
+		{
+			long outputLength = 0;
+			for (int i = 0; i < 2; i++)
+			{
+				ChannelDecorrelation.Source source = candidate.getSource(i);
+				int valueLength = source.getValueLength(sampleLength);
+				setSourceExcessCounts(source, channel + i, valueLength, excessCounts);
+				int length =
+						EncodingCost.getOptimumEncodingLength(excessCounts, valueLength, keyLength, numSampleFrames);
+				outputLength += EncodingCost.getOutputLength(excessCounts, valueLength, numSampleFrames, length);
+			}
+			if (minOutputLength > outputLength)
+			{
+				minOutputLength = outputLength;
+				decorrelation = candidate;
+			}
+		}
+		return decorrelation;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the excess counts of a transformed channel of the pair whose decorrelation was last selected.  This method
+	 * must not be called if {@link #hasConstantChannel()} returns {@code true}.
+	 *
+	 * @param index
+	 *          the index of the transformed channel within the pair: 0 or 1.
+	 * @param excessCounts
+	 *          the array in which the excess counts will be stored.
+	 */
+
+	public void setExcessCounts(
+		int		index,
+		int[]	excessCounts)
+	{
+		ChannelDecorrelation.Source source = decorrelation.getSource(index);
+		setSourceExcessCounts(source, channel + index, source.getValueLength(sampleLength), excessCounts);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the excess counts of a channel of a block from the histogram of the bit lengths of the second-order
+	 * differences of a source of a pair of channels.
+	 *
+	 * @param source
+	 *          the source of the values of the channel.
+	 * @param channel
+	 *          the index of the channel.
+	 * @param valueLength
+	 *          the length (in bits) of a full value of the source.
+	 * @param excessCounts
+	 *          the array in which the excess counts will be stored.
+	 */
+
+	private void setSourceExcessCounts(
+		ChannelDecorrelation.Source	source,
+		int							channel,
+		int							valueLength,
+		int[]						excessCounts)
+	{
+		// Include first difference in histogram, unless the source is the first channel of the block
+		int index = source.ordinal();
+		int[] counts = sourceBitLengthCounts[index];
+		int firstBitLength = sourceFirstBitLengths[index];
+		boolean includeFirst = (channel > 0) && (firstBitLength >= 0);
+		if (includeFirst)
+			++counts[firstBitLength];
+
+		// Set excess counts
+		EncodingCost.setExcessCounts(counts, valueLength, keyLength, excessCounts);
+
+		// Restore histogram
+		if (includeFirst)
+			--counts[firstBitLength];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	int						numChannels;
+	private	int						sampleLength;
+	private	int						keyLength;
+	private	int[][]					sourceEpsilons;
+	private	int[][]					sourceBitLengthCounts;
+	private	int[]					sourceFirstBitLengths;
+	private	int[]					excessCounts;
+	private	int						channel;
+	private	ChannelDecorrelation	decorrelation;
+	private	boolean					constantChannel;
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,155 @@
+/*====================================================================*\
+
+Effort.java
+
+Compression effort enumeration.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.util.Arrays;
+
+import uk.blankaspect.common.misc.IStringKeyed;
+
+//----------------------------------------------------------------------
+
+
+// COMPRESSION EFFORT ENUMERATION
+
+
+/**
+ * This is an enumeration of the levels of effort with which a file may be compressed.  The level determines how the
+ * encoding parameters of a file are chosen, and so trades the speed of compression and expansion against the size of
+ * the compressed file.
+ */
+
+enum Effort
+	implements IStringKeyed
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The file is written in the earliest version of the file format, whose sample data are encoded and decoded most
+	 * quickly, with the key length and block length of the configuration.
+	 */
+	FAST
+	(
+		"fast",
+		"Fast"
+	),
+
+	/**
+	 * The file is written in the version of the file format that is determined by the compression options of the
+	 * configuration, with the key length and block length of the configuration.
+	 */
+	DEFAULT
+	(
+		"default",
+		"Default"
+	),
+
+	/**
+	 * The file is written in the version of the file format that is determined by the compression options of the
+	 * configuration.  The key length and block length are those that give the shortest encoding of a sample of the
+	 * sample data of the file.
+	 */
+	MAX
+	(
+		"max",
+		"Maximum"
+	);
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	/** The key that is associated with this level of effort. */
+	private	String	key;
+
+	/** The text that is associated with this level of effort. */
+	private	String	text;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of an enumeration constant for a level of compression effort.
+	 *
+	 * @param key
+	 *          the key that will be associated with the level of effort.
+	 * @param text
+	 *          the text that will be associated with the level of effort.
+	 */
+
+	private Effort(
+		String	key,
+		String	text)
+	{
+		this.key = key;
+		this.text = text;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the level of effort that is associated with the specified key.
+	 *
+	 * @param  key
+	 *           the key whose associated level of effort is required.
+	 * @return the level of effort that is associated with {@code key}, or {@code null} if there is no such level.
+	 */
+
+	public static Effort forKey(
+		String	key)
+	{
+		return Arrays.stream(values()).filter(value -> value.key.equals(key)).findFirst().orElse(null);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : IStringKeyed interface
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public String getKey()
+	{
+		return key;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : overriding methods
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public String toString()
+	{
+		return text;
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,300 @@
+/*====================================================================*\
+
+EncodingAnalyser.java
+
+Encoding analyser class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import uk.blankaspect.common.bytedata.IByteDataOutputStream;
+
+import uk.blankaspect.common.exception.AppException;
+
+import uk.blankaspect.common.exception2.UnexpectedRuntimeException;
+
+//----------------------------------------------------------------------
+
+
+// ENCODING ANALYSER CLASS
+
+
+/**
+ * This class chooses the key length and block length with which the sample data of a file are encoded.  The sample
+ * data are written to the analyser as they are read from the input file, and the analyser retains a sample of them
+ * that consists of windows of sample frames spaced evenly through the file.  The sample is then encoded with each
+ * candidate block length and each key length, and the parameters that give the shortest encoding are chosen.
+ * <p>
+ * The block length is chosen first, with the default key length; the key length is then chosen with that block
+ * length.  The length of a window is a multiple of each of the candidate block lengths, so that the windows of a long
+ * file are encoded as whole blocks.
+ * </p>
+ */
+
+class EncodingAnalyser
+	implements IByteDataOutputStream
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The number of sample frames in a window of the sample. */
+	private static final	int		WINDOW_LENGTH	= 1 << 14;
+
+	/** The maximum number of windows in the sample. */
+	private static final	int		MAX_NUM_WINDOWS	= 8;
+
+	/** The candidate block lengths of the configuration. */
+	private static final	int[]	BLOCK_LENGTHS	= { 128, 256, 512, 1024, 2048, 4096 };
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	int						numChannels;
+	private	BitsPerSample			bitsPerSample;
+	private	long[]					windowOffsets;
+	private	byte[][]				windows;
+	private	int						windowIndex;
+	private	int						windowDataLength;
+	private	long					inOffset;
+	private	OndaFile.EncoderOptions	encoderOptions;
+	private	int						keyLength;
+	private	int						blockLength;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of an encoding analyser for the sample data of a file.
+	 *
+	 * @param numChannels
+	 *          the number of channels in the sample data.
+	 * @param bitsPerSample
+	 *          the number of bits per sample of the sample data.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the sample data.
+	 */
+
+	public EncodingAnalyser(
+		int				numChannels,
+		BitsPerSample	bitsPerSample,
+		long			numSampleFrames)
+	{
+		// Initialise instance variables
+		this.numChannels = numChannels;
+		this.bitsPerSample = bitsPerSample;
+
+		// Divide sample data into windows: a short file is a single window; the windows of a longer file start at the
+		// beginning of equal parts of the file
+		int bytesPerSampleFrame = bitsPerSample.getBytesPerSample() * numChannels;
+		int numWindows = MAX_NUM_WINDOWS;
+		int windowLength = WINDOW_LENGTH;
+		if (numSampleFrames <= (long)MAX_NUM_WINDOWS * WINDOW_LENGTH)
+		{
+			numWindows = 1;
+			windowLength = (int)numSampleFrames;
+		}
+		windowOffsets = new long[numWindows];
+		windows = new byte[numWindows][windowLength * bytesPerSampleFrame];
+		for (int i = 0; i < numWindows; i++)
+			windowOffsets[i] = numSampleFrames / numWindows * i * bytesPerSampleFrame;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : IByteDataOutputStream interface
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public void write(
+		byte[]	buffer,
+		int		offset,
+		int		length)
+		throws AppException
+	{
+		// Test whether the task has been cancelled
+		Task.throwIfCancelled();
+
+		// Copy the part of the sample data that lies within windows
+		long endOffset = inOffset + length;
+		while (windowIndex < windows.length)
+		{
+			byte[] window = windows[windowIndex];
+			long copyOffset = windowOffsets[windowIndex] + windowDataLength;
+			if (copyOffset >= endOffset)
+				break;
+			int copyLength = (int)Math.min(endOffset - copyOffset, window.length - windowDataLength);
+			System.arraycopy(buffer, offset + (int)(copyOffset - inOffset), window, windowDataLength, copyLength);
+			windowDataLength += copyLength;
+			if (windowDataLength < window.length)
+				break;
+			++windowIndex;
+			windowDataLength = 0;
+		}
+		inOffset = endOffset;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the key length that was chosen by the last call to {@link #analyse(int, int, int, boolean)}.
+	 *
+	 * @return the key length that gave the shortest encoding of the sample.
+	 */
+
+	public int getKeyLength()
+	{
+		return keyLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the block length that was chosen by the last call to {@link #analyse(int, int, int, boolean)}.  If the
+	 * sample was encoded with variable block length, the block length is the length of a segment.
+	 *
+	 * @return the block length that gave the shortest encoding of the sample.
+	 */
+
+	public int getBlockLength()
+	{
+		return blockLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes the sample with each candidate block length and key length, and chooses the parameters that give the
+	 * shortest encoding.  The default key length and the block length of the configuration are chosen unless other
+	 * parameters give a shorter encoding.
+	 *
+	 * @param  version
+	 *           the version of the file whose sample data will be encoded.
+	 * @param  encoderOptions
+	 *           the options of the encoder of the sample data.  The sample is always analysed with the array kernel,
+	 *           which does not affect the encoding.
+	 * @param  keyLength
+	 *           the default key length of the sample data.
+	 * @param  blockLength
+	 *           the block length of the configuration.
+	 * @param  variableBlockLength
+	 *           if {@code true}, the sample data will be encoded with variable block length, and the block length of
+	 *           the file will be the length of a segment.
+	 * @throws AppException
+	 *           if the task was cancelled.
+	 */
+
+	public void analyse(
+		int						version,
+		OndaFile.EncoderOptions	encoderOptions,
+		int						keyLength,
+		int						blockLength,
+		boolean					variableBlockLength)
+		throws AppException
+	{
+		// Choose block length
+		this.encoderOptions = encoderOptions.withArrayAnalysis();
+		this.keyLength = keyLength;
+		this.blockLength = variableBlockLength ? Segment.getSegmentLength(blockLength) : blockLength;
+		long minLength = getEncodedLength(version, this.keyLength, this.blockLength);
+		for (int length : BLOCK_LENGTHS)
+		{
+			if (variableBlockLength)
+				length = Segment.getSegmentLength(length);
+			if (length != this.blockLength)
+			{
+				long encodedLength = getEncodedLength(version, keyLength, length);
+				if (minLength > encodedLength)
+				{
+					minLength = encodedLength;
+					this.blockLength = length;
+				}
+			}
+		}
+
+		// Choose key length
+		for (int length = OndaFile.MIN_KEY_LENGTH; length <= OndaFile.MAX_KEY_LENGTH; length++)
+		{
+			if (length != keyLength)
+			{
+				long encodedLength = getEncodedLength(version, length, this.blockLength);
+				if (minLength > encodedLength)
+				{
+					minLength = encodedLength;
+					this.keyLength = length;
+				}
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private long getEncodedLength(
+		int	version,
+		int	keyLength,
+		int	blockLength)
+		throws AppException
+	{
+		// Test whether the task has been cancelled
+		Task.throwIfCancelled();
+
+		// Encode each window as a sequence of blocks
+		OndaFile.Attributes attributes = new OndaFile.Attributes(version, numChannels, bitsPerSample.getNumBits(), 0,
+																 0, 0, keyLength, blockLength,
+																 bitsPerSample.isFloatingPoint());
+		int bytesPerSample = bitsPerSample.getBytesPerSample();
+		int blockSize = blockLength * numChannels * bytesPerSample;
+		DataOutputStream nullOutputStream = new DataOutputStream(OutputStream.nullOutputStream());
+		long encodedLength = 0;
+		try
+		{
+			for (byte[] window : windows)
+			{
+				OndaDataOutput dataOutput = OndaFile.createDataOutput(attributes, encoderOptions, nullOutputStream);
+				for (int offset = 0; offset < window.length; offset += blockSize)
+				{
+					int length = Math.min(window.length - offset, blockSize);
+					if (bitsPerSample.isFloatingPoint())
+						dataOutput.writeFloatBlock(window, offset, length / bytesPerSample);
+					else
+						dataOutput.writePcmBlock(window, offset, length / bytesPerSample, bytesPerSample);
+				}
+				dataOutput.close();
+				encodedLength += dataOutput.getOutLength();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UnexpectedRuntimeException(e);
+		}
+		return encodedLength;
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
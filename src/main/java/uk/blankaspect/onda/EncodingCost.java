@@ -0,0 +1,302 @@
+/*====================================================================*\
+
+EncodingCost.java
+
+Encoding cost of a channel class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// ENCODING COST OF A CHANNEL CLASS
+
+
+/**
+ * This class provides the cost model with which the encoder chooses the encoding length of a channel of a block.  A
+ * value of a channel is encoded as a residual of <i>k</i> bits, where <i>k</i> is the encoding length of the channel,
+ * unless the magnitude of the residual has at least <i>k</i> significant bits, in which case it is an <i>excess
+ * value</i> that is encoded as the excess code of the channel followed by the full value.
+ * <p>
+ * The cost of an encoding length is derived from the <i>excess counts</i> of the channel: the excess count for
+ * <i>k</i> is the number of residuals that are excess values for <i>k</i>.  The excess counts are obtained from a
+ * histogram of the bit lengths of the magnitudes of the residuals.
+ * </p>
+ */
+
+class EncodingCost
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The kernel of each thread that computes second-order differences and the histogram of their bit lengths.  A
+	 * kernel may have buffers of its own, so the channels that are analysed in parallel each use the kernel of their
+	 * thread.
+	 */
+	private static final	ThreadLocal<AnalysisKernel>	KERNEL	= ThreadLocal.withInitial(AnalysisKernel::getInstance);
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private EncodingCost()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Replaces the specified values with their second-order differences.  The differences are computed by the kernel
+	 * that is returned by {@link AnalysisKernel#getInstance()}.
+	 *
+	 * @param values
+	 *          the values, which will be replaced by their second-order differences.
+	 * @param numValues
+	 *          the number of values.
+	 */
+
+	public static void computeEpsilons(
+		int[]	values,
+		int		numValues)
+	{
+		KERNEL.get().computeEpsilons(values, numValues);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Makes a histogram of the bit lengths of the magnitudes of the specified second-order differences.  The histogram
+	 * is made by the kernel that is returned by {@link AnalysisKernel#getInstance()}.
+	 *
+	 * @param epsilons
+	 *          the second-order differences.
+	 * @param startIndex
+	 *          the index of the first difference that will be counted.
+	 * @param endIndex
+	 *          the index after the last difference that will be counted.
+	 * @param counts
+	 *          the histogram, whose length must be at least 33.
+	 */
+
+	public static void countBitLengths(
+		int[]	epsilons,
+		int		startIndex,
+		int		endIndex,
+		int[]	counts)
+	{
+		KERNEL.get().countBitLengths(epsilons, startIndex, endIndex, counts);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the number of significant bits in the magnitude of the specified second-order difference.  A difference
+	 * is an excess value for an encoding length <i>k</i> if its bit length is at least <i>k</i>.
+	 *
+	 * @param  epsilon
+	 *           the second-order difference.
+	 * @return the number of significant bits in the magnitude of {@code epsilon}.
+	 */
+
+	public static int getBitLength(
+		int	epsilon)
+	{
+		return Integer.SIZE - Integer.numberOfLeadingZeros(Math.abs(epsilon));
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the minimum encoding length for values of the specified length.
+	 *
+	 * @param  valueLength
+	 *           the length (in bits) of a full value.
+	 * @param  keyLength
+	 *           the length (in bits) of an encoding key.
+	 * @return the minimum encoding length for values whose length is {@code valueLength}.
+	 */
+
+	public static int getMinEncodingLength(
+		int	valueLength,
+		int	keyLength)
+	{
+		return Math.max(1, valueLength - (1 << keyLength) + 1);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the excess counts of a channel from a histogram of the bit lengths of its second-order differences.
+	 *
+	 * @param bitLengthCounts
+	 *          the histogram of the bit lengths.
+	 * @param valueLength
+	 *          the length (in bits) of a full value of the channel.
+	 * @param keyLength
+	 *          the length (in bits) of an encoding key.
+	 * @param excessCounts
+	 *          the array in which the excess count for each encoding length will be stored.
+	 */
+
+	public static void setExcessCounts(
+		int[]	bitLengthCounts,
+		int		valueLength,
+		int		keyLength,
+		int[]	excessCounts)
+	{
+		int count = 0;
+		for (int i = Integer.SIZE; i >= valueLength; i--)
+			count += bitLengthCounts[i];
+		for (int i = valueLength - 1; i >= getMinEncodingLength(valueLength, keyLength); i--)
+		{
+			count += bitLengthCounts[i];
+			excessCounts[i] = count;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the encoding length that minimises the length of the encoded values of a channel of a block.
+	 *
+	 * @param  excessCounts
+	 *           the excess counts of the channel.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel.
+	 * @param  keyLength
+	 *           the length (in bits) of an encoding key.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @return the optimum encoding length of the channel.
+	 */
+
+	public static int getOptimumEncodingLength(
+		int[]	excessCounts,
+		int		valueLength,
+		int		keyLength,
+		int		numSampleFrames)
+	{
+		int encodingLength = valueLength;
+		long minOutputLength = numSampleFrames * valueLength;
+		for (int i = getMinEncodingLength(valueLength, keyLength); i < valueLength; i++)
+		{
+			long outputLength = getOutputLength(excessCounts, valueLength, numSampleFrames, i);
+			if (minOutputLength > outputLength)
+			{
+				minOutputLength = outputLength;
+				encodingLength = i;
+			}
+		}
+		return encodingLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the length (in bits) of the encoded values of a channel of a block for the specified encoding length.
+	 *
+	 * @param  excessCounts
+	 *           the excess counts of the channel.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @param  encodingLength
+	 *           the encoding length.
+	 * @return the length of the encoded values of the channel when they are encoded with {@code encodingLength}.
+	 */
+
+	public static long getOutputLength(
+		int[]	excessCounts,
+		int		valueLength,
+		int		numSampleFrames,
+		int		encodingLength)
+	{
+		return (encodingLength == valueLength)
+					? numSampleFrames * valueLength
+					: (numSampleFrames - 1) * encodingLength + (excessCounts[encodingLength] + 1) * valueLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the exact length (in bits) of the specified number of encoded values of a channel of a block for the
+	 * specified encoding length.  Unlike {@link #getOutputLength(int[], int, int, int)}, the length does not include a
+	 * first value that is written in full.
+	 *
+	 * @param  excessCounts
+	 *           the excess counts of the values.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel.
+	 * @param  numValues
+	 *           the number of values.
+	 * @param  encodingLength
+	 *           the encoding length.
+	 * @return the length of {@code numValues} values when they are encoded with {@code encodingLength}.
+	 */
+
+	public static long getEncodedLength(
+		int[]	excessCounts,
+		int		valueLength,
+		int		numValues,
+		int		encodingLength)
+	{
+		return (encodingLength == valueLength)
+					? (long)numValues * valueLength
+					: (long)numValues * encodingLength + (long)excessCounts[encodingLength] * valueLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the specified values are all equal.  The values are compared with the first of them, and
+	 * the comparison stops at the first value that differs from it.
+	 *
+	 * @param  values
+	 *           the values.
+	 * @param  startIndex
+	 *           the index of the first value.
+	 * @param  endIndex
+	 *           the index that follows the last value.
+	 * @return {@code true} if there is at least one value and the values from {@code startIndex} to {@code endIndex}
+	 *         &minus; 1 are all equal.
+	 */
+
+	public static boolean isConstant(
+		int[]	values,
+		int		startIndex,
+		int		endIndex)
+	{
+		if (startIndex >= endIndex)
+			return false;
+		int value = values[startIndex];
+		for (int i = startIndex + 1; i < endIndex; i++)
+		{
+			if (values[i] != value)
+				return false;
+		}
+		return true;
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
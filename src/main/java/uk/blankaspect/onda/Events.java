@@ -0,0 +1,480 @@
+/*====================================================================*\
+
+Events.java
+
+Class: Java Flight Recorder events.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//----------------------------------------------------------------------
+
+
+// CLASS: JAVA FLIGHT RECORDER EVENTS
+
+
+/**
+ * This class contains the Java Flight Recorder events that are emitted by the Onda application.
+ * <p>
+ * All the events are disabled by default.  When an event is disabled, the JVM removes the instrumentation from its
+ * {@code begin()}, {@code end()} and {@code commit()} methods, and the code that sets the fields of an event is guarded
+ * by {@code shouldCommit()}, so an event that is not enabled costs no more than the allocation of an object, which is
+ * normally eliminated by escape analysis.  The events may be enabled in a recording with the settings file
+ * <i>docs/jfr/onda.jfc</i>, which may be combined with the default settings of the JVM, for example:
+ * </p>
+ * <pre>
+ *   java -XX:StartFlightRecording:filename=onda.jfr,settings=default,settings=docs/jfr/onda.jfc ...
+ * </pre>
+ */
+
+class Events
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The number of consecutive blocks of sample data that are covered by a single {@link BlockBatch} event. */
+	public static final		int		BLOCK_BATCH_LENGTH	= 64;
+
+	private static final	String	CATEGORY	= "Onda";
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private Events()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ENUMERATION: OPERATION
+
+
+	/**
+	 * This is an enumeration of the operations that are recorded in events.
+	 */
+
+	enum Operation
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		COMPRESS
+		(
+			"compress"
+		),
+
+		EXPAND
+		(
+			"expand"
+		),
+
+		VALIDATE
+		(
+			"validate"
+		),
+
+		ENCODE
+		(
+			"encode"
+		),
+
+		DECODE
+		(
+			"decode"
+		);
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	key;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private Operation(
+			String	key)
+		{
+			this.key = key;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public String toString()
+		{
+			return key;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: FILE-OPERATION EVENT
+
+
+	/**
+	 * This class implements an event that covers the compression, expansion or validation of a file.
+	 */
+
+	@Name("uk.blankaspect.onda.FileOperation")
+	@Label("File operation")
+	@Description("The compression, expansion or validation of a file")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class FileOperation
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("Operation")
+		String	operation;
+
+		@Label("Input file")
+		String	inFile;
+
+		@Label("Output file")
+		String	outFile;
+
+		@Label("Input size")
+		@DataAmount
+		long	inSize;
+
+		@Label("Output size")
+		@DataAmount
+		long	outSize;
+
+		@Label("Channels")
+		int		numChannels;
+
+		@Label("Bits per sample")
+		int		bitsPerSample;
+
+		@Label("Sample rate")
+		int		sampleRate;
+
+		@Label("Sample frames")
+		long	numSampleFrames;
+
+		@Label("Sample data size")
+		@DataAmount
+		long	sampleDataSize;
+
+		@Label("Compressed data size")
+		@DataAmount
+		long	compressedDataSize;
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: BLOCK-BATCH EVENT
+
+
+	/**
+	 * This class implements an event that covers the encoding or decoding of a batch of up to {@link
+	 * #BLOCK_BATCH_LENGTH} consecutive blocks of sample data.  Blocks are sampled in batches, rather than recorded
+	 * individually, to limit the number of events when a recording is active.
+	 */
+
+	@Name("uk.blankaspect.onda.BlockBatch")
+	@Label("Block batch")
+	@Description("The encoding or decoding of a batch of consecutive blocks of sample data")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class BlockBatch
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("Operation")
+		String	operation;
+
+		@Label("File")
+		String	file;
+
+		@Label("Channels")
+		int		numChannels;
+
+		@Label("Bits per sample")
+		int		bitsPerSample;
+
+		@Label("Index of first block")
+		long	blockIndex;
+
+		@Label("Blocks")
+		int		numBlocks;
+
+		@Label("Sample frames")
+		long	numSampleFrames;
+
+		@Label("Compressed data size")
+		@Description("The number of bytes of compressed data that were written or read by the batch, rounded to the "
+						+ "size of the I/O buffer")
+		@DataAmount
+		long	compressedDataSize;
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: QUEUE-WAIT EVENT
+
+
+	/**
+	 * This class implements an event that covers the time that a thread waits for the other thread of a file processor
+	 * to produce or consume a block of sample data.
+	 */
+
+	@Name("uk.blankaspect.onda.QueueWait")
+	@Label("Queue wait")
+	@Description("A wait for another thread to produce or consume a block of sample data")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static class QueueWait
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("Operation")
+		String	operation;
+
+		@Label("Producer")
+		@Description("True if the waiting thread produces sample data, false if it consumes them")
+		boolean	producer;
+
+		@Label("Sample frame index")
+		long	sampleFrameIndex;
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: PRIVATE-DATA DEFLATE EVENT
+
+
+	/**
+	 * This class implements an event that covers the compression of the ancillary chunks of an audio file into the
+	 * private data of an Onda file.
+	 */
+
+	@Name("uk.blankaspect.onda.PrivateDataDeflate")
+	@Label("Private data deflate")
+	@Description("The compression of the ancillary chunks of an audio file")
+	@Category(CATEGORY)
+	@Enabled(false)
+	static class PrivateDataDeflate
+		extends Event
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		@Label("Source kind")
+		String	sourceKind;
+
+		@Label("Chunks")
+		int		numChunks;
+
+		@Label("Input size")
+		@DataAmount
+		long	inSize;
+
+		@Label("Output size")
+		@DataAmount
+		long	outSize;
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: BLOCK-BATCH SAMPLER
+
+
+	/**
+	 * This class groups consecutive blocks of sample data into batches, and emits a {@link BlockBatch} event for each
+	 * batch.  The cost per block when the event is disabled is the increment of a counter.
+	 */
+
+	static class BlockBatchSampler
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	Operation	operation;
+		private	File		file;
+		private	int			numChannels;
+		private	int			bitsPerSample;
+		private	long		blockIndex;
+		private	int			numBlocks;
+		private	long		numSampleFrames;
+		private	long		startDataLength;
+		private	BlockBatch	event;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		BlockBatchSampler(
+			Operation	operation,
+			File		file,
+			int			numChannels,
+			int			bitsPerSample)
+		{
+			this.operation = operation;
+			this.file = file;
+			this.numChannels = numChannels;
+			this.bitsPerSample = bitsPerSample;
+			beginBatch(0);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Records the end of a block.
+		 *
+		 * @param numSampleFrames
+		 *          the number of sample frames in the block.
+		 * @param dataLength
+		 *          the total length of compressed data that has been written or read so far.
+		 */
+
+		void endBlock(
+			int		numSampleFrames,
+			long	dataLength)
+		{
+			this.numSampleFrames += numSampleFrames;
+			if (++numBlocks >= BLOCK_BATCH_LENGTH)
+			{
+				endBatch(dataLength);
+				beginBatch(dataLength);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Ends the current batch of blocks, if it is not empty.
+		 *
+		 * @param dataLength
+		 *          the total length of compressed data that has been written or read.
+		 */
+
+		void end(
+			long	dataLength)
+		{
+			if (numBlocks > 0)
+				endBatch(dataLength);
+		}
+
+		//--------------------------------------------------------------
+
+		private void beginBatch(
+			long	dataLength)
+		{
+			blockIndex += numBlocks;
+			numBlocks = 0;
+			numSampleFrames = 0;
+			startDataLength = dataLength;
+			event = new BlockBatch();
+			event.begin();
+		}
+
+		//--------------------------------------------------------------
+
+		private void endBatch(
+			long	dataLength)
+		{
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.operation = operation.toString();
+				event.file = (file == null) ? null : file.getPath();
+				event.numChannels = numChannels;
+				event.bitsPerSample = bitsPerSample;
+				event.blockIndex = blockIndex;
+				event.numBlocks = numBlocks;
+				event.numSampleFrames = numSampleFrames;
+				event.compressedDataSize = dataLength - startDataLength;
+				event.commit();
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+}
+
+//----------------------------------------------------------------------
@@ -18,7 +18,12 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
+import java.io.BufferedInputStream;
+import java.io.DataInput;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import java.text.DecimalFormat;
 
@@ -38,6 +43,7 @@ import uk.blankaspect.common.exception.TaskCancelledException;
 
 import uk.blankaspect.common.iff.Chunk;
 import uk.blankaspect.common.iff.ChunkFilter;
+import uk.blankaspect.common.iff.FormFile;
 import uk.blankaspect.common.iff.IffId;
 
 //----------------------------------------------------------------------
@@ -54,6 +60,7 @@ class FileProcessor
 ////////////////////////////////////////////////////////////////////////
 
 	private static final	String	READING_STR				= "Reading";
+	private static final	String	ANALYSING_STR			= "Analysing";
 	private static final	String	WRITING_STR				= "Writing";
 	private static final	String	COMPRESSED_STR			= "The file was compressed.";
 	private static final	String	EXPANDED_STR			= "The file was expanded.";
@@ -61,6 +68,10 @@ class FileProcessor
 	private static final	String	KHZ_STR					= " kHz";
 	private static final	String	SECONDS_STR				= " seconds";
 	private static final	String	PRESERVED_CHUNKS_STR	= "Preserved chunks: ";
+	private static final	String	DISCARDED_CHUNKS_STR	=
+			"Warning: chunks that follow the sample data cannot be preserved from a stream and were discarded: ";
+	private static final	String	PARAMETERS_STR			= "Encoding parameters: ";
+	private static final	String	NO_ANALYSIS_STR			= "Stream sample data are not analysed.";
 
 	private static final	DecimalFormat	FP_FORMATTER	= new DecimalFormat("0.0");
 	private static final	DecimalFormat	SR_FORMATTER	= new DecimalFormat("0.###");
@@ -70,20 +81,27 @@ class FileProcessor
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	Compressor		compressor;
-	private	Expander		expander;
-	private	Validator		validator;
-	private	int				numChannels;
-	private	BitsPerSample	bitsPerSample;
-	private	int				bytesPerSampleFrame;
-	private	int				sampleRate;
-	private	int				numSampleFrames;
-	private	long			crcValue;
-	private	int				inSampleFrameIndex;
-	private	int				outSampleFrameIndex;
-	private	byte[]			sampleData;
-	private	CRC32			crc;
-	private	long			compressedDataSize;
+	private	Compressor				compressor;
+	private	Expander				expander;
+	private	Validator				validator;
+	private	int						numChannels;
+	private	BitsPerSample			bitsPerSample;
+	private	int						bytesPerSampleFrame;
+	private	int						sampleRate;
+	private	long					numSampleFrames;
+	private	Effort					effort;
+	private	OndaFile.EncoderOptions	encoderOptions;
+	private	int						version;
+	private	int						keyLength;
+	private	int						blockLength;
+	private	long					crcValue;
+	private	long					inSampleFrameIndex;
+	private	long					outSampleFrameIndex;
+	private	byte[]					sampleData;
+	private	CRC32					crc;
+	private	long					compressedDataSize;
+	private	long					writerCpuTime;
+	private	Report.Entry			reportEntry;
 
 ////////////////////////////////////////////////////////////////////////
 //  Static initialiser
@@ -99,8 +117,10 @@ class FileProcessor
 //  Constructors
 ////////////////////////////////////////////////////////////////////////
 
-	public FileProcessor()
+	public FileProcessor(
+		Report.Entry	reportEntry)
 	{
+		this.reportEntry = reportEntry;
 		compressor = new Compressor();
 		expander = new Expander();
 		validator = new Validator();
@@ -118,11 +138,17 @@ class FileProcessor
 
 	public void compress(File          inFile,
 						 File          outFile,
-						 ChunkFilter[] chunkFilters)
+						 ChunkFilter[] chunkFilters,
+						 Effort        effort)
 		throws AppException
 	{
-		// Get system time
-		long startTime = System.currentTimeMillis();
+		// Get system time and CPU time of thread
+		long startTime = System.nanoTime();
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Begin event
+		Events.FileOperation event = new Events.FileOperation();
+		event.begin();
 
 		// Update information field in progress view
 		Task.setInfo(READING_STR, inFile);
@@ -137,39 +163,46 @@ class FileProcessor
 		AudioFile audioFile = audioFileKind.createFile(inFile);
 		audioFile.readAttributes();
 
-		// Validate number of channels, bits per sample and sample rate
-		numChannels = audioFile.getNumChannels();
-		if ((numChannels < OndaFile.MIN_NUM_CHANNELS) || (numChannels > OndaFile.MAX_NUM_CHANNELS))
-			throw new FileException(ErrorId.UNSUPPORTED_NUM_CHANNELS, inFile, Integer.toString(numChannels));
+		// Validate and set attributes
+		setAttributes(inFile, audioFile, effort);
 
-		bitsPerSample = BitsPerSample.forNumBits(audioFile.getBitsPerSample());
-		if (bitsPerSample == null)
+		// Compress private chunks in input file, including a format chunk that cannot be recreated from the
+		// attributes
+		PrivateData compressedPrivateData = null;
+		List<IffId> ids = null;
+		ChunkFilter chunkFilter = chunkFilters[audioFileKind.ordinal()];
+		boolean extendedFormat = audioFile.hasExtendedFormat();
+		if (!chunkFilter.isExcludeAll() || extendedFormat)
 		{
-			throw new FileException(ErrorId.UNSUPPORTED_BITS_PER_SAMPLE, inFile,
-									Integer.toString(audioFile.getBitsPerSample()));
+			PrivateData privateData =
+					new PrivateData(audioFileKind, AppConfig.INSTANCE.getPrivateDataCompressionLevel());
+			audioFile.read(privateData.getReader(chunkFilter, extendedFormat));
+			ids = privateData.getAncillaryIds();
+			if (!ids.isEmpty() || extendedFormat)
+				compressedPrivateData = privateData;
 		}
-		bytesPerSampleFrame = bitsPerSample.getBytesPerSample() * numChannels;
 
-		sampleRate = audioFile.getSampleRate();
-		if ((sampleRate < OndaFile.MIN_SAMPLE_RATE) || (sampleRate > OndaFile.MAX_SAMPLE_RATE))
-			throw new FileException(ErrorId.UNSUPPORTED_SAMPLE_RATE, inFile, Integer.toString(sampleRate));
+		// Set version of file and key length
+		version = getVersion(compressedPrivateData != null);
+		keyLength = bitsPerSample.getKeyLength();
 
-		// Set number of sample frames
-		numSampleFrames = audioFile.getNumSampleFrames();
-
-		// Compress private chunks in input file
-		byte[] compressedPrivateData = null;
-		List<IffId> ids = null;
-		ChunkFilter chunkFilter = chunkFilters[audioFileKind.ordinal()];
-		if (!chunkFilter.isExcludeAll())
+		// At maximum effort, replace key length and block length with those that give the shortest encoding of a
+		// sample of the sample data
+		if (effort == Effort.MAX)
 		{
-			PrivateData privateData = new PrivateData(audioFileKind);
-			audioFile.read(privateData.getReader(chunkFilter));
-			ids = privateData.getAncillaryIds();
-			if (!ids.isEmpty())
-				compressedPrivateData = privateData.getCompressedData();
+			Task.setInfo(ANALYSING_STR, inFile);
+			EncodingAnalyser analyser = new EncodingAnalyser(numChannels, bitsPerSample, numSampleFrames);
+			audioFile.readInteger(analyser, null);
+			analyser.analyse(version, encoderOptions, keyLength, AppConfig.INSTANCE.getBlockLength(),
+							 isVariableBlockLength());
+			keyLength = analyser.getKeyLength();
+			blockLength = analyser.getBlockLength();
 		}
 
+		// Append encoding parameters to log
+		Log.INSTANCE.appendLine(PARAMETERS_STR + "[ " + effort.getKey() + " : version " + version + " : key length "
+									+ keyLength + " : block length " + INTEGER_FORMATTER.format(blockLength) + " ]");
+
 		// Initialise variables
 		inSampleFrameIndex = 0;
 		outSampleFrameIndex = 0;
@@ -199,13 +232,101 @@ class FileProcessor
 			}
 		}
 
+		// Update report entry
+		crcValue = crc.getValue();
+		updateReportEntry(outFile, ids, compressedDataSize, startTime, startCpuTime);
+
+		// Commit event
+		commitEvent(event, Events.Operation.COMPRESS, inFile, outFile, compressedDataSize);
+
 		// Append result to log
 		if ((ids != null) && !ids.isEmpty())
 			Log.INSTANCE.appendLine(PRESERVED_CHUNKS_STR + Utils.listToString(ids));
 
 		double compressionFactor =
 				(double)compressedDataSize / (double)(numSampleFrames * bytesPerSampleFrame) * 100.0;
-		double seconds = (double)(System.currentTimeMillis() - startTime) * 0.001;
+		double seconds = (double)(System.nanoTime() - startTime) * 1.0e-9;
+		Log.INSTANCE.appendLine(COMPRESSED_STR + "  [ " + FP_FORMATTER.format(compressionFactor)
+									+ "%, " + FP_FORMATTER.format(seconds) + SECONDS_STR + " ]");
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Runs in Task.Compress (primary thread).  The audio file is read from the specified input stream in a single pass,
+	 * and an Onda stream is written to the specified output stream.
+	 */
+
+	public void compress(InputStream   inStream,
+						 OutputStream  outStream,
+						 ChunkFilter[] chunkFilters,
+						 Effort        effort)
+		throws AppException
+	{
+		// Get system time and CPU time of thread
+		long startTime = System.nanoTime();
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Begin event
+		Events.FileOperation event = new Events.FileOperation();
+		event.begin();
+
+		// Update information field in progress view
+		Task.setInfo(READING_STR);
+		Task.setProgress(0.0);
+
+		// Determine kind of input file from its header, which is not consumed
+		inStream = new BufferedInputStream(inStream);
+		AudioFileKind audioFileKind = AudioFileKind.forFileKind(AudioFile.Kind.forStream(inStream));
+		if (audioFileKind == null)
+			throw new AppException(ErrorId.UNRECOGNISED_STREAM_KIND);
+
+		// Create input file on input stream
+		AudioFile audioFile = audioFileKind.createFile(null);
+		audioFile.setInputStream(inStream);
+
+		// Create reader of chunks that precede the sample data; when the chunks have been read, it starts the thread
+		// that writes the output stream
+		PrivateData privateData = new PrivateData(audioFileKind, AppConfig.INSTANCE.getPrivateDataCompressionLevel());
+		ChunkFilter chunkFilter = chunkFilters[audioFileKind.ordinal()];
+		StreamHeaderReader headerReader =
+				new StreamHeaderReader(audioFile, privateData, chunkFilter, outStream, effort);
+
+		// Read sample data from input stream
+		audioFile.readStream(compressor, headerReader);
+
+		// Wait for writing thread to finish
+		while (Task.getNumThreads() > 1)
+		{
+			try
+			{
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e)
+			{
+				// ignore
+			}
+		}
+
+		// Update report entry
+		crcValue = crc.getValue();
+		List<IffId> ids = headerReader.ids;
+		updateReportEntry(null, ids, compressedDataSize, startTime, startCpuTime);
+
+		// Commit event
+		commitEvent(event, Events.Operation.COMPRESS, null, null, compressedDataSize);
+
+		// Append result to log, warning of ancillary chunks that follow the sample data and that would have been
+		// preserved from a file
+		if (!ids.isEmpty())
+			Log.INSTANCE.appendLine(PRESERVED_CHUNKS_STR + Utils.listToString(ids));
+		List<IffId> discardedIds = audioFile.getTrailingChunkIds().stream().filter(chunkFilter::accept).toList();
+		if (!discardedIds.isEmpty())
+			Log.INSTANCE.appendLine(DISCARDED_CHUNKS_STR + Utils.listToString(discardedIds));
+
+		double compressionFactor =
+				(double)compressedDataSize / (double)(numSampleFrames * bytesPerSampleFrame) * 100.0;
+		double seconds = (double)(System.nanoTime() - startTime) * 1.0e-9;
 		Log.INSTANCE.appendLine(COMPRESSED_STR + "  [ " + FP_FORMATTER.format(compressionFactor)
 									+ "%, " + FP_FORMATTER.format(seconds) + SECONDS_STR + " ]");
 	}
@@ -221,8 +342,13 @@ class FileProcessor
 					   AudioFileKind audioFileKind)
 		throws AppException
 	{
-		// Get system time
-		long startTime = System.currentTimeMillis();
+		// Get system time and CPU time of thread
+		long startTime = System.nanoTime();
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Begin event
+		Events.FileOperation event = new Events.FileOperation();
+		event.begin();
 
 		// Update information field in progress view
 		Task.setInfo(READING_STR, inFile);
@@ -232,6 +358,10 @@ class FileProcessor
 		OndaFileReader ondaFile = OndaFileIff.getFileKind(inFile).createReader(inFile);
 		setAttributes(inFile, ondaFile.readAttributesAndPrivateData());
 
+		// Test whether kind of output file can contain floating-point sample data
+		if (bitsPerSample.isFloatingPoint() && !audioFileKind.isFloatingPointSupported())
+			throw new FileException(ErrorId.FLOATING_POINT_NOT_SUPPORTED, inFile, audioFileKind.toString());
+
 		// Convert private data to chunks
 		List<IffId> ids = null;
 		List<Chunk> chunks = null;
@@ -240,17 +370,8 @@ class FileProcessor
 			try
 			{
 				PrivateData privateData = new PrivateData(ondaFile.getPrivateData());
-				if (privateData.getSourceKind() != audioFileKind)
-					throw new AppException(ErrorId.INCONSISTENT_FILE_KINDS);
+				chunks = createChunks(privateData, audioFileKind);
 				ids = privateData.getAncillaryIds();
-				int numChunks = privateData.getNumChunks();
-				chunks = new ArrayList<>();
-				for (int i = 0; i < numChunks; i++)
-				{
-					Chunk chunk = audioFileKind.createChunk();
-					privateData.setChunk(i, chunk);
-					chunks.add(chunk);
-				}
 			}
 			catch (AppException e)
 			{
@@ -269,8 +390,8 @@ class FileProcessor
 		// Start thread that writes output file
 		new Task.WriteExpanded(this, outFile, audioFileKind, chunks).start();
 
-		// Read and expand compressed sample data
-		ondaFile.readData(expander);
+		// Read and expand compressed sample data; the CRC of a stream follows its data
+		crcValue = ondaFile.readData(expander, AppConfig.INSTANCE.isParallelEncoding()).crcValue & 0xFFFFFFFFL;
 
 		// Validate CRC
 		if (crc.getValue() != crcValue)
@@ -292,11 +413,106 @@ class FileProcessor
 		// Set timestamp of output file to that of input file
 		outFile.setLastModified(inFile.lastModified());
 
+		// Update report entry
+		updateReportEntry(outFile, ids, ondaFile.getDataSize(), startTime, startCpuTime);
+
+		// Commit event
+		commitEvent(event, Events.Operation.EXPAND, inFile, outFile, ondaFile.getDataSize());
+
+		// Append result to log
+		if ((ids != null) && !ids.isEmpty())
+			Log.INSTANCE.appendLine(PRESERVED_CHUNKS_STR + Utils.listToString(ids));
+
+		double seconds = (double)(System.nanoTime() - startTime) * 1.0e-9;
+		Log.INSTANCE.appendLine(EXPANDED_STR + "  [ " + FP_FORMATTER.format(seconds) + SECONDS_STR + " ]");
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Runs in Task.Expand (primary thread).  The Onda stream is read from the specified input stream in a single pass,
+	 * and the audio file is written to the specified output stream.  The kind of the audio file is that of the source
+	 * of the private data of the Onda stream or, if there are no private data, WAVE.
+	 */
+
+	public void expand(InputStream  inStream,
+					   OutputStream outStream)
+		throws AppException
+	{
+		// Get system time and CPU time of thread
+		long startTime = System.nanoTime();
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Begin event
+		Events.FileOperation event = new Events.FileOperation();
+		event.begin();
+
+		// Update information field in progress view
+		Task.setInfo(READING_STR);
+		Task.setProgress(0.0);
+
+		// Read attributes and private data; set attributes
+		OndaStream ondaStream = new OndaStream(new BufferedInputStream(inStream));
+		setAttributes(null, ondaStream.readAttributesAndPrivateData());
+
+		// Convert private data to chunks; determine kind of output file
+		AudioFileKind audioFileKind = AudioFileKind.WAVE;
+		List<IffId> ids = null;
+		List<Chunk> chunks = null;
+		if (ondaStream.getPrivateData() != null)
+		{
+			PrivateData privateData = new PrivateData(ondaStream.getPrivateData());
+			audioFileKind = privateData.getSourceKind();
+			chunks = createChunks(privateData, audioFileKind);
+			ids = privateData.getAncillaryIds();
+		}
+
+		// Test whether kind of output file can contain floating-point sample data
+		if (bitsPerSample.isFloatingPoint() && !audioFileKind.isFloatingPointSupported())
+			throw new AppException(ErrorId.FLOATING_POINT_NOT_SUPPORTED, audioFileKind.toString());
+
+		// Initialise variables
+		outSampleFrameIndex = 0;
+		sampleData = null;
+		crc = new CRC32();
+
+		// Update information field in progress view
+		Task.setInfo(WRITING_STR);
+
+		// Start thread that writes output stream
+		new Task.WriteExpanded(this, outStream, audioFileKind, chunks).start();
+
+		// Read and expand compressed sample data; the CRC value is in the trailer of the stream
+		crcValue = ondaStream.readData(expander, AppConfig.INSTANCE.isParallelEncoding()).crcValue & 0xFFFFFFFFL;
+
+		// Validate CRC
+		if (crc.getValue() != crcValue)
+			throw new AppException(ErrorId.INCORRECT_CRC);
+
+		// Wait for other thread to finish
+		while (Task.getNumThreads() > 1)
+		{
+			try
+			{
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e)
+			{
+				// ignore
+			}
+		}
+
+		// Update report entry
+		updateReportEntry(null, ids, ondaStream.getDataSize(), startTime, startCpuTime);
+
+		// Commit event
+		commitEvent(event, Events.Operation.EXPAND, null, null, ondaStream.getDataSize());
+
 		// Append result to log
 		if ((ids != null) && !ids.isEmpty())
 			Log.INSTANCE.appendLine(PRESERVED_CHUNKS_STR + Utils.listToString(ids));
 
-		double seconds = (double)(System.currentTimeMillis() - startTime) * 0.001;
+		double seconds = (double)(System.nanoTime() - startTime) * 1.0e-9;
 		Log.INSTANCE.appendLine(EXPANDED_STR + "  [ " + FP_FORMATTER.format(seconds) + SECONDS_STR + " ]");
 	}
 
@@ -310,8 +526,13 @@ class FileProcessor
 						 ValidationResult validationResult)
 		throws AppException
 	{
-		// Get system time
-		long startTime = System.currentTimeMillis();
+		// Get system time and CPU time of thread
+		long startTime = System.nanoTime();
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Begin event
+		Events.FileOperation event = new Events.FileOperation();
+		event.begin();
 
 		// Update information field in progress view
 		Task.setInfo(READING_STR, file);
@@ -331,6 +552,7 @@ class FileProcessor
 			try
 			{
 				PrivateData privateData = new PrivateData(ondaFile.getPrivateData());
+				privateData.validate();
 				ids = privateData.getAncillaryIds();
 			}
 			catch (AppException e)
@@ -343,8 +565,8 @@ class FileProcessor
 		inSampleFrameIndex = 0;
 		crc = new CRC32();
 
-		// Read file
-		ondaFile.readData(validator);
+		// Read file; the CRC of a stream follows its data
+		crcValue = ondaFile.readData(validator, AppConfig.INSTANCE.isParallelEncoding()).crcValue & 0xFFFFFFFFL;
 
 		// Increment count of files validated
 		++validationResult.validatedCount;
@@ -356,11 +578,17 @@ class FileProcessor
 		// Increment count of valid files
 		++validationResult.validCount;
 
+		// Update report entry
+		updateReportEntry(null, ids, ondaFile.getDataSize(), startTime, startCpuTime);
+
+		// Commit event
+		commitEvent(event, Events.Operation.VALIDATE, file, null, ondaFile.getDataSize());
+
 		// Append result to log
 		if ((ids != null) && !ids.isEmpty())
 			Log.INSTANCE.appendLine(PRESERVED_CHUNKS_STR + Utils.listToString(ids));
 
-		double seconds = (double)(System.currentTimeMillis() - startTime) * 0.001;
+		double seconds = (double)(System.nanoTime() - startTime) * 1.0e-9;
 		Log.INSTANCE.appendLine(VALID_STR + "  [ " + numChannels + " : " + bitsPerSample.getNumBits() + " : "
 									+ SR_FORMATTER.format((double)sampleRate * 0.001) + KHZ_STR + " : "
 									+ INTEGER_FORMATTER.format(numSampleFrames) + " : " + FP_FORMATTER.format(seconds)
@@ -373,20 +601,46 @@ class FileProcessor
 	 * Runs in Task.WriteCompressed (secondary thread).
 	 */
 
-	public void writeCompressedFile(File   file,
-									byte[] privateData)
+	public void writeCompressedFile(File        file,
+									PrivateData privateData)
 		throws AppException
 	{
+		// Get CPU time of thread
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
 		// Write file
-		OndaFile.Attributes attributes =
-				new OndaFile.Attributes((privateData == null) ? 0 : 1, numChannels, bitsPerSample.getNumBits(),
-										sampleRate, numSampleFrames, 0, bitsPerSample.getKeyLength(),
-										AppConfig.INSTANCE.getBlockLength());
 		OndaFile ondaFile = new OndaFile(file);
-		ondaFile.write(attributes, privateData, compressor);
+		ondaFile.write(createAttributes(), privateData, encoderOptions, compressor);
 
 		// Set size of compressed data
 		compressedDataSize = ondaFile.getDataSize();
+
+		// Set CPU time of thread
+		writerCpuTime = getCpuTime(startCpuTime);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Runs in Task.WriteCompressed (secondary thread).
+	 */
+
+	public void writeCompressedStream(OutputStream outStream,
+									  PrivateData  privateData)
+		throws AppException
+	{
+		// Get CPU time of thread
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Write stream
+		OndaStream ondaStream = new OndaStream(outStream);
+		ondaStream.write(createAttributes(), privateData, encoderOptions, compressor);
+
+		// Set size of compressed data
+		compressedDataSize = ondaStream.getDataSize();
+
+		// Set CPU time of thread
+		writerCpuTime = getCpuTime(startCpuTime);
 	}
 
 	//------------------------------------------------------------------
@@ -400,10 +654,152 @@ class FileProcessor
 								  List<Chunk>   chunks)
 		throws AppException
 	{
+		// Get CPU time of thread
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Write file
 		AudioFile audioFile = fileKind.createFile(file, numChannels, bitsPerSample.getNumBits(), sampleRate);
+		audioFile.setFloatingPoint(bitsPerSample.isFloatingPoint());
+		if (chunks != null)
+			audioFile.addChunks(chunks);
+		audioFile.write(expander);
+
+		// Set CPU time of thread
+		writerCpuTime = getCpuTime(startCpuTime);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Runs in Task.WriteExpanded (secondary thread).
+	 */
+
+	public void writeExpandedStream(OutputStream  outStream,
+									AudioFileKind fileKind,
+									List<Chunk>   chunks)
+		throws AppException
+	{
+		// Get CPU time of thread
+		long startCpuTime = Report.getCurrentThreadCpuTime();
+
+		// Write stream
+		AudioFile audioFile = fileKind.createFile(null, numChannels, bitsPerSample.getNumBits(), sampleRate);
+		audioFile.setFloatingPoint(bitsPerSample.isFloatingPoint());
 		if (chunks != null)
 			audioFile.addChunks(chunks);
+		audioFile.setOutputStream(outStream);
 		audioFile.write(expander);
+
+		// Set CPU time of thread
+		writerCpuTime = getCpuTime(startCpuTime);
+	}
+
+	//------------------------------------------------------------------
+
+	private OndaFile.EncoderOptions createEncoderOptions()
+	{
+		// At fast effort, blocks are analysed with the array kernel, which does not affect the compressed data
+		AppConfig config = AppConfig.INSTANCE;
+		return new OndaFile.EncoderOptions(config.isChannelDecorrelation(), config.isPredictorSelection(),
+										   config.isRiceCoding(), config.isVariableBlockLength(),
+										   config.isConstantChannels(), config.isWastedBits(),
+										   config.isBlockContinuity(), config.isBackReferences(),
+										   config.getBackReferenceWindowSize(), config.getBackReferenceTableSize(),
+										   config.isArrayAnalysis() || (effort == Effort.FAST),
+										   config.isParallelEncoding());
+	}
+
+	//------------------------------------------------------------------
+
+	private boolean isVariableBlockLength()
+	{
+		return (effort != Effort.FAST) && AppConfig.INSTANCE.isVariableBlockLength();
+	}
+
+	//------------------------------------------------------------------
+
+	private int getVersion(
+		boolean	privateData)
+	{
+		// The sample format of a file is recorded only in the latest version, so a file of floating-point sample data
+		// is always written in that version, whatever the effort and compression options.
+		if (bitsPerSample.isFloatingPoint())
+			return OndaFile.SAMPLE_FORMAT_VERSION;
+
+		// The earliest version that has each compression option (see the version constants of OndaFile):
+		//   2  channel decorrelation
+		//   3  predictor selection
+		//   4  Rice coding
+		//   5  variable block length
+		//   6  constant channels
+		//   7  wasted bits
+		//   8  block continuity
+		//   9  back references
+		//  10  floating-point sample data
+		// A file is written in the earliest version that has every compression option that is enabled; the encoder
+		// doesn't use an option of that version that is disabled (see OndaFile.createDataOutput).  At fast effort, a
+		// file is written in the earliest version, whose sample data are encoded and decoded most quickly.
+		int version = privateData ? 1 : 0;
+		if (effort != Effort.FAST)
+		{
+			AppConfig config = AppConfig.INSTANCE;
+			if (config.isBackReferences())
+				version = OndaFile.BACK_REFERENCE_VERSION;
+			else if (config.isBlockContinuity())
+				version = OndaFile.BLOCK_CONTINUITY_VERSION;
+			else if (config.isWastedBits())
+				version = OndaFile.WASTED_BITS_VERSION;
+			else if (config.isConstantChannels())
+				version = OndaFile.CONSTANT_CHANNEL_VERSION;
+			else if (config.isVariableBlockLength())
+				version = OndaFile.VARIABLE_BLOCK_LENGTH_VERSION;
+			else if (config.isRiceCoding())
+				version = OndaFile.RICE_CODING_VERSION;
+			else if (config.isPredictorSelection())
+				version = OndaFile.PREDICTOR_SELECTION_VERSION;
+			else if (config.isChannelDecorrelation() && (numChannels > 1))
+				version = OndaFile.CHANNEL_DECORRELATION_VERSION;
+		}
+		return version;
+	}
+
+	//------------------------------------------------------------------
+
+	private void setAttributes(File      inFile,
+							   AudioFile audioFile,
+							   Effort    effort)
+		throws AppException
+	{
+		// Validate number of channels, bits per sample and sample rate
+		numChannels = audioFile.getNumChannels();
+		if ((numChannels < OndaFile.MIN_NUM_CHANNELS) || (numChannels > OndaFile.MAX_NUM_CHANNELS))
+			throw new FileException(ErrorId.UNSUPPORTED_NUM_CHANNELS, inFile, Integer.toString(numChannels));
+
+		bitsPerSample = BitsPerSample.forNumBits(audioFile.getBitsPerSample(), audioFile.isFloatingPoint());
+		if (bitsPerSample == null)
+		{
+			throw new FileException(ErrorId.UNSUPPORTED_BITS_PER_SAMPLE, inFile,
+									Integer.toString(audioFile.getBitsPerSample()));
+		}
+		bytesPerSampleFrame = bitsPerSample.getBytesPerSample() * numChannels;
+
+		sampleRate = audioFile.getSampleRate();
+		if ((sampleRate < OndaFile.MIN_SAMPLE_RATE) || (sampleRate > OndaFile.MAX_SAMPLE_RATE))
+			throw new FileException(ErrorId.UNSUPPORTED_SAMPLE_RATE, inFile, Integer.toString(sampleRate));
+
+		// Set number of sample frames, compression effort and options of encoder
+		numSampleFrames = audioFile.getNumSampleFrames();
+		this.effort = effort;
+		encoderOptions = createEncoderOptions();
+
+		// Set block length; in a file of the latest version, a block of this length is a segment that may be divided
+		// into shorter blocks
+		blockLength = AppConfig.INSTANCE.getBlockLength();
+		if (isVariableBlockLength())
+			blockLength = Segment.getSegmentLength(blockLength);
+
+		// Set attributes in report entry
+		setReportAttributes();
 	}
 
 	//------------------------------------------------------------------
@@ -413,7 +809,7 @@ class FileProcessor
 		throws AppException
 	{
 		numChannels = attributes.numChannels;
-		bitsPerSample = BitsPerSample.forNumBits(attributes.bitsPerSample);
+		bitsPerSample = BitsPerSample.forNumBits(attributes.bitsPerSample, attributes.isFloatingPoint());
 		if (bitsPerSample == null)
 		{
 			throw new FileException(ErrorId.UNSUPPORTED_BITS_PER_SAMPLE, file,
@@ -421,10 +817,129 @@ class FileProcessor
 		}
 		bytesPerSampleFrame = bitsPerSample.getBytesPerSample() * numChannels;
 		sampleRate = attributes.sampleRate;
-		if (attributes.numSampleFrames > Integer.MAX_VALUE / bytesPerSampleFrame)
+		if (attributes.numSampleFrames > Long.MAX_VALUE / bytesPerSampleFrame)
 			throw new FileException(ErrorId.TOO_MANY_SAMPLE_FRAMES, file);
-		numSampleFrames = (int)attributes.numSampleFrames;
+		numSampleFrames = attributes.numSampleFrames;
 		crcValue = attributes.crcValue & 0xFFFFFFFFL;
+
+		// Set attributes in report entry
+		setReportAttributes();
+	}
+
+	//------------------------------------------------------------------
+
+	private OndaFile.Attributes createAttributes()
+	{
+		return new OndaFile.Attributes(version, numChannels, bitsPerSample.getNumBits(), sampleRate, numSampleFrames,
+									   0, keyLength, blockLength, bitsPerSample.isFloatingPoint());
+	}
+
+	//------------------------------------------------------------------
+
+	private List<Chunk> createChunks(PrivateData   privateData,
+									 AudioFileKind audioFileKind)
+		throws AppException
+	{
+		if (privateData.getSourceKind() != audioFileKind)
+			throw new AppException(ErrorId.INCONSISTENT_FILE_KINDS);
+		privateData.validate();
+		int numChunks = privateData.getNumChunks();
+		List<Chunk> chunks = new ArrayList<>();
+		for (int i = 0; i < numChunks; i++)
+		{
+			Chunk chunk = audioFileKind.createChunk();
+			privateData.setChunk(i, chunk);
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	//------------------------------------------------------------------
+
+	private long getCpuTime(
+		long	startCpuTime)
+	{
+		return (startCpuTime < 0) ? -1 : Report.getCurrentThreadCpuTime() - startCpuTime;
+	}
+
+	//------------------------------------------------------------------
+
+	private void setReportAttributes()
+	{
+		reportEntry.numChannels = numChannels;
+		reportEntry.bitsPerSample = bitsPerSample.getNumBits();
+		reportEntry.sampleRate = sampleRate;
+		reportEntry.numSampleFrames = numSampleFrames;
+		reportEntry.sampleDataSize = numSampleFrames * bytesPerSampleFrame;
+	}
+
+	//------------------------------------------------------------------
+
+	private void updateReportEntry(
+		File		outFile,
+		List<IffId>	chunkIds,
+		long		compressedDataSize,
+		long		startTime,
+		long		startCpuTime)
+	{
+		reportEntry.outFile = outFile;
+		reportEntry.chunkIds = chunkIds;
+		reportEntry.compressedDataSize = compressedDataSize;
+		reportEntry.crc = crcValue;
+		reportEntry.wallTime = System.nanoTime() - startTime;
+		long cpuTime = getCpuTime(startCpuTime);
+		reportEntry.cpuTime = (cpuTime < 0) ? -1 : cpuTime + writerCpuTime;
+	}
+
+	//------------------------------------------------------------------
+
+	private void commitEvent(
+		Events.FileOperation	event,
+		Events.Operation		operation,
+		File					inFile,
+		File					outFile,
+		long					compressedDataSize)
+	{
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.operation = operation.toString();
+			if (inFile != null)
+			{
+				event.inFile = inFile.getPath();
+				event.inSize = inFile.length();
+			}
+			if (outFile != null)
+			{
+				event.outFile = outFile.getPath();
+				event.outSize = outFile.length();
+			}
+			event.numChannels = numChannels;
+			event.bitsPerSample = bitsPerSample.getNumBits();
+			event.sampleRate = sampleRate;
+			event.numSampleFrames = numSampleFrames;
+			event.sampleDataSize = numSampleFrames * bytesPerSampleFrame;
+			event.compressedDataSize = compressedDataSize;
+			event.commit();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void commitEvent(
+		Events.QueueWait	event,
+		Events.Operation	operation,
+		boolean				producer,
+		long				sampleFrameIndex)
+	{
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.operation = operation.toString();
+			event.producer = producer;
+			event.sampleFrameIndex = sampleFrameIndex;
+			event.commit();
+		}
 	}
 
 	//------------------------------------------------------------------
@@ -448,6 +963,9 @@ class FileProcessor
 		UNRECOGNISED_FILE_KIND
 		("The input file is not a recognised kind of audio file."),
 
+		UNRECOGNISED_STREAM_KIND
+		("The input stream does not start with the header of a recognised kind of audio file."),
+
 		INCONSISTENT_FILE_KINDS
 		("The input file is a different kind of audio file from the output file."),
 
@@ -465,7 +983,10 @@ class FileProcessor
 
 		UNSUPPORTED_BITS_PER_SAMPLE
 		("The file has %1 bits per sample.\n" + OndaApp.SHORT_NAME + " works only with files that have " +
-			"16 or 24 bits per sample."),
+			"16 or 24 bits per sample, or 32-bit floating-point samples."),
+
+		FLOATING_POINT_NOT_SUPPORTED
+		("The floating-point sample data of the file cannot be written to an output file of kind %1."),
 
 		TOO_MANY_SAMPLE_FRAMES
 		("The file contains too many sample frames for " + OndaApp.SHORT_NAME + ".");
@@ -584,16 +1105,22 @@ class FileProcessor
 				while (length > 0)
 				{
 					// Wait for sample data buffer to become free
-					while (!Task.isExceptionOrCancelled() && (sampleData != null))
+					if (sampleData != null)
 					{
-						try
-						{
-							wait(100);
-						}
-						catch (InterruptedException e)
+						Events.QueueWait event = new Events.QueueWait();
+						event.begin();
+						while (!Task.isExceptionOrCancelled() && (sampleData != null))
 						{
-							// ignore
+							try
+							{
+								wait(100);
+							}
+							catch (InterruptedException e)
+							{
+								// ignore
+							}
 						}
+						commitEvent(event, Events.Operation.COMPRESS, true, inSampleFrameIndex);
 					}
 
 					// Test whether an exception has occurred in another thread or the task has been
@@ -603,8 +1130,7 @@ class FileProcessor
 					// Allocate buffer for block
 					if (blockBuffer == null)
 					{
-						blockBuffer = new byte[Math.min(numSampleFrames - inSampleFrameIndex,
-														AppConfig.INSTANCE.getBlockLength()) *
+						blockBuffer = new byte[(int)Math.min(numSampleFrames - inSampleFrameIndex, blockLength) *
 																					bytesPerSampleFrame];
 						blockBufferOffset = 0;
 					}
@@ -664,16 +1190,22 @@ class FileProcessor
 			if (outSampleFrameIndex < numSampleFrames)
 			{
 				// Wait for sample data
-				while (!Task.isCancelled() && (sampleData == null))
+				if (sampleData == null)
 				{
-					try
-					{
-						wait(100);
-					}
-					catch (InterruptedException e)
+					Events.QueueWait event = new Events.QueueWait();
+					event.begin();
+					while (!Task.isCancelled() && (sampleData == null))
 					{
-						// ignore
+						try
+						{
+							wait(100);
+						}
+						catch (InterruptedException e)
+						{
+							// ignore
+						}
 					}
+					commitEvent(event, Events.Operation.COMPRESS, false, outSampleFrameIndex);
 				}
 
 				// Test whether task has been cancelled
@@ -764,16 +1296,22 @@ class FileProcessor
 			try
 			{
 				// Wait for sample data buffer to become free
-				while (!Task.isExceptionOrCancelled() && (sampleData != null))
+				if (sampleData != null)
 				{
-					try
-					{
-						wait(100);
-					}
-					catch (InterruptedException e)
+					Events.QueueWait event = new Events.QueueWait();
+					event.begin();
+					while (!Task.isExceptionOrCancelled() && (sampleData != null))
 					{
-						// ignore
+						try
+						{
+							wait(100);
+						}
+						catch (InterruptedException e)
+						{
+							// ignore
+						}
 					}
+					commitEvent(event, Events.Operation.EXPAND, true, outSampleFrameIndex);
 				}
 
 				// Test whether an exception has occurred in another thread or the task has been cancelled
@@ -835,16 +1373,22 @@ class FileProcessor
 			if (outSampleFrameIndex < numSampleFrames)
 			{
 				// Wait for sample data
-				while (!Task.isCancelled() && (sampleData == null))
+				if (sampleData == null)
 				{
-					try
+					Events.QueueWait event = new Events.QueueWait();
+					event.begin();
+					while (!Task.isCancelled() && (sampleData == null))
 					{
-						wait(100);
-					}
-					catch (InterruptedException e)
-					{
-						// ignore
+						try
+						{
+							wait(100);
+						}
+						catch (InterruptedException e)
+						{
+							// ignore
+						}
 					}
+					commitEvent(event, Events.Operation.EXPAND, false, outSampleFrameIndex);
 				}
 
 				// Test whether task has been cancelled
@@ -929,6 +1473,134 @@ class FileProcessor
 
 	//==================================================================
 
+
+	// CLASS: STREAM HEADER READER
+
+
+	/**
+	 * This class implements the reader of the chunks of an input stream that precede its sample data.  The chunks are
+	 * passed to the reader of the private data and, when all the chunks have been read, the attributes of the input
+	 * stream are validated and the thread that writes the output stream is started.
+	 */
+
+	private class StreamHeaderReader
+		implements FormFile.IChunkReader
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	AudioFile				audioFile;
+		private	PrivateData				privateData;
+		private	FormFile.IChunkReader	privateDataReader;
+		private	OutputStream			outStream;
+		private	Effort					effort;
+		private	List<IffId>				ids;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private StreamHeaderReader(AudioFile    audioFile,
+								   PrivateData  privateData,
+								   ChunkFilter  chunkFilter,
+								   OutputStream outStream,
+								   Effort       effort)
+		{
+			this.audioFile = audioFile;
+			this.privateData = privateData;
+			this.outStream = outStream;
+			this.effort = effort;
+			privateDataReader = privateData.getReader(chunkFilter, audioFile::hasExtendedFormat);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : FormFile.IChunkReader interface
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Runs in Task.Compress (primary thread).
+		 */
+
+		@Override
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
+			throws AppException
+		{
+			privateDataReader.beginReading(dataInput, typeId, size);
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Runs in Task.Compress (primary thread).
+		 */
+
+		@Override
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
+			throws AppException, IOException
+		{
+			privateDataReader.read(dataInput, id, size);
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Runs in Task.Compress (primary thread).
+		 */
+
+		@Override
+		public void endReading(DataInput dataInput)
+			throws AppException, IOException
+		{
+			// End reading of private data
+			privateDataReader.endReading(dataInput);
+
+			// Validate and set attributes
+			setAttributes(null, audioFile, effort);
+
+			// Set private data; they are always included in a stream, which has no filename extension from which the
+			// kind of the source file could be inferred when the stream is expanded
+			ids = privateData.getAncillaryIds();
+
+			// Set version of file and key length; at maximum effort, the sample data cannot be analysed because they
+			// are read only once
+			version = getVersion(true);
+			keyLength = bitsPerSample.getKeyLength();
+			if (effort == Effort.MAX)
+				Log.INSTANCE.appendLine(NO_ANALYSIS_STR);
+
+			// Append encoding parameters to log
+			Log.INSTANCE.appendLine(PARAMETERS_STR + "[ " + effort.getKey() + " : version " + version
+										+ " : key length " + keyLength + " : block length "
+										+ INTEGER_FORMATTER.format(blockLength) + " ]");
+
+			// Initialise variables
+			inSampleFrameIndex = 0;
+			outSampleFrameIndex = 0;
+			sampleData = null;
+			crc = new CRC32();
+			compressor.init();
+
+			// Update information field in progress view
+			Task.setInfo(WRITING_STR);
+
+			// Start thread that writes output stream
+			new Task.WriteCompressed(FileProcessor.this, outStream, privateData).start();
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 }
 
 //----------------------------------------------------------------------
@@ -0,0 +1,247 @@
+/*====================================================================*\
+
+FixedPredictor.java
+
+Fixed polynomial predictor class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// FIXED POLYNOMIAL PREDICTOR CLASS
+
+
+/**
+ * This class provides the fixed polynomial predictors that may be selected for a channel of a block of sample data.
+ * The predictor of order <i>k</i> predicts a sample value from the <i>k</i> sample values that precede it, so that its
+ * residual is the <i>k</i>th-order difference of the sample values: the predictor of order 0 predicts zero, and the
+ * predictor of order 2 is the one that is used in blocks whose predictor order is not recorded.  The sample values
+ * that precede a block are taken to be zero.
+ */
+
+class FixedPredictor
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The minimum order of a predictor. */
+	public static final	int	MIN_ORDER	= 0;
+
+	/** The maximum order of a predictor. */
+	public static final	int	MAX_ORDER	= 4;
+
+	/** The order of the predictor that is used in blocks whose predictor order is not recorded. */
+	public static final	int	DEFAULT_ORDER	= 2;
+
+	/** The length (in bits) of the order of a predictor in a block. */
+	public static final	int	ORDER_LENGTH	= 3;
+
+	/**
+	 * The code that is recorded in place of the order of a predictor for a channel of a block whose sample values are
+	 * all equal.  The channel is encoded as a single value.
+	 */
+	public static final	int	CONSTANT_CODE	= 7;
+
+	/** The coefficients of the preceding sample values, most recent first, for each order of predictor. */
+	private static final	int[][]	COEFFICIENTS	=
+	{
+		{ 0,  0,  0,  0 },
+		{ 1,  0,  0,  0 },
+		{ 2, -1,  0,  0 },
+		{ 3, -3,  1,  0 },
+		{ 4, -6,  4, -1 }
+	};
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private FixedPredictor()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns a coefficient of the predictor of the specified order.
+	 *
+	 * @param  order
+	 *           the order of the predictor.
+	 * @param  lag
+	 *           the distance of the preceding sample value to which the coefficient applies, from 1 (the most recent)
+	 *           to 4.
+	 * @return the coefficient of the sample value that precedes the predicted value by {@code lag} sample values in
+	 *         the predictor of order {@code order}.
+	 */
+
+	public static int getCoefficient(
+		int	order,
+		int	lag)
+	{
+		return COEFFICIENTS[order][lag - 1];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Replaces the specified values with their first-order differences.  If the values are the residuals of the
+	 * predictor of order <i>k</i>, they are replaced by the residuals of the predictor of order <i>k</i> + 1.
+	 *
+	 * @param values
+	 *          the values, which will be replaced by their first-order differences.
+	 * @param numValues
+	 *          the number of values.
+	 */
+
+	public static void difference(
+		int[]	values,
+		int		numValues)
+	{
+		for (int i = numValues - 1; i > 0; i--)
+			values[i] -= values[i - 1];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Replaces the specified values with their first-order differences, where the first value is differenced with the
+	 * last of the values that precede it.  The preceding values are replaced by their own first-order differences, so
+	 * that the function may be applied repeatedly to give the residuals of predictors of up to
+	 * {@link #MAX_ORDER} orders.
+	 *
+	 * @param values
+	 *          the values, which will be replaced by their first-order differences.
+	 * @param numValues
+	 *          the number of values.
+	 * @param history
+	 *          the {@link #MAX_ORDER} values that precede {@code values}, oldest first, which will be replaced by their
+	 *          first-order differences.
+	 */
+
+	public static void difference(
+		int[]	values,
+		int		numValues,
+		int[]	history)
+	{
+		difference(values, numValues);
+		if (numValues > 0)
+			values[0] -= history[MAX_ORDER - 1];
+		difference(history, MAX_ORDER);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Updates the history of the sample values of a block of interleaved data, which consists of the last
+	 * {@link #MAX_ORDER} sample frames that precede the next block, oldest first.  The sample values are sign-extended
+	 * from the sample length, so that the history of a decoder, whose values may be correct only in their low-order
+	 * bits, is the same as that of the encoder.
+	 *
+	 * @param history
+	 *          the interleaved sample values of the history, which will be updated.
+	 * @param data
+	 *          the interleaved sample values of the block.
+	 * @param offset
+	 *          the start offset of the sample values of the block in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 * @param numChannels
+	 *          the number of channels.
+	 * @param sampleLength
+	 *          the length (in bits) of a sample value.
+	 */
+
+	public static void updateHistory(
+		int[]	history,
+		int[]	data,
+		int		offset,
+		int		numSampleFrames,
+		int		numChannels,
+		int		sampleLength)
+	{
+		// Move retained sample frames to start of history
+		int numFrames = Math.min(numSampleFrames, MAX_ORDER);
+		int numRetained = (MAX_ORDER - numFrames) * numChannels;
+		System.arraycopy(history, numFrames * numChannels, history, 0, numRetained);
+
+		// Append last sample frames of block to history
+		int shift = Integer.SIZE - sampleLength;
+		int srcOffset = offset + (numSampleFrames - numFrames) * numChannels;
+		for (int i = 0; i < numFrames * numChannels; i++)
+			history[numRetained + i] = data[srcOffset + i] << shift >> shift;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Restores in place the sample values of a channel of a block of interleaved data from the residuals of a
+	 * predictor.  A value that is flagged as a full value is a sample value, not a residual.
+	 *
+	 * @param data
+	 *          the interleaved residuals and full values, which will be replaced by the sample values.
+	 * @param fullValues
+	 *          flags that indicate which elements of {@code data} are full values.
+	 * @param offset
+	 *          the offset to the first value of the channel in {@code data}.
+	 * @param endOffset
+	 *          the offset after the last value of the block in {@code data}.
+	 * @param numChannels
+	 *          the number of channels, which is the distance between the values of the channel.
+	 * @param order
+	 *          the order of the predictor.
+	 */
+
+	public static void restore(
+		int[]		data,
+		boolean[]	fullValues,
+		int			offset,
+		int			endOffset,
+		int			numChannels,
+		int			order)
+	{
+		int[] coefficients = COEFFICIENTS[order];
+		int c1 = coefficients[0];
+		int c2 = coefficients[1];
+		int c3 = coefficients[2];
+		int c4 = coefficients[3];
+		int p1 = 0;
+		int p2 = 0;
+		int p3 = 0;
+		int p4 = 0;
+		for (int i = offset; i < endOffset; i += numChannels)
+		{
+			int value = data[i];
+			if (!fullValues[i])
+			{
+				value += c1 * p1 + c2 * p2 + c3 * p3 + c4 * p4;
+				data[i] = value;
+			}
+			p4 = p3;
+			p3 = p2;
+			p2 = p1;
+			p1 = value;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
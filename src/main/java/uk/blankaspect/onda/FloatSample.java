@@ -0,0 +1,212 @@
+/*====================================================================*\
+
+FloatSample.java
+
+Floating-point sample class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// FLOATING-POINT SAMPLE CLASS
+
+
+/**
+ * This class provides the constants and the mapping between 32-bit IEEE 754 floating-point sample values and the
+ * integer values with which they are encoded in a file of version 10 or later whose sample format is floating point.
+ * <p>
+ * The floating-point values of a segment are mapped to 24-bit integers with a common scale, which is determined by the
+ * greatest biased exponent of the normal values of the segment.  A value whose exponent is the greatest exponent is
+ * mapped to its significand shifted right by one bit, and a value with a lesser exponent is shifted right by a further
+ * bit for each unit by which its exponent is less than the greatest exponent.  The integer values are encoded in the
+ * same way as the sample values of integer PCM data, so that the predictors of the channels apply to them.
+ * </p>
+ * <p>
+ * The bits of a significand that are shifted out of its integer value are the <i>lost bits</i> of the value; their
+ * number is implied by the position of the most significant bit of the integer value.  A zero, a subnormal value, an
+ * infinity, a NaN and a value that is too small to be represented at the scale of the segment are all mapped to zero,
+ * and are stored separately as <i>escaped values</i>.
+ * </p>
+ * <p>
+ * The encoded data of a segment are preceded by the greatest exponent of the segment, a flag that denotes whether the
+ * lost bits of all the values of the segment are zero and a flag that denotes whether any escaped value of the segment
+ * is not positive zero.  They are followed by, for each value in interleaved order, either an escaped value, unless
+ * the second flag is clear (a single zero bit for positive zero, otherwise a one bit followed by the 32 bits of the
+ * value), or the lost bits of the value, unless the first flag is set.
+ * </p>
+ */
+
+class FloatSample
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The length (in bits) of the integer value to which a floating-point value is mapped. */
+	public static final	int	VALUE_LENGTH	= 24;
+
+	/** The length (in bits) of the greatest exponent of a segment. */
+	public static final	int	EXPONENT_LENGTH	= 8;
+
+	/** The length (in bits) of the fraction of a floating-point value. */
+	public static final	int	FRACTION_LENGTH	= 23;
+
+	/** The greatest biased exponent of a normal floating-point value. */
+	public static final	int	MAX_EXPONENT	= 254;
+
+	/** The number of bits of an escaped value that is not positive zero. */
+	public static final	int	ESCAPED_VALUE_LENGTH	= Integer.SIZE;
+
+	private static final	int	SIGN_MASK		= 1 << 31;
+	private static final	int	FRACTION_MASK	= (1 << FRACTION_LENGTH) - 1;
+	private static final	int	HIDDEN_BIT		= 1 << FRACTION_LENGTH;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private FloatSample()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the greatest biased exponent of the normal values among the specified floating-point values.
+	 *
+	 * @param  values
+	 *           the bits of the floating-point values.
+	 * @param  offset
+	 *           the start offset of the values in {@code values}.
+	 * @param  numValues
+	 *           the number of values.
+	 * @return the greatest biased exponent of the normal values, from 1 to {@link #MAX_EXPONENT} inclusive, or 0 if
+	 *         none of the values is normal.
+	 */
+
+	public static int getMaxExponent(
+		int[]	values,
+		int		offset,
+		int		numValues)
+	{
+		int maxExponent = 0;
+		int endOffset = offset + numValues;
+		for (int i = offset; i < endOffset; i++)
+		{
+			int exponent = getExponent(values[i]);
+			if ((exponent <= MAX_EXPONENT) && (maxExponent < exponent))
+				maxExponent = exponent;
+		}
+		return maxExponent;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the integer value to which the specified floating-point value is mapped at the scale of the specified
+	 * greatest exponent.
+	 *
+	 * @param  bits
+	 *           the bits of the floating-point value.
+	 * @param  maxExponent
+	 *           the greatest exponent of the segment that contains the value.
+	 * @return the integer value to which the floating-point value is mapped, or 0 if the value is escaped.
+	 */
+
+	public static int toInteger(
+		int	bits,
+		int	maxExponent)
+	{
+		int exponent = getExponent(bits);
+		if ((exponent == 0) || (exponent > MAX_EXPONENT))
+			return 0;
+		int shift = maxExponent - exponent + 1;
+		if (shift > FRACTION_LENGTH)
+			return 0;
+		int value = ((bits & FRACTION_MASK) | HIDDEN_BIT) >>> shift;
+		return (bits < 0) ? -value : value;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the number of lost bits of a floating-point value that is mapped to the specified non-zero integer value.
+	 *
+	 * @param  value
+	 *           the non-zero integer value.
+	 * @return the number of bits of the significand of the floating-point value that are not included in {@code
+	 *         value}.
+	 */
+
+	public static int getShift(
+		int	value)
+	{
+		return Integer.numberOfLeadingZeros(Math.abs(value)) - (Integer.SIZE - VALUE_LENGTH);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the bits of the floating-point value that is mapped to the specified non-zero integer value at the scale
+	 * of the specified greatest exponent.
+	 *
+	 * @param  value
+	 *           the non-zero integer value.
+	 * @param  maxExponent
+	 *           the greatest exponent of the segment that contains the value.
+	 * @param  lostBits
+	 *           the lost bits of the floating-point value.
+	 * @return the bits of the floating-point value, or 0 if {@code value} cannot be mapped from a normal floating-point
+	 *         value at the scale of {@code maxExponent}.
+	 */
+
+	public static int toBits(
+		int	value,
+		int	maxExponent,
+		int	lostBits)
+	{
+		int shift = getShift(value);
+		int exponent = maxExponent - shift + 1;
+		if ((shift < 1) || (shift > FRACTION_LENGTH) || (exponent < 1) || (exponent > MAX_EXPONENT))
+			return 0;
+		return (value & SIGN_MASK) | (exponent << FRACTION_LENGTH)
+				| (((Math.abs(value) << shift) | lostBits) & FRACTION_MASK);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the biased exponent of the specified floating-point value.
+	 *
+	 * @param  bits
+	 *           the bits of the floating-point value.
+	 * @return the biased exponent of the value, from 0 to 255 inclusive.
+	 */
+
+	private static int getExponent(
+		int	bits)
+	{
+		return (bits >>> FRACTION_LENGTH) & 0xFF;
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
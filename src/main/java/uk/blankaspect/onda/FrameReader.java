@@ -0,0 +1,899 @@
+/*====================================================================*\
+
+FrameReader.java
+
+Random-access sample frame reader class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import uk.blankaspect.common.exception.AppException;
+import uk.blankaspect.common.exception.FileException;
+
+//----------------------------------------------------------------------
+
+
+// RANDOM-ACCESS SAMPLE FRAME READER CLASS
+
+
+/**
+ * This class provides random access to the sample frames of the compressed data of an Onda file.  The sample data are
+ * decoded a block at a time, where a block is the {@linkplain OndaFile.Attributes#blockLength block length} of sample
+ * frames that is decoded by each read from an {@link OndaDataInput} (a segment, in a file of version 5 or later).
+ * <p>
+ * The bit offset of each block in the compressed data is recorded in an in-memory <i>block map</i>.  If the blocks of
+ * the file are independent of each other and the file has a data block size chunk, the map is built from the sizes in
+ * the chunk; otherwise, the map is built on the first sequential pass over the blocks, which is extended as far as
+ * necessary whenever a block that has not yet been mapped is read.  To keep the map compact, the offset of each block
+ * is stored as an {@code int} offset from an <i>anchor</i>, a {@code long} offset that is shared by a run of blocks.
+ * </p>
+ * <p>
+ * A segment of a file of version 8 or later may depend on the segments that precede it: a segment that is not a sync
+ * segment continues the predictors of the previous segment, and a segment that is a back reference copies earlier
+ * sample frames.  For each block of such a file, the map also records the <i>restart block</i>, the latest block from
+ * which the sample data can be decoded to produce the block correctly.  The restart block of a sync segment is the
+ * segment itself; that of a back reference is the earliest restart block of the blocks that contain the referenced
+ * sample frames.  A block is decoded by decoding the blocks from its restart block onwards.
+ * </p>
+ * <p>
+ * The compressed data may be contiguous, as in an Onda file, or divided into pieces, as in an Onda stream that has been
+ * saved to a file; in the latter case, the file offset and data offset of each piece must be supplied.
+ * </p>
+ * <p>
+ * The most recently decoded blocks are kept in a cache.  The least recently used blocks are discarded from the cache
+ * when the total size of its blocks exceeds a limit, so that repeated reads from the same region of the sample data
+ * do not decode the same blocks again.
+ * </p>
+ */
+
+class FrameReader
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The default maximum total size (in bytes) of the decoded blocks in the cache. */
+	public static final	int	DEFAULT_CACHE_SIZE	= 1 << 25;
+
+	/** The maximum binary logarithm of the number of blocks that share an anchor in the block map. */
+	private static final	int	MAX_ANCHOR_ORDER	= 6;
+
+	/** The maximum number of bits of compressed data per sample value that is assumed in choosing the anchor order. */
+	private static final	int	MAX_BITS_PER_VALUE	= 64;
+
+	/** The number of bits of compressed data per block that is assumed, in addition to its values, for its header. */
+	private static final	int	BLOCK_HEADER_BITS	= 1 << 16;
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ERROR IDENTIFIERS
+
+
+	private enum ErrorId
+		implements AppException.IId
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		FILE_DOES_NOT_EXIST
+		("The file does not exist."),
+
+		FAILED_TO_OPEN_FILE
+		("Failed to open the file."),
+
+		FAILED_TO_CLOSE_FILE
+		("Failed to close the file."),
+
+		FILE_ACCESS_NOT_PERMITTED
+		("Access to the file was not permitted."),
+
+		ERROR_READING_FILE
+		("An error occurred when reading the file."),
+
+		MALFORMED_FILE
+		("The file is malformed."),
+
+		TOO_MANY_BLOCKS
+		("The file has too many blocks of sample data for random access."),
+
+		NOT_ENOUGH_MEMORY
+		("There was not enough memory to map the blocks of the file.");
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private ErrorId(
+			String	message)
+		{
+			this.message = message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : AppException.IId interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public String getMessage()
+		{
+			return message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	message;
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// PIECE INPUT STREAM CLASS
+
+
+	/**
+	 * This class implements an input stream of the compressed data in the pieces of a file, from a given position in a
+	 * piece to the end of the last piece.
+	 */
+
+	private class PieceInputStream
+		extends InputStream
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	RandomAccessFile	raFile;
+		private	int					pieceIndex;
+		private	long				pieceLength;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Creates a new instance of an input stream of the compressed data in the pieces of the specified file.  The
+		 * file must be positioned at the start of the data in the current piece.
+		 *
+		 * @param raFile
+		 *          the file.
+		 * @param pieceIndex
+		 *          the index of the current piece.
+		 * @param pieceLength
+		 *          the length (in bytes) of the data that remain in the current piece.
+		 */
+
+		private PieceInputStream(
+			RandomAccessFile	raFile,
+			int					pieceIndex,
+			long				pieceLength)
+		{
+			this.raFile = raFile;
+			this.pieceIndex = pieceIndex;
+			this.pieceLength = pieceLength;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			if (!startPiece())
+				return -1;
+			--pieceLength;
+			return raFile.readUnsignedByte();
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public int read(
+			byte[]	buffer,
+			int		offset,
+			int		length)
+			throws IOException
+		{
+			if (length == 0)
+				return 0;
+			if (!startPiece())
+				return -1;
+			int readLength = (int)Math.min(length, pieceLength);
+			raFile.readFully(buffer, offset, readLength);
+			pieceLength -= readLength;
+			return readLength;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Seeks the start of the next piece if no data remain in the current piece.
+		 *
+		 * @return {@code true} if data remain in the current piece; {@code false} if the end of the last piece has
+		 *         been reached.
+		 * @throws IOException
+		 *           if an error occurred when seeking the next piece.
+		 */
+
+		private boolean startPiece()
+			throws IOException
+		{
+			if (pieceLength == 0)
+			{
+				if (pieceIndex + 1 >= pieceFileOffsets.length)
+					return false;
+				++pieceIndex;
+				raFile.seek(pieceFileOffsets[pieceIndex]);
+				pieceLength = pieceDataOffsets[pieceIndex + 1] - pieceDataOffsets[pieceIndex];
+			}
+			return true;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	File					file;
+	private	OndaFile.Attributes		attributes;
+	private	long[]					pieceFileOffsets;
+	private	long[]					pieceDataOffsets;
+	private	int						frameSize;
+	private	int						numBlocks;
+	private	int						anchorOrder;
+	private	long[]					anchorOffsets;
+	private	int[]					blockOffsets;
+	private	int[]					restartBlocks;
+	private	int[]					minimumBlocks;
+	private	int						numMinimumBlocks;
+	private	int						numMappedBlocks;
+	private	int						referenceWindowOrder;
+	private	Map<Integer, byte[]>	cache;
+	private	long					cacheSize;
+	private	long					maxCacheSize;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of a reader of the sample frames of the specified contiguous compressed data.
+	 *
+	 * @param  file
+	 *           the file that contains the compressed data.
+	 * @param  attributes
+	 *           the attributes of the file.
+	 * @param  dataOffset
+	 *           the offset (in bytes) of the compressed data in the file.
+	 * @param  dataLength
+	 *           the length (in bytes) of the compressed data.
+	 * @param  blockSizes
+	 *           the sizes (in bits) of the blocks of compressed data from the data block size chunk of the file, or
+	 *           {@code null} if the file does not have a data block size chunk.  The sizes are ignored if the blocks
+	 *           of the file may depend on earlier blocks or if they do not match the number of blocks.
+	 * @throws AppException
+	 *           if the file has too many blocks of sample data or there is not enough memory for the block map.
+	 */
+
+	public FrameReader(
+		File				file,
+		OndaFile.Attributes	attributes,
+		long				dataOffset,
+		long				dataLength,
+		int[]				blockSizes)
+		throws AppException
+	{
+		this(file, attributes, new long[] { dataOffset }, new long[] { 0, dataLength }, blockSizes);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Creates a new instance of a reader of the sample frames of the specified compressed data, which are divided
+	 * into pieces.
+	 *
+	 * @param  file
+	 *           the file that contains the compressed data.
+	 * @param  attributes
+	 *           the attributes of the file.
+	 * @param  pieceFileOffsets
+	 *           the offset (in bytes) in the file of the data of each piece.
+	 * @param  pieceDataOffsets
+	 *           the offset (in bytes) in the compressed data of each piece, followed by the length of the compressed
+	 *           data.
+	 * @param  blockSizes
+	 *           the sizes (in bits) of the blocks of compressed data from the data block size chunk of the file, or
+	 *           {@code null} if the file does not have a data block size chunk.  The sizes are ignored if the blocks
+	 *           of the file may depend on earlier blocks or if they do not match the number of blocks.
+	 * @throws AppException
+	 *           if the file has too many blocks of sample data or there is not enough memory for the block map.
+	 */
+
+	public FrameReader(
+		File				file,
+		OndaFile.Attributes	attributes,
+		long[]				pieceFileOffsets,
+		long[]				pieceDataOffsets,
+		int[]				blockSizes)
+		throws AppException
+	{
+		// Initialise instance variables
+		this.file = file;
+		this.attributes = attributes;
+		this.pieceFileOffsets = pieceFileOffsets;
+		this.pieceDataOffsets = pieceDataOffsets;
+		frameSize = attributes.getBytesPerSampleFrame();
+		referenceWindowOrder = -1;
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+		maxCacheSize = DEFAULT_CACHE_SIZE;
+
+		// Get number of blocks
+		long numBlocks = (attributes.numSampleFrames + attributes.blockLength - 1) / attributes.blockLength;
+		if (numBlocks >= Integer.MAX_VALUE)
+			throw new FileException(ErrorId.TOO_MANY_BLOCKS, file);
+		this.numBlocks = (int)numBlocks;
+
+		// Choose the number of blocks that share an anchor so that the offset of a block from its anchor fits in an int
+		long maxBlockBits = (long)attributes.blockLength * attributes.numChannels * MAX_BITS_PER_VALUE
+																								+ BLOCK_HEADER_BITS;
+		while ((anchorOrder < MAX_ANCHOR_ORDER) && ((maxBlockBits << anchorOrder + 1) <= Integer.MAX_VALUE))
+			++anchorOrder;
+
+		// Allocate block map
+		try
+		{
+			anchorOffsets = new long[(this.numBlocks >>> anchorOrder) + 1];
+			blockOffsets = new int[this.numBlocks + 1];
+			if (attributes.version >= OndaFile.BLOCK_CONTINUITY_VERSION)
+			{
+				restartBlocks = new int[this.numBlocks];
+				minimumBlocks = new int[16];
+			}
+		}
+		catch (OutOfMemoryError e)
+		{
+			throw new FileException(ErrorId.NOT_ENOUGH_MEMORY, file);
+		}
+
+		// Map blocks from their sizes
+		if ((restartBlocks == null) && (blockSizes != null) && (blockSizes.length == this.numBlocks))
+		{
+			long offset = 0;
+			for (int i = 0; i < blockSizes.length; i++)
+			{
+				offset += blockSizes[i];
+				setBlockOffset(i + 1, offset);
+			}
+			numMappedBlocks = this.numBlocks;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Sets the maximum total size of the decoded blocks in the cache.  Blocks are discarded from the cache, least
+	 * recently used first, until the total size of the remaining blocks does not exceed the maximum.
+	 *
+	 * @param maxSize
+	 *          the maximum total size (in bytes) of the decoded blocks in the cache; if it is zero, no blocks are
+	 *          cached.
+	 */
+
+	public void setCacheSize(
+		long	maxSize)
+	{
+		maxCacheSize = maxSize;
+		trimCache();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the specified sample frames, and stores them in the specified buffer in the form of the expanded sample
+	 * data of the file: interleaved little-endian sample values.  A block that is not in the cache is decoded from its
+	 * restart block, and the decoded blocks are added to the cache.
+	 *
+	 * @param  startFrame
+	 *           the index of the first sample frame that will be read.
+	 * @param  numFrames
+	 *           the maximum number of sample frames that will be read.
+	 * @param  buffer
+	 *           the buffer in which the sample frames will be stored.
+	 * @param  offset
+	 *           the start offset at which the sample frames will be stored in {@code buffer}.
+	 * @return the number of sample frames that were read, which is less than {@code numFrames} if the end of the
+	 *         sample data was reached.
+	 * @throws IllegalArgumentException
+	 *           <ul>
+	 *             <li>{@code buffer} is {@code null}, or</li>
+	 *             <li>{@code (startFrame < 0)} or {@code startFrame} is greater than the number of sample frames, or
+	 *                 </li>
+	 *             <li>{@code (numFrames < 0)} or {@code numFrames} sample frames do not fit in {@code buffer} after
+	 *                 {@code offset}.</li>
+	 *           </ul>
+	 * @throws IndexOutOfBoundsException
+	 *           if {@code (offset < 0)} or {@code (offset > buffer.length)}.
+	 * @throws AppException
+	 *           if an error occurred when reading the file or the compressed data are malformed.
+	 */
+
+	public int readFrames(
+		long	startFrame,
+		int		numFrames,
+		byte[]	buffer,
+		int		offset)
+		throws AppException
+	{
+		// Validate arguments
+		if (buffer == null)
+			throw new IllegalArgumentException();
+		if ((offset < 0) || (offset > buffer.length))
+			throw new IndexOutOfBoundsException();
+		if ((startFrame < 0) || (startFrame > attributes.numSampleFrames))
+			throw new IllegalArgumentException();
+		if ((numFrames < 0) || ((long)numFrames * frameSize > buffer.length - offset))
+			throw new IllegalArgumentException();
+
+		// Limit number of frames to end of sample data
+		numFrames = (int)Math.min(numFrames, attributes.numSampleFrames - startFrame);
+		if (numFrames == 0)
+			return 0;
+
+		// Test whether file exists
+		if (!file.isFile())
+			throw new FileException(ErrorId.FILE_DOES_NOT_EXIST, file);
+
+		// Read sample frames
+		RandomAccessFile raFile = null;
+		try
+		{
+			// Open file
+			try
+			{
+				raFile = new RandomAccessFile(file, "r");
+			}
+			catch (FileNotFoundException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_OPEN_FILE, file, e);
+			}
+			catch (SecurityException e)
+			{
+				throw new FileException(ErrorId.FILE_ACCESS_NOT_PERMITTED, file, e);
+			}
+
+			// Copy sample frames from each block
+			long frameIndex = startFrame;
+			long endFrameIndex = startFrame + numFrames;
+			while (frameIndex < endFrameIndex)
+			{
+				int blockIndex = (int)(frameIndex / attributes.blockLength);
+				byte[] block = getBlock(raFile, blockIndex);
+				int blockFrameIndex = (int)(frameIndex - (long)blockIndex * attributes.blockLength);
+				int length = (int)Math.min(block.length / frameSize - blockFrameIndex, endFrameIndex - frameIndex);
+				System.arraycopy(block, blockFrameIndex * frameSize, buffer, offset, length * frameSize);
+				offset += length * frameSize;
+				frameIndex += length;
+			}
+
+			// Close file
+			try
+			{
+				raFile.close();
+				raFile = null;
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_CLOSE_FILE, file, e);
+			}
+		}
+		catch (AppException e)
+		{
+			// Close file
+			try
+			{
+				if (raFile != null)
+					raFile.close();
+			}
+			catch (IOException e1)
+			{
+				// ignore
+			}
+
+			// Rethrow exception
+			throw e;
+		}
+
+		// Return number of sample frames
+		return numFrames;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the specified decoded block, from the cache if it is there, otherwise by decoding it from its restart
+	 * block.  A block that has not yet been mapped is decoded from the restart block of the last mapped block, which
+	 * extends the block map up to the block.  If the block turns out to depend on a block that precedes the block from
+	 * which it was decoded, it is decoded again from its restart block, which is known once it has been mapped.
+	 *
+	 * @param  raFile
+	 *           the file from which compressed data will be read.
+	 * @param  index
+	 *           the index of the block.
+	 * @return the decoded block.
+	 * @throws AppException
+	 *           if an error occurred when reading the file or the compressed data are malformed.
+	 */
+
+	private byte[] getBlock(
+		RandomAccessFile	raFile,
+		int					index)
+		throws AppException
+	{
+		// Get block from cache
+		byte[] block = cache.get(index);
+
+		// If block is not in cache, decode it from its restart block
+		if (block == null)
+		{
+			int startIndex = (index < numMappedBlocks) ? getRestartBlock(index)
+													   : (numMappedBlocks == 0) ? 0
+																				: getRestartBlock(numMappedBlocks - 1);
+			while ((block = decodeBlocks(raFile, startIndex, index)) == null)
+				startIndex = getRestartBlock(index);
+		}
+		return block;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decodes the specified range of blocks, maps any blocks that have not yet been mapped and adds the blocks that
+	 * were decoded correctly to the cache.  A block is decoded correctly if its restart block is not earlier than the
+	 * first block of the range.
+	 *
+	 * @param  raFile
+	 *           the file from which compressed data will be read.
+	 * @param  startIndex
+	 *           the index of the first block of the range, which must be a restart block and must have been mapped.
+	 * @param  endIndex
+	 *           the index of the last block of the range.
+	 * @return the decoded last block of the range, or {@code null} if it depends on a block that precedes the range.
+	 * @throws AppException
+	 *           if an error occurred when reading the file or the compressed data are malformed.
+	 */
+
+	private byte[] decodeBlocks(
+		RandomAccessFile	raFile,
+		int					startIndex,
+		int					endIndex)
+		throws AppException
+	{
+		// Seek byte that contains first bit of start block
+		long bitOffset = getBlockOffset(startIndex);
+		long byteOffset = bitOffset >>> 3;
+		int pieceIndex = getPieceIndex(byteOffset);
+		try
+		{
+			raFile.seek(pieceFileOffsets[pieceIndex] + byteOffset - pieceDataOffsets[pieceIndex]);
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.ERROR_READING_FILE, file, e);
+		}
+
+		// Create compressed data input and skip bits of preceding block
+		long pieceLength = pieceDataOffsets[pieceIndex + 1] - byteOffset;
+		OndaDataInput dataInput = null;
+		if (pieceFileOffsets.length == 1)
+		{
+			dataInput = new OndaDataInput(pieceLength, attributes.numChannels, attributes.getValueLength(),
+										  attributes.keyLength, raFile);
+		}
+		else
+		{
+			dataInput = new OndaDataInput(attributes.numChannels, attributes.getValueLength(), attributes.keyLength,
+										  new PieceInputStream(raFile, pieceIndex, pieceLength));
+		}
+		OndaFile.initDataInput(attributes, dataInput);
+		try
+		{
+			if (startIndex > 0)
+			{
+				dataInput.resume((int)(bitOffset & 7), referenceWindowOrder,
+								 (long)startIndex * attributes.blockLength);
+			}
+
+			// Decode blocks
+			int bytesPerSample = attributes.getBytesPerSample();
+			for (int i = startIndex; i <= endIndex; i++)
+			{
+				// Decode block
+				int numFrames = (int)Math.min(attributes.numSampleFrames - (long)i * attributes.blockLength,
+											  attributes.blockLength);
+				int length = numFrames * attributes.numChannels;
+				byte[] block = new byte[numFrames * frameSize];
+				if (attributes.isFloatingPoint())
+					dataInput.readFloatBlock(block, 0, length);
+				else
+					dataInput.readPcmBlock(block, 0, length, bytesPerSample);
+
+				// Map block
+				if (i == numMappedBlocks)
+					mapBlock(i, (byteOffset << 3) + dataInput.getBitPosition(), dataInput);
+
+				// Discard a block that depends on a block that precedes the range
+				if (getRestartBlock(i) < startIndex)
+				{
+					if (i == endIndex)
+						return null;
+					continue;
+				}
+
+				// Add block to cache
+				addToCache(i, block);
+				if (i == endIndex)
+					return block;
+			}
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.MALFORMED_FILE, file, e);
+		}
+		return null;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Adds the specified block, which has just been decoded, to the block map.
+	 *
+	 * @param  index
+	 *           the index of the block, which must be the number of blocks that have been mapped.
+	 * @param  endOffset
+	 *           the bit offset of the end of the block in the compressed data.
+	 * @param  dataInput
+	 *           the input from which the block was decoded.
+	 * @throws AppException
+	 *           if the block is too long for the block map.
+	 */
+
+	private void mapBlock(
+		int				index,
+		long			endOffset,
+		OndaDataInput	dataInput)
+		throws AppException
+	{
+		// Set restart block of block and update the blocks whose restart blocks are the least of all the blocks that
+		// follow them
+		if (restartBlocks != null)
+		{
+			int restartBlock = index;
+			int distance = dataInput.getReferenceDistance();
+			if (distance > 0)
+				restartBlock = getMinimumRestartBlock(((long)index * attributes.blockLength - distance)
+																						/ attributes.blockLength);
+			else if (!dataInput.isSyncSegment() && (index > 0))
+				restartBlock = restartBlocks[index - 1];
+			restartBlocks[index] = restartBlock;
+
+			while ((numMinimumBlocks > 0) && (restartBlocks[minimumBlocks[numMinimumBlocks - 1]] >= restartBlock))
+				--numMinimumBlocks;
+			if (numMinimumBlocks == minimumBlocks.length)
+				minimumBlocks = Arrays.copyOf(minimumBlocks, 2 * minimumBlocks.length);
+			minimumBlocks[numMinimumBlocks++] = index;
+		}
+
+		// Set length of reference window from first block
+		if (index == 0)
+			referenceWindowOrder = dataInput.getReferenceWindowOrder();
+
+		// Set offset of next block
+		setBlockOffset(index + 1, endOffset);
+		++numMappedBlocks;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the restart block of the specified block, which must have been mapped.
+	 *
+	 * @param  index
+	 *           the index of the block.
+	 * @return the index of the restart block of the block.
+	 */
+
+	private int getRestartBlock(
+		int	index)
+	{
+		return (restartBlocks == null) ? index : restartBlocks[index];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the earliest restart block of the mapped blocks from the specified block onwards.  The blocks whose
+	 * restart blocks are less than those of all the blocks that follow them are kept in order, so the earliest restart
+	 * block is that of the first of them that is not before the specified block.
+	 *
+	 * @param  index
+	 *           the index of the first block, which must have been mapped.
+	 * @return the earliest restart block of the mapped blocks from block {@code index} onwards.
+	 */
+
+	private int getMinimumRestartBlock(
+		long	index)
+	{
+		int low = 0;
+		int high = numMinimumBlocks - 1;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (minimumBlocks[mid] < index)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return restartBlocks[minimumBlocks[low]];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the piece that contains the specified offset in the compressed data.
+	 *
+	 * @param  offset
+	 *           the offset (in bytes) in the compressed data.
+	 * @return the index of the piece that contains {@code offset}, or of the last piece if {@code offset} is at the
+	 *         end of the compressed data.
+	 */
+
+	private int getPieceIndex(
+		long	offset)
+	{
+		int index = Arrays.binarySearch(pieceDataOffsets, 0, pieceFileOffsets.length, offset);
+		return (index < 0) ? -index - 2 : index;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the bit offset of the specified block in the compressed data.
+	 *
+	 * @param  index
+	 *           the index of the block, which must not be greater than the number of mapped blocks.
+	 * @return the bit offset of block {@code index} in the compressed data.
+	 */
+
+	private long getBlockOffset(
+		int	index)
+	{
+		return anchorOffsets[index >>> anchorOrder] + blockOffsets[index];
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the bit offset of the specified block in the compressed data.  The offset of the first block that shares an
+	 * anchor becomes the anchor.
+	 *
+	 * @param  index
+	 *           the index of the block.
+	 * @param  offset
+	 *           the bit offset of block {@code index} in the compressed data.
+	 * @throws AppException
+	 *           if the offset of the block from its anchor is too large for the block map.
+	 */
+
+	private void setBlockOffset(
+		int		index,
+		long	offset)
+		throws AppException
+	{
+		int anchorIndex = index >>> anchorOrder;
+		if ((index & (1 << anchorOrder) - 1) == 0)
+			anchorOffsets[anchorIndex] = offset;
+		long blockOffset = offset - anchorOffsets[anchorIndex];
+		if ((blockOffset < 0) || (blockOffset > Integer.MAX_VALUE))
+			throw new FileException(ErrorId.MALFORMED_FILE, file);
+		blockOffsets[index] = (int)blockOffset;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Adds the specified decoded block to the cache, and discards the least recently used blocks if the total size of
+	 * the blocks in the cache exceeds the maximum.
+	 *
+	 * @param index
+	 *          the index of the block.
+	 * @param block
+	 *          the decoded block.
+	 */
+
+	private void addToCache(
+		int		index,
+		byte[]	block)
+	{
+		byte[] oldBlock = cache.put(index, block);
+		cacheSize += block.length - ((oldBlock == null) ? 0 : oldBlock.length);
+		trimCache();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Discards the least recently used blocks from the cache until the total size of the remaining blocks does not
+	 * exceed the maximum.
+	 */
+
+	private void trimCache()
+	{
+		Iterator<byte[]> it = cache.values().iterator();
+		while ((cacheSize > maxCacheSize) && it.hasNext())
+		{
+			cacheSize -= it.next().length;
+			it.remove();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
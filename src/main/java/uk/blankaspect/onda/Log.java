@@ -18,11 +18,24 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import uk.blankaspect.common.exception.AppException;
+import uk.blankaspect.common.exception.FileException;
 
 import uk.blankaspect.common.string.StringUtils;
 
@@ -32,6 +45,19 @@ import uk.blankaspect.common.string.StringUtils;
 // CLASS: LOG
 
 
+/**
+ * This class implements the log of the application.
+ * <p>
+ * The lines of the log are kept in a ring buffer whose capacity is set by {@link #setMaxNumLines(int)}: when the buffer
+ * is full, the oldest line is discarded to make room for a new one, so the memory that is used by the log does not
+ * depend on the number of files that are processed.
+ * </p>
+ * <p>
+ * Optionally, every line may also be written to a log file.  Lines are passed to a writer thread through a bounded
+ * queue, and the log file is rotated when its size exceeds a specified limit.
+ * </p>
+ */
+
 class Log
 {
 
@@ -43,6 +69,22 @@ class Log
 
 	public static final	String	ERROR_PREFIX	= "! ";
 
+	public static final	int		MIN_MAX_NUM_LINES		= 100;
+	public static final	int		MAX_MAX_NUM_LINES		= 1 << 24;
+	public static final	int		DEFAULT_MAX_NUM_LINES	= 10000;
+
+	public static final	int		MIN_MAX_FILE_SIZE		= 1 << 10;
+	public static final	int		MAX_MAX_FILE_SIZE		= Integer.MAX_VALUE;
+	public static final	int		DEFAULT_MAX_FILE_SIZE	= 1 << 22;
+
+	public static final	int		MIN_NUM_FILES		= 1;
+	public static final	int		MAX_NUM_FILES		= 100;
+	public static final	int		DEFAULT_NUM_FILES	= 4;
+
+	private static final	int		QUEUE_CAPACITY	= 1 << 12;
+
+	private static final	String	WRITER_THREAD_NAME	= "log-writer";
+
 	enum LineKind
 	{
 		INFO,
@@ -53,8 +95,12 @@ class Log
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	List<Line>	lines;
-	private	boolean		show;
+	private	Line[]				lines;
+	private	int					startIndex;
+	private	int					numLines;
+	private	boolean				show;
+	private	volatile FileWriter	fileWriter;
+	private	List<IListener>		listeners;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -62,7 +108,8 @@ class Log
 
 	private Log()
 	{
-		lines = new ArrayList<>();
+		lines = new Line[DEFAULT_MAX_NUM_LINES];
+		listeners = new CopyOnWriteArrayList<>();
 	}
 
 	//------------------------------------------------------------------
@@ -71,23 +118,73 @@ class Log
 //  Instance methods
 ////////////////////////////////////////////////////////////////////////
 
-	public List<Line> getLines()
+	/**
+	 * Returns a list of the lines that are currently held by this log, in the order in which they were appended.
+	 *
+	 * @return a list of the lines of this log.
+	 */
+
+	public synchronized List<Line> getLines()
 	{
-		return Collections.unmodifiableList(lines);
+		List<Line> lines = new ArrayList<>(numLines);
+		for (int i = 0; i < numLines; i++)
+			lines.add(this.lines[(startIndex + i) % this.lines.length]);
+		return lines;
 	}
 
 	//------------------------------------------------------------------
 
-	public boolean isEmpty()
+	/**
+	 * Returns the maximum number of lines that are held by this log.
+	 *
+	 * @return the maximum number of lines that are held by this log.
+	 */
+
+	public synchronized int getMaxNumLines()
 	{
-		return lines.isEmpty();
+		return lines.length;
 	}
 
 	//------------------------------------------------------------------
 
-	public void clear()
+	public synchronized boolean isEmpty()
 	{
-		lines.clear();
+		return (numLines == 0);
+	}
+
+	//------------------------------------------------------------------
+
+	public synchronized void clear()
+	{
+		for (int i = 0; i < numLines; i++)
+			lines[(startIndex + i) % lines.length] = null;
+		startIndex = 0;
+		numLines = 0;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the maximum number of lines that are held by this log.  If the log currently holds more lines than the new
+	 * maximum, the oldest lines are discarded.
+	 *
+	 * @param maxNumLines
+	 *          the maximum number of lines that will be held by this log.
+	 */
+
+	public synchronized void setMaxNumLines(
+		int	maxNumLines)
+	{
+		if (maxNumLines != lines.length)
+		{
+			Line[] newLines = new Line[maxNumLines];
+			int numNewLines = Math.min(numLines, maxNumLines);
+			for (int i = 0; i < numNewLines; i++)
+				newLines[i] = lines[(startIndex + numLines - numNewLines + i) % lines.length];
+			lines = newLines;
+			startIndex = 0;
+			numLines = numNewLines;
+		}
 	}
 
 	//------------------------------------------------------------------
@@ -100,13 +197,28 @@ class Log
 
 	//------------------------------------------------------------------
 
+	public void addListener(
+		IListener	listener)
+	{
+		listeners.add(listener);
+	}
+
+	//------------------------------------------------------------------
+
+	public void removeListener(
+		IListener	listener)
+	{
+		listeners.remove(listener);
+	}
+
+	//------------------------------------------------------------------
+
 	public void appendLine(
 		String	text)
 	{
 		if (show)
 			System.out.println(text);
-		else
-			lines.add(Line.info(text));
+		append(Line.info(text));
 	}
 
 	//------------------------------------------------------------------
@@ -118,13 +230,204 @@ class Log
 		{
 			if (show)
 				System.out.println(ERROR_PREFIX + str);
-			else
-				lines.add(Line.error(str));
+			append(Line.error(str));
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Opens the specified log file and starts a thread that writes each subsequent line of this log to the file.  If
+	 * the file exists, lines are appended to it.  When the size of the file exceeds the specified maximum, the file is
+	 * renamed by appending the suffix ".1" to its name, any existing files with a numeric suffix are renamed with the
+	 * next higher suffix, and a new file is started.  At most {@code numFiles} log files are kept.
+	 * <p>
+	 * The file is closed when the JVM shuts down.
+	 * </p>
+	 *
+	 * @param  file
+	 *           the log file.
+	 * @param  maxFileSize
+	 *           the size (in bytes) above which the log file will be rotated.
+	 * @param  numFiles
+	 *           the maximum number of log files, including the current file.
+	 * @throws AppException
+	 *           if the log file could not be opened.
+	 */
+
+	public void openFile(
+		File	file,
+		long	maxFileSize,
+		int		numFiles)
+		throws AppException
+	{
+		// Close any open log file
+		closeFile();
+
+		// Open log file and start writer thread
+		fileWriter = new FileWriter(file, maxFileSize, numFiles);
+		fileWriter.start();
+
+		// Close log file on shutdown
+		FileWriter writer = fileWriter;
+		Runtime.getRuntime().addShutdownHook(new Thread(() ->
+		{
+			if (!writer.closed)
+			{
+				try
+				{
+					writer.close();
+				}
+				catch (AppException e)
+				{
+					// ignore
+				}
+			}
+		}));
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Closes any open log file after the lines that are waiting to be written to it have been written.
+	 *
+	 * @throws AppException
+	 *           if an error occurred when writing the log file.
+	 */
+
+	public void closeFile()
+		throws AppException
+	{
+		FileWriter writer = fileWriter;
+		fileWriter = null;
+		if (writer != null)
+			writer.close();
+	}
+
+	//------------------------------------------------------------------
+
+	private void append(
+		Line	line)
+	{
+		// Add line to buffer, discarding the oldest line if the buffer is full
+		if (!show)
+		{
+			synchronized (this)
+			{
+				if (numLines < lines.length)
+					lines[(startIndex + numLines++) % lines.length] = line;
+				else
+				{
+					lines[startIndex] = line;
+					startIndex = (startIndex + 1) % lines.length;
+				}
+			}
+		}
+
+		// Pass line to file writer
+		FileWriter writer = fileWriter;
+		if (writer != null)
+			writer.write(line);
+
+		// Notify listeners
+		if (!show)
+		{
+			for (IListener listener : listeners)
+				listener.lineAppended(line);
 		}
 	}
 
 	//------------------------------------------------------------------
 
+////////////////////////////////////////////////////////////////////////
+//  Member interfaces
+////////////////////////////////////////////////////////////////////////
+
+
+	// INTERFACE: LOG LISTENER
+
+
+	/**
+	 * This is the interface that must be implemented by an object that is notified when a line is appended to the log.
+	 * The notification is made on the thread that appended the line.
+	 */
+
+	@FunctionalInterface
+	interface IListener
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Methods
+	////////////////////////////////////////////////////////////////////
+
+		void lineAppended(
+			Line	line);
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ERROR IDENTIFIERS
+
+
+	private enum ErrorId
+		implements AppException.IId
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		FAILED_TO_OPEN_FILE
+		("Failed to open the log file."),
+
+		FAILED_TO_RENAME_FILE
+		("Failed to rename the log file."),
+
+		ERROR_WRITING_FILE
+		("An error occurred when writing the log file.");
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	message;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private ErrorId(
+			String	message)
+		{
+			this.message = message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : AppException.IId interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public String getMessage()
+		{
+			return message;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 ////////////////////////////////////////////////////////////////////////
 //  Member records
 ////////////////////////////////////////////////////////////////////////
@@ -162,6 +465,296 @@ class Log
 
 	//==================================================================
 
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: LOG-FILE WRITER
+
+
+	/**
+	 * This class implements a thread that writes lines of the log to a rotating log file.
+	 */
+
+	private static class FileWriter
+		extends Thread
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		/** The line that marks the end of the queue. */
+		private static final	Line	END	= new Line(null, null);
+
+		/** The number of bytes that {@link BufferedWriter#newLine()} writes to the file. */
+		private static final	int		LINE_SEPARATOR_LENGTH	=
+				System.lineSeparator().getBytes(StandardCharsets.UTF_8).length;
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	File					file;
+		private	long					maxFileSize;
+		private	int						numFiles;
+		private	BlockingQueue<Line>		queue;
+		private	BufferedWriter			writer;
+		private	long					fileSize;
+		private	volatile AppException	exception;
+		private	volatile boolean		closed;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private FileWriter(
+			File	file,
+			long	maxFileSize,
+			int		numFiles)
+			throws AppException
+		{
+			// Call superclass constructor
+			super(WRITER_THREAD_NAME);
+
+			// Initialise instance variables
+			this.file = file;
+			this.maxFileSize = maxFileSize;
+			this.numFiles = numFiles;
+			queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+			// Open file
+			openFile();
+
+			// Don't prevent the JVM from exiting
+			setDaemon(true);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public void run()
+		{
+			while (true)
+			{
+				// Get next line from queue
+				Line line = null;
+				try
+				{
+					line = queue.take();
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
+				if (line == END)
+					break;
+
+				// Write line; flush the file when there are no more lines in the queue
+				if ((line != null) && (exception == null))
+				{
+					try
+					{
+						writeLine(line);
+						if (queue.isEmpty())
+							writer.flush();
+					}
+					catch (AppException e)
+					{
+						exception = e;
+					}
+					catch (IOException e)
+					{
+						exception = new FileException(ErrorId.ERROR_WRITING_FILE, file, e);
+					}
+				}
+			}
+
+			// Close file
+			try
+			{
+				writer.close();
+			}
+			catch (IOException e)
+			{
+				if (exception == null)
+					exception = new FileException(ErrorId.ERROR_WRITING_FILE, file, e);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Adds the specified line to the queue of lines that will be written to the log file.  If the queue is full,
+		 * this method blocks until there is space in the queue.  A line that is written after the writer has been
+		 * closed is ignored.  The test for closure and the addition to the queue are made under the lock of {@link
+		 * #close()}, so that a line cannot be added to the queue after the line that marks its end.
+		 *
+		 * @param line
+		 *          the line that will be written to the log file.
+		 */
+
+		private synchronized void write(
+			Line	line)
+		{
+			if (!closed)
+				enqueue(line);
+		}
+
+		//--------------------------------------------------------------
+
+		private void enqueue(
+			Line	line)
+		{
+			while (true)
+			{
+				try
+				{
+					queue.put(line);
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Writes any lines that are waiting in the queue to the log file, then closes the file.
+		 *
+		 * @throws AppException
+		 *           if an error occurred when writing the log file.
+		 */
+
+		private synchronized void close()
+			throws AppException
+		{
+			if (!closed)
+			{
+				closed = true;
+				enqueue(END);
+				while (isAlive())
+				{
+					try
+					{
+						join();
+					}
+					catch (InterruptedException e)
+					{
+						// ignore
+					}
+				}
+			}
+			if (exception != null)
+				throw exception;
+		}
+
+		//--------------------------------------------------------------
+
+		private void openFile()
+			throws AppException
+		{
+			try
+			{
+				writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+												 StandardOpenOption.APPEND);
+				fileSize = file.length();
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_OPEN_FILE, file, e);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		private void writeLine(
+			Line	line)
+			throws AppException
+		{
+			// Rotate files if maximum size has been reached
+			if (fileSize >= maxFileSize)
+				rotate();
+
+			// Write line
+			String text = (line.kind == LineKind.ERROR) ? ERROR_PREFIX + line.text : line.text;
+			try
+			{
+				writer.write(text);
+				writer.newLine();
+				fileSize += text.getBytes(StandardCharsets.UTF_8).length + LINE_SEPARATOR_LENGTH;
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.ERROR_WRITING_FILE, file, e);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		private void rotate()
+			throws AppException
+		{
+			// Close current file
+			try
+			{
+				writer.close();
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.ERROR_WRITING_FILE, file, e);
+			}
+
+			// Rename old files; delete oldest file
+			try
+			{
+				for (int i = numFiles - 1; i >= 0; i--)
+				{
+					File source = getRotatedFile(i);
+					if (source.exists())
+					{
+						if (i == numFiles - 1)
+							Files.delete(source.toPath());
+						else
+							Files.move(source.toPath(), getRotatedFile(i + 1).toPath());
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_RENAME_FILE, file, e);
+			}
+
+			// Open new file
+			openFile();
+		}
+
+		//--------------------------------------------------------------
+
+		private File getRotatedFile(
+			int	index)
+		{
+			return (index == 0) ? file : new File(file.getPath() + "." + index);
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 }
 
 //----------------------------------------------------------------------
@@ -0,0 +1,830 @@
+/*====================================================================*\
+
+LogDialog.java
+
+Class: log dialog.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.GridLayout;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Window;
+
+import java.awt.datatransfer.StringSelection;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+
+import uk.blankaspect.common.exception.AppException;
+
+import uk.blankaspect.ui.swing.action.KeyAction;
+
+import uk.blankaspect.ui.swing.button.FButton;
+
+import uk.blankaspect.ui.swing.checkbox.FCheckBox;
+
+import uk.blankaspect.ui.swing.font.FontKey;
+import uk.blankaspect.ui.swing.font.FontUtils;
+
+import uk.blankaspect.ui.swing.misc.GuiConstants;
+import uk.blankaspect.ui.swing.misc.GuiUtils;
+
+import uk.blankaspect.ui.swing.workaround.LinuxWorkarounds;
+
+//----------------------------------------------------------------------
+
+
+// CLASS: LOG DIALOG
+
+
+/**
+ * This class implements a modal dialog that displays the lines of the {@linkplain Log log}.
+ * <p>
+ * The lines are displayed in a list whose cells all have the same height, so only the rows that are visible are laid
+ * out and rendered, however many lines there are.  Lines that are appended to the log while the dialog is open are
+ * added to the end of the list without affecting the existing rows.  The list may be restricted to the lines that
+ * report errors.
+ * </p>
+ */
+
+class LogDialog
+	extends JDialog
+	implements ActionListener, Log.IListener
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	private static final	int		NUM_COLUMNS	= 72;
+	private static final	int		NUM_ROWS	= 24;
+
+	private static final	int		LIST_VERTICAL_MARGIN	= 2;
+	private static final	int		LIST_HORIZONTAL_MARGIN	= 4;
+
+	private static final	int		BUTTON_GAP	= 16;
+
+	private static final	Color	ERROR_COLOUR	= new Color(208, 0, 0);
+
+	private static final	String	ERRORS_ONLY_STR			= "Errors only";
+	private static final	String	CLEAR_STR				= "Clear";
+	private static final	String	COPY_STR				= "Copy";
+	private static final	String	CLIPBOARD_ERROR_STR		= "Clipboard error";
+	private static final	String	CLEAR_TOOLTIP_STR		= "Clear log (Alt+X)";
+	private static final	String	COPY_TOOLTIP_STR		= "Copy selected lines, or all lines, to clipboard (Alt+C)";
+
+	// Commands
+	private interface Command
+	{
+		String	CLEAR				= "clear";
+		String	CLOSE				= "close";
+		String	COPY				= "copy";
+		String	TOGGLE_ERRORS_ONLY	= "toggleErrorsOnly";
+	}
+
+////////////////////////////////////////////////////////////////////////
+//  Class variables
+////////////////////////////////////////////////////////////////////////
+
+	private static	Point	location;
+	private static	boolean	errorsOnly;
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	boolean			cleared;
+	private	LineListModel	listModel;
+	private	JList<Log.Line>	list;
+	private	int				charWidth;
+	private	JButton			clearButton;
+	private	JButton			copyButton;
+	private	List<Log.Line>	pendingLines;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private LogDialog(
+		Window			owner,
+		String			title,
+		List<Log.Line>	lines)
+	{
+		// Call superclass constructor
+		super(owner, title, ModalityType.APPLICATION_MODAL);
+
+		// Set icons
+		if (owner != null)
+			setIconImages(owner.getIconImages());
+
+		// Initialise instance variables
+		listModel = new LineListModel(lines, errorsOnly);
+		pendingLines = new ArrayList<>();
+
+
+		//----  List
+
+		// List
+		list = new JList<>(listModel);
+		String fontKey = FontKey.TEXT_AREA;
+		if (!FontUtils.isAppFont(fontKey))
+			fontKey = FontKey.TEXT_FIELD;
+		FontUtils.setAppFont(fontKey, list);
+		list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		list.setCellRenderer(new LineRenderer());
+		list.addListSelectionListener(event -> updateComponents());
+
+		// Fix the size of cells so that the list doesn't measure every line
+		FontMetrics fontMetrics = list.getFontMetrics(list.getFont());
+		charWidth = FontUtils.getCharWidth('0', fontMetrics);
+		list.setFixedCellHeight(fontMetrics.getHeight());
+		updateCellWidth();
+
+		// Scroll pane: list
+		JScrollPane listScrollPane = new JScrollPane(list, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
+													 JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
+		listScrollPane.getViewport().setPreferredSize(new Dimension(NUM_COLUMNS * charWidth,
+																	NUM_ROWS * fontMetrics.getHeight()));
+		listScrollPane.setViewportBorder(BorderFactory.createMatteBorder(LIST_VERTICAL_MARGIN, LIST_HORIZONTAL_MARGIN,
+																		 LIST_VERTICAL_MARGIN, LIST_HORIZONTAL_MARGIN,
+																		 list.getBackground()));
+
+
+		//----  Check box panel
+
+		JPanel checkBoxPanel = new JPanel(new GridLayout(1, 0));
+		checkBoxPanel.setBorder(BorderFactory.createEmptyBorder(0, 4, 0, 4));
+
+		// Check box: errors only
+		JCheckBox errorsOnlyCheckBox = new FCheckBox(ERRORS_ONLY_STR);
+		errorsOnlyCheckBox.setMnemonic(KeyEvent.VK_E);
+		errorsOnlyCheckBox.setSelected(errorsOnly);
+		errorsOnlyCheckBox.setActionCommand(Command.TOGGLE_ERRORS_ONLY);
+		errorsOnlyCheckBox.addActionListener(this);
+		checkBoxPanel.add(errorsOnlyCheckBox);
+
+
+		//----  Button panel
+
+		JPanel buttonPanel = new JPanel(new GridLayout(1, 0, BUTTON_GAP, 0));
+		buttonPanel.setBorder(BorderFactory.createEmptyBorder(3, 8, 3, 8));
+
+		// Button: clear
+		clearButton = new FButton(CLEAR_STR);
+		clearButton.setMnemonic(KeyEvent.VK_X);
+		clearButton.setToolTipText(CLEAR_TOOLTIP_STR);
+		clearButton.setActionCommand(Command.CLEAR);
+		clearButton.addActionListener(this);
+		buttonPanel.add(clearButton);
+
+		// Button: copy
+		copyButton = new FButton(COPY_STR);
+		copyButton.setMnemonic(KeyEvent.VK_C);
+		copyButton.setToolTipText(COPY_TOOLTIP_STR);
+		copyButton.setActionCommand(Command.COPY);
+		copyButton.addActionListener(this);
+		buttonPanel.add(copyButton);
+
+		// Button: close
+		JButton closeButton = new FButton(GuiConstants.CLOSE_STR);
+		closeButton.setActionCommand(Command.CLOSE);
+		closeButton.addActionListener(this);
+		buttonPanel.add(closeButton);
+
+
+		//----  Main panel
+
+		GridBagLayout gridBag = new GridBagLayout();
+		GridBagConstraints gbc = new GridBagConstraints();
+
+		JPanel mainPanel = new JPanel(gridBag);
+
+		int gridY = 0;
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.NORTH;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = new Insets(1, 0, 0, 0);
+		gridBag.setConstraints(listScrollPane, gbc);
+		mainPanel.add(listScrollPane);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = new Insets(2, 0, 0, 0);
+		gridBag.setConstraints(checkBoxPanel, gbc);
+		mainPanel.add(checkBoxPanel);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.NORTH;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = new Insets(3, 0, 2, 0);
+		gridBag.setConstraints(buttonPanel, gbc);
+		mainPanel.add(buttonPanel);
+
+		// Add commands to action map
+		KeyAction.create(mainPanel, JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT,
+						 KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), Command.CLOSE, this);
+
+
+		//----  Window
+
+		// Set content pane
+		setContentPane(mainPanel);
+
+		// Update components
+		updateComponents();
+
+		// Dispose of window explicitly
+		setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+		// Handle window events
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowOpened(
+				WindowEvent	event)
+			{
+				// WORKAROUND for a bug that has been observed on Linux/GNOME whereby a window is displaced downwards
+				// when its location is set.  The error in the y coordinate is the height of the title bar of the
+				// window.  The workaround is to set the location of the window again with an adjustment for the error.
+				LinuxWorkarounds.fixWindowYCoord(event.getWindow(), location);
+			}
+
+			@Override
+			public void windowClosing(
+				WindowEvent	event)
+			{
+				onClose();
+			}
+		});
+
+		// Prevent dialog from being resized
+		setResizable(false);
+
+		// Resize dialog to its preferred size
+		pack();
+
+		// Set location of dialog
+		if (location == null)
+			location = GuiUtils.getComponentLocation(this, owner);
+		setLocation(location);
+
+		// Set default button
+		getRootPane().setDefaultButton(closeButton);
+
+		// Show last line
+		scrollToEnd();
+
+		// Add dialog to log as a listener
+		Log.INSTANCE.addListener(this);
+
+		// Show dialog
+		setVisible(true);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	public static LogDialog showDialog(
+		Component		parent,
+		String			title,
+		List<Log.Line>	lines)
+	{
+		return new LogDialog(GuiUtils.getWindow(parent), title, lines);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : ActionListener interface
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public void actionPerformed(
+		ActionEvent	event)
+	{
+		switch (event.getActionCommand())
+		{
+			case Command.CLEAR              -> onClear();
+			case Command.CLOSE              -> onClose();
+			case Command.COPY               -> onCopy();
+			case Command.TOGGLE_ERRORS_ONLY -> onToggleErrorsOnly();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : Log.IListener interface
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Runs in the thread that appended the line to the log.  Lines are collected and added to the list in a single
+	 * operation on the event-dispatching thread.
+	 */
+
+	@Override
+	public void lineAppended(
+		Log.Line	line)
+	{
+		boolean schedule = false;
+		synchronized (pendingLines)
+		{
+			schedule = pendingLines.isEmpty();
+			pendingLines.add(line);
+		}
+		if (schedule)
+			SwingUtilities.invokeLater(this::addPendingLines);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	public boolean isCleared()
+	{
+		return cleared;
+	}
+
+	//------------------------------------------------------------------
+
+	private void updateComponents()
+	{
+		clearButton.setEnabled(!cleared);
+		copyButton.setEnabled(listModel.getSize() > 0);
+	}
+
+	//------------------------------------------------------------------
+
+	private void updateCellWidth()
+	{
+		list.setFixedCellWidth((listModel.getMaxTextLength() + 1) * charWidth);
+	}
+
+	//------------------------------------------------------------------
+
+	private void scrollToEnd()
+	{
+		int size = listModel.getSize();
+		if (size > 0)
+			list.ensureIndexIsVisible(size - 1);
+	}
+
+	//------------------------------------------------------------------
+
+	private void addPendingLines()
+	{
+		// Get pending lines
+		List<Log.Line> lines = null;
+		synchronized (pendingLines)
+		{
+			lines = new ArrayList<>(pendingLines);
+			pendingLines.clear();
+		}
+
+		// Add lines to list; if the last line was visible, keep it visible
+		if (!lines.isEmpty())
+		{
+			int size = listModel.getSize();
+			boolean atEnd = (size == 0) || (list.getLastVisibleIndex() == size - 1);
+			listModel.addLines(lines);
+			updateCellWidth();
+			if (atEnd)
+				scrollToEnd();
+			updateComponents();
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void onToggleErrorsOnly()
+	{
+		errorsOnly = !errorsOnly;
+		list.clearSelection();
+		listModel.setErrorsOnly(errorsOnly);
+		scrollToEnd();
+		updateComponents();
+	}
+
+	//------------------------------------------------------------------
+
+	private void onClear()
+	{
+		list.clearSelection();
+		listModel.clear();
+		updateCellWidth();
+		cleared = true;
+		updateComponents();
+	}
+
+	//------------------------------------------------------------------
+
+	private void onCopy()
+	{
+		// Get lines: selected lines or all lines
+		List<Log.Line> lines = list.getSelectedValuesList();
+		if (lines.isEmpty())
+			lines = listModel.getLines();
+
+		// Copy text of lines to clipboard
+		StringBuilder buffer = new StringBuilder(lines.size() * 80);
+		for (Log.Line line : lines)
+		{
+			if (line.kind() == Log.LineKind.ERROR)
+				buffer.append(Log.ERROR_PREFIX);
+			buffer.append(line.text());
+			buffer.append('\n');
+		}
+		try
+		{
+			try
+			{
+				StringSelection selection = new StringSelection(buffer.toString());
+				getToolkit().getSystemClipboard().setContents(selection, selection);
+			}
+			catch (IllegalStateException e)
+			{
+				throw new AppException(ErrorId.CLIPBOARD_IS_UNAVAILABLE, e);
+			}
+		}
+		catch (AppException e)
+		{
+			JOptionPane.showMessageDialog(this, e, CLIPBOARD_ERROR_STR, JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void onClose()
+	{
+		Log.INSTANCE.removeListener(this);
+		location = getLocation();
+		setVisible(false);
+		dispose();
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ERROR IDENTIFIERS
+
+
+	private enum ErrorId
+		implements AppException.IId
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		CLIPBOARD_IS_UNAVAILABLE
+		("The clipboard is currently unavailable.");
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	message;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private ErrorId(
+			String	message)
+		{
+			this.message = message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : AppException.IId interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public String getMessage()
+		{
+			return message;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: LINE LIST MODEL
+
+
+	/**
+	 * This class implements the model of the list of lines.  When only errors are shown, the model maps the index of a
+	 * row to the index of a line through an array of the indices of the error lines, which is extended as lines are
+	 * added.  Like the log, the model holds no more than the {@linkplain Log#getMaxNumLines() maximum number of lines}
+	 * of the log: when lines are added to a full model, the oldest lines are removed.
+	 */
+
+	@SuppressWarnings("serial")
+	private static class LineListModel
+		extends AbstractListModel<Log.Line>
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		private static final	int	INITIAL_NUM_ERRORS	= 64;
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	List<Log.Line>	lines;
+		private	int[]			errorIndices;
+		private	int				numErrors;
+		private	int				maxTextLength;
+		private	boolean			errorsOnly;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private LineListModel(
+			List<Log.Line>	lines,
+			boolean			errorsOnly)
+		{
+			this.lines = new ArrayList<>(lines.size());
+			this.errorsOnly = errorsOnly;
+			errorIndices = new int[INITIAL_NUM_ERRORS];
+			append(lines);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : ListModel interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public int getSize()
+		{
+			return errorsOnly ? numErrors : lines.size();
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public Log.Line getElementAt(
+			int	index)
+		{
+			return lines.get(errorsOnly ? errorIndices[index] : index);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		private int getMaxTextLength()
+		{
+			return maxTextLength;
+		}
+
+		//--------------------------------------------------------------
+
+		private List<Log.Line> getLines()
+		{
+			int size = getSize();
+			List<Log.Line> lines = new ArrayList<>(size);
+			for (int i = 0; i < size; i++)
+				lines.add(getElementAt(i));
+			return lines;
+		}
+
+		//--------------------------------------------------------------
+
+		private void addLines(
+			List<Log.Line>	lines)
+		{
+			int startIndex = getSize();
+			append(lines);
+			int endIndex = getSize();
+			if (endIndex > startIndex)
+				fireIntervalAdded(this, startIndex, endIndex - 1);
+
+			// Remove oldest lines in excess of maximum number of lines of log
+			int numExcessLines = this.lines.size() - Log.INSTANCE.getMaxNumLines();
+			if (numExcessLines > 0)
+			{
+				int numRows = removeOldestLines(numExcessLines);
+				if (numRows > 0)
+					fireIntervalRemoved(this, 0, numRows - 1);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Removes the specified number of the oldest lines from this model, and updates the indices of the error lines.
+		 *
+		 * @param  numLines
+		 *           the number of lines that will be removed.
+		 * @return the number of rows of the list that were removed: the number of lines, or the number of error lines
+		 *         among them if only errors are shown.
+		 */
+
+		private int removeOldestLines(
+			int	numLines)
+		{
+			// Remove lines
+			lines.subList(0, numLines).clear();
+
+			// Remove indices of error lines that were removed, and adjust indices of remaining error lines
+			int numRemovedErrors = 0;
+			while ((numRemovedErrors < numErrors) && (errorIndices[numRemovedErrors] < numLines))
+				++numRemovedErrors;
+			numErrors -= numRemovedErrors;
+			for (int i = 0; i < numErrors; i++)
+				errorIndices[i] = errorIndices[i + numRemovedErrors] - numLines;
+
+			// Return number of rows that were removed
+			return errorsOnly ? numRemovedErrors : numLines;
+		}
+
+		//--------------------------------------------------------------
+
+		private void setErrorsOnly(
+			boolean	errorsOnly)
+		{
+			if (this.errorsOnly != errorsOnly)
+			{
+				int size = getSize();
+				if (size > 0)
+					fireIntervalRemoved(this, 0, size - 1);
+				this.errorsOnly = errorsOnly;
+				size = getSize();
+				if (size > 0)
+					fireIntervalAdded(this, 0, size - 1);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		private void clear()
+		{
+			int size = getSize();
+			lines.clear();
+			numErrors = 0;
+			maxTextLength = 0;
+			if (size > 0)
+				fireIntervalRemoved(this, 0, size - 1);
+		}
+
+		//--------------------------------------------------------------
+
+		private void append(
+			List<Log.Line>	lines)
+		{
+			for (Log.Line line : lines)
+			{
+				if (line.kind() == Log.LineKind.ERROR)
+				{
+					if (numErrors >= errorIndices.length)
+						errorIndices = Arrays.copyOf(errorIndices, 2 * errorIndices.length);
+					errorIndices[numErrors++] = this.lines.size();
+				}
+				maxTextLength = Math.max(maxTextLength, line.text().length());
+				this.lines.add(line);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: LINE RENDERER
+
+
+	/**
+	 * This class implements a renderer for the cells of the list of lines.  The text of an error line is displayed in a
+	 * different colour.
+	 */
+
+	@SuppressWarnings("serial")
+	private static class LineRenderer
+		extends DefaultListCellRenderer
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private LineRenderer()
+		{
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public Component getListCellRendererComponent(
+			JList<?>	list,
+			Object		value,
+			int			index,
+			boolean		isSelected,
+			boolean		cellHasFocus)
+		{
+			Log.Line line = (Log.Line)value;
+			super.getListCellRendererComponent(list, line.text(), index, isSelected, cellHasFocus);
+			if (!isSelected && (line.kind() == Log.LineKind.ERROR))
+				setForeground(ERROR_COLOUR);
+			return this;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+}
+
+//----------------------------------------------------------------------
@@ -18,14 +18,11 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
-import java.awt.Color;
-import java.awt.Component;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.Point;
-import java.awt.Window;
 
 import java.awt.datatransfer.UnsupportedFlavorException;
 
@@ -57,10 +54,6 @@ import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
 
-import javax.swing.text.Style;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyleContext;
-
 import uk.blankaspect.common.exception.AppException;
 import uk.blankaspect.common.exception.FileException;
 import uk.blankaspect.common.exception.TaskCancelledException;
@@ -79,8 +72,6 @@ import uk.blankaspect.ui.swing.combobox.FComboBox;
 
 import uk.blankaspect.ui.swing.container.PathnamePanel;
 
-import uk.blankaspect.ui.swing.dialog.NonEditableTextPaneDialog;
-
 import uk.blankaspect.ui.swing.filechooser.FileChooserUtils;
 
 import uk.blankaspect.ui.swing.label.FLabel;
@@ -690,7 +681,8 @@ class MainWindow
 		try
 		{
 			TaskProgressDialog.showDialog(this, COMPRESS_STR,
-										  new Task.Compress(inputsOutputs, chunkFilters, isRecursive()),
+										  new Task.Compress(inputsOutputs, chunkFilters, isRecursive(),
+															AppConfig.INSTANCE.getEffort()),
 										  AppConfig.INSTANCE.isShowOverallProgress());
 		}
 		catch (TaskCancelledException e)
@@ -1017,6 +1009,9 @@ class MainWindow
 		// Update configuration
 		updateConfiguration();
 
+		// Close log file
+		OndaApp.INSTANCE.closeLogFile();
+
 		// Destroy window
 		setVisible(false);
 		dispose();
@@ -1143,110 +1138,6 @@ class MainWindow
 
 	//==================================================================
 
-////////////////////////////////////////////////////////////////////////
-//  Member classes : non-inner classes
-////////////////////////////////////////////////////////////////////////
-
-
-	// CLASS: LOG DIALOG
-
-
-	private static class LogDialog
-		extends NonEditableTextPaneDialog
-	{
-
-	////////////////////////////////////////////////////////////////////
-	//  Constants
-	////////////////////////////////////////////////////////////////////
-
-		private static final	int		NUM_COLUMNS	= 72;
-		private static final	int		NUM_ROWS	= 24;
-
-		private static final	String	KEY	= LogDialog.class.getCanonicalName();
-
-		private static final	String	ERROR_STYLE_KEY		= "error";
-		private static final	Color	ERROR_STYLE_COLOUR	= new Color(208, 0, 0);
-
-	////////////////////////////////////////////////////////////////////
-	//  Instance variables
-	////////////////////////////////////////////////////////////////////
-
-		private	List<Log.Line>	lines;
-
-	////////////////////////////////////////////////////////////////////
-	//  Constructors
-	////////////////////////////////////////////////////////////////////
-
-		private LogDialog(
-			Window			owner,
-			String			title,
-			List<Log.Line>	lines)
-		{
-			// Call superclass constructor
-			super(owner, title, KEY, NUM_COLUMNS, NUM_ROWS, true);
-
-			// Initialise instance variables
-			this.lines = lines;
-
-			// Add error style
-			Style style = addStyle(ERROR_STYLE_KEY);
-			StyleConstants.setForeground(style, ERROR_STYLE_COLOUR);
-
-			// Set text
-			for (Log.Line line : lines)
-			{
-				Paragraph paragraph = new Paragraph(StyleContext.DEFAULT_STYLE);
-				paragraph.add(new Span(line.text(), (line.kind() == Log.LineKind.INFO)
-																	? StyleContext.DEFAULT_STYLE
-																	: ERROR_STYLE_KEY));
-				append(paragraph);
-			}
-			setCaretToEnd();
-
-			// Show dialog
-			setVisible(true);
-		}
-
-		//--------------------------------------------------------------
-
-	////////////////////////////////////////////////////////////////////
-	//  Class methods
-	////////////////////////////////////////////////////////////////////
-
-		public static LogDialog showDialog(
-			Component		parent,
-			String			title,
-			List<Log.Line>	lines)
-		{
-			return new LogDialog(GuiUtils.getWindow(parent), title, lines);
-		}
-
-		//--------------------------------------------------------------
-
-	////////////////////////////////////////////////////////////////////
-	//  Instance methods : overriding methods
-	////////////////////////////////////////////////////////////////////
-
-		@Override
-		protected String getText()
-		{
-			StringBuilder buffer = new StringBuilder(lines.size() * 80);
-			for (Log.Line line : lines)
-			{
-				if (line.kind() == Log.LineKind.ERROR)
-					buffer.append(Log.ERROR_PREFIX);
-				buffer.append(line.text());
-				buffer.append('\n');
-			}
-			return buffer.toString();
-		}
-
-		//--------------------------------------------------------------
-
-	}
-
-	//==================================================================
-
 ////////////////////////////////////////////////////////////////////////
 //  Member classes : inner classes
 ////////////////////////////////////////////////////////////////////////
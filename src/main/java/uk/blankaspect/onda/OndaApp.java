@@ -20,6 +20,7 @@ package uk.blankaspect.onda;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 
 import java.nio.charset.Charset;
 
@@ -107,6 +108,10 @@ public class OndaApp
 	/** The string that can be prefixed to an input pathname to disable other special characters in a command line. */
 	private static final	String	PATHNAME_PREFIX	= "+";
 
+	/** The input pathname that denotes the standard input stream, in which case the output of the command is written
+		to the standard output stream. */
+	private static final	String	STANDARD_STREAM_PATHNAME	= "-";
+
 	/** The prefix of the pathname of a file that contains a list of input pathnames and, optionally, corresponding
 		output directories. */
 	private static final	String	LIST_PREFIX	= "@";
@@ -128,6 +133,8 @@ public class OndaApp
 	private static final	String	EXPANDING_STR				= "Expanding ";
 	private static final	String	VALIDATING_STR				= "Validating ";
 	private static final	String	ARROW_STR					= " --> ";
+	private static final	String	STANDARD_INPUT_STR			= "<standard input>";
+	private static final	String	STANDARD_OUTPUT_STR			= "<standard output>";
 	private static final	String	SKIP_STR					= "Skip";
 	private static final	String	CANCELLED_STR				= "The command was cancelled by the user.";
 	private static final	String	NOT_REPLACED_STR			= "The existing file was not replaced.";
@@ -157,6 +164,8 @@ public class OndaApp
 	private	boolean				overwrite;
 	private	Set<InfoKind>		infoKinds;
 	private	long				fileLengthOffset;
+	private	boolean				standardStreams;
+	private	PrintStream			standardOutput;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -296,10 +305,29 @@ public class OndaApp
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Closes any open log file, reporting an error that occurs when the remaining lines are written to it.
+	 */
+
+	public void closeLogFile()
+	{
+		try
+		{
+			Log.INSTANCE.closeFile();
+		}
+		catch (AppException e)
+		{
+			showErrorMessage(SHORT_NAME, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
 	public void compress(
 		List<InputOutput>	inputsOutputs,
 		ChunkFilter[]		chunkFilters,
-		boolean				recursive)
+		boolean				recursive,
+		Effort				effort)
 		throws TaskCancelledException
 	{
 		try
@@ -316,13 +344,13 @@ public class OndaApp
 				if (inputOutput.input.isDirectory())
 				{
 					inputOutput.updateRootDirectory();
-					compressDirectory(inputOutput, chunkFilters, recursive);
+					compressDirectory(inputOutput, chunkFilters, recursive, effort);
 				}
 				else
 				{
 					try
 					{
-						compressFile(inputOutput, chunkFilters);
+						compressFile(inputOutput, chunkFilters, effort);
 					}
 					catch (TaskCancelledException e)
 					{
@@ -512,6 +540,22 @@ public class OndaApp
 		AppConfig config = AppConfig.INSTANCE;
 		config.read();
 
+		// Initialise log
+		Log log = Log.INSTANCE;
+		log.setMaxNumLines(config.getLogMaxNumLines());
+		File logFile = config.getLogFile();
+		if (logFile != null)
+		{
+			try
+			{
+				log.openFile(logFile, config.getLogMaxFileSize(), config.getLogNumFiles());
+			}
+			catch (AppException e)
+			{
+				showErrorMessage(SHORT_NAME, e);
+			}
+		}
+
 		// Start application
 		if (hasGui)
 		{
@@ -558,9 +602,13 @@ public class OndaApp
 						new CommandLine<>(Option.class, true, usageMessage()).parse(args);
 				if (!commandLineElements.isEmpty())
 					parseCommandLine(commandLineElements);
+
+				// Close log file
+				closeLogFile();
 			}
 			catch (TaskCancelledException e)
 			{
+				closeLogFile();
 				System.exit(ExitCode.TERMINATED_BY_USER);
 			}
 			catch (AppException e)
@@ -572,6 +620,9 @@ public class OndaApp
 				// Write string representation of exception
 				System.err.println(e);
 
+				// Close log file
+				closeLogFile();
+
 				// Exit application
 				System.exit(ExitCode.ERROR);
 			}
@@ -589,6 +640,9 @@ public class OndaApp
 				if (!causeStr.isEmpty())
 					System.err.println(causeStr);
 
+				// Close log file
+				closeLogFile();
+
 				// Exit application
 				System.exit(ExitCode.ERROR);
 			}
@@ -607,7 +661,9 @@ public class OndaApp
 		boolean recursive = false;
 		ChunkFilter aiffChunkFilter = null;
 		ChunkFilter waveChunkFilter = null;
+		Effort effort = null;
 		File outDirectory = null;
+		File reportFile = null;
 
 		// Parse command line
 		for (CommandLine.Element<Option> element : elements)
@@ -621,6 +677,11 @@ public class OndaApp
 					String pathname = elementValue.substring(LIST_PREFIX.length());
 					inputsOutputs.addAll(readListFile(new File(PathnameUtils.parsePathname(pathname))));
 				}
+				else if (elementValue.equals(STANDARD_STREAM_PATHNAME))
+				{
+					standardStreams = true;
+					inputsOutputs.add(new InputOutput(new File(STANDARD_STREAM_PATHNAME), outDirectory));
+				}
 				else
 				{
 					String pathname = elementValue.startsWith(PATHNAME_PREFIX)
@@ -652,6 +713,17 @@ public class OndaApp
 					}
 					break;
 
+				case EFFORT:
+				{
+					Effort effort0 = Effort.forKey(elementValue);
+					if (effort0 == null)
+						throw new ArgumentException(ErrorId.INVALID_EFFORT, element);
+					if ((effort != null) && (effort != effort0))
+						throw new OptionException(ErrorId.CONFLICTING_OPTION_ARGUMENTS, element);
+					effort = effort0;
+					break;
+				}
+
 				case OUTPUT_DIRECTORY:
 				{
 					if (elementValue.isEmpty())
@@ -671,6 +743,17 @@ public class OndaApp
 					recursive = true;
 					break;
 
+				case REPORT:
+				{
+					if (elementValue.isEmpty())
+						throw new ArgumentException(ErrorId.INVALID_REPORT_FILE, element);
+					File reportFile0 = new File(PathnameUtils.parsePathname(elementValue));
+					if ((reportFile != null) && !reportFile.equals(reportFile0))
+						throw new OptionException(ErrorId.CONFLICTING_OPTION_ARGUMENTS, element);
+					reportFile = reportFile0;
+					break;
+				}
+
 				case SHOW_INFO:
 						for (String key : StringUtils.split(elementValue, InfoKind.SEPARATOR_CHAR))
 						{
@@ -724,6 +807,8 @@ public class OndaApp
 			aiffChunkFilter = ChunkFilter.INCLUDE_ALL;
 		if (waveChunkFilter == null)
 			waveChunkFilter = ChunkFilter.INCLUDE_ALL;
+		if (effort == null)
+			effort = AppConfig.INSTANCE.getEffort();
 
 		// Perform subcommand
 		Log.INSTANCE.setShow(infoKinds.contains(InfoKind.LOG));
@@ -733,22 +818,26 @@ public class OndaApp
 			case COMPRESS:
 				if (inputsOutputs.isEmpty())
 					throw new AppException(ErrorId.NO_INPUT_FILE_OR_DIRECTORY);
+				if (standardStreams)
+					useStandardStreams(inputsOutputs);
 				if (infoKinds.contains(InfoKind.TITLE))
 					showTitle();
 				else
 					titleShown = true;
 				doTask(new Task.Compress(inputsOutputs, new ChunkFilter[] { aiffChunkFilter, waveChunkFilter },
-										 recursive));
+										 recursive, effort), reportFile);
 				break;
 
 			case EXPAND:
 				if (inputsOutputs.isEmpty())
 					throw new AppException(ErrorId.NO_INPUT_FILE_OR_DIRECTORY);
+				if (standardStreams)
+					useStandardStreams(inputsOutputs);
 				if (infoKinds.contains(InfoKind.TITLE))
 					showTitle();
 				else
 					titleShown = true;
-				doTask(new Task.Expand(inputsOutputs, recursive));
+				doTask(new Task.Expand(inputsOutputs, recursive), reportFile);
 				break;
 
 			case HELP:
@@ -760,11 +849,13 @@ public class OndaApp
 			case VALIDATE:
 				if (inputsOutputs.isEmpty())
 					throw new AppException(ErrorId.NO_INPUT_FILE_OR_DIRECTORY);
+				if (standardStreams)
+					throw new AppException(ErrorId.STANDARD_INPUT_NOT_SUPPORTED, subcommand.name);
 				if (infoKinds.contains(InfoKind.TITLE))
 					showTitle();
 				else
 					titleShown = true;
-				doTask(new Task.Validate(inputsOutputs, recursive));
+				doTask(new Task.Validate(inputsOutputs, recursive), reportFile);
 				break;
 
 			case VERSION:
@@ -778,6 +869,30 @@ public class OndaApp
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Prepares a command whose input is read from the standard input stream and whose output is written to the
+	 * standard output stream.  The standard output stream is reserved for the output data, so any text that would be
+	 * written to it, such as the log, is written to the standard error stream instead.
+	 *
+	 * @param  inputsOutputs
+	 *           the inputs of the command.
+	 * @throws AppException
+	 *           if the command has an input other than the standard input stream.
+	 */
+
+	private void useStandardStreams(
+		List<InputOutput>	inputsOutputs)
+		throws AppException
+	{
+		if (inputsOutputs.size() > 1)
+			throw new AppException(ErrorId.STANDARD_INPUT_NOT_SOLE_INPUT);
+
+		standardOutput = System.out;
+		System.setOut(System.err);
+	}
+
+	//------------------------------------------------------------------
+
 	/**
 	 * Returns the usage message of this application.
 	 *
@@ -817,6 +932,14 @@ public class OndaApp
 		AppException	exception)
 		throws TaskCancelledException
 	{
+		// The standard input stream is the input data of the command, so the user cannot be asked whether to continue;
+		// instead, the exception ends the command
+		if (standardStreams)
+		{
+			Task.setException(exception, true);
+			return;
+		}
+
 		// Clear exception from task
 		Task.setException(null, true);
 
@@ -885,24 +1008,51 @@ public class OndaApp
 	//------------------------------------------------------------------
 
 	private void doTask(
-		Task	task)
+		Task	task,
+		File	reportFile)
 		throws AppException
 	{
-		Task.setException(null, true);
-		Task.setCancelled(false);
-		task.start();
-		while (Task.getNumThreads() > 0)
+		// Open report
+		if (reportFile != null)
+			Report.INSTANCE.open(reportFile);
+
+		// Perform task
+		try
+		{
+			Task.setException(null, true);
+			Task.setCancelled(false);
+			task.start();
+			while (Task.getNumThreads() > 0)
+			{
+				try
+				{
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
+			}
+			Task.throwIfException();
+		}
+		catch (AppException e)
 		{
+			// Close report; an error in closing it must not hide the error in the task
 			try
 			{
-				Thread.sleep(200);
+				Report.INSTANCE.close();
 			}
-			catch (InterruptedException e)
+			catch (AppException e1)
 			{
 				// ignore
 			}
+
+			// Rethrow exception
+			throw e;
 		}
-		Task.throwIfException();
+
+		// Close report
+		Report.INSTANCE.close();
 	}
 
 	//------------------------------------------------------------------
@@ -910,7 +1060,8 @@ public class OndaApp
 	private void compressDirectory(
 		InputOutput		inputOutput,
 		ChunkFilter[]	chunkFilters,
-		boolean			recursive)
+		boolean			recursive,
+		Effort			effort)
 		throws TaskCancelledException
 	{
 		// Process files
@@ -925,7 +1076,7 @@ public class OndaApp
 			{
 				try
 				{
-					compressFile(new InputOutput(file, inputOutput), chunkFilters);
+					compressFile(new InputOutput(file, inputOutput), chunkFilters, effort);
 				}
 				catch (TaskCancelledException e)
 				{
@@ -956,7 +1107,7 @@ public class OndaApp
 					throw new FileException(ErrorId.FAILED_TO_LIST_DIRECTORY_ENTRIES, directory);
 				Arrays.sort(files);
 				for (File file : files)
-					compressDirectory(new InputOutput(file, inputOutput), chunkFilters, true);
+					compressDirectory(new InputOutput(file, inputOutput), chunkFilters, true, effort);
 			}
 			catch (TaskCancelledException e)
 			{
@@ -973,35 +1124,61 @@ public class OndaApp
 
 	private void compressFile(
 		InputOutput		inputOutput,
-		ChunkFilter[]	chunkFilters)
+		ChunkFilter[]	chunkFilters,
+		Effort			effort)
 		throws AppException
 	{
-		// Test for input file
 		File inFile = inputOutput.input;
-		if (!inFile.isFile())
-			throw new FileException(ErrorId.FILE_DOES_NOT_EXIST, inFile);
+		Report.Entry reportEntry = new Report.Entry(Report.Operation.COMPRESS, inFile);
+		try
+		{
+			// Compress standard input stream to standard output stream
+			if (standardStreams)
+			{
+				Log.INSTANCE.appendLine(COMPRESSING_STR + STANDARD_INPUT_STR + ARROW_STR + STANDARD_OUTPUT_STR);
+				new FileProcessor(reportEntry).compress(System.in, standardOutput, chunkFilters, effort);
+				Report.INSTANCE.write(reportEntry);
+				return;
+			}
 
-		// Generate name of output file
-		File outDirectory = inputOutput.getOutputDirectory();
-		File outFile = new File(outDirectory, inFile.getName() + AppConstants.COMPRESSED_FILENAME_EXTENSION);
+			// Test for input file
+			if (!inFile.isFile())
+				throw new FileException(ErrorId.FILE_DOES_NOT_EXIST, inFile);
 
-		// Write name of task to log
-		Log.INSTANCE.appendLine(COMPRESSING_STR + Utils.getPathname(inFile) + ARROW_STR + Utils.getPathname(outFile));
+			// Generate name of output file
+			File outDirectory = inputOutput.getOutputDirectory();
+			File outFile = new File(outDirectory, inFile.getName() + AppConstants.COMPRESSED_FILENAME_EXTENSION);
+			reportEntry.outFile = outFile;
 
-		// Create output directory
-		if ((outDirectory != null) && !outDirectory.exists() && !outDirectory.mkdirs())
-			throw new FileException(ErrorId.FAILED_TO_CREATE_DIRECTORY, outDirectory);
+			// Write name of task to log
+			Log.INSTANCE.appendLine(COMPRESSING_STR + Utils.getPathname(inFile) + ARROW_STR
+										+ Utils.getPathname(outFile));
 
-		// Compress file
-		if (!outFile.exists() || confirmReplace(COMPRESS_FILE_STR, outFile))
-		{
-			if (hasGui)
+			// Create output directory
+			if ((outDirectory != null) && !outDirectory.exists() && !outDirectory.mkdirs())
+				throw new FileException(ErrorId.FAILED_TO_CREATE_DIRECTORY, outDirectory);
+
+			// Compress file
+			if (!outFile.exists() || confirmReplace(COMPRESS_FILE_STR, outFile))
 			{
-				long fileLength = inFile.length();
-				((TaskProgressDialog)Task.getProgressView()).setFileLength(fileLength, fileLengthOffset);
-				fileLengthOffset += fileLength;
+				if (hasGui)
+				{
+					long fileLength = inFile.length();
+					((TaskProgressDialog)Task.getProgressView()).setFileLength(fileLength, fileLengthOffset);
+					fileLengthOffset += fileLength;
+				}
+				new FileProcessor(reportEntry).compress(inFile, outFile, chunkFilters, effort);
+				Report.INSTANCE.write(reportEntry);
 			}
-			new FileProcessor().compress(inFile, outFile, chunkFilters);
+		}
+		catch (TaskCancelledException e)
+		{
+			throw e;
+		}
+		catch (AppException e)
+		{
+			Report.INSTANCE.write(reportEntry, e);
+			throw e;
 		}
 	}
 
@@ -1074,68 +1251,92 @@ public class OndaApp
 		InputOutput	inputOutput)
 		throws AppException
 	{
-		// Test for input file
 		File inFile = inputOutput.input;
-		if (!inFile.isFile())
-			throw new FileException(ErrorId.FILE_DOES_NOT_EXIST, inFile);
-
-		// Generate name of output file
-		File outDirectory = inputOutput.getOutputDirectory();
-		File outFile = null;
-		String filename = inFile.getName();
-		if (filename.endsWith(AppConstants.COMPRESSED_FILENAME_EXTENSION))
-		{
-			filename = StringUtils.removeSuffix(filename, AppConstants.COMPRESSED_FILENAME_EXTENSION);
-			outFile = new File(outDirectory, filename);
-		}
-		else
+		Report.Entry reportEntry = new Report.Entry(Report.Operation.EXPAND, inFile);
+		try
 		{
-			String[] filenameParts = StringUtils.splitAtFirst(filename, '.', StringUtils.SplitMode.SUFFIX);
-			filename = filenameParts[0];
-			int index = 1;
-			while (true)
+			// Expand standard input stream to standard output stream
+			if (standardStreams)
 			{
-				outFile = new File(outDirectory, filename + "-" + index + filenameParts[1]);
-				if (!outFile.exists())
-					break;
-				++index;
+				Log.INSTANCE.appendLine(EXPANDING_STR + STANDARD_INPUT_STR + ARROW_STR + STANDARD_OUTPUT_STR);
+				new FileProcessor(reportEntry).expand(System.in, standardOutput);
+				Report.INSTANCE.write(reportEntry);
+				return;
 			}
-		}
 
-		// Determine kind of output file
-		AudioFileKind audioFileKind = AudioFileKind.forFilename(filename);
-		if (audioFileKind == null)
-		{
-			// Read input file to get source file kind from private data
-			PrivateData privateData = OndaFileIff.getFileKind(inFile).createReader(inFile).readPrivateData();
-			if (privateData != null)
-				audioFileKind = privateData.getSourceKind();
+			// Test for input file
+			if (!inFile.isFile())
+				throw new FileException(ErrorId.FILE_DOES_NOT_EXIST, inFile);
+
+			// Generate name of output file
+			File outDirectory = inputOutput.getOutputDirectory();
+			File outFile = null;
+			String filename = inFile.getName();
+			if (filename.endsWith(AppConstants.COMPRESSED_FILENAME_EXTENSION))
+			{
+				filename = StringUtils.removeSuffix(filename, AppConstants.COMPRESSED_FILENAME_EXTENSION);
+				outFile = new File(outDirectory, filename);
+			}
+			else
+			{
+				String[] filenameParts = StringUtils.splitAtFirst(filename, '.', StringUtils.SplitMode.SUFFIX);
+				filename = filenameParts[0];
+				int index = 1;
+				while (true)
+				{
+					outFile = new File(outDirectory, filename + "-" + index + filenameParts[1]);
+					if (!outFile.exists())
+						break;
+					++index;
+				}
+			}
+
+			// Determine kind of output file
+			AudioFileKind audioFileKind = AudioFileKind.forFilename(filename);
 			if (audioFileKind == null)
 			{
-				// Ask user for kind of output file
-				audioFileKind = hasGui ? AudioFileKindDialog.showDialog(mainWindow) : AudioFileKindDialog.showPrompt();
+				// Read input file to get source file kind from private data
+				PrivateData privateData = OndaFileIff.getFileKind(inFile).createReader(inFile).readPrivateData();
+				if (privateData != null)
+					audioFileKind = privateData.getSourceKind();
 				if (audioFileKind == null)
-					throw new TaskCancelledException();
+				{
+					// Ask user for kind of output file
+					audioFileKind = hasGui ? AudioFileKindDialog.showDialog(mainWindow)
+										   : AudioFileKindDialog.showPrompt();
+					if (audioFileKind == null)
+						throw new TaskCancelledException();
+				}
 			}
-		}
 
-		// Write name of task to log
-		Log.INSTANCE.appendLine(EXPANDING_STR + Utils.getPathname(inFile) + ARROW_STR + Utils.getPathname(outFile));
+			// Write name of task to log
+			Log.INSTANCE.appendLine(EXPANDING_STR + Utils.getPathname(inFile) + ARROW_STR + Utils.getPathname(outFile));
 
-		// Create output directory
-		if ((outDirectory != null) && !outDirectory.exists() && !outDirectory.mkdirs())
-			throw new FileException(ErrorId.FAILED_TO_CREATE_DIRECTORY, outDirectory);
+			// Create output directory
+			if ((outDirectory != null) && !outDirectory.exists() && !outDirectory.mkdirs())
+				throw new FileException(ErrorId.FAILED_TO_CREATE_DIRECTORY, outDirectory);
 
-		// Expand file
-		if (!outFile.exists() || confirmReplace(EXPAND_FILE_STR, outFile))
-		{
-			if (hasGui)
+			// Expand file
+			if (!outFile.exists() || confirmReplace(EXPAND_FILE_STR, outFile))
 			{
-				long fileLength = inFile.length();
-				((TaskProgressDialog)Task.getProgressView()).setFileLength(fileLength, fileLengthOffset);
-				fileLengthOffset += fileLength;
+				if (hasGui)
+				{
+					long fileLength = inFile.length();
+					((TaskProgressDialog)Task.getProgressView()).setFileLength(fileLength, fileLengthOffset);
+					fileLengthOffset += fileLength;
+				}
+				new FileProcessor(reportEntry).expand(inFile, outFile, audioFileKind);
+				Report.INSTANCE.write(reportEntry);
 			}
-			new FileProcessor().expand(inFile, outFile, audioFileKind);
+		}
+		catch (TaskCancelledException e)
+		{
+			throw e;
+		}
+		catch (AppException e)
+		{
+			Report.INSTANCE.write(reportEntry, e);
+			throw e;
 		}
 	}
 
@@ -1219,7 +1420,21 @@ public class OndaApp
 			((TaskProgressDialog)Task.getProgressView()).setFileLength(fileLength, fileLengthOffset);
 			fileLengthOffset += fileLength;
 		}
-		new FileProcessor().validate(file, validationResult);
+		Report.Entry reportEntry = new Report.Entry(Report.Operation.VALIDATE, file);
+		try
+		{
+			new FileProcessor(reportEntry).validate(file, validationResult);
+			Report.INSTANCE.write(reportEntry);
+		}
+		catch (TaskCancelledException e)
+		{
+			throw e;
+		}
+		catch (AppException e)
+		{
+			Report.INSTANCE.write(reportEntry, e);
+			throw e;
+		}
 	}
 
 	//------------------------------------------------------------------
@@ -1327,6 +1542,13 @@ public class OndaApp
 			false
 		),
 
+		EFFORT
+		(
+			"effort",
+			false,
+			true
+		),
+
 		EXPAND
 		(
 			"expand",
@@ -1362,6 +1584,13 @@ public class OndaApp
 			false
 		),
 
+		REPORT
+		(
+			"report",
+			false,
+			true
+		),
+
 		SHOW_INFO
 		(
 			"show-info",
@@ -1633,15 +1862,27 @@ public class OndaApp
 		NO_INPUT_FILE_OR_DIRECTORY
 		("No input file or directory was specified."),
 
+		STANDARD_INPUT_NOT_SOLE_INPUT
+		("The standard input stream cannot be combined with other inputs."),
+
+		STANDARD_INPUT_NOT_SUPPORTED
+		("The standard input stream is not supported by the '%1' subcommand."),
+
 		INVALID_OUTPUT_DIRECTORY
 		("The output directory is invalid."),
 
+		INVALID_REPORT_FILE
+		("The report file is invalid."),
+
 		INVALID_AIFF_CHUNK_FILTER
 		("The AIFF chunk filter is invalid."),
 
 		INVALID_WAVE_CHUNK_FILTER
 		("The WAVE chunk filter is invalid."),
 
+		INVALID_EFFORT
+		("The effort is invalid."),
+
 		INVALID_INFO_KIND
 		("'%1' is not a valid kind of information."),
 
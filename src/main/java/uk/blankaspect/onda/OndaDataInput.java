@@ -21,6 +21,20 @@ package uk.blankaspect.onda;
 import java.io.DataInput;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteOrder;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ForkJoinPool;
+
+import java.util.stream.IntStream;
+
+import uk.blankaspect.common.number.NumberCodec;
 
 //----------------------------------------------------------------------
 
@@ -37,9 +51,11 @@ import java.io.IOException;
  * data source is buffered to improve efficiency.
  * </p>
  * <p>
- * The implementation of this class in the Onda application works only for integer sample values of up to 24 bits per
- * sample.  Above 24 bits per sample, the type of the instance variable {@code bitBuffer} must be changed from {@code
- * int} to {@code long} to accommodate the extra bits.
+ * The bit buffer of this class is a {@code long}, which is filled from the input buffer a 64-bit word at a time.  A
+ * single read from the bit buffer is limited to 32 bits, so the implementation of this class in the Onda application
+ * works only for integer sample values of up to 24 bits per sample, the length of whose side values is 25 bits.
+ * 32-bit floating-point sample values are decoded from 24-bit integer values; their escaped values, which are 32 bits
+ * long, are the longest single reads.
  * </p>
  *
  * @see OndaDataOutput
@@ -54,22 +70,64 @@ public class OndaDataInput
 
 	private static final	int	BUFFER_LENGTH	= 1 << 13;  // 8192
 
+	/** A view of a byte array as an array of little-endian 16-bit values. */
+	private static final	VarHandle	SHORT_LE	=
+			MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** A view of a byte array as an array of big-endian 64-bit values. */
+	private static final	VarHandle	LONG_BE	=
+			MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	/** The message of the exception that is thrown if a back reference or the reference window is invalid. */
+	private static final	String	INVALID_REFERENCE_STR	= "The data contain an invalid back reference.";
+	private static final	String	INVALID_FLOAT_VALUE_STR	= "The data contain an invalid floating-point value.";
+
+	/** The message of the exception that is thrown if the header of a block or a channel is invalid. */
+	private static final	String	INVALID_HEADER_STR	= "The data contain an invalid block header.";
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	DataInput	dataInput;
-	private	long		dataLength;
-	private	int			numChannels;
-	private	int			sampleLength;
-	private	int			keyLength;
-	private	int			bitBuffer;
-	private	int			bitDataLength;
-	private	int			inBufferIndex;
-	private	byte[]		inBuffer;
-	private	int[]		encodingLengths;
-	private	int[]		excessCodes;
-	private	int[]		epsilonMasks;
+	private	DataInput				dataInput;
+	private	InputStream				inStream;
+	private	long					dataLength;
+	private	long					inLength;
+	private	int						numChannels;
+	private	int						sampleLength;
+	private	int						keyLength;
+	private	long					bitBuffer;
+	private	int						bitDataLength;
+	private	int						inBufferIndex;
+	private	byte[]					inBuffer;
+	private	int[]					encodingLengths;
+	private	int[]					excessCodes;
+	private	int[]					epsilonMasks;
+	private	int[]					prevSampleValues;
+	private	int[]					prevDeltas;
+	private	int[]					sampleBuffer;
+	private	boolean					decorrelation;
+	private	int[]					valueLengths;
+	private	ChannelDecorrelation[]	decorrelations;
+	private	boolean					predictorSelection;
+	private	int[]					predictorOrders;
+	private	boolean[]				fullValueFlags;
+	private	boolean					riceCoding;
+	private	int[]					riceParameters;
+	private	boolean					variableBlockLength;
+	private	boolean					constantChannels;
+	private	boolean					wastedBits;
+	private	boolean					blockContinuity;
+	private	boolean					blockContinued;
+	private	int[]					sampleHistory;
+	private	int[]					historyBuffer;
+	private	boolean					backReferences;
+	private	int						referenceWindowOrder;
+	private	int[]					referenceWindow;
+	private	long					referencePosition;
+	private	boolean					syncSegment;
+	private	int						referenceDistance;
+	private	boolean					parallel;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -108,6 +166,43 @@ public class OndaDataInput
 		encodingLengths = new int[numChannels];
 		excessCodes = new int[numChannels];
 		epsilonMasks = new int[numChannels];
+		prevSampleValues = new int[numChannels];
+		prevDeltas = new int[numChannels];
+		valueLengths = new int[numChannels];
+		Arrays.fill(valueLengths, sampleLength);
+		decorrelations = new ChannelDecorrelation[numChannels / 2];
+		predictorOrders = new int[numChannels];
+		fullValueFlags = new boolean[0];
+		riceParameters = new int[1 << RiceCode.MAX_PARTITION_ORDER];
+		sampleHistory = new int[FixedPredictor.MAX_ORDER * numChannels];
+		historyBuffer = new int[FixedPredictor.MAX_ORDER * numChannels];
+		referenceWindowOrder = -1;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Constructs an {@code OndaDataInput} that has an input stream of unknown length as its underlying data source.
+	 * The input data end at the end of the stream.
+	 *
+	 * @param numChannels
+	 *          the number of audio channels in the sample data.
+	 * @param sampleLength
+	 *          the length (in bits) of a sample value.
+	 * @param keyLength
+	 *          the length (in bits) of an encoding key.
+	 * @param inStream
+	 *          the underlying source from which compressed data is to be read.
+	 */
+
+	public OndaDataInput(
+		int			numChannels,
+		int			sampleLength,
+		int			keyLength,
+		InputStream	inStream)
+	{
+		this(Long.MAX_VALUE, numChannels, sampleLength, keyLength, (DataInput)null);
+		this.inStream = inStream;
 	}
 
 	//------------------------------------------------------------------
@@ -116,6 +211,295 @@ public class OndaDataInput
 //  Instance methods
 ////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Returns the length of data that has been read from the underlying data source.
+	 *
+	 * @return the length of data that has been read from the underlying data source since the data input was opened.
+	 */
+
+	public long getInLength()
+	{
+		return inLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the number of bits that have been read from the input data.  Unlike the {@linkplain #getInLength() length
+	 * of data that has been read from the data source}, the number excludes the data that are buffered but have not
+	 * been decoded, so it is the bit offset of the next block in the input data.
+	 *
+	 * @return the number of bits that have been read from the input data since the data input was opened.
+	 */
+
+	public long getBitPosition()
+	{
+		return (inLength - (inBuffer.length - inBufferIndex)) * Byte.SIZE - bitDataLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the last block or segment that was read does not depend on the blocks that precede it.
+	 * A block of a file of a version earlier than 8 never depends on earlier blocks; a segment of a file of version 8
+	 * or later does not depend on earlier segments only if it is a sync segment.
+	 *
+	 * @return {@code true} if the last block or segment that was read can be decoded without decoding any earlier
+	 *         block.
+	 * @see    #getReferenceDistance()
+	 */
+
+	public boolean isSyncSegment()
+	{
+		return syncSegment;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the distance of the back reference of the last segment that was read.
+	 *
+	 * @return the distance (in sample frames) from the start of the frames that are referenced by the last segment
+	 *         that was read to the start of the segment, or 0 if the segment is not a back reference.
+	 */
+
+	public int getReferenceDistance()
+	{
+		return referenceDistance;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the binary logarithm of the length of the reference window.
+	 *
+	 * @return the binary logarithm of the length of the reference window, or -1 if it has not yet been read.
+	 */
+
+	public int getReferenceWindowOrder()
+	{
+		return referenceWindowOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Prepares this data input for reading the compressed data from a segment other than the first.  The specified
+	 * number of bits are skipped, so that the data source may be positioned at the byte that contains the first bit of
+	 * the segment.  If back references are enabled, the length of the reference window, which is read before the
+	 * first segment, is set, and the reference window is empty: the segment and the segments that follow it must not
+	 * refer to sample frames that precede it.
+	 *
+	 * @param  numBits
+	 *           the number of bits that precede the segment in the first byte of the data source, from 0 to 7.
+	 * @param  windowOrder
+	 *           the binary logarithm of the length of the reference window, as returned by {@link
+	 *           #getReferenceWindowOrder()} after the first segment was read.
+	 * @param  position
+	 *           the index of the first sample frame of the segment.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	public void resume(
+		int		numBits,
+		int		windowOrder,
+		long	position)
+		throws IOException
+	{
+		if (numBits > 0)
+			read(numBits);
+		referenceWindowOrder = windowOrder;
+		referencePosition = position;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the adjacent channels of each block are decorrelated in pairs.  The setting must match the version of
+	 * the file to which the compressed data belong: decorrelation is part of the format of version 2 of an Onda file.
+	 *
+	 * @param decorrelation
+	 *          if {@code true}, each block is expected to begin with the code of the decorrelation of each pair of
+	 *          channels, and the sample values of each pair will be restored after the block is decoded.
+	 * @see   OndaDataOutput#setChannelDecorrelation(boolean)
+	 */
+
+	public void setChannelDecorrelation(
+		boolean	decorrelation)
+	{
+		this.decorrelation = decorrelation;
+		Arrays.fill(valueLengths, sampleLength);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the order of the predictor of each channel of a block is recorded in the block.  The setting must
+	 * match the version of the file to which the compressed data belong: the selection of predictors is part of the
+	 * format of version 3 of an Onda file, in which the channels of a block with more than one channel are also
+	 * decorrelated in pairs.
+	 *
+	 * @param predictorSelection
+	 *          if {@code true}, the key of each channel of a block is expected to be preceded by the order of the
+	 *          predictor of the channel.
+	 * @see   OndaDataOutput#setPredictorSelection(boolean)
+	 */
+
+	public void setPredictorSelection(
+		boolean	predictorSelection)
+	{
+		this.predictorSelection = predictorSelection;
+		Arrays.fill(valueLengths, sampleLength);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the channels of each block are stored in turn, each with its own coding, rather than as interleaved
+	 * sample frames.  The setting must match the version of the file to which the compressed data belong: the storage
+	 * of channels in turn, which allows their residuals to be encoded with Rice codes, is part of the format of
+	 * version 4 of an Onda file, in which the predictor of each channel is also selected.
+	 *
+	 * @param riceCoding
+	 *          if {@code true}, the decorrelation codes of each block are expected to be followed by the channels of
+	 *          the block in turn, each of which begins with its predictor order and coding.
+	 * @see   OndaDataOutput#setRiceCoding(boolean)
+	 */
+
+	public void setRiceCoding(
+		boolean	riceCoding)
+	{
+		this.riceCoding = riceCoding;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether each block of data that is read is a {@linkplain Segment segment} that is divided into blocks.  The
+	 * setting must match the version of the file to which the compressed data belong: variable block length is part
+	 * of the format of version 5 of an Onda file, in which the predictor of each channel is also selected.
+	 *
+	 * @param variableBlockLength
+	 *          if {@code true}, each block of data that is read is expected to begin with the split order of a segment,
+	 *          followed by the blocks of the segment.
+	 * @see   OndaDataOutput#setVariableBlockLength(boolean)
+	 */
+
+	public void setVariableBlockLength(
+		boolean	variableBlockLength)
+	{
+		this.variableBlockLength = variableBlockLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether a channel of a block of data that is read may be encoded as a single value.  The setting must match
+	 * the version of the file to which the compressed data belong: constant channels are part of the format of version
+	 * 6 of an Onda file.
+	 *
+	 * @param constantChannels
+	 *          if {@code true}, a channel whose predictor order is {@link FixedPredictor#CONSTANT_CODE} is expected to
+	 *          consist of a single value, which is the value of every sample of the channel in the block.
+	 * @see   OndaDataOutput#setConstantChannels(boolean)
+	 */
+
+	public void setConstantChannels(
+		boolean	constantChannels)
+	{
+		this.constantChannels = constantChannels;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the predictor order of each channel of a block of data that is read is followed by the number of
+	 * {@linkplain WastedBits wasted bits} of the channel.  The setting must match the version of the file to which the
+	 * compressed data belong: the removal of wasted bits is part of the format of version 7 of an Onda file.
+	 *
+	 * @param wastedBits
+	 *          if {@code true}, the predictor order of a channel that is not constant is expected to be followed by a
+	 *          flag and, if the flag is set, the number of wasted bits of the channel.
+	 * @see   OndaDataOutput#setWastedBits(boolean)
+	 */
+
+	public void setWastedBits(
+		boolean	wastedBits)
+	{
+		this.wastedBits = wastedBits;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the predictors of a block of data that is read may continue from the sample values of the preceding
+	 * block.  The setting must match the version of the file to which the compressed data belong: block continuity is
+	 * part of the format of version 8 of an Onda file.
+	 *
+	 * @param blockContinuity
+	 *          if {@code true}, each segment is expected to begin with a sync flag, and each block that is not the
+	 *          first block of a sync segment is expected to continue from the preceding block.
+	 * @see   OndaDataOutput#setBlockContinuity(boolean)
+	 */
+
+	public void setBlockContinuity(
+		boolean	blockContinuity)
+	{
+		this.blockContinuity = blockContinuity;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether a segment of data that is read may be a back reference to earlier sample frames.  The setting must
+	 * match the version of the file to which the compressed data belong: back references are part of the format of
+	 * version 9 of an Onda file.
+	 *
+	 * @param backReferences
+	 *          if {@code true}, the first segment is expected to begin with the length of the reference window, and
+	 *          each segment is expected to begin with a reference flag if the window is not empty.
+	 * @see   OndaDataOutput#setBackReferences(boolean)
+	 */
+
+	public void setBackReferences(
+		boolean	backReferences)
+	{
+		this.backReferences = backReferences;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the per-channel work of the decoder is distributed across the threads of the common fork/join pool.
+	 * The setting has an effect only on blocks of sample data that have at least {@link
+	 * OndaDataOutput#MIN_NUM_PARALLEL_CHANNELS} channels, and it does not affect the decompressed data.  It is ignored
+	 * if the Java virtual machine has only one processor.
+	 * <p>
+	 * In parallel mode, the residuals of a block whose predictors have been selected are read from the data source as
+	 * usual, and the channels of the block are then divided into groups, one for each available thread.  For each
+	 * channel of its group, a task restores the values of the channel from its residuals with the predictor of the
+	 * channel; for each pair of channels of its group, a task restores the sample values of the pair from its
+	 * decorrelated values.  The reading of the bitstream is not parallelised, because the bit position of each encoded
+	 * value depends on the lengths of all the values that precede it.  If the channels of a block are stored in turn
+	 * (ie, Rice coding is enabled), the predictor of each channel is applied as its values are read, so only the pairs
+	 * of channels are restored in parallel.
+	 * </p>
+	 *
+	 * @param parallel
+	 *          if {@code true}, the per-channel work of the decoder will be performed in parallel for blocks with
+	 *          enough channels.
+	 * @see   OndaDataOutput#setParallel(boolean)
+	 */
+
+	public void setParallel(
+		boolean	parallel)
+	{
+		this.parallel = parallel && (Runtime.getRuntime().availableProcessors() > 1);
+	}
+
+	//------------------------------------------------------------------
+
 	/**
 	 * Reads a block of compressed data from the data source, and decompresses the data into the specified buffer.  The
 	 * input data must be in the form of a data block of an Onda file (ie, a compression key for each channel, followed
@@ -152,95 +536,1209 @@ public class OndaDataInput
 		if ((length < 0) || (length > buffer.length - offset))
 			throw new IllegalArgumentException();
 
-		// Get encoding length for each channel from key; initialise per-channel encoding variables
-		for (int i = 0; i < numChannels; i++)
+		// Read block or segment from source, decode it and write sample values to buffer
+		readValues(buffer, offset, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a block of compressed data from the data source, and decompresses the data into the specified buffer as
+	 * interleaved little-endian PCM sample data.  The decompressed data are the same as those of {@link
+	 * #readBlock(int[], int, int)}, but each sample value is stored in the buffer as it is decoded, which avoids a
+	 * separate conversion of an array of integers to bytes.  There are specialised encoders for 16-bit and 24-bit
+	 * samples.  Mono and stereo data are an exception: they are decoded by the specialised kernels of {@link
+	 * #readBlock(int[], int, int)} into an intermediate array, which is then converted to bytes.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the decompressed data is to be stored.
+	 * @param  offset
+	 *           the start offset at which sample data is to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of samples that are to be read.
+	 * @param  bytesPerSample
+	 *           the number of bytes that encode a sample value, which must be 1, 2 or 3.
+	 * @throws IllegalArgumentException
+	 *           <ul>
+	 *             <li>{@code buffer} is {@code null}, or</li>
+	 *             <li>{@code (length < 0)} or {@code (length * bytesPerSample > buffer.length - offset)}, or</li>
+	 *             <li>{@code bytesPerSample} is not 1, 2 or 3.</li>
+	 *           </ul>
+	 * @throws IndexOutOfBoundsException
+	 *           if {@code (offset < 0)} or {@code (offset > buffer.length)}.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	public void readPcmBlock(
+		byte[]	buffer,
+		int		offset,
+		int		length,
+		int		bytesPerSample)
+		throws IOException
+	{
+		// Validate arguments
+		if (buffer == null)
+			throw new IllegalArgumentException();
+		if ((offset < 0) || (offset > buffer.length))
+			throw new IndexOutOfBoundsException();
+		if ((bytesPerSample < 1) || (bytesPerSample > 3))
+			throw new IllegalArgumentException();
+		if ((length < 0) || ((long)length * bytesPerSample > buffer.length - offset))
+			throw new IllegalArgumentException();
+
+		// Decode mono and stereo data with specialised kernels, and decorrelated data and data with selected
+		// predictors with the kernels that restore the sample values of each channel; convert the sample values to
+		// bytes
+		if ((numChannels <= 2) || decorrelation || predictorSelection)
 		{
-			encodingLengths[i] = sampleLength - read(keyLength);
-			excessCodes[i] = 1 << encodingLengths[i] - 1;
-			epsilonMasks[i] = ~(excessCodes[i] - 1);
+			if ((sampleBuffer == null) || (sampleBuffer.length < length))
+				sampleBuffer = new int[length];
+			readValues(sampleBuffer, 0, length);
+			NumberCodec.intsToBytesLE(sampleBuffer, 0, buffer, offset, length, bytesPerSample);
+			return;
 		}
 
+		// Read keys of block
+		beginBlock();
+
 		// Read sample data from source, decode them and write them to buffer
-		int[] prevSampleValues = new int[numChannels];
-		int[] prevDeltas = new int[numChannels];
-		int sampleValue = 0;
-		int delta = 0;
-		boolean sampleValueExpected = false;
-		int startOffset = offset;
-		int endOffset = startOffset + length;
-		while (offset < endOffset)
+		int index = 0;
+		switch (bytesPerSample)
 		{
-			for (int i = 0; i < numChannels; i++)
-			{
-				if ((offset == startOffset) || (encodingLengths[i] == sampleLength))
-					sampleValue = read(sampleLength);
-				else
+			case 1:
+				while (index < length)
 				{
-					while (true)
+					for (int i = 0; i < numChannels; i++)
 					{
-						if (sampleValueExpected)
-						{
-							sampleValue = read(sampleLength);
-							sampleValueExpected = false;
-							break;
-						}
-						else
-						{
-							int epsilon = read(encodingLengths[i]);
-							if (epsilon == excessCodes[i])
-								sampleValueExpected = true;
-							else
-							{
-								if ((epsilon & excessCodes[i]) != 0)
-									epsilon |= epsilonMasks[i];
-								delta = prevDeltas[i] + epsilon;
-								sampleValue = prevSampleValues[i] + delta;
-								break;
-							}
-						}
+						buffer[offset++] = (byte)decodeSample(i, index == 0);
+						++index;
 					}
 				}
-				prevDeltas[i] = sampleValue - prevSampleValues[i];
-				prevSampleValues[i] = sampleValue;
+				break;
 
-				buffer[offset++] = sampleValue;
-			}
+			case 2:
+				while (index < length)
+				{
+					for (int i = 0; i < numChannels; i++)
+					{
+						SHORT_LE.set(buffer, offset, (short)decodeSample(i, index == 0));
+						offset += 2;
+						++index;
+					}
+				}
+				break;
+
+			case 3:
+				while (index < length)
+				{
+					for (int i = 0; i < numChannels; i++)
+					{
+						int sampleValue = decodeSample(i, index == 0);
+						SHORT_LE.set(buffer, offset, (short)sampleValue);
+						buffer[offset + 2] = (byte)(sampleValue >> 16);
+						offset += 3;
+						++index;
+					}
+				}
+				break;
 		}
 	}
 
 	//------------------------------------------------------------------
 
 	/**
-	 * Reads a bit string of a specified length from the data source.
+	 * Reads a block of compressed data from the data source, and decompresses the data into the specified buffer as
+	 * interleaved little-endian 32-bit IEEE 754 floating-point sample data.  The block must have been written by
+	 * {@link OndaDataOutput#writeFloatBlock(byte[], int, int)}: the integer values of the block are decoded, and each
+	 * floating-point value is restored from its integer value and lost bits at the scale of the greatest exponent of
+	 * the block, or from its escaped value.  See {@link FloatSample}.
+	 * <p>
+	 * The data input must have been constructed with a sample length of {@link FloatSample#VALUE_LENGTH}.
+	 * </p>
 	 *
+	 * @param  buffer
+	 *           the buffer in which the decompressed data is to be stored.
+	 * @param  offset
+	 *           the start offset at which sample data is to be stored in {@code buffer}.
 	 * @param  length
-	 *           the number of bits to read.
-	 * @return the bit string that was read from the data source, as an unsigned integer.
+	 *           the number of samples that are to be read.
+	 * @throws IllegalArgumentException
+	 *           <ul>
+	 *             <li>{@code buffer} is {@code null}, or</li>
+	 *             <li>{@code (length < 0)} or {@code (length * 4 > buffer.length - offset)}.</li>
+	 *           </ul>
+	 * @throws IndexOutOfBoundsException
+	 *           if {@code (offset < 0)} or {@code (offset > buffer.length)}.
 	 * @throws IOException
-	 *           if an error occurs when attempting to read from the data source.
+	 *           if an error occurs when attempting to read from the data source, or if the data contain an invalid
+	 *           floating-point value.
 	 */
 
-	private int read(
-		int	length)
+	public void readFloatBlock(
+		byte[]	buffer,
+		int		offset,
+		int		length)
 		throws IOException
 	{
-		while (bitDataLength < length)
+		// Validate arguments
+		if (buffer == null)
+			throw new IllegalArgumentException();
+		if ((offset < 0) || (offset > buffer.length))
+			throw new IndexOutOfBoundsException();
+		if ((length < 0) || ((long)length * Float.BYTES > buffer.length - offset))
+			throw new IllegalArgumentException();
+
+		// Ensure that sample buffer is large enough
+		if ((sampleBuffer == null) || (sampleBuffer.length < length))
+			sampleBuffer = new int[length];
+		int[] values = sampleBuffer;
+
+		// Read greatest exponent, flag that denotes whether all lost bits are zero and flag that denotes whether there
+		// are escaped values other than positive zero
+		int maxExponent = read(FloatSample.EXPONENT_LENGTH);
+		if (maxExponent > FloatSample.MAX_EXPONENT)
+			throw new IOException(INVALID_FLOAT_VALUE_STR);
+		boolean exact = (read(1) != 0);
+		boolean escaped = (read(1) != 0);
+
+		// Decode integer values
+		readValues(values, 0, length);
+
+		// Restore floating-point values from integer values and lost bits, or from escaped values.  The decoded values
+		// are sign-extended from the length of an integer value.
+		int valueShift = Integer.SIZE - FloatSample.VALUE_LENGTH;
+		for (int i = 0; i < length; i++)
 		{
-			if (inBufferIndex >= inBuffer.length)
+			int value = values[i] << valueShift >> valueShift;
+			if (value == 0)
+				values[i] = (!escaped || (read(1) == 0)) ? 0 : read(FloatSample.ESCAPED_VALUE_LENGTH);
+			else
 			{
-				if (dataLength == 0)
-					throw new EOFException();
+				int shift = FloatSample.getShift(value);
+				if ((shift < 1) || (shift > FloatSample.FRACTION_LENGTH))
+					throw new IOException(INVALID_FLOAT_VALUE_STR);
+				int bits = FloatSample.toBits(value, maxExponent, exact ? 0 : read(shift));
+				if (bits == 0)
+					throw new IOException(INVALID_FLOAT_VALUE_STR);
+				values[i] = bits;
+			}
+		}
+
+		// Convert floating-point values to bytes
+		NumberCodec.intsToBytesLE(values, 0, buffer, offset, length, Float.BYTES);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a block of data from the data source, or a segment if variable block length is enabled, and stores the
+	 * decoded sample values in the specified buffer.  A segment is read as its split order, followed by each of its
+	 * blocks.  If back references are enabled, a segment may instead be a reference to earlier sample frames, which
+	 * are copied from the reference window.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the sample values are to be stored.
+	 * @param  offset
+	 *           the start offset at which sample values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of sample values that are to be read.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void readValues(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Reset dependency of segment
+		syncSegment = true;
+		referenceDistance = 0;
+
+		// If variable block length is enabled, read split order of segment and then each of its blocks ...
+		if (variableBlockLength && predictorSelection)
+		{
+			// If back references are enabled and segment is a back reference, copy referenced sample frames and add
+			// them to history
+			int numSampleFrames = length / numChannels;
+			if (backReferences && readReference(buffer, offset, numSampleFrames))
+			{
+				syncSegment = false;
+				if (blockContinuity)
+				{
+					FixedPredictor.updateHistory(sampleHistory, buffer, offset, numSampleFrames, numChannels,
+												 sampleLength);
+				}
+				addReferenceFrames(buffer, offset, numSampleFrames);
+				return;
+			}
+
+			// If block continuity is enabled, read flag that denotes a sync segment, and reset history of a sync
+			// segment
+			boolean sync = true;
+			if (blockContinuity)
+			{
+				sync = (read(1) != 0);
+				if (sync)
+					Arrays.fill(sampleHistory, 0);
+				syncSegment = sync;
+			}
+
+			// Read split order and decode blocks of segment
+			int splitOrder = read(Segment.SPLIT_ORDER_LENGTH);
+			int numBlocks = 1 << splitOrder;
+			for (int i = 0; i < numBlocks; i++)
+			{
+				int startFrame = Segment.getBlockStart(i, splitOrder, numSampleFrames);
+				int endFrame = Segment.getBlockStart(i + 1, splitOrder, numSampleFrames);
+				int blockOffset = offset + startFrame * numChannels;
+				blockContinued = blockContinuity && !(sync && (i == 0));
+				beginBlock();
+				if (blockContinued)
+					transformHistory();
+				decodeBlock(buffer, blockOffset, (endFrame - startFrame) * numChannels);
+				if (blockContinuity)
+				{
+					FixedPredictor.updateHistory(sampleHistory, buffer, blockOffset, endFrame - startFrame,
+												 numChannels, sampleLength);
+				}
+			}
+
+			// If back references are enabled, add segment to reference window
+			if (backReferences)
+				addReferenceFrames(buffer, offset, numSampleFrames);
+		}
+
+		// ... otherwise, read block
+		else
+		{
+			beginBlock();
+			decodeBlock(buffer, offset, length);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the reference flag of a segment, and, if the segment is a back reference, reads the distance to the
+	 * referenced sample frames and copies them from the reference window.  Before the first segment, the binary
+	 * logarithm of the length of the reference window is read; if the window is empty, no reference flags are read.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the sample values of the segment are to be stored.
+	 * @param  offset
+	 *           the start offset at which sample values are to be stored in {@code buffer}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return {@code true} if the segment is a back reference.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source, or if the length of the reference
+	 *           window is invalid or the referenced sample frames do not lie within it.
+	 */
+
+	private boolean readReference(
+		int[]	buffer,
+		int		offset,
+		int		numSampleFrames)
+		throws IOException
+	{
+		// Before first segment, read length of reference window
+		if (referenceWindowOrder < 0)
+		{
+			referenceWindowOrder = read(BackReference.WINDOW_ORDER_LENGTH);
+			if (referenceWindowOrder > BackReference.MAX_WINDOW_ORDER)
+				throw new IOException(INVALID_REFERENCE_STR);
+		}
+		if ((referenceWindowOrder == 0) || (read(1) == 0))
+			return false;
+
+		// Read distance and copy referenced frames
+		int distance = read(referenceWindowOrder) + 1;
+		if (distance > Math.min(referencePosition, 1L << referenceWindowOrder))
+			throw new IOException(INVALID_REFERENCE_STR);
+		BackReference.copy(referenceWindow, referencePosition, distance, buffer, offset, numSampleFrames,
+						   numChannels);
+		referenceDistance = distance;
+		return true;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Adds the sample frames of a segment to the reference window.
+	 *
+	 * @param buffer
+	 *          the buffer that contains the sample values of the segment.
+	 * @param offset
+	 *          the start offset of the sample values in {@code buffer}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the segment.
+	 */
+
+	private void addReferenceFrames(
+		int[]	buffer,
+		int		offset,
+		int		numSampleFrames)
+	{
+		if (referenceWindowOrder > 0)
+		{
+			long endPosition = referencePosition + numSampleFrames;
+			referenceWindow = BackReference.ensureCapacity(referenceWindow, endPosition, referenceWindowOrder,
+														   numChannels);
+			BackReference.append(referenceWindow, referencePosition, buffer, offset, numSampleFrames, numChannels);
+			referencePosition = endPosition;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the header of a block (the decorrelation of each pair of channels, if decorrelation or the selection of
+	 * predictors is enabled, followed by the key of each channel, which is preceded by the order of the predictor of
+	 * the channel if the selection of predictors is enabled), and initialises the per-channel decoding variables.  If
+	 * the channels are stored in turn, the header of each channel precedes its values, and only the decorrelation
+	 * codes are read.
+	 *
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source, or if the order of a predictor is
+	 *           invalid.
+	 */
+
+	private void beginBlock()
+		throws IOException
+	{
+		if (decorrelation || predictorSelection)
+		{
+			for (int i = 0; i < decorrelations.length; i++)
+			{
+				ChannelDecorrelation pairDecorrelation =
+						ChannelDecorrelation.forCode(read(ChannelDecorrelation.CODE_LENGTH));
+				decorrelations[i] = pairDecorrelation;
+				valueLengths[2 * i] = pairDecorrelation.getSource(0).getValueLength(sampleLength);
+				valueLengths[2 * i + 1] = pairDecorrelation.getSource(1).getValueLength(sampleLength);
+			}
+		}
+
+		if (riceCoding)
+			return;
+
+		for (int i = 0; i < numChannels; i++)
+		{
+			if (predictorSelection)
+			{
+				int order = read(FixedPredictor.ORDER_LENGTH);
+				if (order > FixedPredictor.MAX_ORDER)
+					throw new IOException(INVALID_HEADER_STR);
+				predictorOrders[i] = order;
+			}
+			encodingLengths[i] = valueLengths[i] - read(keyLength);
+			excessCodes[i] = 1 << encodingLengths[i] - 1;
+			epsilonMasks[i] = ~(excessCodes[i] - 1);
+			prevSampleValues[i] = 0;
+			prevDeltas[i] = 0;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of sample data, and stores the sample values in the specified buffer.  Blocks of mono
+	 * and stereo data are decoded by specialised kernels that keep the per-channel decoding variables in local
+	 * variables; other blocks are decoded by a generic kernel.  If the selection of predictors is enabled, there are
+	 * corresponding kernels that apply the predictor of each channel.  If the channels are stored in turn, each channel
+	 * is decoded by its own loop.  If decorrelation or the selection of predictors is
+	 * enabled, the sample values of each pair of channels are restored from the decoded values.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the sample values are to be stored.
+	 * @param  offset
+	 *           the start offset at which sample values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of sample values that are to be read.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodeBlock(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		if (length == 0)
+			return;
+		if (riceCoding)
+		{
+			int numSampleFrames = length / numChannels;
+			for (int i = 0; i < numChannels; i++)
+				decodeChannel(buffer, offset, numSampleFrames, i);
+		}
+		else if (predictorSelection)
+		{
+			switch (numChannels)
+			{
+				case 1:
+					decodePredictedMono(buffer, offset, length);
+					break;
+
+				case 2:
+					decodePredictedStereo(buffer, offset, length);
+					break;
+
+				default:
+					decodePredicted(buffer, offset, length);
+					break;
+			}
+		}
+		else
+		{
+			switch (numChannels)
+			{
+				case 1:
+					decodeMono(buffer, offset, length);
+					break;
+
+				case 2:
+					decodeStereo(buffer, offset, length);
+					break;
+
+				default:
+				{
+					int index = offset;
+					int endIndex = offset + length;
+					while (index < endIndex)
+					{
+						for (int i = 0; i < numChannels; i++)
+						{
+							buffer[index] = decodeSample(i, index == offset);
+							++index;
+						}
+					}
+					break;
+				}
+			}
+		}
+
+		// Restore sample values of each pair of channels
+		if (decorrelation || predictorSelection)
+		{
+			int numSampleFrames = length / numChannels;
+			int numPairs = decorrelations.length;
+			if (isParallelBlock())
+			{
+				int numTasks = Math.min(numPairs, ForkJoinPool.getCommonPoolParallelism() + 1);
+				IntStream.range(0, numTasks).parallel().forEach(task ->
+				{
+					int endPair = (task + 1) * numPairs / numTasks;
+					for (int i = task * numPairs / numTasks; i < endPair; i++)
+						decorrelations[i].restore(buffer, offset + 2 * i, numSampleFrames, numChannels);
+				});
+			}
+			else
+			{
+				for (int i = 0; i < numPairs; i++)
+					decorrelations[i].restore(buffer, offset + 2 * i, numSampleFrames, numChannels);
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the next block of sample data is to be decoded in parallel.
+	 *
+	 * @return {@code true} if parallel mode is selected and the blocks have enough channels to be decoded in parallel.
+	 */
+
+	private boolean isParallelBlock()
+	{
+		return parallel && (numChannels >= OndaDataOutput.MIN_NUM_PARALLEL_CHANNELS);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of data for any number of channels whose predictors have been selected, and stores the
+	 * values in the specified buffer.  The block is decoded in two passes.  The first pass reads the interleaved
+	 * residuals and full values of the block, noting which values are full values; the second pass restores the values
+	 * of each channel from its residuals with the predictor of the channel.  If the block has enough channels and
+	 * parallel mode is selected, the channels are restored in parallel.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the values are to be stored.
+	 * @param  offset
+	 *           the start offset at which values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of values that are to be read, which must be greater than zero.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodePredicted(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Ensure that buffer of flags is large enough
+		int endOffset = offset + length;
+		if (fullValueFlags.length < endOffset)
+			fullValueFlags = new boolean[endOffset];
+		boolean[] fullValues = fullValueFlags;
+
+		// Read first value in full
+		buffer[offset] = read(valueLengths[0]);
+		fullValues[offset] = true;
+
+		// Read residuals and full values of remaining values
+		int channel = (numChannels == 1) ? 0 : 1;
+		for (int i = offset + 1; i < endOffset; i++)
+		{
+			int valueLength = valueLengths[channel];
+			int encodingLength = encodingLengths[channel];
+			boolean full = (encodingLength == valueLength);
+			int value = read(encodingLength);
+			if (!full)
+			{
+				int excessCode = excessCodes[channel];
+				if (value == excessCode)
+				{
+					value = read(valueLength);
+					full = true;
+				}
+				else if ((value & excessCode) != 0)
+					value |= epsilonMasks[channel];
+			}
+			buffer[i] = value;
+			fullValues[i] = full;
+
+			if (++channel == numChannels)
+				channel = 0;
+		}
+
+		// Restore values of each channel from its residuals
+		if (isParallelBlock())
+		{
+			int numTasks = Math.min(numChannels, ForkJoinPool.getCommonPoolParallelism() + 1);
+			IntStream.range(0, numTasks).parallel().forEach(task ->
+			{
+				int endChannel = (task + 1) * numChannels / numTasks;
+				for (int i = task * numChannels / numTasks; i < endChannel; i++)
+				{
+					FixedPredictor.restore(buffer, fullValues, offset + i, endOffset, numChannels,
+										   predictorOrders[i]);
+				}
+			});
+		}
+		else
+		{
+			for (int i = 0; i < numChannels; i++)
+				FixedPredictor.restore(buffer, fullValues, offset + i, endOffset, numChannels, predictorOrders[i]);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a channel of a block whose channels are stored in turn, and stores the values of the channel in
+	 * the specified buffer.  The channel begins with the order of its predictor and a flag that denotes its coding,
+	 * which is followed by the key of the channel for fixed-width codes, or by the partition order and Rice parameters
+	 * of the channel for Rice codes.  A constant channel consists of the code {@link FixedPredictor#CONSTANT_CODE} in
+	 * place of its predictor order, followed by its value.  If the removal of wasted bits is enabled, the predictor
+	 * order of a channel that is not constant is followed by the number of its wasted bits, and the decoded values are
+	 * shifted left by that number.  If the block continues from the preceding block, the predictor is primed with the
+	 * transformed history of the preceding sample values, and no value is read in full.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the interleaved values of the block are to be stored.
+	 * @param  offset
+	 *           the start offset at which values are to be stored in {@code buffer}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @param  channel
+	 *           the index of the channel.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source, or if the header of the channel is
+	 *           invalid.
+	 */
+
+	private void decodeChannel(
+		int[]	buffer,
+		int		offset,
+		int		numSampleFrames,
+		int		channel)
+		throws IOException
+	{
+		// Read predictor order; if the channel is constant, read its value and fill the channel with it
+		int order = read(FixedPredictor.ORDER_LENGTH);
+		if (constantChannels && (order == FixedPredictor.CONSTANT_CODE))
+		{
+			int value = read(valueLengths[channel]);
+			if (numChannels == 1)
+				Arrays.fill(buffer, offset, offset + numSampleFrames, value);
+			else
+			{
+				int endIndex = offset + numSampleFrames * numChannels;
+				for (int i = offset + channel; i < endIndex; i += numChannels)
+					buffer[i] = value;
+			}
+			return;
+		}
+		if (order > FixedPredictor.MAX_ORDER)
+			throw new IOException(INVALID_HEADER_STR);
+
+		// If removal of wasted bits is enabled, read number of wasted bits
+		int shift = 0;
+		if (wastedBits && (read(1) != 0))
+		{
+			shift = read(WastedBits.SHIFT_LENGTH);
+			if (shift >= valueLengths[channel])
+				throw new IOException(INVALID_HEADER_STR);
+		}
+
+		// Get coefficients of predictor, and the values that precede the block
+		int c1 = FixedPredictor.getCoefficient(order, 1);
+		int c2 = FixedPredictor.getCoefficient(order, 2);
+		int c3 = FixedPredictor.getCoefficient(order, 3);
+		int c4 = FixedPredictor.getCoefficient(order, 4);
+		int p1 = 0;
+		int p2 = 0;
+		int p3 = 0;
+		int p4 = 0;
+		if (blockContinued)
+		{
+			int[] history = historyBuffer;
+			p1 = history[3 * numChannels + channel] >> shift;
+			p2 = history[2 * numChannels + channel] >> shift;
+			p3 = history[numChannels + channel] >> shift;
+			p4 = history[channel] >> shift;
+		}
+
+		// Read coding of channel, then read first value of block in full
+		int valueLength = valueLengths[channel] - shift;
+		int startFrame = ((channel == 0) && !blockContinued) ? 1 : 0;
+		int index = offset + channel;
+		boolean rice = (read(1) != 0);
+		if (rice)
+		{
+			// Read partition order and Rice parameters
+			int partitionOrder = read(RiceCode.PARTITION_ORDER_LENGTH);
+			int numPartitions = 1 << partitionOrder;
+			if (numPartitions > riceParameters.length)
+				throw new IOException(INVALID_HEADER_STR);
+			for (int i = 0; i < numPartitions; i++)
+				riceParameters[i] = read(RiceCode.PARAMETER_LENGTH);
+			if ((numSampleFrames > 0) && (startFrame > 0))
+			{
+				p1 = read(valueLength);
+				buffer[index] = p1;
+				index += numChannels;
+			}
+
+			// Decode values of each partition
+			for (int i = 0; i < numPartitions; i++)
+			{
+				int parameter = riceParameters[i];
+				int frame = Math.max(startFrame, RiceCode.getPartitionStart(i, partitionOrder, numSampleFrames));
+				int endFrame = RiceCode.getPartitionStart(i + 1, partitionOrder, numSampleFrames);
+				for (; frame < endFrame; frame++)
+				{
+					int value = 0;
+					int quotient = readUnary();
+					if (quotient == RiceCode.ESCAPE_QUOTIENT)
+						value = read(valueLength);
+					else
+						value = c1 * p1 + c2 * p2 + c3 * p3 + c4 * p4
+									+ RiceCode.toResidual(quotient << parameter | read(parameter));
+					buffer[index] = value;
+					index += numChannels;
+					p4 = p3;
+					p3 = p2;
+					p2 = p1;
+					p1 = value;
+				}
+			}
+		}
+		else
+		{
+			// Read key
+			int encodingLength = valueLength - read(keyLength);
+			int excessCode = 1 << encodingLength - 1;
+			int epsilonMask = ~(excessCode - 1);
+			if ((numSampleFrames > 0) && (startFrame > 0))
+			{
+				p1 = read(valueLength);
+				buffer[index] = p1;
+				index += numChannels;
+			}
+
+			// Decode values
+			int endIndex = offset + numSampleFrames * numChannels;
+			for (; index < endIndex; index += numChannels)
+			{
+				int value = decodeValue(valueLength, c1 * p1 + c2 * p2 + c3 * p3 + c4 * p4, encodingLength, excessCode,
+										epsilonMask);
+				buffer[index] = value;
+				p4 = p3;
+				p3 = p2;
+				p2 = p1;
+				p1 = value;
+			}
+		}
+
+		// Restore wasted bits of values
+		if (shift > 0)
+		{
+			int endIndex = offset + numSampleFrames * numChannels;
+			for (int i = offset + channel; i < endIndex; i += numChannels)
+				buffer[i] <<= shift;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Transforms the history of the sample values that precede a block with the decorrelation of each pair of channels
+	 * of the block, and stores the transformed values in the history buffer.
+	 */
+
+	private void transformHistory()
+	{
+		int numSampleFrames = FixedPredictor.MAX_ORDER;
+		for (int i = 0; i < decorrelations.length; i++)
+			decorrelations[i].transform(sampleHistory, 2 * i, historyBuffer, 2 * i, numSampleFrames, numChannels);
+		if ((numChannels & 1) != 0)
+		{
+			for (int i = numChannels - 1; i < historyBuffer.length; i += numChannels)
+				historyBuffer[i] = sampleHistory[i];
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of mono data whose predictor has been selected, and stores the values in the specified
+	 * buffer.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the values are to be stored.
+	 * @param  offset
+	 *           the start offset at which values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of values that are to be read, which must be greater than zero.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodePredictedMono(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int encodingLength = encodingLengths[0];
+		int excessCode = excessCodes[0];
+		int epsilonMask = epsilonMasks[0];
+		int order = predictorOrders[0];
+		int c1 = FixedPredictor.getCoefficient(order, 1);
+		int c2 = FixedPredictor.getCoefficient(order, 2);
+		int c3 = FixedPredictor.getCoefficient(order, 3);
+		int c4 = FixedPredictor.getCoefficient(order, 4);
+
+		// Read first value in full
+		int p1 = read(sampleLength);
+		int p2 = 0;
+		int p3 = 0;
+		int p4 = 0;
+		buffer[offset] = p1;
+
+		// Decode remaining values
+		int endOffset = offset + length;
+		while (++offset < endOffset)
+		{
+			int value = decodeValue(sampleLength, c1 * p1 + c2 * p2 + c3 * p3 + c4 * p4, encodingLength, excessCode,
+									epsilonMask);
+			buffer[offset] = value;
+			p4 = p3;
+			p3 = p2;
+			p2 = p1;
+			p1 = value;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of stereo data whose predictors have been selected, and stores the interleaved values
+	 * in the specified buffer.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the values are to be stored.
+	 * @param  offset
+	 *           the start offset at which values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of values that are to be read, which must be a positive multiple of 2.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodePredictedStereo(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int valueLength0 = valueLengths[0];
+		int encodingLength0 = encodingLengths[0];
+		int excessCode0 = excessCodes[0];
+		int epsilonMask0 = epsilonMasks[0];
+		int order0 = predictorOrders[0];
+		int c01 = FixedPredictor.getCoefficient(order0, 1);
+		int c02 = FixedPredictor.getCoefficient(order0, 2);
+		int c03 = FixedPredictor.getCoefficient(order0, 3);
+		int c04 = FixedPredictor.getCoefficient(order0, 4);
+		int valueLength1 = valueLengths[1];
+		int encodingLength1 = encodingLengths[1];
+		int excessCode1 = excessCodes[1];
+		int epsilonMask1 = epsilonMasks[1];
+		int order1 = predictorOrders[1];
+		int c11 = FixedPredictor.getCoefficient(order1, 1);
+		int c12 = FixedPredictor.getCoefficient(order1, 2);
+		int c13 = FixedPredictor.getCoefficient(order1, 3);
+		int c14 = FixedPredictor.getCoefficient(order1, 4);
+
+		// Read first value of first channel in full; decode first value of second channel
+		int p01 = read(valueLength0);
+		int p02 = 0;
+		int p03 = 0;
+		int p04 = 0;
+		buffer[offset] = p01;
+
+		int p11 = decodeValue(valueLength1, 0, encodingLength1, excessCode1, epsilonMask1);
+		int p12 = 0;
+		int p13 = 0;
+		int p14 = 0;
+		buffer[offset + 1] = p11;
+
+		// Decode remaining frames
+		int endOffset = offset + length;
+		offset += 2;
+		while (offset < endOffset)
+		{
+			int value = decodeValue(valueLength0, c01 * p01 + c02 * p02 + c03 * p03 + c04 * p04, encodingLength0,
+									excessCode0, epsilonMask0);
+			buffer[offset++] = value;
+			p04 = p03;
+			p03 = p02;
+			p02 = p01;
+			p01 = value;
+
+			value = decodeValue(valueLength1, c11 * p11 + c12 * p12 + c13 * p13 + c14 * p14, encodingLength1,
+								excessCode1, epsilonMask1);
+			buffer[offset++] = value;
+			p14 = p13;
+			p13 = p12;
+			p12 = p11;
+			p11 = value;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of mono sample data, and stores the sample values in the specified buffer.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the sample values are to be stored.
+	 * @param  offset
+	 *           the start offset at which sample values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of sample values that are to be read, which must be greater than zero.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodeMono(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int encodingLength = encodingLengths[0];
+		int excessCode = excessCodes[0];
+		int epsilonMask = epsilonMasks[0];
+
+		// Read first sample value in full
+		int prevSampleValue = read(sampleLength);
+		int prevDelta = prevSampleValue;
+		buffer[offset] = prevSampleValue;
+
+		// Decode remaining sample values
+		int endOffset = offset + length;
+		while (++offset < endOffset)
+		{
+			int sampleValue = decodeValue(sampleLength, prevSampleValue + prevDelta, encodingLength, excessCode,
+										  epsilonMask);
+			buffer[offset] = sampleValue;
+			prevDelta = sampleValue - prevSampleValue;
+			prevSampleValue = sampleValue;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a block of stereo sample data, and stores the interleaved sample values in the specified
+	 * buffer.
+	 *
+	 * @param  buffer
+	 *           the buffer in which the sample values are to be stored.
+	 * @param  offset
+	 *           the start offset at which sample values are to be stored in {@code buffer}.
+	 * @param  length
+	 *           the number of sample values that are to be read, which must be a positive multiple of 2.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void decodeStereo(
+		int[]	buffer,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int valueLength0 = valueLengths[0];
+		int encodingLength0 = encodingLengths[0];
+		int excessCode0 = excessCodes[0];
+		int epsilonMask0 = epsilonMasks[0];
+		int valueLength1 = valueLengths[1];
+		int encodingLength1 = encodingLengths[1];
+		int excessCode1 = excessCodes[1];
+		int epsilonMask1 = epsilonMasks[1];
+
+		// Read first sample value of left channel in full; decode first sample value of right channel
+		int prevSampleValue0 = read(valueLength0);
+		int prevDelta0 = prevSampleValue0;
+		buffer[offset] = prevSampleValue0;
+
+		int prevSampleValue1 = decodeValue(valueLength1, 0, encodingLength1, excessCode1, epsilonMask1);
+		int prevDelta1 = prevSampleValue1;
+		buffer[offset + 1] = prevSampleValue1;
+
+		// Decode remaining sample frames
+		int endOffset = offset + length;
+		offset += 2;
+		while (offset < endOffset)
+		{
+			int sampleValue = decodeValue(valueLength0, prevSampleValue0 + prevDelta0, encodingLength0, excessCode0,
+										  epsilonMask0);
+			buffer[offset++] = sampleValue;
+			prevDelta0 = sampleValue - prevSampleValue0;
+			prevSampleValue0 = sampleValue;
+
+			sampleValue = decodeValue(valueLength1, prevSampleValue1 + prevDelta1, encodingLength1, excessCode1,
+									  epsilonMask1);
+			buffer[offset++] = sampleValue;
+			prevDelta1 = sampleValue - prevSampleValue1;
+			prevSampleValue1 = sampleValue;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes a sample value that is not the first in its block.
+	 *
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel of the sample value.
+	 * @param  prediction
+	 *           the predicted sample value, to which a decoded second-order difference or residual is added.
+	 * @param  encodingLength
+	 *           the encoding length of the channel of the sample value.
+	 * @param  excessCode
+	 *           the code that denotes an excess value for the encoding length.
+	 * @param  epsilonMask
+	 *           the mask that sign-extends a negative second-order difference.
+	 * @return the decoded sample value.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private int decodeValue(
+		int	valueLength,
+		int	prediction,
+		int	encodingLength,
+		int	excessCode,
+		int	epsilonMask)
+		throws IOException
+	{
+		if (encodingLength == valueLength)
+			return read(valueLength);
+
+		int epsilon = read(encodingLength);
+		if (epsilon == excessCode)
+			return read(valueLength);
+		if ((epsilon & excessCode) != 0)
+			epsilon |= epsilonMask;
+		return prediction + epsilon;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads and decodes the next sample value of a channel.
+	 *
+	 * @param  channel
+	 *           the index of the channel.
+	 * @param  first
+	 *           {@code true} if the sample value is the first one in the block.
+	 * @return the decoded sample value.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private int decodeSample(
+		int		channel,
+		boolean	first)
+		throws IOException
+	{
+		int sampleValue = 0;
+		int valueLength = valueLengths[channel];
+		int encodingLength = encodingLengths[channel];
+		if (first || (encodingLength == valueLength))
+			sampleValue = read(valueLength);
+		else
+		{
+			int epsilon = read(encodingLength);
+			int excessCode = excessCodes[channel];
+			if (epsilon == excessCode)
+				sampleValue = read(valueLength);
+			else
+			{
+				if ((epsilon & excessCode) != 0)
+					epsilon |= epsilonMasks[channel];
+				sampleValue = prevSampleValues[channel] + prevDeltas[channel] + epsilon;
+			}
+		}
+		prevDeltas[channel] = sampleValue - prevSampleValues[channel];
+		prevSampleValues[channel] = sampleValue;
+		return sampleValue;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a bit string of a specified length from the data source.
+	 *
+	 * @param  length
+	 *           the number of bits to read, which must not exceed 32.
+	 * @return the bit string that was read from the data source, as an unsigned integer.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private int read(
+		int	length)
+		throws IOException
+	{
+		if (bitDataLength < length)
+			fillBitBuffer(length);
+		bitDataLength -= length;
+		return (int)(bitBuffer >>> bitDataLength) & (int)((1L << length) - 1);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a unary code (a number of 0 bits followed by a 1 bit) from the data source.  The 0 bits in the bit buffer
+	 * are counted with a single call to {@link Long#numberOfLeadingZeros(long)}.
+	 *
+	 * @return the number of 0 bits before the 1 bit.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private int readUnary()
+		throws IOException
+	{
+		int count = 0;
+		while (true)
+		{
+			if (bitDataLength > 0)
+			{
+				long bits = bitBuffer << Long.SIZE - bitDataLength;
+				if (bits != 0)
+				{
+					int numZeros = Long.numberOfLeadingZeros(bits);
+					bitDataLength -= numZeros + 1;
+					return count + numZeros;
+				}
+				count += bitDataLength;
+				bitDataLength = 0;
+			}
+			fillBitBuffer(1);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Fills the bit buffer from the input buffer so that it contains at least the specified number of bits.  If the
+	 * input buffer contains at least eight bytes, the bit buffer is filled with as many whole bytes as it can hold from
+	 * a single 64-bit word; otherwise, it is filled one byte at a time, and the input buffer is refilled from the data
+	 * source when it is exhausted.
+	 *
+	 * @param  length
+	 *           the minimum number of bits that the bit buffer must contain, which must not exceed 32.
+	 * @throws IOException
+	 *           if an error occurs when attempting to read from the data source.
+	 */
+
+	private void fillBitBuffer(
+		int	length)
+		throws IOException
+	{
+		if (inBufferIndex <= inBuffer.length - Long.BYTES)
+		{
+			int numBits = (Long.SIZE - 1 - bitDataLength) & ~7;
+			long word = (long)LONG_BE.get(inBuffer, inBufferIndex);
+			bitBuffer = bitBuffer << numBits | word >>> Long.SIZE - numBits;
+			bitDataLength += numBits;
+			inBufferIndex += numBits >>> 3;
+			return;
+		}
+
+		while (bitDataLength < length)
+		{
+			if (inBufferIndex >= inBuffer.length)
+			{
+				if (dataLength == 0)
+					throw new EOFException();
 				int readLength = (int)Math.min(dataLength, inBuffer.length);
-				inBufferIndex = inBuffer.length - readLength;
-				dataInput.readFully(inBuffer, inBufferIndex, readLength);
+				if (inStream == null)
+				{
+					inBufferIndex = inBuffer.length - readLength;
+					dataInput.readFully(inBuffer, inBufferIndex, readLength);
+				}
+				else
+				{
+					// The last read from a stream of unknown length may be short, so its data are moved to the end
+					// of the input buffer
+					readLength = inStream.readNBytes(inBuffer, 0, readLength);
+					if (readLength == 0)
+						throw new EOFException();
+					inBufferIndex = inBuffer.length - readLength;
+					System.arraycopy(inBuffer, 0, inBuffer, inBufferIndex, readLength);
+				}
 				dataLength -= readLength;
+				inLength += readLength;
 			}
 			bitBuffer <<= 8;
 			bitBuffer |= inBuffer[inBufferIndex++] & 0xFF;
 			bitDataLength += 8;
 		}
-		bitDataLength -= length;
-		return bitBuffer >>> bitDataLength & ((1 << length) - 1);
 	}
 
 	//------------------------------------------------------------------
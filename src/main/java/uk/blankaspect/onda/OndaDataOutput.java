@@ -21,6 +21,19 @@ package uk.blankaspect.onda;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteOrder;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ForkJoinPool;
+
+import java.util.stream.IntStream;
+
+import uk.blankaspect.common.number.NumberCodec;
+
 //----------------------------------------------------------------------
 
 
@@ -38,7 +51,8 @@ import java.io.IOException;
  * <p>
  * The implementation of this class in the Onda application works only for integer sample values of up to 24 bits per
  * sample.  Above 24 bits per sample, the type of the instance variable {@code bitBuffer} must be changed from {@code
- * int} to {@code long} to accommodate the extra bits.
+ * int} to {@code long} to accommodate the extra bits.  32-bit floating-point sample values are encoded as 24-bit
+ * integer values, and their escaped values are written 16 bits at a time.
  * </p>
  *
  * @see OndaDataInput
@@ -53,25 +67,164 @@ public class OndaDataOutput
 
 	private static final	int	BUFFER_LENGTH	= 1 << 13;  // 8192
 
+	/** The minimum number of channels for which the per-channel work of the encoder is distributed across threads. */
+	public static final		int	MIN_NUM_PARALLEL_CHANNELS	= 8;
+
+	/** The code that denotes an excess value in the residual buffer. */
+	private static final	int	EXCESS_RESIDUAL	= Integer.MIN_VALUE;
+
+	/** A view of a byte array as an array of little-endian 16-bit values. */
+	private static final	VarHandle	SHORT_LE	=
+			MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// WORKSPACE CLASS
+
+
+	/**
+	 * This class encapsulates the buffers that are used when the channels of a block are analysed by the array kernel.
+	 * When channels are analysed in parallel, each task has its own workspace.
+	 */
+
+	private static class Workspace
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Creates a new instance of a workspace for blocks of the specified length.
+		 *
+		 * @param numChannels
+		 *          the number of channels in a block.
+		 * @param sampleLength
+		 *          the length (in bits) of a sample value.
+		 * @param keyLength
+		 *          the length (in bits) of an encoding key.
+		 * @param numSampleFrames
+		 *          the number of sample frames in a block.
+		 */
+
+		private Workspace(
+			int	numChannels,
+			int	sampleLength,
+			int	keyLength,
+			int	numSampleFrames)
+		{
+			epsilons = new int[numSampleFrames];
+			bitLengthCounts = new int[Integer.SIZE + 1];
+			decorrelator = new ChannelDecorrelator(numChannels, sampleLength, keyLength, numSampleFrames);
+			excessCounts = new int[sampleLength + 1];
+			predictorSelector = new PredictorSelector(numChannels, sampleLength, keyLength, numSampleFrames);
+			splitBitLengthCounts = new int[Segment.MAX_SPLIT_ORDER + 1][][];
+			for (int i = 0; i <= Segment.MAX_SPLIT_ORDER; i++)
+				splitBitLengthCounts[i] = new int[1 << i][Integer.SIZE + 1];
+			splitLengths = new long[Segment.MAX_SPLIT_ORDER + 1];
+			splitConstantFlags = new boolean[Segment.MAX_SPLIT_ORDER + 1][];
+			for (int i = 0; i <= Segment.MAX_SPLIT_ORDER; i++)
+				splitConstantFlags[i] = new boolean[1 << i];
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		/** The second-order differences of a channel. */
+		private	int[]	epsilons;
+
+		/** The histogram of the bit lengths of the second-order differences of a channel. */
+		private	int[]	bitLengthCounts;
+
+		/** The decorrelator of the pairs of channels of a block. */
+		private	ChannelDecorrelator	decorrelator;
+
+		/** The excess counts of a block of a segment. */
+		private	int[]	excessCounts;
+
+		/** The selector of the predictor of a channel. */
+		private	PredictorSelector	predictorSelector;
+
+		/** The histograms of the bit lengths of the differences of the blocks of a segment for each split order. */
+		private	int[][][]	splitBitLengthCounts;
+
+		/** The estimated length of the channels of a segment for each split order. */
+		private	long[]		splitLengths;
+
+		/** Flags that denote the blocks of a segment whose values are all equal, for each split order. */
+		private	boolean[][]	splitConstantFlags;
+
+	}
+
+	//==================================================================
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	DataOutput	dataOutput;
-	private	int			numChannels;
-	private	int			sampleLength;
-	private	int			minEncodingLength;
-	private	int			keyLength;
-	private	int			bitBuffer;
-	private	int			bitDataLength;
-	private	int			outBufferIndex;
-	private	byte[]		outBuffer;
-	private	int[]		encodingBounds;
-	private	int[]		negEncodingBounds;
-	private	int[]		posEncodingBounds;
-	private	int[]		encodingLengths;
-	private	int[]		excessCodes;
-	private	long		outLength;
+	private	DataOutput				dataOutput;
+	private	int						numChannels;
+	private	int						sampleLength;
+	private	int						minEncodingLength;
+	private	int						keyLength;
+	private	int						bitBuffer;
+	private	int						bitDataLength;
+	private	int						outBufferIndex;
+	private	byte[]					outBuffer;
+	private	int[]					encodingBounds;
+	private	int[]					negEncodingBounds;
+	private	int[]					posEncodingBounds;
+	private	int[]					encodingLengths;
+	private	int[]					excessCodes;
+	private	int[][]					excessCounts;
+	private	int[]					prevSampleValues;
+	private	int[]					prevDeltas;
+	private	int[]					sampleBuffer;
+	private	int[]					floatBuffer;
+	private	boolean					arrayAnalysis;
+	private	boolean					genericKernel;
+	private	Workspace[]				workspaces;
+	private	boolean					parallel;
+	private	int[]					residualBuffer;
+	private	boolean					decorrelation;
+	private	boolean					decorrelationEnabled;
+	private	int[]					valueLengths;
+	private	ChannelDecorrelation[]	decorrelations;
+	private	int[]					transformBuffer;
+	private	boolean					predictorSelection;
+	private	boolean					predictorSelectionEnabled;
+	private	int[]					predictorOrders;
+	private	boolean					riceCoding;
+	private	boolean					riceCodingEnabled;
+	private	boolean[]				riceCoded;
+	private	int[]					partitionOrders;
+	private	int[][]					riceParameters;
+	private	boolean					variableBlockLength;
+	private	boolean					variableBlockLengthEnabled;
+	private	boolean					constantChannels;
+	private	boolean					constantChannelsEnabled;
+	private	boolean					wastedBits;
+	private	boolean					wastedBitsEnabled;
+	private	int[]					shifts;
+	private	boolean					blockContinuity;
+	private	boolean					blockContinuityEnabled;
+	private	int						segmentIndex;
+	private	int						nextSyncIndex;
+	private	boolean					blockContinued;
+	private	int[]					sampleHistory;
+	private	int[]					historyBuffer;
+	private	boolean					backReferences;
+	private	boolean					backReferencesEnabled;
+	private	int						referenceWindowSize;
+	private	int						referenceTableSize;
+	private	ReferenceMatcher		referenceMatcher;
+	private	long					outLength;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
@@ -110,6 +263,35 @@ public class OndaDataOutput
 		posEncodingBounds = new int[numChannels];
 		encodingLengths = new int[numChannels];
 		excessCodes = new int[numChannels];
+		excessCounts = new int[numChannels][sampleLength + 1];
+		prevSampleValues = new int[numChannels];
+		prevDeltas = new int[numChannels];
+		sampleBuffer = new int[0];
+		floatBuffer = new int[0];
+		workspaces = new Workspace[0];
+		residualBuffer = new int[0];
+		valueLengths = new int[numChannels];
+		Arrays.fill(valueLengths, sampleLength);
+		decorrelationEnabled = true;
+		decorrelations = new ChannelDecorrelation[numChannels / 2];
+		transformBuffer = new int[0];
+		predictorOrders = new int[numChannels];
+		Arrays.fill(predictorOrders, FixedPredictor.DEFAULT_ORDER);
+		predictorSelectionEnabled = true;
+		riceCoded = new boolean[numChannels];
+		riceCodingEnabled = true;
+		variableBlockLengthEnabled = true;
+		constantChannelsEnabled = true;
+		shifts = new int[numChannels];
+		wastedBitsEnabled = true;
+		blockContinuityEnabled = true;
+		sampleHistory = new int[FixedPredictor.MAX_ORDER * numChannels];
+		historyBuffer = new int[FixedPredictor.MAX_ORDER * numChannels];
+		backReferencesEnabled = true;
+		referenceWindowSize = BackReference.DEFAULT_WINDOW_SIZE;
+		referenceTableSize = BackReference.DEFAULT_TABLE_SIZE;
+		partitionOrders = new int[numChannels];
+		riceParameters = new int[numChannels][1 << RiceCode.MAX_PARTITION_ORDER];
 	}
 
 	//------------------------------------------------------------------
@@ -132,6 +314,362 @@ public class OndaDataOutput
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Sets the kernel that performs the first pass over a block of sample data, which determines the optimum encoding
+	 * length of each channel.  The choice of kernel does not affect the compressed data.
+	 * <p>
+	 * The default kernel processes the sample values one at a time in their interleaved order, and counts the excess
+	 * values for each encoding length in a nested loop.  The array kernel de-interleaves each channel into a contiguous
+	 * array, computes the second-order differences of the channel in a loop that the JIT compiler can vectorise, and
+	 * derives the excess counts from a histogram of the bit lengths of the differences.  The differences and the
+	 * histogram are computed by the {@linkplain AnalysisKernel analysis kernel}, which uses the Vector API if its module
+	 * is present.
+	 * </p>
+	 *
+	 * @param arrayAnalysis
+	 *          if {@code true}, the array kernel will be used; otherwise, the default kernel will be used.
+	 */
+
+	public void setArrayAnalysis(
+		boolean	arrayAnalysis)
+	{
+		this.arrayAnalysis = arrayAnalysis;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the values of blocks of mono and stereo data are written by the generic kernel rather than by the
+	 * specialised kernels for those numbers of channels.  The switch allows the specialised kernels to be measured
+	 * against the generic kernel; the choice of kernel does not affect the compressed data.
+	 *
+	 * @param genericKernel
+	 *          if {@code true}, the values of every block will be written by the generic kernel.
+	 */
+
+	void setGenericKernel(
+		boolean	genericKernel)
+	{
+		this.genericKernel = genericKernel;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the per-channel work of the encoder is distributed across the threads of the common fork/join pool.
+	 * The setting has an effect only on blocks of sample data that have at least {@link #MIN_NUM_PARALLEL_CHANNELS}
+	 * channels, and it does not affect the compressed data.  It is ignored if the Java virtual machine has only one
+	 * processor, on which the overhead of the tasks would make the encoder slower than it is in serial mode.
+	 * <p>
+	 * In parallel mode, the channels of a block are divided into groups, one for each available thread.  For each
+	 * channel of its group, a task computes the second-order differences, determines the optimum encoding length, and
+	 * stores the values that are to be written for the channel in an interleaved array of residuals.  When all the
+	 * tasks have finished, the keys and residuals are written to the data destination in the order required by the
+	 * format.  The writing of the bitstream is not parallelised, because the bit position of each encoded value depends
+	 * on the lengths of all the values that precede it.
+	 * </p>
+	 *
+	 * @param parallel
+	 *          if {@code true}, the per-channel work of the encoder will be performed in parallel for blocks with
+	 *          enough channels.
+	 */
+
+	public void setParallel(
+		boolean	parallel)
+	{
+		this.parallel = parallel && (Runtime.getRuntime().availableProcessors() > 1);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the version of the file to which the compressed data belong.  The version determines the format of the
+	 * compressed data: each feature of the format of an earlier version is also part of the format of every later
+	 * version, as follows:
+	 * <ul>
+	 *   <li>version 2: {@linkplain #setChannelDecorrelation(boolean) decorrelation} of pairs of channels,</li>
+	 *   <li>version 3: {@linkplain #setPredictorSelection(boolean) selection of predictors},</li>
+	 *   <li>version 4: {@linkplain #setRiceCoding(boolean) Rice coding},</li>
+	 *   <li>version 5: {@linkplain #setVariableBlockLength(boolean) variable block length},</li>
+	 *   <li>version 6: {@linkplain #setConstantChannels(boolean) constant channels},</li>
+	 *   <li>version 7: {@linkplain #setWastedBits(boolean) removal of wasted bits},</li>
+	 *   <li>version 8: {@linkplain #setBlockContinuity(boolean) block continuity},</li>
+	 *   <li>version 9: {@linkplain #setBackReferences(boolean) back references}.</li>
+	 * </ul>
+	 * <p>
+	 * Each feature is used by the encoder only if it is part of the format and it is enabled; all features are enabled
+	 * by default.  The version must be set before the first block is written.
+	 * </p>
+	 *
+	 * @param version
+	 *          the version of the file to which the compressed data belong.
+	 */
+
+	public void setVersion(
+		int	version)
+	{
+		decorrelation = (version >= OndaFile.CHANNEL_DECORRELATION_VERSION);
+		predictorSelection = (version >= OndaFile.PREDICTOR_SELECTION_VERSION);
+		riceCoding = (version >= OndaFile.RICE_CODING_VERSION);
+		variableBlockLength = (version >= OndaFile.VARIABLE_BLOCK_LENGTH_VERSION);
+		constantChannels = (version >= OndaFile.CONSTANT_CHANNEL_VERSION);
+		wastedBits = (version >= OndaFile.WASTED_BITS_VERSION);
+		blockContinuity = (version >= OndaFile.BLOCK_CONTINUITY_VERSION);
+		backReferences = (version >= OndaFile.BACK_REFERENCE_VERSION);
+		Arrays.fill(valueLengths, sampleLength);
+		Arrays.fill(predictorOrders, FixedPredictor.DEFAULT_ORDER);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder decorrelates the adjacent channels of each block in pairs.  Decorrelation is part of the
+	 * format of version 2 of an Onda file, so the setting has an effect only if the {@linkplain #setVersion(int)
+	 * version} of the compressed data is 2 or later.
+	 * <p>
+	 * If decorrelation is enabled, the channels of a block are divided into adjacent pairs (0 and 1, 2 and 3, and so
+	 * on); the last channel of a block with an odd number of channels is not paired.  For each pair, the encoder
+	 * chooses the {@linkplain ChannelDecorrelation decorrelation} whose transformed channels have the smallest total
+	 * encoded length, according to the same cost model that selects the encoding length of a channel.  A block begins
+	 * with the code of the decorrelation of each pair, followed by the key of each channel.  The key of a side channel
+	 * is relative to the length of a side value, which is one bit longer than a sample value, and the full values of a
+	 * side channel are written with that length.  If decorrelation is disabled, every pair is left untransformed, but the
+	 * format of version 2 and later still has a decorrelation code for each pair, so the code of an untransformed pair
+	 * ({@link ChannelDecorrelation#LEFT_RIGHT}) is written for it.
+	 * </p>
+	 * <p>
+	 * The channels of a decorrelated block are always analysed with the array kernel, because the costs of all the
+	 * candidate transforms of a pair must be compared.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, the adjacent channels of each block will be decorrelated in pairs.
+	 */
+
+	public void setChannelDecorrelation(
+		boolean	enabled)
+	{
+		decorrelationEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder selects the order of the predictor of each channel of a block.  The selection of
+	 * predictors is part of the format of version 3 of an Onda file, so the setting has an effect only if the
+	 * {@linkplain #setVersion(int) version} of the compressed data is 3 or later.
+	 * <p>
+	 * If the selection of predictors is enabled, the encoder computes the residuals of each {@linkplain FixedPredictor
+	 * fixed predictor} from order 0 to order 4 for each channel of a block, and chooses the order and encoding length
+	 * whose encoded values have the smallest length, according to the same cost model that selects the encoding length
+	 * of a channel.  The key of each channel is preceded by the order of its predictor.  The decorrelation of a pair of
+	 * channels is chosen with the predictor of order 2, before the predictors of its transformed channels are
+	 * selected.  If predictors are not selected, each channel has the predictor of order 2 of earlier versions, whose
+	 * order is written in place of a selected order.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, the order of the predictor of each channel of a block will be selected by the encoder.
+	 */
+
+	public void setPredictorSelection(
+		boolean	enabled)
+	{
+		predictorSelectionEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder may encode the residuals of a channel of a block with {@linkplain RiceCode Rice codes}.
+	 * Rice coding is part of the format of version 4 of an Onda file, so the setting has an effect only if the
+	 * {@linkplain #setVersion(int) version} of the compressed data is 4 or later.
+	 * <p>
+	 * If Rice coding is enabled, the encoder estimates, for each order of predictor of each channel, the length of the
+	 * residuals when they are encoded with Rice codes for each partition order, and selects the combination of
+	 * predictor order and coding that gives the smallest encoded length: either the fixed-width coding of earlier
+	 * versions or Rice coding with a particular partition order.  The Rice parameter of each partition is estimated
+	 * from the sum of the unsigned values of its residuals.  If Rice codes are not used, every channel is written with
+	 * fixed-width codes and a coding flag of zero.
+	 * </p>
+	 * <p>
+	 * In a block of version 4, the decorrelation codes are followed by the channels in turn rather than by interleaved
+	 * sample frames; each channel begins with its predictor order and coding, so that it can be decoded by a loop that
+	 * keeps the state of the channel in local variables.  The predictor order and the coding flag are written for
+	 * every channel of every block, whether or not predictors are selected and whatever coding is chosen, so the
+	 * compressed data of a file whose residuals are not shortened by Rice codes are a few bits per channel per block
+	 * longer than they are in earlier versions.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, the residuals of a channel of a block may be encoded with Rice codes.
+	 */
+
+	public void setRiceCoding(
+		boolean	enabled)
+	{
+		riceCodingEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder may divide a {@linkplain Segment segment} into shorter blocks.  Variable block length is
+	 * part of the format of version 5 of an Onda file, so the setting has an effect only if the {@linkplain
+	 * #setVersion(int) version} of the compressed data is 5 or later.
+	 * <p>
+	 * If variable block length is enabled, the encoder estimates the length of a segment for each split order with the
+	 * cost model that selects the encoding length of a channel in a file of version 0, and writes the split order with
+	 * the smallest estimated length, followed by the blocks of the segment.  The second-order differences of each
+	 * channel are computed once for the whole segment; the histograms of the bit lengths of the differences of the
+	 * shortest blocks are merged in pairs to give those of the longer blocks.  The estimate ignores the selection of
+	 * predictors, the decorrelation of pairs of channels and the Rice coding of residuals, which are applied to each
+	 * block after its length has been selected.  If segments are not divided, the split order of every segment is
+	 * zero.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, each segment may be divided into blocks whose length is selected by the encoder.
+	 */
+
+	public void setVariableBlockLength(
+		boolean	enabled)
+	{
+		variableBlockLengthEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder encodes a channel of a block whose values are all equal as a single value.  Constant
+	 * channels are part of the format of version 6 of an Onda file, so the setting has an effect only if the
+	 * {@linkplain #setVersion(int) version} of the compressed data is 6 or later.
+	 * <p>
+	 * If constant channels are enabled, the encoder tests each channel of a block for equal values before it selects a
+	 * predictor, and writes a constant channel as the code {@link FixedPredictor#CONSTANT_CODE} in place of its
+	 * predictor order, followed by its value.  The analysis of the channel is skipped.  A pair of channels of which
+	 * either is constant is left untransformed, and the estimated length of a constant block of a segment is the length
+	 * of its value, so that silent passages are split from the rest of a segment.  Constant channels add no field to
+	 * the format, so if they are disabled, no channel is encoded as a single value.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, a channel of a block whose values are all equal will be encoded as a single value.
+	 */
+
+	public void setConstantChannels(
+		boolean	enabled)
+	{
+		constantChannelsEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder removes the {@linkplain WastedBits wasted bits} of each channel of a block before the
+	 * channel is encoded.  The removal of wasted bits is part of the format of version 7 of an Onda file, so the
+	 * setting has an effect only if the {@linkplain #setVersion(int) version} of the compressed data is 7 or later.
+	 * <p>
+	 * If the removal of wasted bits is enabled, the encoder finds the number of low-order bits that are zero in every
+	 * value of a channel by a bitwise OR of the values, and shifts the values right by that number before it selects
+	 * a predictor.  The full values of the channel and the lengths of its residuals are shortened by the number of
+	 * wasted bits, which is written after the predictor order.  When the split order of a segment is selected, the
+	 * wasted bits of each channel of the segment are removed from its estimated length.  If wasted bits are not
+	 * removed, the flag that denotes wasted bits is zero in every channel.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, the wasted bits of each channel of a block will be removed before it is encoded.
+	 */
+
+	public void setWastedBits(
+		boolean	enabled)
+	{
+		wastedBitsEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the first block of a segment may continue from the preceding segment.  Block continuity is part of
+	 * the format of version 8 of an Onda file, so the setting has an effect only if the {@linkplain #setVersion(int)
+	 * version} of the compressed data is 8 or later.
+	 * <p>
+	 * In a file of version 8, each segment begins with a flag that denotes whether it is a sync segment.  The first
+	 * block of a sync segment is encoded as in earlier versions, with the values that precede the block taken to be
+	 * zero and the first value of the block written in full.  The residuals of every other block are those of
+	 * predictors whose preceding values are the last sample frames of the preceding block, transformed by the
+	 * decorrelation of the block and shifted by the wasted bits of each channel, and no value of the block is written
+	 * in full.
+	 * </p>
+	 * <p>
+	 * If block continuity is enabled, a sync segment is written every {@link Segment#SYNC_INTERVAL} segments.  If it is
+	 * disabled, every segment is a sync segment; the blocks of a segment that has been divided still continue from one
+	 * another, as the format requires.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, the first block of a segment that is not a sync segment will continue from the
+	 *          preceding segment.
+	 */
+
+	public void setBlockContinuity(
+		boolean	enabled)
+	{
+		blockContinuityEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets whether the encoder may encode a segment as a back reference to an identical run of earlier sample frames.
+	 * Back references are part of the format of version 9 of an Onda file, so the setting has an effect only if the
+	 * {@linkplain #setVersion(int) version} of the compressed data is 9 or later.
+	 * <p>
+	 * In a file of version 9, the first segment begins with the binary logarithm of the length of the reference
+	 * window, which is determined by the limits that are set with {@link #setReferenceLimits(int, int)}, and each
+	 * segment begins with a flag that denotes whether it is a back reference.  A back reference is followed by the
+	 * distance to the referenced frames; the sample frames of a back reference are not otherwise encoded, but they are
+	 * added to the history of the predictors.  See {@link BackReference}.  If back references are disabled, the
+	 * reference window is empty and no reference flags are written.
+	 * </p>
+	 *
+	 * @param enabled
+	 *          if {@code true}, a segment that is identical to a run of earlier sample frames within the reference
+	 *          window will be encoded as a back reference.
+	 */
+
+	public void setBackReferences(
+		boolean	enabled)
+	{
+		backReferencesEnabled = enabled;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the limits of the memory that is used by the encoder to find back references.  The limits must be set
+	 * before the first block is written.  The limit of the reference window also determines the memory that is used by
+	 * a decoder of the compressed data.
+	 *
+	 * @param windowSize
+	 *          the maximum size (in MiB) of the window of sample frames that may be referenced.  If it is zero, the
+	 *          window is empty and no segment is encoded as a back reference.
+	 * @param tableSize
+	 *          the maximum size (in MiB) of the hash table of the anchors of the reference window.
+	 * @see   #setBackReferences(boolean)
+	 */
+
+	public void setReferenceLimits(
+		int	windowSize,
+		int	tableSize)
+	{
+		referenceWindowSize = windowSize;
+		referenceTableSize = tableSize;
+	}
+
+	//------------------------------------------------------------------
+
 	/**
 	 * Closes the data output.  Any unwritten compressed data is written to the data destination.  This method does not
 	 * close the underlying data destination.
@@ -197,86 +735,1636 @@ public class OndaDataOutput
 		if ((length < 0) || (length > data.length - offset))
 			throw new IllegalArgumentException();
 
+		// If predictors are selected, encode block or segment with selected predictors
+		if (predictorSelection)
+		{
+			if (variableBlockLength)
+				encodeSegment(data, offset, length);
+			else
+				encodeBlockPredicted(data, offset, length);
+			return;
+		}
+
+		// If channels are decorrelated, transform and encode block
+		if (isDecorrelated())
+		{
+			encodeBlockDecorrelated(data, offset, length);
+			return;
+		}
+
+		// If block has enough channels, encode it in parallel
+		if (isParallelBlock())
+		{
+			encodeBlockParallel(data, offset, length);
+			return;
+		}
+
 		// Get excess count for each encoding length
-		int[][] excessCounts = new int[numChannels][sampleLength];
-		int[] prevSampleValues = new int[numChannels];
-		int[] prevDeltas = new int[numChannels];
 		int startOffset = offset;
-		int endOffset = startOffset + length;
-		while (offset < endOffset)
+		if (arrayAnalysis)
+			analyseBlock(data, startOffset, length);
+		else
 		{
-			for (int i = 0; i < numChannels; i++)
+			resetAnalysis();
+			int endOffset = startOffset + length;
+			while (offset < endOffset)
 			{
-				int sampleValue = data[offset];
-				int delta = sampleValue - prevSampleValues[i];
-				if (offset > startOffset)
+				for (int i = 0; i < numChannels; i++)
 				{
-					int absEpsilon = Math.abs(delta - prevDeltas[i]);
-					for (int j = sampleLength - 1; j >= minEncodingLength; j--)
-					{
-						if (absEpsilon > encodingBounds[j])
-						{
-							for (; j >= minEncodingLength; --j)
-								++excessCounts[i][j];
-						}
-					}
+					analyseSample(i, data[offset], offset == startOffset);
+					++offset;
 				}
-				prevSampleValues[i] = sampleValue;
-				prevDeltas[i] = delta;
-
-				++offset;
 			}
 		}
 
-		// Determine optimum encoding length
-		int numSampleFrames = length / numChannels;
-		for (int i = 0; i < numChannels; i++)
+		// Encode sample data and write them to data destination
+		encodeBlock(data, startOffset, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Compresses a block of interleaved little-endian PCM sample data and writes the compressed data to the data
+	 * destination.  The output data is the same as that of {@link #writeBlock(int[], int, int)} for the equivalent
+	 * integer sample values.
+	 * <p>
+	 * The sample values are decoded from the input bytes during the first pass over the block, which avoids a separate
+	 * conversion of the input data to an array of integers.  There are specialised decoders for 16-bit and 24-bit
+	 * samples.
+	 * </p>
+	 *
+	 * @param  data
+	 *           the data that is to be compressed and written.
+	 * @param  offset
+	 *           the start offset of the sample data in {@code data}.
+	 * @param  length
+	 *           the number of samples that are to be written.
+	 * @param  bytesPerSample
+	 *           the number of bytes that encode a sample value, which must be 1, 2 or 3.
+	 * @throws IllegalArgumentException
+	 *           if
+	 *           <ul>
+	 *             <li>{@code data} is {@code null}, or</li>
+	 *             <li>{@code (length < 0)} or {@code (length * bytesPerSample > data.length - offset)}, or</li>
+	 *             <li>{@code bytesPerSample} is not 1, 2 or 3.</li>
+	 *           </ul>
+	 * @throws IndexOutOfBoundsException
+	 *           if {@code (offset < 0)} or {@code (offset > data.length)}.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	public void writePcmBlock(
+		byte[]	data,
+		int		offset,
+		int		length,
+		int		bytesPerSample)
+		throws IOException
+	{
+		// Validate arguments
+		if (data == null)
+			throw new IllegalArgumentException();
+		if ((offset < 0) || (offset > data.length))
+			throw new IndexOutOfBoundsException();
+		if ((bytesPerSample < 1) || (bytesPerSample > 3))
+			throw new IllegalArgumentException();
+		if ((length < 0) || ((long)length * bytesPerSample > data.length - offset))
+			throw new IllegalArgumentException();
+
+		// Ensure that sample buffer is large enough
+		int numSamples = length;
+		if (sampleBuffer.length < numSamples)
+			sampleBuffer = new int[numSamples];
+		int[] samples = sampleBuffer;
+
+		// If predictors are selected, channels are decorrelated or block is to be encoded in parallel, decode sample
+		// values in bulk and encode them
+		if (predictorSelection || isDecorrelated() || isParallelBlock())
 		{
-			encodingLengths[i] = sampleLength;
-			long minOutputLength = numSampleFrames * sampleLength;
-			for (int j = minEncodingLength; j < sampleLength; j++)
+			NumberCodec.bytesToIntsLE(data, offset, samples, 0, numSamples, bytesPerSample);
+			if (predictorSelection)
 			{
-				long outputLength = (numSampleFrames - 1) * j + (excessCounts[i][j] + 1) * sampleLength;
-				if (minOutputLength > outputLength)
-				{
-					minOutputLength = outputLength;
-					encodingLengths[i] = j;
-				}
+				if (variableBlockLength)
+					encodeSegment(samples, 0, numSamples);
+				else
+					encodeBlockPredicted(samples, 0, numSamples);
 			}
+			else if (isDecorrelated())
+				encodeBlockDecorrelated(samples, 0, numSamples);
+			else
+				encodeBlockParallel(samples, 0, numSamples);
+			return;
 		}
 
-		// Write key for each channel; initialise per-channel encoding variables
-		for (int i = 0; i < numChannels; i++)
+		// If array kernel is selected, decode sample values in bulk and get excess count for each encoding length
+		// from them ...
+		if (arrayAnalysis)
 		{
-			write(sampleLength - encodingLengths[i], keyLength);
-
-			prevSampleValues[i] = 0;
-			prevDeltas[i] = 0;
-			int value = 1 << encodingLengths[i] - 1;
-			excessCodes[i] = value;
-			--value;
-			posEncodingBounds[i] = value;
-			negEncodingBounds[i] = -value;
+			NumberCodec.bytesToIntsLE(data, offset, samples, 0, numSamples, bytesPerSample);
+			analyseBlock(samples, 0, numSamples);
+			encodeBlock(samples, 0, numSamples);
+			return;
 		}
 
-		// Encode sample data and write them to data destination
-		offset = startOffset;
-		while (offset < endOffset)
+		// ... otherwise, decode sample values and get excess count for each encoding length
+		resetAnalysis();
+		int index = 0;
+		switch (bytesPerSample)
 		{
-			for (int i = 0; i < numChannels; i++)
-			{
-				int sampleValue = data[offset];
+			case 1:
+				while (index < numSamples)
+				{
+					for (int i = 0; i < numChannels; i++)
+					{
+						int sampleValue = data[offset++];
+						samples[index] = sampleValue;
+						analyseSample(i, sampleValue, index == 0);
+						++index;
+					}
+				}
+				break;
+
+			case 2:
+				while (index < numSamples)
+				{
+					for (int i = 0; i < numChannels; i++)
+					{
+						int sampleValue = (short)SHORT_LE.get(data, offset);
+						offset += 2;
+						samples[index] = sampleValue;
+						analyseSample(i, sampleValue, index == 0);
+						++index;
+					}
+				}
+				break;
+
+			case 3:
+				while (index < numSamples)
+				{
+					for (int i = 0; i < numChannels; i++)
+					{
+						int sampleValue = ((short)SHORT_LE.get(data, offset) & 0xFFFF) | (data[offset + 2] << 16);
+						offset += 3;
+						samples[index] = sampleValue;
+						analyseSample(i, sampleValue, index == 0);
+						++index;
+					}
+				}
+				break;
+		}
+
+		// Encode sample data and write them to data destination
+		encodeBlock(samples, 0, numSamples);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Compresses a block of interleaved little-endian 32-bit IEEE 754 floating-point sample data and writes the
+	 * compressed data to the data destination.  The sample values are mapped to integer values, which are encoded as
+	 * a block of integer sample values between the header of the block and the escaped values and lost bits of the
+	 * floating-point values.  See {@link FloatSample}.
+	 * <p>
+	 * The data output must have been constructed with a sample length of {@link FloatSample#VALUE_LENGTH}.
+	 * </p>
+	 *
+	 * @param  data
+	 *           the data that is to be compressed and written.
+	 * @param  offset
+	 *           the start offset of the sample data in {@code data}.
+	 * @param  length
+	 *           the number of samples that are to be written.
+	 * @throws IllegalArgumentException
+	 *           if
+	 *           <ul>
+	 *             <li>{@code data} is {@code null}, or</li>
+	 *             <li>{@code (length < 0)} or {@code (length * 4 > data.length - offset)}.</li>
+	 *           </ul>
+	 * @throws IndexOutOfBoundsException
+	 *           if {@code (offset < 0)} or {@code (offset > data.length)}.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	public void writeFloatBlock(
+		byte[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Validate arguments
+		if (data == null)
+			throw new IllegalArgumentException();
+		if ((offset < 0) || (offset > data.length))
+			throw new IndexOutOfBoundsException();
+		if ((length < 0) || ((long)length * Float.BYTES > data.length - offset))
+			throw new IllegalArgumentException();
+
+		// Ensure that buffers are large enough
+		if (floatBuffer.length < length)
+			floatBuffer = new int[length];
+		if (sampleBuffer.length < length)
+			sampleBuffer = new int[length];
+		int[] bits = floatBuffer;
+		int[] values = sampleBuffer;
+
+		// Decode floating-point values, and map them to integer values at the scale of the greatest exponent
+		NumberCodec.bytesToIntsLE(data, offset, bits, 0, length, Float.BYTES);
+		int maxExponent = FloatSample.getMaxExponent(bits, 0, length);
+		int lostBits = 0;
+		boolean escaped = false;
+		for (int i = 0; i < length; i++)
+		{
+			int value = FloatSample.toInteger(bits[i], maxExponent);
+			values[i] = value;
+			if (value == 0)
+				escaped |= (bits[i] != 0);
+			else
+				lostBits |= bits[i] & ((1 << FloatSample.getShift(value)) - 1);
+		}
+
+		// Write greatest exponent, flag that denotes whether all lost bits are zero and flag that denotes whether there
+		// are escaped values other than positive zero
+		write(maxExponent, FloatSample.EXPONENT_LENGTH);
+		write((lostBits == 0) ? 1 : 0, 1);
+		write(escaped ? 1 : 0, 1);
+
+		// Encode integer values
+		writeBlock(values, 0, length);
+
+		// Write escaped values and any lost bits
+		for (int i = 0; i < length; i++)
+		{
+			int value = values[i];
+			if (value == 0)
+			{
+				if (escaped)
+				{
+					int floatBits = bits[i];
+					if (floatBits == 0)
+						write(0, 1);
+					else
+					{
+						write(1, 1);
+						write(floatBits >>> 16, 16);
+						write(floatBits, 16);
+					}
+				}
+			}
+			else if (lostBits != 0)
+				write(bits[i], FloatSample.getShift(value));
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Resets the per-channel variables of the first pass over a block of sample data.
+	 */
+
+	private void resetAnalysis()
+	{
+		for (int i = 0; i < numChannels; i++)
+		{
+			Arrays.fill(excessCounts[i], 0);
+			prevSampleValues[i] = 0;
+			prevDeltas[i] = 0;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the excess counts of each channel from the sample values of a block.  This is the array kernel of the first
+	 * pass over a block; the resulting counts are the same as those of the default kernel.
+	 * <p>
+	 * The second-order difference (epsilon) of a sample value <i>x</i><sub><i>n</i></sub> is <i>x</i><sub><i>n</i></sub>
+	 * &minus; 2<i>x</i><sub><i>n</i>&minus;1</sub> + <i>x</i><sub><i>n</i>&minus;2</sub>, where the sample values that
+	 * precede the block are taken to be zero.  A value is an excess value for an encoding length <i>k</i> if the
+	 * magnitude of its epsilon has at least <i>k</i> significant bits, so the excess count for <i>k</i> is the number of
+	 * epsilons whose bit length is at least <i>k</i>.  The first sample value of the block, which is always written
+	 * in full, is not counted.
+	 * </p>
+	 *
+	 * @param data
+	 *          the interleaved sample values of the block.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param length
+	 *          the number of sample values.
+	 */
+
+	private void analyseBlock(
+		int[]	data,
+		int		offset,
+		int		length)
+	{
+		// Get excess counts of each channel
+		int numSampleFrames = length / numChannels;
+		Workspace workspace = getWorkspaces(1, numSampleFrames)[0];
+		for (int i = 0; i < numChannels; i++)
+			analyseChannel(data, offset, numSampleFrames, i, workspace);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the excess counts of a channel from the sample values of a block, and leaves the second-order differences of
+	 * the sample values of the channel in the epsilon buffer of the specified workspace.  This method is the
+	 * per-channel part of {@link #analyseBlock(int[], int, int)}; it accesses only the per-channel variables of the
+	 * specified channel, so it may be called concurrently for different channels.
+	 *
+	 * @param data
+	 *          the interleaved sample values of the block.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 * @param channel
+	 *          the index of the channel.
+	 * @param workspace
+	 *          the workspace whose buffers will be used.
+	 */
+
+	private void analyseChannel(
+		int[]		data,
+		int			offset,
+		int			numSampleFrames,
+		int			channel,
+		Workspace	workspace)
+	{
+		// De-interleave sample values of channel and compute their second-order differences
+		int[] epsilons = workspace.epsilons;
+		for (int j = 0, k = offset + channel; j < numSampleFrames; j++, k += numChannels)
+			epsilons[j] = data[k];
+		EncodingCost.computeEpsilons(epsilons, numSampleFrames);
+
+		// Make histogram of bit lengths of magnitudes of second-order differences
+		int[] counts = workspace.bitLengthCounts;
+		EncodingCost.countBitLengths(epsilons, (channel == 0) ? 1 : 0, numSampleFrames, counts);
+
+		// Set excess counts from cumulative histogram
+		EncodingCost.setExcessCounts(counts, valueLengths[channel], keyLength, excessCounts[channel]);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Updates the excess counts of a channel with the specified sample value.
+	 *
+	 * @param channel
+	 *          the index of the channel.
+	 * @param sampleValue
+	 *          the sample value.
+	 * @param first
+	 *          {@code true} if the sample value is the first one in the block.
+	 */
+
+	private void analyseSample(
+		int		channel,
+		int		sampleValue,
+		boolean	first)
+	{
+		int delta = sampleValue - prevSampleValues[channel];
+		if (!first)
+		{
+			int absEpsilon = Math.abs(delta - prevDeltas[channel]);
+			for (int j = sampleLength - 1; j >= minEncodingLength; j--)
+			{
+				if (absEpsilon > encodingBounds[j])
+				{
+					int[] counts = excessCounts[channel];
+					for (; j >= minEncodingLength; --j)
+						++counts[j];
+				}
+			}
+		}
+		prevSampleValues[channel] = sampleValue;
+		prevDeltas[channel] = delta;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Determines the optimum encoding length of a channel from its excess counts, and initialises the per-channel
+	 * encoding variables of the channel.
+	 *
+	 * @param channel
+	 *          the index of the channel.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 */
+
+	private void selectEncodingLength(
+		int	channel,
+		int	numSampleFrames)
+	{
+		setEncodingLength(channel, EncodingCost.getOptimumEncodingLength(excessCounts[channel], valueLengths[channel],
+																		 keyLength, numSampleFrames));
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the encoding length of a channel, and initialises the per-channel encoding variables of the channel.
+	 *
+	 * @param channel
+	 *          the index of the channel.
+	 * @param encodingLength
+	 *          the encoding length.
+	 */
+
+	private void setEncodingLength(
+		int	channel,
+		int	encodingLength)
+	{
+		encodingLengths[channel] = encodingLength;
+		prevSampleValues[channel] = 0;
+		prevDeltas[channel] = 0;
+		int value = 1 << encodingLength - 1;
+		excessCodes[channel] = value;
+		--value;
+		posEncodingBounds[channel] = value;
+		negEncodingBounds[channel] = -value;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the workspaces for the analysis of the channels of a block, creating them if necessary.
+	 *
+	 * @param  numWorkspaces
+	 *           the number of workspaces.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @return an array of {@code numWorkspaces} workspaces for blocks of at least {@code numSampleFrames} sample
+	 *         frames.
+	 */
+
+	private Workspace[] getWorkspaces(
+		int	numWorkspaces,
+		int	numSampleFrames)
+	{
+		if ((workspaces.length != numWorkspaces) || (workspaces[0].epsilons.length < numSampleFrames))
+		{
+			workspaces = new Workspace[numWorkspaces];
+			for (int i = 0; i < numWorkspaces; i++)
+				workspaces[i] = new Workspace(numChannels, sampleLength, keyLength, numSampleFrames);
+		}
+		return workspaces;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the channels of the next block of sample data are to be decorrelated.
+	 *
+	 * @return {@code true} if decorrelation is enabled and the blocks have at least one pair of channels.
+	 */
+
+	private boolean isDecorrelated()
+	{
+		return decorrelation && decorrelationEnabled && (numChannels >= 2);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the code of an untransformed pair for each pair of channels of a block that is not decorrelated, if the
+	 * format of the compressed data has a decorrelation code for each pair.  This applies only to a block of a file of
+	 * version 2 whose channels are not decorrelated; the blocks of later versions write the decorrelation of each pair
+	 * themselves.
+	 *
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void writeUntransformedPairs()
+		throws IOException
+	{
+		if (decorrelation)
+		{
+			for (int i = 0; i < decorrelations.length; i++)
+				write(ChannelDecorrelation.LEFT_RIGHT.getCode(), ChannelDecorrelation.CODE_LENGTH);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the next block of sample data is to be encoded in parallel.
+	 *
+	 * @return {@code true} if parallel mode is selected and the blocks have enough channels to be encoded in parallel.
+	 */
+
+	private boolean isParallelBlock()
+	{
+		return parallel && (numChannels >= MIN_NUM_PARALLEL_CHANNELS);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a block of sample data and writes them to the data destination, performing the per-channel work in
+	 * parallel.  The output data is the same as that of {@link #encodeBlock(int[], int, int)}.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeBlockParallel(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Ensure that buffers are large enough
+		int numSampleFrames = length / numChannels;
+		if (residualBuffer.length < length)
+			residualBuffer = new int[length];
+		int numTasks = Math.min(numChannels, ForkJoinPool.getCommonPoolParallelism() + 1);
+		Workspace[] workspaces = getWorkspaces(numTasks, numSampleFrames);
+		int[] residuals = residualBuffer;
+
+		// Analyse channels, select their encoding lengths and compute their residuals in parallel
+		IntStream.range(0, numTasks).parallel().forEach(task ->
+		{
+			int[] epsilons = workspaces[task].epsilons;
+			int endChannel = (task + 1) * numChannels / numTasks;
+			for (int i = task * numChannels / numTasks; i < endChannel; i++)
+			{
+				analyseChannel(data, offset, numSampleFrames, i, workspaces[task]);
+				selectEncodingLength(i, numSampleFrames);
+				int bound = posEncodingBounds[i];
+				for (int j = 0, k = i; j < numSampleFrames; j++, k += numChannels)
+				{
+					int epsilon = epsilons[j];
+					residuals[k] = ((epsilon < -bound) || (epsilon > bound)) ? EXCESS_RESIDUAL : epsilon;
+				}
+			}
+		});
+
+		// Write decorrelation of each pair of channels, if the format has one
+		writeUntransformedPairs();
+
+		// Write key for each channel
+		for (int i = 0; i < numChannels; i++)
+			write(sampleLength - encodingLengths[i], keyLength);
+
+		// Write residuals
+		writeResiduals(data, offset, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the values of a block whose residuals have been stored in the residual buffer to the data destination.
+	 * The first value of the block is written in full; each other value is written as its residual, or as the excess
+	 * code of its channel followed by the full value if the residual is {@link #EXCESS_RESIDUAL}.
+	 *
+	 * @param  data
+	 *           the interleaved values of the block.
+	 * @param  offset
+	 *           the start offset of the values in {@code data}.
+	 * @param  length
+	 *           the number of values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void writeResiduals(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Write first value in full
+		if (length == 0)
+			return;
+		write(data[offset], valueLengths[0]);
+
+		// Write residuals of remaining values
+		int[] residuals = residualBuffer;
+		int index = 1;
+		int channel = (numChannels == 1) ? 0 : 1;
+		while (index < length)
+		{
+			int valueLength = valueLengths[channel];
+			int encodingLength = encodingLengths[channel];
+			int residual = residuals[index];
+			if (encodingLength == valueLength)
+				write(data[offset + index], valueLength);
+			else if (residual == EXCESS_RESIDUAL)
+			{
+				write(excessCodes[channel], encodingLength);
+				write(data[offset + index], valueLength);
+			}
+			else
+				write(residual, encodingLength);
+
+			++index;
+			if (++channel == numChannels)
+				channel = 0;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Determines the optimum encoding length of each channel from the excess counts of the first pass, then encodes a
+	 * block of sample data and writes them to the data destination.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeBlock(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Determine optimum encoding length of each channel
+		int numSampleFrames = length / numChannels;
+		for (int i = 0; i < numChannels; i++)
+			selectEncodingLength(i, numSampleFrames);
+
+		// Write decorrelation of each pair of channels, if the format has one
+		writeUntransformedPairs();
+
+		// Write key for each channel
+		for (int i = 0; i < numChannels; i++)
+			write(sampleLength - encodingLengths[i], keyLength);
+
+		// Encode sample data and write them to data destination
+		encodeValues(data, offset, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Transforms the sample values of a block by decorrelating its channels in pairs, determines the optimum encoding
+	 * length of each transformed channel, then encodes the transformed values and writes them to the data
+	 * destination.  If the block has enough channels and parallel mode is selected, the channel pairs are analysed in
+	 * parallel.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeBlockDecorrelated(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Ensure that transform buffer is large enough
+		int numSampleFrames = length / numChannels;
+		if (transformBuffer.length < length)
+			transformBuffer = new int[length];
+
+		// Decorrelate pairs of channels, and analyse transformed channels
+		decorrelateGroups(data, offset, numSampleFrames);
+
+		// Determine optimum encoding length of each channel
+		for (int i = 0; i < numChannels; i++)
+			selectEncodingLength(i, numSampleFrames);
+
+		// Write decorrelation of each pair of channels
+		for (int i = 0; i < decorrelations.length; i++)
+			write(decorrelations[i].getCode(), ChannelDecorrelation.CODE_LENGTH);
+
+		// Write key for each channel
+		for (int i = 0; i < numChannels; i++)
+			write(valueLengths[i] - encodingLengths[i], keyLength);
+
+		// Encode transformed values and write them to data destination
+		encodeValues(transformBuffer, 0, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decorrelates the channels of a block in pairs, stores the transformed values in the transform buffer and sets the
+	 * excess counts of the transformed channels.  If the block has enough channels and parallel mode is selected, the
+	 * channel pairs are analysed in parallel.
+	 *
+	 * @param data
+	 *          the interleaved sample values of the block.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 */
+
+	private void decorrelateGroups(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames)
+	{
+		int numGroups = decorrelations.length + (numChannels & 1);
+		if (isParallelBlock())
+		{
+			int numTasks = Math.min(numGroups, ForkJoinPool.getCommonPoolParallelism() + 1);
+			Workspace[] workspaces = getWorkspaces(numTasks, numSampleFrames);
+			IntStream.range(0, numTasks).parallel().forEach(task ->
+			{
+				int endGroup = (task + 1) * numGroups / numTasks;
+				for (int i = task * numGroups / numTasks; i < endGroup; i++)
+					decorrelateGroup(data, offset, numSampleFrames, i, workspaces[task]);
+			});
+		}
+		else
+		{
+			Workspace workspace = getWorkspaces(1, numSampleFrames)[0];
+			for (int i = 0; i < numGroups; i++)
+				decorrelateGroup(data, offset, numSampleFrames, i, workspace);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a segment of sample data as one or more blocks with a predictor that is selected for each channel, and
+	 * writes them to the data destination.  The split order of the segment is selected and written, followed by each
+	 * block of the segment.  If block continuity is enabled, the split order is preceded by the sync flag of the
+	 * segment.  If back references are enabled, the segment begins with a reference flag, and a segment that is
+	 * identical to earlier sample frames within the reference window is written as a reference to them instead.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the segment.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeSegment(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// If back references are enabled and segment is identical to earlier sample frames, write reference to them
+		// and add segment to history
+		int numSampleFrames = length / numChannels;
+		if (backReferences && writeReference(data, offset, numSampleFrames))
+		{
+			if (blockContinuity)
+				FixedPredictor.updateHistory(sampleHistory, data, offset, numSampleFrames, numChannels, sampleLength);
+			referenceMatcher.add(data, offset, numSampleFrames);
+			++segmentIndex;
+			return;
+		}
+
+		// If block continuity is enabled, write flag that denotes a sync segment, and reset history of a sync segment.
+		// A sync segment is the first segment that is not a back reference after each interval of segments.
+		boolean sync = true;
+		if (blockContinuity)
+		{
+			sync = (segmentIndex >= nextSyncIndex);
+			write(sync ? 1 : 0, 1);
+			if (sync)
+			{
+				Arrays.fill(sampleHistory, 0);
+				nextSyncIndex = segmentIndex + (blockContinuityEnabled ? Segment.SYNC_INTERVAL : 1);
+			}
+		}
+		++segmentIndex;
+
+		// Select and write split order of segment
+		int splitOrder = selectSplitOrder(data, offset, numSampleFrames);
+		write(splitOrder, Segment.SPLIT_ORDER_LENGTH);
+
+		// Encode blocks of segment; if block continuity is enabled, each block after the first block of a sync segment
+		// continues from the preceding block
+		int numBlocks = 1 << splitOrder;
+		for (int i = 0; i < numBlocks; i++)
+		{
+			int startFrame = Segment.getBlockStart(i, splitOrder, numSampleFrames);
+			int endFrame = Segment.getBlockStart(i + 1, splitOrder, numSampleFrames);
+			int blockOffset = offset + startFrame * numChannels;
+			blockContinued = blockContinuity && !(sync && (i == 0));
+			encodeBlockPredicted(data, blockOffset, (endFrame - startFrame) * numChannels);
+			if (blockContinuity)
+			{
+				FixedPredictor.updateHistory(sampleHistory, data, blockOffset, endFrame - startFrame, numChannels,
+											 sampleLength);
+			}
+		}
+
+		// If back references are enabled, add segment to reference window
+		if (backReferences)
+			referenceMatcher.add(data, offset, numSampleFrames);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes the reference flag of a segment, followed by the distance to the referenced sample frames if the segment
+	 * is identical to earlier frames within the reference window.  Before the first segment, the matcher of back
+	 * references is created and the binary logarithm of the length of its reference window is written; if the window is
+	 * empty, no reference flags are written.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the segment.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return {@code true} if the segment was written as a back reference.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private boolean writeReference(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames)
+		throws IOException
+	{
+		// Before first segment, write length of reference window and create matcher of back references
+		if (referenceMatcher == null)
+		{
+			int windowSize = backReferencesEnabled ? referenceWindowSize : 0;
+			int windowOrder = BackReference.getWindowOrder(windowSize, numChannels);
+			write(windowOrder, BackReference.WINDOW_ORDER_LENGTH);
+			referenceMatcher = new ReferenceMatcher(windowOrder, referenceTableSize, numChannels);
+		}
+		int windowOrder = referenceMatcher.getWindowOrder();
+		if (windowOrder == 0)
+			return false;
+
+		// Write reference flag and distance
+		int distance = referenceMatcher.find(data, offset, numSampleFrames);
+		write((distance > 0) ? 1 : 0, 1);
+		if (distance > 0)
+			write(distance - 1, windowOrder);
+		return (distance > 0);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the split order that gives the smallest estimated length of a segment of sample data.  The estimated
+	 * length of the channels of the segment for each split order is added to the estimated length of the headers of
+	 * its blocks; of split orders with equal lengths, the lowest is selected.  If the segment has enough channels and
+	 * parallel mode is selected, the channels are analysed in parallel.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the segment.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return the split order of the segment.
+	 */
+
+	private int selectSplitOrder(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames)
+	{
+		// If segment is too short to be split, don't split it
+		int maxSplitOrder = variableBlockLengthEnabled ? Segment.getMaxSplitOrder(numSampleFrames) : 0;
+		if (maxSplitOrder == 0)
+			return 0;
+
+		// Estimate length of channels of segment for each split order
+		Workspace[] workspaces;
+		if (isParallelBlock())
+		{
+			int numTasks = Math.min(numChannels, ForkJoinPool.getCommonPoolParallelism() + 1);
+			Workspace[] taskWorkspaces = getWorkspaces(numTasks, numSampleFrames);
+			IntStream.range(0, numTasks).parallel().forEach(task ->
+			{
+				Arrays.fill(taskWorkspaces[task].splitLengths, 0);
+				int endChannel = (task + 1) * numChannels / numTasks;
+				for (int i = task * numChannels / numTasks; i < endChannel; i++)
+					addSplitLengths(data, offset, numSampleFrames, maxSplitOrder, i, taskWorkspaces[task]);
+			});
+			workspaces = taskWorkspaces;
+		}
+		else
+		{
+			workspaces = getWorkspaces(1, numSampleFrames);
+			Arrays.fill(workspaces[0].splitLengths, 0);
+			for (int i = 0; i < numChannels; i++)
+				addSplitLengths(data, offset, numSampleFrames, maxSplitOrder, i, workspaces[0]);
+		}
+		long[] lengths = new long[maxSplitOrder + 1];
+		for (Workspace workspace : workspaces)
+		{
+			for (int i = 0; i <= maxSplitOrder; i++)
+				lengths[i] += workspace.splitLengths[i];
+		}
+
+		// Find split order with smallest estimated length, including headers of blocks
+		long headerLength = decorrelations.length * ChannelDecorrelation.CODE_LENGTH
+								+ numChannels * (FixedPredictor.ORDER_LENGTH + (riceCoding ? 1 : 0) + keyLength);
+		int splitOrder = 0;
+		long minLength = Long.MAX_VALUE;
+		for (int i = 0; i <= maxSplitOrder; i++)
+		{
+			long length = lengths[i] + (headerLength << i);
+			if (minLength > length)
+			{
+				minLength = length;
+				splitOrder = i;
+			}
+		}
+		return splitOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Adds the estimated length of a channel of a segment for each split order to the split lengths of the specified
+	 * workspace.  The estimate is that of the cost model that selects the encoding length of a channel: the
+	 * second-order differences of the channel are computed for the whole segment, and a histogram of their bit lengths
+	 * is made for each of the shortest blocks; the histograms of the blocks of each lower split order are obtained by
+	 * merging those of the next higher order.  The estimated length of a block is the length of its differences when
+	 * they are encoded with the optimum encoding length, to which are added the full values with which a block begins.
+	 * If constant channels are enabled, the estimated length of a block whose sample values are all equal is the length
+	 * of a sample value.  If the removal of wasted bits is enabled, the sample values are first shifted right by the
+	 * number of wasted bits of the channel in the segment.  This method accesses only the specified workspace, so it
+	 * may be called concurrently for different channels.
+	 *
+	 * @param data
+	 *          the interleaved sample values of the segment.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the segment.
+	 * @param maxSplitOrder
+	 *          the maximum split order of the segment.
+	 * @param channel
+	 *          the index of the channel.
+	 * @param workspace
+	 *          the workspace whose buffers will be used.
+	 */
+
+	private void addSplitLengths(
+		int[]		data,
+		int			offset,
+		int			numSampleFrames,
+		int			maxSplitOrder,
+		int			channel,
+		Workspace	workspace)
+	{
+		// De-interleave sample values of channel and compute their second-order differences
+		int[] epsilons = workspace.epsilons;
+		for (int j = 0, k = offset + channel; j < numSampleFrames; j++, k += numChannels)
+			epsilons[j] = data[k];
+
+		// If removal of wasted bits is enabled, shift sample values right by number of wasted bits of segment
+		int valueLength = sampleLength;
+		if (wastedBits && wastedBitsEnabled)
+		{
+			int shift = WastedBits.getShift(epsilons, numSampleFrames, sampleLength);
+			if (shift > 0)
+			{
+				for (int j = 0; j < numSampleFrames; j++)
+					epsilons[j] >>= shift;
+				valueLength -= shift;
+			}
+		}
+
+		// If constant channels are enabled, find the blocks of each split order whose sample values are all equal.  A
+		// block of a lower split order is constant if both its halves are constant with the same value.
+		boolean[][] constantFlags = workspace.splitConstantFlags;
+		int numBlocks = 1 << maxSplitOrder;
+		if (constantChannels && constantChannelsEnabled)
+		{
+			for (int i = 0; i < numBlocks; i++)
+			{
+				constantFlags[maxSplitOrder][i] =
+						EncodingCost.isConstant(epsilons, Segment.getBlockStart(i, maxSplitOrder, numSampleFrames),
+												Segment.getBlockStart(i + 1, maxSplitOrder, numSampleFrames));
+			}
+			for (int i = maxSplitOrder - 1; i >= 0; i--)
+			{
+				for (int j = 0; j < 1 << i; j++)
+				{
+					int midFrame = Segment.getBlockStart(2 * j + 1, i + 1, numSampleFrames);
+					constantFlags[i][j] = constantFlags[i + 1][2 * j] && constantFlags[i + 1][2 * j + 1]
+											&& (epsilons[midFrame - 1] == epsilons[midFrame]);
+				}
+			}
+		}
+		EncodingCost.computeEpsilons(epsilons, numSampleFrames);
+
+		// Make histogram of bit lengths of second-order differences of each of the shortest blocks
+		int[][][] counts = workspace.splitBitLengthCounts;
+		for (int i = 0; i < numBlocks; i++)
+		{
+			EncodingCost.countBitLengths(epsilons, Segment.getBlockStart(i, maxSplitOrder, numSampleFrames),
+										 Segment.getBlockStart(i + 1, maxSplitOrder, numSampleFrames),
+										 counts[maxSplitOrder][i]);
+		}
+
+		// Merge histograms of pairs of blocks
+		for (int i = maxSplitOrder - 1; i >= 0; i--)
+		{
+			for (int j = 0; j < 1 << i; j++)
+			{
+				int[] blockCounts = counts[i][j];
+				int[] counts0 = counts[i + 1][2 * j];
+				int[] counts1 = counts[i + 1][2 * j + 1];
+				for (int k = 0; k < blockCounts.length; k++)
+					blockCounts[k] = counts0[k] + counts1[k];
+			}
+		}
+
+		// Add estimated length of each block to split lengths; unless block continuity is enabled, the first two
+		// differences of a block that is not at the start of the segment are treated as full values, because the sample
+		// values that precede a block are taken to be zero
+		int[] excessCounts = workspace.excessCounts;
+		int numFirstValues = ((channel == 0) && !blockContinuity) ? 1 : 0;
+		for (int i = 0; i <= maxSplitOrder; i++)
+		{
+			for (int j = 0; j < 1 << i; j++)
+			{
+				if (constantChannels && constantChannelsEnabled && constantFlags[i][j])
+				{
+					workspace.splitLengths[i] += sampleLength;
+					continue;
+				}
+				int startFrame = Segment.getBlockStart(j, i, numSampleFrames);
+				int blockNumSampleFrames = Segment.getBlockStart(j + 1, i, numSampleFrames) - startFrame;
+				EncodingCost.setExcessCounts(counts[i][j], valueLength, keyLength, excessCounts);
+				int encodingLength = EncodingCost.getOptimumEncodingLength(excessCounts, valueLength, keyLength,
+																		   blockNumSampleFrames);
+				long length = EncodingCost.getEncodedLength(excessCounts, valueLength,
+															blockNumSampleFrames - numFirstValues, encodingLength)
+								+ numFirstValues * valueLength;
+				if ((startFrame > 0) && !blockContinuity)
+					length += FixedPredictor.DEFAULT_ORDER * valueLength;
+				workspace.splitLengths[i] += length;
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a block of sample data with a predictor that is selected for each channel, and writes them to the data
+	 * destination.  If the block has more than one channel, its channels are first decorrelated in pairs.  If the
+	 * block has enough channels and parallel mode is selected, the channels are analysed in parallel.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeBlockPredicted(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		// Ensure that buffers are large enough
+		int numSampleFrames = length / numChannels;
+		if (residualBuffer.length < length)
+			residualBuffer = new int[length];
+
+		// If channels are decorrelated, transform pairs of channels; otherwise, leave pairs untransformed
+		int[] values = data;
+		int valuesOffset = offset;
+		if (isDecorrelated())
+		{
+			if (transformBuffer.length < length)
+				transformBuffer = new int[length];
+			decorrelateGroups(data, offset, numSampleFrames);
+			values = transformBuffer;
+			valuesOffset = 0;
+		}
+		else
+			Arrays.fill(decorrelations, ChannelDecorrelation.LEFT_RIGHT);
+
+		// If block continues from preceding block, transform history of sample values with decorrelation of block
+		if (blockContinued)
+			transformHistory();
+
+		// Select predictor and encoding length of each channel, and compute its residuals
+		int[] channelValues = values;
+		int channelValuesOffset = valuesOffset;
+		if (isParallelBlock())
+		{
+			int numTasks = Math.min(numChannels, ForkJoinPool.getCommonPoolParallelism() + 1);
+			Workspace[] workspaces = getWorkspaces(numTasks, numSampleFrames);
+			IntStream.range(0, numTasks).parallel().forEach(task ->
+			{
+				int endChannel = (task + 1) * numChannels / numTasks;
+				for (int i = task * numChannels / numTasks; i < endChannel; i++)
+					selectPredictor(channelValues, channelValuesOffset, numSampleFrames, i, workspaces[task]);
+			});
+		}
+		else
+		{
+			Workspace workspace = getWorkspaces(1, numSampleFrames)[0];
+			for (int i = 0; i < numChannels; i++)
+				selectPredictor(values, valuesOffset, numSampleFrames, i, workspace);
+		}
+
+		// Write decorrelation of each pair of channels
+		for (int i = 0; i < decorrelations.length; i++)
+			write(decorrelations[i].getCode(), ChannelDecorrelation.CODE_LENGTH);
+
+		// If Rice coding is enabled, write channels in turn
+		if (riceCoding)
+		{
+			for (int i = 0; i < numChannels; i++)
+				writeChannel(values, valuesOffset, numSampleFrames, i);
+			return;
+		}
+
+		// Write predictor order and key for each channel
+		for (int i = 0; i < numChannels; i++)
+		{
+			write(predictorOrders[i], FixedPredictor.ORDER_LENGTH);
+			write(valueLengths[i] - encodingLengths[i], keyLength);
+		}
+
+		// Write residuals
+		writeResiduals(values, valuesOffset, length);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Selects the order of the predictor and the coding of a channel of a block with the predictor selector of the
+	 * specified workspace, and stores the residuals of the channel in the residual buffer.  This method accesses only
+	 * the per-channel variables of the specified channel, so it may be called concurrently for different channels.
+	 *
+	 * @param data
+	 *          the interleaved values of the block.
+	 * @param offset
+	 *          the start offset of the values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 * @param channel
+	 *          the index of the channel.
+	 * @param workspace
+	 *          the workspace whose buffers will be used.
+	 */
+
+	private void selectPredictor(
+		int[]		data,
+		int			offset,
+		int			numSampleFrames,
+		int			channel,
+		Workspace	workspace)
+	{
+		// Select predictor and coding of channel; a constant channel has no residuals
+		PredictorSelector selector = workspace.predictorSelector;
+		int startIndex = ((channel == 0) && !blockContinued) ? 1 : 0;
+		selector.select(data, offset, numSampleFrames, channel, valueLengths[channel], startIndex,
+						blockContinued ? historyBuffer : null, constantChannels && constantChannelsEnabled,
+						wastedBits && wastedBitsEnabled, predictorSelectionEnabled, riceCoding && riceCodingEnabled);
+		int order = selector.getOrder();
+		predictorOrders[channel] = order;
+		if (order == FixedPredictor.CONSTANT_CODE)
+			return;
+
+		// Set coding variables of channel
+		boolean rice = selector.isRiceCoded();
+		shifts[channel] = selector.getShift();
+		riceCoded[channel] = rice;
+		if (rice)
+		{
+			int partitionOrder = selector.getPartitionOrder();
+			partitionOrders[channel] = partitionOrder;
+			System.arraycopy(selector.getRiceParameters(), 0, riceParameters[channel], 0, 1 << partitionOrder);
+		}
+		setEncodingLength(channel, selector.getEncodingLength());
+
+		// Store residuals; if the channel is encoded with fixed-width codes, mark residuals that cannot be encoded with
+		// the encoding length
+		int[] residuals = selector.getResiduals();
+		if (rice)
+		{
+			for (int j = 0, k = channel; j < numSampleFrames; j++, k += numChannels)
+				residualBuffer[k] = residuals[j];
+		}
+		else
+		{
+			int bound = posEncodingBounds[channel];
+			for (int j = 0, k = channel; j < numSampleFrames; j++, k += numChannels)
+			{
+				int residual = residuals[j];
+				residualBuffer[k] = ((residual < -bound) || (residual > bound)) ? EXCESS_RESIDUAL : residual;
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Transforms the history of the sample values that precede a block with the decorrelation of each pair of channels
+	 * of the block, and stores the transformed values in the history buffer.
+	 */
+
+	private void transformHistory()
+	{
+		int numSampleFrames = FixedPredictor.MAX_ORDER;
+		for (int i = 0; i < decorrelations.length; i++)
+			decorrelations[i].transform(sampleHistory, 2 * i, historyBuffer, 2 * i, numSampleFrames, numChannels);
+		if ((numChannels & 1) != 0)
+		{
+			for (int i = numChannels - 1; i < historyBuffer.length; i += numChannels)
+				historyBuffer[i] = sampleHistory[i];
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes a channel of a block to the data destination in the form of version 4 of an Onda file: the order of the
+	 * predictor of the channel, a flag that denotes its coding and the key or Rice parameters of the coding, followed by
+	 * the encoded values of the channel.  The first value of the block is written in full.  A constant channel is
+	 * written as the code {@link FixedPredictor#CONSTANT_CODE} followed by its value.  If the removal of wasted bits is
+	 * enabled, the predictor order of a channel that is not constant is followed by the number of its wasted bits, and
+	 * its values are shifted right by that number.  If the block continues from the preceding block, no value is
+	 * written in full.
+	 *
+	 * @param  data
+	 *           the interleaved values of the block.
+	 * @param  offset
+	 *           the start offset of the values in {@code data}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @param  channel
+	 *           the index of the channel.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void writeChannel(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames,
+		int		channel)
+		throws IOException
+	{
+		// Write predictor order
+		int order = predictorOrders[channel];
+		write(order, FixedPredictor.ORDER_LENGTH);
+
+		// Case: constant channel
+		int valueLength = valueLengths[channel];
+		if (order == FixedPredictor.CONSTANT_CODE)
+		{
+			write(data[offset + channel], valueLength);
+			return;
+		}
+
+		// If removal of wasted bits is enabled, write number of wasted bits
+		int shift = shifts[channel];
+		if (wastedBits)
+		{
+			write((shift > 0) ? 1 : 0, 1);
+			if (shift > 0)
+				write(shift, WastedBits.SHIFT_LENGTH);
+			valueLength -= shift;
+		}
+
+		// Case: Rice codes
+		int startFrame = ((channel == 0) && !blockContinued) ? 1 : 0;
+		int[] residuals = residualBuffer;
+		if (riceCoded[channel])
+		{
+			// Write partition order and Rice parameters
+			write(1, 1);
+			int partitionOrder = partitionOrders[channel];
+			int numPartitions = 1 << partitionOrder;
+			int[] parameters = riceParameters[channel];
+			write(partitionOrder, RiceCode.PARTITION_ORDER_LENGTH);
+			for (int i = 0; i < numPartitions; i++)
+				write(parameters[i], RiceCode.PARAMETER_LENGTH);
+
+			// Write first value of block in full
+			if ((numSampleFrames > 0) && (startFrame > 0))
+				write(data[offset] >> shift, valueLength);
+
+			// Write residuals of each partition
+			for (int i = 0; i < numPartitions; i++)
+			{
+				int parameter = parameters[i];
+				int endFrame = RiceCode.getPartitionStart(i + 1, partitionOrder, numSampleFrames);
+				int frame = Math.max(startFrame, RiceCode.getPartitionStart(i, partitionOrder, numSampleFrames));
+				for (int j = frame * numChannels + channel; frame < endFrame; frame++, j += numChannels)
+				{
+					int value = RiceCode.toUnsigned(residuals[j]);
+					int quotient = value >>> parameter;
+					if (quotient >= RiceCode.ESCAPE_QUOTIENT)
+					{
+						write(1, RiceCode.ESCAPE_QUOTIENT + 1);
+						write(data[offset + j] >> shift, valueLength);
+					}
+					else
+					{
+						write(1, quotient + 1);
+						write(value, parameter);
+					}
+				}
+			}
+		}
+
+		// Case: fixed-width codes
+		else
+		{
+			// Write key
+			int encodingLength = encodingLengths[channel];
+			write(0, 1);
+			write(valueLength - encodingLength, keyLength);
+
+			// Write first value of block in full
+			if ((numSampleFrames > 0) && (startFrame > 0))
+				write(data[offset] >> shift, valueLength);
+
+			// Write residuals
+			int excessCode = excessCodes[channel];
+			int endIndex = numSampleFrames * numChannels;
+			for (int j = startFrame * numChannels + channel; j < endIndex; j += numChannels)
+			{
+				int residual = residuals[j];
+				if (encodingLength == valueLength)
+					write(data[offset + j] >> shift, valueLength);
+				else if (residual == EXCESS_RESIDUAL)
+				{
+					write(excessCode, encodingLength);
+					write(data[offset + j] >> shift, valueLength);
+				}
+				else
+					write(residual, encodingLength);
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decorrelates a group of channels of a block, stores the transformed values in the transform buffer and sets the
+	 * excess counts of the transformed channels.  A group is either a pair of adjacent channels, whose decorrelation is
+	 * selected by the decorrelator of the specified workspace, or the last channel of a block with an odd number of
+	 * channels, which is not transformed.  This method accesses only the per-channel variables of the channels of the
+	 * group, so it may be called concurrently for different groups.
+	 *
+	 * @param data
+	 *          the interleaved sample values of the block.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 * @param group
+	 *          the index of the group.
+	 * @param workspace
+	 *          the workspace whose buffers will be used.
+	 */
+
+	private void decorrelateGroup(
+		int[]		data,
+		int			offset,
+		int			numSampleFrames,
+		int			group,
+		Workspace	workspace)
+	{
+		// Case: unpaired channel
+		int channel = group << 1;
+		if (group == decorrelations.length)
+		{
+			for (int i = 0, j = channel; i < numSampleFrames; i++, j += numChannels)
+				transformBuffer[j] = data[offset + j];
+			analyseChannel(data, offset, numSampleFrames, channel, workspace);
+			return;
+		}
+
+		// Select decorrelation of pair of channels
+		ChannelDecorrelator decorrelator = workspace.decorrelator;
+		ChannelDecorrelation decorrelation = decorrelator.select(data, offset, numSampleFrames, channel,
+																 wastedBits && wastedBitsEnabled,
+																 constantChannels && constantChannelsEnabled);
+
+		// Set variables of transformed channels.  If either channel is constant, the excess counts of the channels are
+		// not set, because the predictors of blocks with constant channels are selected from their residuals.
+		decorrelations[group] = decorrelation;
+		for (int i = 0; i < 2; i++)
+		{
+			valueLengths[channel + i] = decorrelation.getSource(i).getValueLength(sampleLength);
+			if (!decorrelator.hasConstantChannel())
+				decorrelator.setExcessCounts(i, excessCounts[channel + i]);
+		}
+
+		// Transform sample values of pair of channels
+		decorrelation.transform(data, offset + channel, transformBuffer, channel, numSampleFrames, numChannels);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes the values of a block and writes them to the data destination.  Blocks of mono and stereo data are
+	 * encoded by specialised kernels that keep the per-channel encoding variables in local variables, unless the
+	 * {@linkplain #setGenericKernel(boolean) generic kernel} is forced; other blocks are encoded by the generic kernel.
+	 *
+	 * @param  data
+	 *           the interleaved values of the block.
+	 * @param  offset
+	 *           the start offset of the values in {@code data}.
+	 * @param  length
+	 *           the number of values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeValues(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		if (length == 0)
+			return;
+		switch (genericKernel ? 0 : numChannels)
+		{
+			case 1:
+				encodeMono(data, offset, length);
+				break;
+
+			case 2:
+				encodeStereo(data, offset, length);
+				break;
+
+			default:
+				encodeGeneric(data, offset, length);
+				break;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a block of mono sample data and writes them to the data destination.
+	 *
+	 * @param  data
+	 *           the sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values, which must be greater than zero.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeMono(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int encodingLength = encodingLengths[0];
+		int excessCode = excessCodes[0];
+		int bound = posEncodingBounds[0];
+
+		// Write first sample value in full
+		int prevSampleValue = data[offset];
+		int prevDelta = prevSampleValue;
+		write(prevSampleValue, sampleLength);
+
+		// Encode remaining sample values
+		int endOffset = offset + length;
+		while (++offset < endOffset)
+		{
+			int sampleValue = data[offset];
+			int delta = sampleValue - prevSampleValue;
+			encodeValue(sampleLength, sampleValue, delta - prevDelta, encodingLength, excessCode, bound);
+			prevSampleValue = sampleValue;
+			prevDelta = delta;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a block of stereo sample data and writes them to the data destination.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values, which must be a positive multiple of 2.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeStereo(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int valueLength0 = valueLengths[0];
+		int encodingLength0 = encodingLengths[0];
+		int excessCode0 = excessCodes[0];
+		int bound0 = posEncodingBounds[0];
+		int valueLength1 = valueLengths[1];
+		int encodingLength1 = encodingLengths[1];
+		int excessCode1 = excessCodes[1];
+		int bound1 = posEncodingBounds[1];
+
+		// Write first sample value of left channel in full; encode first sample value of right channel
+		int prevSampleValue0 = data[offset];
+		int prevDelta0 = prevSampleValue0;
+		write(prevSampleValue0, valueLength0);
+
+		int prevSampleValue1 = data[offset + 1];
+		int prevDelta1 = prevSampleValue1;
+		encodeValue(valueLength1, prevSampleValue1, prevSampleValue1, encodingLength1, excessCode1, bound1);
+
+		// Encode remaining sample frames
+		int endOffset = offset + length;
+		offset += 2;
+		while (offset < endOffset)
+		{
+			int sampleValue = data[offset++];
+			int delta = sampleValue - prevSampleValue0;
+			encodeValue(valueLength0, sampleValue, delta - prevDelta0, encodingLength0, excessCode0, bound0);
+			prevSampleValue0 = sampleValue;
+			prevDelta0 = delta;
+
+			sampleValue = data[offset++];
+			delta = sampleValue - prevSampleValue1;
+			encodeValue(valueLength1, sampleValue, delta - prevDelta1, encodingLength1, excessCode1, bound1);
+			prevSampleValue1 = sampleValue;
+			prevDelta1 = delta;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes a block of sample data for any number of channels and writes them to the data destination.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the block.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  length
+	 *           the number of sample values.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeGeneric(
+		int[]	data,
+		int		offset,
+		int		length)
+		throws IOException
+	{
+		int startOffset = offset;
+		int endOffset = startOffset + length;
+		while (offset < endOffset)
+		{
+			for (int i = 0; i < numChannels; i++)
+			{
+				int sampleValue = data[offset];
 				int delta = sampleValue - prevSampleValues[i];
 
-				if ((offset == startOffset) || (encodingLengths[i] == sampleLength))
-					write(sampleValue, sampleLength);
+				if ((offset == startOffset) || (encodingLengths[i] == valueLengths[i]))
+					write(sampleValue, valueLengths[i]);
 				else
 				{
 					int epsilon = delta - prevDeltas[i];
 					if ((epsilon < negEncodingBounds[i]) || (epsilon > posEncodingBounds[i]))
 					{
 						write(excessCodes[i], encodingLengths[i]);
-						write(sampleValue, sampleLength);
+						write(sampleValue, valueLengths[i]);
 					}
 					else
 						write(epsilon, encodingLengths[i]);
@@ -291,6 +2379,47 @@ public class OndaDataOutput
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Encodes a sample value that is not the first in its block, and writes it to the data destination.
+	 *
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel of the sample value.
+	 * @param  sampleValue
+	 *           the sample value.
+	 * @param  epsilon
+	 *           the second-order difference of the sample value.
+	 * @param  encodingLength
+	 *           the encoding length of the channel of the sample value.
+	 * @param  excessCode
+	 *           the code that denotes an excess value for the encoding length.
+	 * @param  bound
+	 *           the largest magnitude of {@code epsilon} that can be encoded with the encoding length.
+	 * @throws IOException
+	 *           if an error occurs when attempting to write to the data destination.
+	 */
+
+	private void encodeValue(
+		int	valueLength,
+		int	sampleValue,
+		int	epsilon,
+		int	encodingLength,
+		int	excessCode,
+		int	bound)
+		throws IOException
+	{
+		if (encodingLength == valueLength)
+			write(sampleValue, valueLength);
+		else if ((epsilon < -bound) || (epsilon > bound))
+		{
+			write(excessCode, encodingLength);
+			write(sampleValue, valueLength);
+		}
+		else
+			write(epsilon, encodingLength);
+	}
+
+	//------------------------------------------------------------------
+
 	/**
 	 * Writes a bit array of a specified length to the data destination.
 	 *
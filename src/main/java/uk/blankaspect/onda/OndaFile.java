@@ -18,9 +18,11 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
+import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -73,21 +75,60 @@ class OndaFile
 	public static final		int		DEFAULT_BLOCK_LENGTH	= 256;
 
 	public static final		int		MIN_SUPPORTED_VERSION	= 0;
-	public static final		int		MAX_SUPPORTED_VERSION	= 1;
+	public static final		int		MAX_SUPPORTED_VERSION	= 10;
 
-	private static final	Id		ONDA_ID				= new Id("Onda");
-	private static final	Id		ATTRIBUTES_ID		= new Id("attributes");
-	private static final	Id		PRIVATE_DATA_ID		= new Id("privateData");
-	@SuppressWarnings("unused")
+	/** The earliest version of the file format in which the channels of a block may be decorrelated in pairs. */
+	public static final		int		CHANNEL_DECORRELATION_VERSION	= 2;
+
+	/** The earliest version of the file format in which the predictor of each channel of a block is selected. */
+	public static final		int		PREDICTOR_SELECTION_VERSION	= 3;
+
+	/** The earliest version of the file format in which the residuals of a channel may be encoded with Rice codes. */
+	public static final		int		RICE_CODING_VERSION	= 4;
+
+	/** The earliest version of the file format in which a segment of sample data may be divided into blocks. */
+	public static final		int		VARIABLE_BLOCK_LENGTH_VERSION	= 5;
+
+	/** The earliest version of the file format in which a channel of a block may be encoded as a single value. */
+	public static final		int		CONSTANT_CHANNEL_VERSION	= 6;
+
+	/** The earliest version of the file format in which the wasted bits of a channel of a block may be removed. */
+	public static final		int		WASTED_BITS_VERSION	= 7;
+
+	/** The earliest version of the file format in which the predictors of a block may continue from the last block. */
+	public static final		int		BLOCK_CONTINUITY_VERSION	= 8;
+
+	/** The earliest version of the file format in which a segment may be a back reference to earlier sample frames. */
+	public static final		int		BACK_REFERENCE_VERSION	= 9;
+
+	/** The earliest version of the file format whose attributes record the format of the sample data. */
+	public static final		int		SAMPLE_FORMAT_VERSION	= 10;
+
+	/** The sample format of integer PCM sample data. */
+	public static final		int		INTEGER_SAMPLE_FORMAT	= 0;
+
+	/** The sample format of 32-bit IEEE 754 floating-point sample data. */
+	public static final		int		FLOAT_SAMPLE_FORMAT		= 1;
+
+	/** The number of bits per sample of floating-point sample data. */
+	public static final		int		FLOAT_BITS_PER_SAMPLE	= 32;
+
+	static final			Id		ONDA_ID				= new Id("Onda");
+	static final			Id		ATTRIBUTES_ID		= new Id("attributes");
+	static final			Id		PRIVATE_DATA_ID		= new Id("privateData");
 	private static final	Id		DATA_BLOCK_SIZE_ID	= new Id("dataBlockSize");
-	private static final	Id		DATA_ID				= new Id("data");
+	static final			Id		DATA_ID				= new Id("data");
 
 	private static final	int		READ_ATTRIBUTES		= 1 << 0;
 	private static final	int		READ_PRIVATE_DATA	= 1 << 1;
 	private static final	int		READ_DATA			= 1 << 2;
+	private static final	int		READ_DATA_OFFSET	= 1 << 3;
+
+	private static final	int		DATA_BLOCK_SIZE_HEADER_SIZE			= 4;
+	private static final	int		MAX_DATA_BLOCK_SIZE_ELEMENT_SIZE	= 4;
 
-	private static final	String	NAMESPACE_NAME			= "http://ns.blankaspect.uk/onda-1";
-	private static final	String	NAMESPACE_NAME_REGEX	= "http://ns\\.[a-z.]+/onda-1";
+	static final			String	NAMESPACE_NAME			= "http://ns.blankaspect.uk/onda-1";
+	static final			String	NAMESPACE_NAME_REGEX	= "http://ns\\.[a-z.]+/onda-1";
 
 	private static final	String	OFFSET_STR	= "Offset = 0x";
 
@@ -143,6 +184,12 @@ class OndaFile
 		MULTIPLE_DATA_CHUNKS
 		("The file has more than one data chunk."),
 
+		INVALID_DATA_BLOCK_SIZE_CHUNK
+		("The data block size chunk is not valid."),
+
+		DATA_NOT_RANDOMLY_ACCESSIBLE
+		("The data chunk cannot be read randomly."),
+
 		UNSUPPORTED_VERSION
 		("The version of the file (%1) is not supported by this program."),
 
@@ -164,6 +211,9 @@ class OndaFile
 		BLOCK_LENGTH_OUT_OF_BOUNDS
 		("The block length is out of bounds."),
 
+		UNSUPPORTED_SAMPLE_FORMAT
+		("The sample format of the file is not supported by this program."),
+
 		PRIVATE_DATA_ARE_TOO_LARGE
 		("The private data in the file are too large for this program."),
 
@@ -230,6 +280,83 @@ class OndaFile
 
 	//==================================================================
 
+////////////////////////////////////////////////////////////////////////
+//  Member records
+////////////////////////////////////////////////////////////////////////
+
+
+	// RECORD: ENCODER OPTIONS
+
+
+	/**
+	 * This record holds the options of the encoder of the sample data of a file.  The compression options enable the
+	 * features of the format of the version of the file that the encoder uses; a feature that is not part of the
+	 * format is not used, whatever its option.  The other options don't affect the compressed data.
+	 *
+	 * @param channelDecorrelation
+	 *          if {@code true}, the adjacent channels of each block may be decorrelated in pairs.
+	 * @param predictorSelection
+	 *          if {@code true}, the order of the predictor of each channel of a block will be selected.
+	 * @param riceCoding
+	 *          if {@code true}, the residuals of a channel of a block may be encoded with Rice codes.
+	 * @param variableBlockLength
+	 *          if {@code true}, each segment may be divided into shorter blocks.
+	 * @param constantChannels
+	 *          if {@code true}, a channel of a block whose values are all equal will be encoded as a single value.
+	 * @param wastedBits
+	 *          if {@code true}, the wasted bits of each channel of a block will be removed.
+	 * @param blockContinuity
+	 *          if {@code true}, the first block of a segment may continue from the preceding segment.
+	 * @param backReferences
+	 *          if {@code true}, a segment may be encoded as a back reference to earlier sample frames.
+	 * @param backReferenceWindowSize
+	 *          the maximum size (in MiB) of the window of sample frames that may be referenced.
+	 * @param backReferenceTableSize
+	 *          the maximum size (in MiB) of the hash table of the anchors of the reference window.
+	 * @param arrayAnalysis
+	 *          if {@code true}, blocks will be analysed with the array kernel.
+	 * @param parallelEncoding
+	 *          if {@code true}, the per-channel work of the encoder may be performed in parallel.
+	 */
+
+	record EncoderOptions(
+		boolean	channelDecorrelation,
+		boolean	predictorSelection,
+		boolean	riceCoding,
+		boolean	variableBlockLength,
+		boolean	constantChannels,
+		boolean	wastedBits,
+		boolean	blockContinuity,
+		boolean	backReferences,
+		int		backReferenceWindowSize,
+		int		backReferenceTableSize,
+		boolean	arrayAnalysis,
+		boolean	parallelEncoding)
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Returns a copy of these options in which blocks are analysed with the array kernel.
+		 *
+		 * @return a copy of these options whose {@link #arrayAnalysis() arrayAnalysis} option is {@code true}.
+		 */
+
+		public EncoderOptions withArrayAnalysis()
+		{
+			return new EncoderOptions(channelDecorrelation, predictorSelection, riceCoding, variableBlockLength,
+									  constantChannels, wastedBits, blockContinuity, backReferences,
+									  backReferenceWindowSize, backReferenceTableSize, true, parallelEncoding);
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
 ////////////////////////////////////////////////////////////////////////
 //  Member classes : non-inner classes
 ////////////////////////////////////////////////////////////////////////
@@ -258,6 +385,8 @@ class OndaFile
 		public static final	int	BLOCK_LENGTH_SIZE		= 4;
 		public static final	int	SIZE					= CRC_OFFSET + CRC_SIZE + KEY_LENGTH_SIZE +
 																						BLOCK_LENGTH_SIZE;
+		public static final	int	SAMPLE_FORMAT_SIZE		= 2;
+		public static final	int	MAX_SIZE				= SIZE + SAMPLE_FORMAT_SIZE;
 
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
@@ -290,6 +419,22 @@ class OndaFile
 
 		//--------------------------------------------------------------
 
+		public Attributes(int     version,
+						  int     numChannels,
+						  int     bitsPerSample,
+						  int     sampleRate,
+						  long    numSampleFrames,
+						  long    crcValue,
+						  int     keyLength,
+						  int     blockLength,
+						  boolean floatingPoint)
+		{
+			this(version, numChannels, bitsPerSample, sampleRate, numSampleFrames, crcValue, keyLength, blockLength);
+			sampleFormat = floatingPoint ? FLOAT_SAMPLE_FORMAT : INTEGER_SAMPLE_FORMAT;
+		}
+
+		//--------------------------------------------------------------
+
 		public Attributes(byte[] data,
 						  int    offset)
 			throws AppException
@@ -339,6 +484,35 @@ class OndaFile
 			offset += BLOCK_LENGTH_SIZE;
 			if ((blockLength < MIN_BLOCK_LENGTH) || (blockLength > MAX_BLOCK_LENGTH))
 				throw new AppException(ErrorId.BLOCK_LENGTH_OUT_OF_BOUNDS);
+
+			// Sample format
+			if (version >= SAMPLE_FORMAT_VERSION)
+			{
+				sampleFormat = NumberCodec.bytesToUIntBE(data, offset, SAMPLE_FORMAT_SIZE);
+				offset += SAMPLE_FORMAT_SIZE;
+				if ((sampleFormat != INTEGER_SAMPLE_FORMAT)
+						&& ((sampleFormat != FLOAT_SAMPLE_FORMAT) || (bitsPerSample != FLOAT_BITS_PER_SAMPLE)))
+					throw new AppException(ErrorId.UNSUPPORTED_SAMPLE_FORMAT);
+			}
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Class methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Returns the size of the attributes of a file of the specified version.
+		 *
+		 * @param  version
+		 *           the version of the file.
+		 * @return the size (in bytes) of the attributes of a file of version {@code version}.
+		 */
+
+		public static int getSize(int version)
+		{
+			return (version >= SAMPLE_FORMAT_VERSION) ? MAX_SIZE : SIZE;
 		}
 
 		//--------------------------------------------------------------
@@ -354,6 +528,33 @@ class OndaFile
 
 		//--------------------------------------------------------------
 
+		/**
+		 * Returns {@code true} if the sample data of the file are floating-point values.
+		 *
+		 * @return {@code true} if the sample format of the file is {@link #FLOAT_SAMPLE_FORMAT}.
+		 */
+
+		public boolean isFloatingPoint()
+		{
+			return (sampleFormat == FLOAT_SAMPLE_FORMAT);
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Returns the length of the integer values with which the sample data of the file are encoded.
+		 *
+		 * @return the length (in bits) of an encoded sample value: {@link FloatSample#VALUE_LENGTH} for floating-point
+		 *         sample data, otherwise the number of bits per sample.
+		 */
+
+		public int getValueLength()
+		{
+			return isFloatingPoint() ? FloatSample.VALUE_LENGTH : bitsPerSample;
+		}
+
+		//--------------------------------------------------------------
+
 		public int getBytesPerSampleFrame()
 		{
 			return getBytesPerSample() * numChannels;
@@ -363,7 +564,7 @@ class OndaFile
 
 		public byte[] getBytes()
 		{
-			byte[] buffer = new byte[SIZE];
+			byte[] buffer = new byte[getSize(version)];
 
 			int offset = 0;
 			NumberCodec.uIntToBytesBE(version, buffer, offset, VERSION_SIZE);
@@ -382,6 +583,11 @@ class OndaFile
 			offset += KEY_LENGTH_SIZE;
 			NumberCodec.uIntToBytesBE(blockLength, buffer, offset, BLOCK_LENGTH_SIZE);
 			offset += BLOCK_LENGTH_SIZE;
+			if (version >= SAMPLE_FORMAT_VERSION)
+			{
+				NumberCodec.uIntToBytesBE(sampleFormat, buffer, offset, SAMPLE_FORMAT_SIZE);
+				offset += SAMPLE_FORMAT_SIZE;
+			}
 
 			return buffer;
 		}
@@ -400,6 +606,7 @@ class OndaFile
 		long	crcValue;
 		int		keyLength;
 		int		blockLength;
+		int		sampleFormat;
 
 	}
 
@@ -440,7 +647,7 @@ class OndaFile
 
 		public long getLength()
 		{
-			return Attributes.SIZE;
+			return Attributes.getSize(attributes.version);
 		}
 
 		//--------------------------------------------------------------
@@ -465,12 +672,19 @@ class OndaFile
 		implements Chunk.IWriter
 	{
 
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	PrivateData	privateData;
+
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
 	////////////////////////////////////////////////////////////////////
 
-		private PrivateDataWriter()
+		private PrivateDataWriter(PrivateData privateData)
 		{
+			this.privateData = privateData;
 		}
 
 		//--------------------------------------------------------------
@@ -488,7 +702,7 @@ class OndaFile
 
 		public long getLength()
 		{
-			return privateData.length;
+			return privateData.getCompressedDataLength();
 		}
 
 		//--------------------------------------------------------------
@@ -496,7 +710,7 @@ class OndaFile
 		public void write(DataOutput dataOutput)
 			throws IOException
 		{
-			dataOutput.write(privateData);
+			privateData.writeCompressedData(dataOutput);
 		}
 
 		//--------------------------------------------------------------
@@ -545,47 +759,7 @@ class OndaFile
 		public void write(DataOutput dataOutput)
 			throws IOException
 		{
-			// Open compressed data output
-			OndaDataOutput compressedDataOutput = new OndaDataOutput(attributes.numChannels,
-																	 attributes.bitsPerSample,
-																	 attributes.keyLength, dataOutput);
-
-			// Write compressed sample data
-			int[] buffer = new int[attributes.blockLength * attributes.numChannels];
-			int bytesPerSample = attributes.getBytesPerSample();
-			while (true)
-			{
-				IByteDataSource.ByteData data = null;
-				try
-				{
-					data = dataSource.getData();
-				}
-				catch (AppException e)
-				{
-					throw new IOException(e);
-				}
-				if (data == null)
-					break;
-
-				int index = 0;
-				int offset = data.offset;
-				int endOffset = offset + data.length;
-				while (offset < endOffset)
-				{
-					buffer[index++] = NumberCodec.bytesToIntLE(data.data, offset, bytesPerSample);
-					offset += bytesPerSample;
-				}
-				compressedDataOutput.writeBlock(buffer, 0, index);
-			}
-
-			// Close compressed data output
-			compressedDataOutput.close();
-
-			// Set size of data
-			dataSize = compressedDataOutput.getOutLength();
-
-			// Set CRC value in attributes
-			attributes.crcValue = dataSource.getCrc();
+			dataSize = encodeData(attributes, encoderOptions, dataSource, dataOutput, file);
 		}
 
 		//--------------------------------------------------------------
@@ -615,6 +789,204 @@ class OndaFile
 //  Class methods
 ////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Creates an output for the compressed sample data of a file with the specified attributes.  The format of the
+	 * compressed data is that of the version of the file; the encoder uses only those features of the format whose
+	 * compression options are enabled in the specified options.
+	 *
+	 * @param  attributes
+	 *           the attributes of the file.
+	 * @param  options
+	 *           the options of the encoder.
+	 * @param  dataOutput
+	 *           the destination to which compressed data will be written.
+	 * @return an output that writes compressed sample data to {@code dataOutput}.
+	 */
+
+	public static OndaDataOutput createDataOutput(
+		Attributes		attributes,
+		EncoderOptions	options,
+		DataOutput		dataOutput)
+	{
+		OndaDataOutput compressedDataOutput = new OndaDataOutput(attributes.numChannels, attributes.getValueLength(),
+																 attributes.keyLength, dataOutput);
+		compressedDataOutput.setVersion(attributes.version);
+		compressedDataOutput.setChannelDecorrelation(options.channelDecorrelation());
+		compressedDataOutput.setPredictorSelection(options.predictorSelection());
+		compressedDataOutput.setRiceCoding(options.riceCoding());
+		compressedDataOutput.setVariableBlockLength(options.variableBlockLength());
+		compressedDataOutput.setConstantChannels(options.constantChannels());
+		compressedDataOutput.setWastedBits(options.wastedBits());
+		compressedDataOutput.setBlockContinuity(options.blockContinuity());
+		compressedDataOutput.setBackReferences(options.backReferences());
+		compressedDataOutput.setReferenceLimits(options.backReferenceWindowSize(), options.backReferenceTableSize());
+		compressedDataOutput.setArrayAnalysis(options.arrayAnalysis());
+		compressedDataOutput.setParallel(options.parallelEncoding());
+		return compressedDataOutput;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Encodes the sample data that are supplied by the specified source and writes the compressed data to the specified
+	 * output.  On return, the CRC value of the attributes is that of the sample data.
+	 *
+	 * @param  attributes
+	 *           the attributes of the file.
+	 * @param  options
+	 *           the options of the encoder.
+	 * @param  dataSource
+	 *           the source of the sample data.
+	 * @param  dataOutput
+	 *           the destination to which compressed data will be written.
+	 * @param  file
+	 *           the file to which the compressed data belong, or {@code null} if they are written to a stream.
+	 * @return the length (in bytes) of the compressed data.
+	 * @throws IOException
+	 *           if an error occurred when getting the sample data or writing the compressed data.
+	 */
+
+	public static long encodeData(
+		Attributes				attributes,
+		EncoderOptions			options,
+		CompressedDataSource	dataSource,
+		DataOutput				dataOutput,
+		File					file)
+		throws IOException
+	{
+		// Open compressed data output
+		OndaDataOutput compressedDataOutput = createDataOutput(attributes, options, dataOutput);
+
+		// Write compressed sample data
+		int bytesPerSample = attributes.getBytesPerSample();
+		Events.BlockBatchSampler sampler = new Events.BlockBatchSampler(Events.Operation.ENCODE, file,
+																		attributes.numChannels,
+																		attributes.bitsPerSample);
+		while (true)
+		{
+			IByteDataSource.ByteData data = null;
+			try
+			{
+				data = dataSource.getData();
+			}
+			catch (AppException e)
+			{
+				throw new IOException(e);
+			}
+			if (data == null)
+				break;
+
+			int numSamples = data.length / bytesPerSample;
+			if (attributes.isFloatingPoint())
+				compressedDataOutput.writeFloatBlock(data.data, data.offset, numSamples);
+			else
+				compressedDataOutput.writePcmBlock(data.data, data.offset, numSamples, bytesPerSample);
+			sampler.endBlock(numSamples / attributes.numChannels, compressedDataOutput.getOutLength());
+		}
+		sampler.end(compressedDataOutput.getOutLength());
+
+		// Close compressed data output
+		compressedDataOutput.close();
+
+		// Set CRC value in attributes
+		attributes.crcValue = dataSource.getCrc();
+
+		// Return size of data
+		return compressedDataOutput.getOutLength();
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decodes the compressed sample data that are read from the specified input, and writes the sample data to the
+	 * specified output stream.  The features of the input are set from the version of the file.
+	 *
+	 * @param  attributes
+	 *           the attributes of the file.
+	 * @param  compressedDataInput
+	 *           the input from which compressed data will be read.
+	 * @param  outStream
+	 *           the output stream to which the sample data will be written.
+	 * @param  file
+	 *           the file to which the compressed data belong, or {@code null} if they are read from a stream.
+	 * @param  parallelDecoding
+	 *           if {@code true}, the per-channel work of the decoder may be performed in parallel.
+	 * @throws AppException
+	 *           if the compressed data are malformed or an error occurred when writing the sample data.
+	 */
+
+	public static void decodeData(
+		Attributes				attributes,
+		OndaDataInput			compressedDataInput,
+		IByteDataOutputStream	outStream,
+		File					file,
+		boolean					parallelDecoding)
+		throws AppException
+	{
+		initDataInput(attributes, compressedDataInput);
+		compressedDataInput.setParallel(parallelDecoding);
+
+		// Read compressed data and write them to output stream
+		int bytesPerSample = attributes.getBytesPerSample();
+		long numSampleFrames = attributes.numSampleFrames;
+		byte[] outBuffer = new byte[attributes.blockLength * attributes.numChannels * bytesPerSample];
+		Events.BlockBatchSampler sampler = new Events.BlockBatchSampler(Events.Operation.DECODE, file,
+																		attributes.numChannels,
+																		attributes.bitsPerSample);
+		long sampleFrameIndex = 0;
+		while (sampleFrameIndex < numSampleFrames)
+		{
+			try
+			{
+				// Read sample data from input
+				int readNumSampleFrames = (int)Math.min(numSampleFrames - sampleFrameIndex,
+												        attributes.blockLength);
+				int readLength = readNumSampleFrames * attributes.numChannels;
+				if (attributes.isFloatingPoint())
+					compressedDataInput.readFloatBlock(outBuffer, 0, readLength);
+				else
+					compressedDataInput.readPcmBlock(outBuffer, 0, readLength, bytesPerSample);
+				sampleFrameIndex += readNumSampleFrames;
+				sampler.endBlock(readNumSampleFrames, compressedDataInput.getInLength());
+
+				// Write sample data to output stream
+				outStream.write(outBuffer, 0, readLength * bytesPerSample);
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.MALFORMED_FILE, file, e);
+			}
+		}
+		sampler.end(compressedDataInput.getInLength());
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Sets the features of the specified input of compressed data from the version of a file.
+	 *
+	 * @param attributes
+	 *          the attributes of the file.
+	 * @param compressedDataInput
+	 *          the input from which the compressed data of the file will be read.
+	 */
+
+	public static void initDataInput(
+		Attributes		attributes,
+		OndaDataInput	compressedDataInput)
+	{
+		compressedDataInput.setChannelDecorrelation(attributes.version >= CHANNEL_DECORRELATION_VERSION);
+		compressedDataInput.setPredictorSelection(attributes.version >= PREDICTOR_SELECTION_VERSION);
+		compressedDataInput.setRiceCoding(attributes.version >= RICE_CODING_VERSION);
+		compressedDataInput.setVariableBlockLength(attributes.version >= VARIABLE_BLOCK_LENGTH_VERSION);
+		compressedDataInput.setConstantChannels(attributes.version >= CONSTANT_CHANNEL_VERSION);
+		compressedDataInput.setWastedBits(attributes.version >= WASTED_BITS_VERSION);
+		compressedDataInput.setBlockContinuity(attributes.version >= BLOCK_CONTINUITY_VERSION);
+		compressedDataInput.setBackReferences(attributes.version >= BACK_REFERENCE_VERSION);
+	}
+
+	//------------------------------------------------------------------
+
 	private static void throwAppException(NlfException exception)
 		throws AppException
 	{
@@ -664,6 +1036,13 @@ class OndaFile
 
 	//------------------------------------------------------------------
 
+	public long getDataSize()
+	{
+		return dataSize;
+	}
+
+	//------------------------------------------------------------------
+
 	public Attributes readAttributes()
 		throws AppException
 	{
@@ -691,34 +1070,48 @@ class OndaFile
 
 	//------------------------------------------------------------------
 
-	public Attributes readData(IByteDataOutputStream outStream)
+	public Attributes readData(IByteDataOutputStream outStream,
+							   boolean               parallelDecoding)
 		throws AppException
 	{
+		this.parallelDecoding = parallelDecoding;
 		read(READ_ATTRIBUTES | READ_DATA, outStream);
 		return attributes;
 	}
 
 	//------------------------------------------------------------------
 
-////////////////////////////////////////////////////////////////////////
-//  Instance methods
-////////////////////////////////////////////////////////////////////////
-
-	public long getDataSize()
+	public int readFrames(long   startFrame,
+						  int    numFrames,
+						  byte[] buffer,
+						  int    offset)
+		throws AppException
 	{
-		return dataSize;
+		if (frameReader == null)
+		{
+			read(READ_ATTRIBUTES | READ_DATA_OFFSET, null);
+			frameReader = new FrameReader(file, attributes, dataOffset, dataSize, dataBlockSizes);
+			dataBlockSizes = null;
+		}
+		return frameReader.readFrames(startFrame, numFrames, buffer, offset);
 	}
 
 	//------------------------------------------------------------------
 
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
 	public void write(Attributes           attributes,
-					  byte[]               privateData,
+					  PrivateData          privateData,
+					  EncoderOptions       encoderOptions,
 					  CompressedDataSource dataSource)
 		throws AppException
 	{
 		// Set instance variables
 		this.attributes = attributes;
-		this.privateData = privateData;
+		this.privateData = null;
+		this.encoderOptions = encoderOptions;
 
 		// Write file
 		try
@@ -737,7 +1130,7 @@ class OndaFile
 			if (privateData != null)
 			{
 				Chunk privateDataChunk = document.createChunk(PRIVATE_DATA_ID);
-				privateDataChunk.setWriter(new PrivateDataWriter());
+				privateDataChunk.setWriter(new PrivateDataWriter(privateData));
 				rootList.appendChunk(privateDataChunk);
 			}
 
@@ -826,6 +1219,13 @@ class OndaFile
 							readPrivateData(chunk);
 					}
 
+					// Read data block size chunk
+					if (id.equals(DATA_BLOCK_SIZE_ID))
+					{
+						if ((readKind & READ_DATA_OFFSET) != 0)
+							readDataBlockSizes(chunk);
+					}
+
 					// Read data chunk
 					if (id.equals(DATA_ID))
 					{
@@ -837,6 +1237,9 @@ class OndaFile
 
 						if ((readKind & READ_DATA) != 0)
 							readData(chunk, outStream);
+
+						if ((readKind & READ_DATA_OFFSET) != 0)
+							readDataOffset(chunk);
 					}
 
 					// Add chunk ID to list
@@ -880,17 +1283,17 @@ class OndaFile
 		// Test version
 		if (chunk.getSize() < Attributes.VERSION_SIZE)
 			throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
-		byte[] buffer = new byte[Attributes.SIZE];
+		byte[] buffer = new byte[Attributes.MAX_SIZE];
 		chunk.getReader().getDataInput().readFully(buffer, 0, Attributes.VERSION_SIZE);
 		int version = NumberCodec.bytesToIntBE(buffer, 0, Attributes.VERSION_SIZE);
 		if ((version < MIN_SUPPORTED_VERSION) || (version > MAX_SUPPORTED_VERSION))
 			throw new FileException(ErrorId.UNSUPPORTED_VERSION, file, Integer.toString(version));
 
 		// Parse attributes
-		if (chunk.getSize() != Attributes.SIZE)
+		int size = Attributes.getSize(version);
+		if (chunk.getSize() != size)
 			throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
-		chunk.getReader().getDataInput().readFully(buffer, Attributes.VERSION_SIZE,
-												   Attributes.SIZE - Attributes.VERSION_SIZE);
+		chunk.getReader().getDataInput().readFully(buffer, Attributes.VERSION_SIZE, size - Attributes.VERSION_SIZE);
 		try
 		{
 			attributes = new Attributes(buffer, 0);
@@ -929,46 +1332,66 @@ class OndaFile
 						  IByteDataOutputStream outStream)
 		throws AppException
 	{
-		// Open compressed data input
-		OndaDataInput compressedDataInput =
-										new OndaDataInput(chunk.getSize(), attributes.numChannels,
-														  attributes.bitsPerSample, attributes.keyLength,
-														  chunk.getReader().getDataInput());
+		// Set size of compressed data
+		dataSize = chunk.getSize();
+
+		// Decode compressed data and write them to output stream
+		OndaDataInput compressedDataInput = new OndaDataInput(chunk.getSize(), attributes.numChannels,
+															  attributes.getValueLength(), attributes.keyLength,
+															  chunk.getReader().getDataInput());
+		decodeData(attributes, compressedDataInput, outStream, file, parallelDecoding);
+	}
 
-		// Read compressed data and write them to output stream
-		int bytesPerSample = attributes.getBytesPerSample();
-		int numSampleFrames = (int)attributes.numSampleFrames;
-		int[] inBuffer = new int[attributes.blockLength * attributes.numChannels];
-		byte[] outBuffer = new byte[inBuffer.length * bytesPerSample];
-		int sampleFrameIndex = 0;
-		while (sampleFrameIndex < numSampleFrames)
-		{
-			try
-			{
-				// Read sample data from input
-				int readNumSampleFrames = Math.min(numSampleFrames - sampleFrameIndex,
-												   attributes.blockLength);
-				int readLength = readNumSampleFrames * attributes.numChannels;
-				compressedDataInput.readBlock(inBuffer, 0, readLength);
-				sampleFrameIndex += readNumSampleFrames;
+	//------------------------------------------------------------------
 
-				// Write sample data to output stream
-				int offset = 0;
-				for (int i = 0; i < readLength; i++)
-				{
-					int sampleValue = inBuffer[i];
-					for (int j = 0; j < bytesPerSample; j++)
-					{
-						outBuffer[offset++] = (byte)sampleValue;
-						sampleValue >>= 8;
-					}
-				}
-				outStream.write(outBuffer, 0, offset);
-			}
-			catch (IOException e)
+	private void readDataOffset(Chunk chunk)
+		throws AppException, IOException
+	{
+		Chunk.IReader reader = chunk.getReader();
+		if (!(reader.getDataInput() instanceof RandomAccessFile))
+			throw new FileException(ErrorId.DATA_NOT_RANDOMLY_ACCESSIBLE, file);
+		reader.reset();
+		dataSize = chunk.getSize();
+		dataOffset = ((RandomAccessFile)reader.getDataInput()).getFilePointer();
+	}
+
+	//------------------------------------------------------------------
+
+	private void readDataBlockSizes(Chunk chunk)
+		throws AppException, IOException
+	{
+		// Read base size and element size
+		dataBlockSizes = null;
+		long size = chunk.getSize();
+		if (size < DATA_BLOCK_SIZE_HEADER_SIZE)
+			throw new FileException(ErrorId.INVALID_DATA_BLOCK_SIZE_CHUNK, file);
+		DataInput dataInput = chunk.getReader().getDataInput();
+		int baseSize = dataInput.readUnsignedShort();
+		int elementSize = dataInput.readUnsignedShort();
+		size -= DATA_BLOCK_SIZE_HEADER_SIZE;
+		if ((elementSize < 1) || (elementSize > MAX_DATA_BLOCK_SIZE_ELEMENT_SIZE) || (size % elementSize != 0))
+			throw new FileException(ErrorId.INVALID_DATA_BLOCK_SIZE_CHUNK, file);
+		if (size / elementSize > Integer.MAX_VALUE)
+			throw new FileException(ErrorId.NOT_ENOUGH_MEMORY, file);
+
+		// Read differences between block sizes and base size
+		try
+		{
+			int[] blockSizes = new int[(int)(size / elementSize)];
+			byte[] buffer = new byte[elementSize];
+			int shift = Integer.SIZE - elementSize * Byte.SIZE;
+			for (int i = 0; i < blockSizes.length; i++)
 			{
-				throw new FileException(ErrorId.MALFORMED_FILE, file, e);
+				dataInput.readFully(buffer);
+				blockSizes[i] = baseSize + (NumberCodec.bytesToUIntBE(buffer, 0, elementSize) << shift >> shift);
+				if (blockSizes[i] < 0)
+					throw new FileException(ErrorId.INVALID_DATA_BLOCK_SIZE_CHUNK, file);
 			}
+			dataBlockSizes = blockSizes;
+		}
+		catch (OutOfMemoryError e)
+		{
+			throw new FileException(ErrorId.NOT_ENOUGH_MEMORY, file);
 		}
 	}
 
@@ -978,10 +1401,15 @@ class OndaFile
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
-	private	File		file;
-	private	long		dataSize;
-	private	Attributes	attributes;
-	private	byte[]		privateData;
+	private	File			file;
+	private	long			dataSize;
+	private	Attributes		attributes;
+	private	byte[]			privateData;
+	private	EncoderOptions	encoderOptions;
+	private	boolean			parallelDecoding;
+	private	long			dataOffset;
+	private	int[]			dataBlockSizes;
+	private	FrameReader		frameReader;
 
 }
 
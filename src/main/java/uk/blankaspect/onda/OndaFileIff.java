@@ -18,6 +18,7 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
+import java.io.DataInput;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -68,6 +69,7 @@ class OndaFileIff
 	private static final	int	READ_ATTRIBUTES		= 1 << 0;
 	private static final	int	READ_PRIVATE_DATA	= 1 << 1;
 	private static final	int	READ_DATA			= 1 << 2;
+	private static final	int	READ_DATA_OFFSET	= 1 << 3;
 
 ////////////////////////////////////////////////////////////////////////
 //  Enumerated types
@@ -127,6 +129,9 @@ class OndaFileIff
 		MULTIPLE_DATA_CHUNKS
 		("The file has more than one data chunk."),
 
+		DATA_NOT_RANDOMLY_ACCESSIBLE
+		("The data chunk cannot be read randomly."),
+
 		UNSUPPORTED_VERSION
 		("The version of the file (%1) is not supported by this program."),
 
@@ -202,18 +207,18 @@ class OndaFileIff
 	//  Instance methods : FormFile.IChunkReader interface
 	////////////////////////////////////////////////////////////////////
 
-		public void beginReading(RandomAccessFile raFile,
-								 IffId            typeId,
-								 int              size)
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
 		{
 			ids.clear();
 		}
 
 		//--------------------------------------------------------------
 
-		public void read(RandomAccessFile raFile,
-						 IffId            id,
-						 int              size)
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
 			throws AppException, IOException
 		{
 			if (id.equals(ATTRIBUTES_ID))
@@ -222,7 +227,7 @@ class OndaFileIff
 					throw new FileException(ErrorId.MULTIPLE_ATTRIBUTES_CHUNKS, file);
 
 				if ((readKind & READ_ATTRIBUTES) != 0)
-					readAttributes(raFile, size);
+					readAttributes(dataInput, size);
 				ids.add(id);
 			}
 
@@ -235,7 +240,7 @@ class OndaFileIff
 					throw new FileException(ErrorId.MULTIPLE_PRIVATE_CHUNKS, file);
 
 				if ((readKind & READ_PRIVATE_DATA) != 0)
-					readPrivateData(raFile, size);
+					readPrivateData(dataInput, size);
 				ids.add(id);
 			}
 
@@ -247,15 +252,22 @@ class OndaFileIff
 				if (ids.contains(DATA_ID))
 					throw new FileException(ErrorId.MULTIPLE_DATA_CHUNKS, file);
 
+				if ((readKind & READ_DATA_OFFSET) != 0)
+				{
+					if (!(dataInput instanceof RandomAccessFile))
+						throw new FileException(ErrorId.DATA_NOT_RANDOMLY_ACCESSIBLE, file);
+					dataSize = size;
+					dataOffset = ((RandomAccessFile)dataInput).getFilePointer();
+				}
 				if ((readKind & READ_DATA) != 0)
-					readData(raFile, size);
+					readData(dataInput, size);
 				ids.add(id);
 			}
 		}
 
 		//--------------------------------------------------------------
 
-		public void endReading(RandomAccessFile raFile)
+		public void endReading(DataInput dataInput)
 			throws AppException
 		{
 			if (!ids.contains(ATTRIBUTES_ID))
@@ -270,24 +282,25 @@ class OndaFileIff
 	//  Instance methods
 	////////////////////////////////////////////////////////////////////
 
-		private void readAttributes(RandomAccessFile raFile,
-									int              size)
+		private void readAttributes(DataInput dataInput,
+									long      size)
 			throws AppException, IOException
 		{
 			// Test version
 			if (size < OndaFile.Attributes.VERSION_SIZE)
 				throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
-			byte[] buffer = new byte[OndaFile.Attributes.SIZE];
-			raFile.readFully(buffer, 0, OndaFile.Attributes.VERSION_SIZE);
+			byte[] buffer = new byte[OndaFile.Attributes.MAX_SIZE];
+			dataInput.readFully(buffer, 0, OndaFile.Attributes.VERSION_SIZE);
 			int version = NumberCodec.bytesToIntBE(buffer, 0, OndaFile.Attributes.VERSION_SIZE);
 			if ((version < OndaFile.MIN_SUPPORTED_VERSION) || (version > OndaFile.MAX_SUPPORTED_VERSION))
 				throw new FileException(ErrorId.UNSUPPORTED_VERSION, file, Integer.toString(version));
 
 			// Read attributes
-			if (size != OndaFile.Attributes.SIZE)
+			int attributesSize = OndaFile.Attributes.getSize(version);
+			if (size != attributesSize)
 				throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
-			raFile.readFully(buffer, OndaFile.Attributes.VERSION_SIZE,
-							 OndaFile.Attributes.SIZE - OndaFile.Attributes.VERSION_SIZE);
+			dataInput.readFully(buffer, OndaFile.Attributes.VERSION_SIZE,
+							 attributesSize - OndaFile.Attributes.VERSION_SIZE);
 			try
 			{
 				attributes = new OndaFile.Attributes(buffer, 0);
@@ -300,14 +313,16 @@ class OndaFileIff
 
 		//--------------------------------------------------------------
 
-		private void readPrivateData(RandomAccessFile raFile,
-									 int              size)
+		private void readPrivateData(DataInput dataInput,
+									 long      size)
 			throws AppException, IOException
 		{
+			if (size > Integer.MAX_VALUE)
+				throw new FileException(ErrorId.NOT_ENOUGH_MEMORY, file);
 			try
 			{
-				byte[] buffer = new byte[size];
-				raFile.readFully(buffer);
+				byte[] buffer = new byte[(int)size];
+				dataInput.readFully(buffer);
 				privateData = buffer;
 			}
 			catch (OutOfMemoryError e)
@@ -318,50 +333,61 @@ class OndaFileIff
 
 		//--------------------------------------------------------------
 
-		private void readData(RandomAccessFile raFile,
-							  int              size)
+		private void readData(DataInput dataInput,
+							  long      size)
 			throws AppException, IOException
 		{
+			// Set size of compressed data
+			dataSize = size;
+
 			// Open compressed data input
 			OndaDataInput compressedDataInput = new OndaDataInput(size, attributes.numChannels,
-																  attributes.bitsPerSample,
-																  attributes.keyLength, raFile);
+																  attributes.getValueLength(),
+																  attributes.keyLength, dataInput);
+			compressedDataInput.setChannelDecorrelation(
+									attributes.version >= OndaFile.CHANNEL_DECORRELATION_VERSION);
+			compressedDataInput.setPredictorSelection(attributes.version >= OndaFile.PREDICTOR_SELECTION_VERSION);
+			compressedDataInput.setRiceCoding(attributes.version >= OndaFile.RICE_CODING_VERSION);
+			compressedDataInput.setVariableBlockLength(
+									attributes.version >= OndaFile.VARIABLE_BLOCK_LENGTH_VERSION);
+			compressedDataInput.setConstantChannels(attributes.version >= OndaFile.CONSTANT_CHANNEL_VERSION);
+			compressedDataInput.setWastedBits(attributes.version >= OndaFile.WASTED_BITS_VERSION);
+			compressedDataInput.setBlockContinuity(attributes.version >= OndaFile.BLOCK_CONTINUITY_VERSION);
+			compressedDataInput.setBackReferences(attributes.version >= OndaFile.BACK_REFERENCE_VERSION);
+			compressedDataInput.setParallel(parallelDecoding);
 
 			// Read compressed data and write them to output stream
 			int bytesPerSample = attributes.getBytesPerSample();
-			int numSampleFrames = (int)attributes.numSampleFrames;
-			int[] inBuffer = new int[attributes.blockLength * attributes.numChannels];
-			byte[] outBuffer = new byte[inBuffer.length * bytesPerSample];
-			int sampleFrameIndex = 0;
+			long numSampleFrames = attributes.numSampleFrames;
+			byte[] outBuffer = new byte[attributes.blockLength * attributes.numChannels * bytesPerSample];
+			Events.BlockBatchSampler sampler = new Events.BlockBatchSampler(Events.Operation.DECODE, file,
+																			attributes.numChannels,
+																			attributes.bitsPerSample);
+			long sampleFrameIndex = 0;
 			while (sampleFrameIndex < numSampleFrames)
 			{
 				try
 				{
 					// Read sample data from input
-					int readNumSampleFrames = Math.min(numSampleFrames - sampleFrameIndex,
-													   attributes.blockLength);
+					int readNumSampleFrames = (int)Math.min(numSampleFrames - sampleFrameIndex,
+													        attributes.blockLength);
 					int readLength = readNumSampleFrames * attributes.numChannels;
-					compressedDataInput.readBlock(inBuffer, 0, readLength);
+					if (attributes.isFloatingPoint())
+						compressedDataInput.readFloatBlock(outBuffer, 0, readLength);
+					else
+						compressedDataInput.readPcmBlock(outBuffer, 0, readLength, bytesPerSample);
 					sampleFrameIndex += readNumSampleFrames;
+					sampler.endBlock(readNumSampleFrames, compressedDataInput.getInLength());
 
 					// Write sample data to output stream
-					int offset = 0;
-					for (int i = 0; i < readLength; i++)
-					{
-						int sampleValue = inBuffer[i];
-						for (int j = 0; j < bytesPerSample; j++)
-						{
-							outBuffer[offset++] = (byte)sampleValue;
-							sampleValue >>= 8;
-						}
-					}
-					outStream.write(outBuffer, 0, offset);
+					outStream.write(outBuffer, 0, readLength * bytesPerSample);
 				}
 				catch (IOException e)
 				{
 					throw new FileException(ErrorId.MALFORMED_FILE, file);
 				}
 			}
+			sampler.end(compressedDataInput.getInLength());
 		}
 
 		//--------------------------------------------------------------
@@ -438,7 +464,7 @@ class OndaFileIff
 					raFile.readFully(buffer);
 
 					if (Arrays.equals(buffer, Document.FILE_ID))
-						fileKind = OndaFileReader.Kind.NLF;
+						fileKind = OndaStream.isStream(raFile) ? OndaFileReader.Kind.STREAM : OndaFileReader.Kind.NLF;
 					else
 					{
 						try
@@ -505,6 +531,13 @@ class OndaFileIff
 
 	//------------------------------------------------------------------
 
+	public long getDataSize()
+	{
+		return dataSize;
+	}
+
+	//------------------------------------------------------------------
+
 	public OndaFile.Attributes readAttributes()
 		throws AppException
 	{
@@ -535,9 +568,11 @@ class OndaFileIff
 
 	//------------------------------------------------------------------
 
-	public OndaFile.Attributes readData(IByteDataOutputStream outStream)
+	public OndaFile.Attributes readData(IByteDataOutputStream outStream,
+										boolean               parallelDecoding)
 		throws AppException
 	{
+		this.parallelDecoding = parallelDecoding;
 		ChunkReader reader = new ChunkReader(READ_ATTRIBUTES | READ_DATA, outStream);
 		new IffFormFile(file).read(reader);
 		return attributes;
@@ -545,13 +580,33 @@ class OndaFileIff
 
 	//------------------------------------------------------------------
 
+	public int readFrames(long   startFrame,
+						  int    numFrames,
+						  byte[] buffer,
+						  int    offset)
+		throws AppException
+	{
+		if (frameReader == null)
+		{
+			new IffFormFile(file).read(new ChunkReader(READ_ATTRIBUTES | READ_DATA_OFFSET, null));
+			frameReader = new FrameReader(file, attributes, dataOffset, dataSize, null);
+		}
+		return frameReader.readFrames(startFrame, numFrames, buffer, offset);
+	}
+
+	//------------------------------------------------------------------
+
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
 	private	File				file;
+	private	long				dataSize;
 	private	OndaFile.Attributes	attributes;
 	private	byte[]				privateData;
+	private	long				dataOffset;
+	private	boolean				parallelDecoding;
+	private	FrameReader			frameReader;
 
 }
 
@@ -64,6 +64,15 @@ interface OndaFileReader
 			{
 				return new OndaFile(file);
 			}
+		},
+
+		STREAM
+		{
+			@Override
+			public OndaFileReader createReader(File file)
+			{
+				return new OndaStream(file);
+			}
 		};
 
 	////////////////////////////////////////////////////////////////////
@@ -96,6 +105,10 @@ interface OndaFileReader
 
 	//------------------------------------------------------------------
 
+	long getDataSize();
+
+	//------------------------------------------------------------------
+
 	OndaFile.Attributes readAttributes()
 		throws AppException;
 
@@ -111,7 +124,16 @@ interface OndaFileReader
 
 	//------------------------------------------------------------------
 
-	OndaFile.Attributes readData(IByteDataOutputStream outStream)
+	OndaFile.Attributes readData(IByteDataOutputStream outStream,
+								 boolean               parallelDecoding)
+		throws AppException;
+
+	//------------------------------------------------------------------
+
+	int readFrames(long   startFrame,
+				   int    numFrames,
+				   byte[] buffer,
+				   int    offset)
 		throws AppException;
 
 	//------------------------------------------------------------------
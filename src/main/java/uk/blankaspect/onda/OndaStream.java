@@ -0,0 +1,1160 @@
+/*====================================================================*\
+
+OndaStream.java
+
+Onda lossless audio compression stream class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.nio.channels.Channels;
+
+import java.util.Arrays;
+
+import uk.blankaspect.common.bytedata.IByteDataOutputStream;
+
+import uk.blankaspect.common.exception.AppException;
+import uk.blankaspect.common.exception.FileException;
+
+import uk.blankaspect.common.nlf.Chunk;
+import uk.blankaspect.common.nlf.ChunkList;
+import uk.blankaspect.common.nlf.Document;
+import uk.blankaspect.common.nlf.Id;
+import uk.blankaspect.common.nlf.NlfUtils;
+
+//----------------------------------------------------------------------
+
+
+// ONDA LOSSLESS AUDIO COMPRESSION STREAM CLASS
+
+
+/**
+ * This class implements the stream profile of the Onda file format, which can be written to and read from a stream
+ * that is not seekable, such as a pipe, in a single pass and with constant memory.
+ * <p>
+ * A stream is a Nested-List File whose root list and data chunk have an unknown size, which is denoted by a size of
+ * &minus;1.  The root list contains an attributes chunk, whose CRC value is zero, an optional private data chunk, the
+ * data chunk and a trailer chunk.  The compressed data in the data chunk are divided into pieces, each of which is
+ * preceded by its length as a 4-byte integer, and the last piece is followed by a length of zero.  The trailer chunk
+ * contains the size of the compressed data as an 8-byte integer and the CRC value of the sample data as a 4-byte
+ * integer.
+ * </p>
+ * <p>
+ * Because the sizes of the root list and data chunk are invalid in an ordinary Nested-List File, a stream that is
+ * saved to a file is rejected by {@link OndaFile}, and must be read with this class.  The reader of this class also
+ * accepts an ordinary Onda file whose chunks are in the order in which they are written by {@link OndaFile}.
+ * </p>
+ */
+
+class OndaStream
+	implements OndaFileReader
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The size of a chunk or list whose size is unknown. */
+	public static final		long	UNKNOWN_SIZE	= -1;
+
+	/** The maximum length (in bytes) of a piece of the compressed data that is written to a stream. */
+	public static final		int		MAX_PIECE_LENGTH	= 1 << 16;
+
+	private static final	Id		TRAILER_ID	= new Id("trailer");
+
+	private static final	byte[]	NLF_VERSION		= { '0', '0' };
+	private static final	int		BYTE_ORDER_MASK	= 1 << 0;
+
+	private static final	int		NLF_HEADER_SIZE			= Document.FILE_ID.length + NLF_VERSION.length + 2;
+	private static final	int		ROOT_LIST_SIZE_OFFSET	= NLF_HEADER_SIZE + ChunkList.LIST_ID.getFieldSize();
+
+	private static final	int		DATA_SIZE_SIZE	= 8;
+	private static final	int		CRC_SIZE		= 4;
+	private static final	int		TRAILER_SIZE	= DATA_SIZE_SIZE + CRC_SIZE;
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ERROR IDENTIFIERS
+
+
+	private enum ErrorId
+		implements AppException.IId
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		FAILED_TO_OPEN_FILE
+		("Failed to open the file."),
+
+		FAILED_TO_CLOSE_FILE
+		("Failed to close the file."),
+
+		ERROR_READING_STREAM
+		("An error occurred when reading the Onda stream."),
+
+		ERROR_WRITING_STREAM
+		("An error occurred when writing the Onda stream."),
+
+		MALFORMED_STREAM
+		("The Onda stream is malformed."),
+
+		NOT_AN_ONDA_STREAM
+		("The input is not an Onda stream or Onda file."),
+
+		UNSUPPORTED_NLF_VERSION
+		("The version of the Nested-List File format of the stream is not supported."),
+
+		NO_ATTRIBUTES_CHUNK_BEFORE_DATA_CHUNK
+		("There is no attributes chunk before the data chunk."),
+
+		MULTIPLE_ATTRIBUTES_CHUNKS
+		("The stream has more than one attributes chunk."),
+
+		INVALID_ATTRIBUTES_CHUNK
+		("The attributes chunk is not valid."),
+
+		MULTIPLE_PRIVATE_CHUNKS
+		("The stream has more than one private data chunk."),
+
+		PRIVATE_DATA_ARE_TOO_LARGE
+		("The private data in the stream are too large for this program."),
+
+		NO_DATA_CHUNK
+		("The stream does not have a data chunk."),
+
+		NO_TRAILER_CHUNK
+		("The data chunk of the stream is not followed by a trailer chunk."),
+
+		INCONSISTENT_DATA_SIZE
+		("The size of the compressed data does not match the size in the trailer chunk."),
+
+		RANDOM_ACCESS_NOT_SUPPORTED
+		("The sample data of a stream that is read from an input stream cannot be read randomly.");
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private ErrorId(String message)
+		{
+			this.message = message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : AppException.IId interface
+	////////////////////////////////////////////////////////////////////
+
+		public String getMessage()
+		{
+			return message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	message;
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// PIECE INPUT STREAM CLASS
+
+
+	/**
+	 * This class implements an input stream of the compressed data in the pieces of a data chunk.  The end of the
+	 * stream is the piece of zero length that follows the last piece.
+	 */
+
+	private static class PieceInputStream
+		extends InputStream
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private PieceInputStream(
+			DataInput	dataInput,
+			boolean		littleEndian)
+		{
+			this.dataInput = dataInput;
+			this.littleEndian = littleEndian;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			if (!startPiece())
+				return -1;
+			--pieceLength;
+			++length;
+			return dataInput.readUnsignedByte();
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public int read(
+			byte[]	buffer,
+			int		offset,
+			int		length)
+			throws IOException
+		{
+			if (length == 0)
+				return 0;
+			if (!startPiece())
+				return -1;
+			int readLength = Math.min(length, pieceLength);
+			dataInput.readFully(buffer, offset, readLength);
+			pieceLength -= readLength;
+			this.length += readLength;
+			return readLength;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		/**
+		 * Skips any data that have not been read, up to and including the piece of zero length.
+		 *
+		 * @throws IOException
+		 *           if an error occurred when reading the input.
+		 */
+
+		private void skipToEnd()
+			throws IOException
+		{
+			while (startPiece())
+			{
+				dataInput.skipBytes(pieceLength);
+				length += pieceLength;
+				pieceLength = 0;
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Reads the length of the next piece if no data remain in the current piece.
+		 *
+		 * @return {@code true} if data remain in the current piece; {@code false} if the end of the compressed data
+		 *         has been reached.
+		 * @throws IOException
+		 *           if an error occurred when reading the input or the length of a piece is negative.
+		 */
+
+		private boolean startPiece()
+			throws IOException
+		{
+			if (!ended && (pieceLength == 0))
+			{
+				pieceLength = dataInput.readInt();
+				if (littleEndian)
+					pieceLength = Integer.reverseBytes(pieceLength);
+				if (pieceLength < 0)
+					throw new EOFException();
+				ended = (pieceLength == 0);
+			}
+			return !ended;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	DataInput	dataInput;
+		private	boolean		littleEndian;
+		private	int			pieceLength;
+		private	boolean		ended;
+		private	long		length;
+
+	}
+
+	//==================================================================
+
+
+	// PIECE OUTPUT STREAM CLASS
+
+
+	/**
+	 * This class implements an output stream that divides compressed data into pieces of a data chunk.  Closing the
+	 * stream writes any buffered data and a piece of zero length, but does not close the underlying output.
+	 */
+
+	private static class PieceOutputStream
+		extends OutputStream
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private PieceOutputStream(
+			DataOutput	dataOutput)
+		{
+			this.dataOutput = dataOutput;
+			buffer = new byte[MAX_PIECE_LENGTH];
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : overriding methods
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public void write(
+			int	b)
+			throws IOException
+		{
+			if (bufferLength == buffer.length)
+				writePiece();
+			buffer[bufferLength++] = (byte)b;
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void write(
+			byte[]	data,
+			int		offset,
+			int		length)
+			throws IOException
+		{
+			while (length > 0)
+			{
+				if (bufferLength == buffer.length)
+					writePiece();
+				int copyLength = Math.min(length, buffer.length - bufferLength);
+				System.arraycopy(data, offset, buffer, bufferLength, copyLength);
+				bufferLength += copyLength;
+				offset += copyLength;
+				length -= copyLength;
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			if (bufferLength > 0)
+				writePiece();
+			dataOutput.writeInt(0);
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		private void writePiece()
+			throws IOException
+		{
+			dataOutput.writeInt(bufferLength);
+			dataOutput.write(buffer, 0, bufferLength);
+			bufferLength = 0;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	DataOutput	dataOutput;
+		private	byte[]		buffer;
+		private	int			bufferLength;
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a reader of a stream that has been saved to the specified file.  The file is reopened by each read
+	 * method.
+	 *
+	 * @param file
+	 *          the file.
+	 */
+
+	public OndaStream(
+		File	file)
+	{
+		this.file = file;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Creates a reader of the specified input stream, which is read in a single pass.  The attributes and private data
+	 * are read by the first read method that is called; the compressed data may be read only once, after which the
+	 * input stream is positioned after the trailer chunk.  The input stream is not closed by this object.
+	 *
+	 * @param inStream
+	 *          the input stream.
+	 */
+
+	public OndaStream(
+		InputStream	inStream)
+	{
+		this.inStream = inStream;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Creates a writer of a stream to the specified output stream.  The output stream is flushed but not closed by
+	 * this object.
+	 *
+	 * @param outStream
+	 *          the output stream.
+	 */
+
+	public OndaStream(
+		OutputStream	outStream)
+	{
+		this.outStream = outStream;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns {@code true} if the specified Nested-List File has a root list of unknown size, which denotes an Onda
+	 * stream that has been saved to a file.
+	 *
+	 * @param  raFile
+	 *           the random-access file of the Nested-List File.
+	 * @return {@code true} if the root list of {@code raFile} has an unknown size.
+	 * @throws IOException
+	 *           if an error occurred when reading the file.
+	 */
+
+	public static boolean isStream(
+		RandomAccessFile	raFile)
+		throws IOException
+	{
+		if (raFile.length() < ROOT_LIST_SIZE_OFFSET + Chunk.SIZE_SIZE)
+			return false;
+		raFile.seek(ROOT_LIST_SIZE_OFFSET);
+		return (raFile.readLong() == UNKNOWN_SIZE);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : OndaFileReader interface
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public byte[] getPrivateData()
+	{
+		return privateData;
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public long getDataSize()
+	{
+		return dataSize;
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public OndaFile.Attributes readAttributes()
+		throws AppException
+	{
+		read(null);
+		return attributes;
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public PrivateData readPrivateData()
+		throws AppException
+	{
+		read(null);
+		return (privateData == null) ? null : new PrivateData(privateData);
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public OndaFile.Attributes readAttributesAndPrivateData()
+		throws AppException
+	{
+		read(null);
+		return attributes;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * On return, the CRC value of the attributes is that of the trailer chunk.
+	 * </p>
+	 *
+	 * @throws IllegalStateException
+	 *           if the compressed data of a single-pass input stream have already been read.
+	 */
+
+	@Override
+	public OndaFile.Attributes readData(
+		IByteDataOutputStream	outStream,
+		boolean					parallelDecoding)
+		throws AppException
+	{
+		this.parallelDecoding = parallelDecoding;
+		read(outStream);
+		return attributes;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Random access is supported only for a stream that has been saved to a file.  On the first call, the headers of
+	 * the pieces of the compressed data are scanned in a single pass to locate the data of each piece in the file.
+	 * </p>
+	 *
+	 * @throws AppException
+	 *           if this object reads a single-pass input stream.
+	 */
+
+	@Override
+	public int readFrames(
+		long	startFrame,
+		int		numFrames,
+		byte[]	buffer,
+		int		offset)
+		throws AppException
+	{
+		if (file == null)
+			throw new AppException(ErrorId.RANDOM_ACCESS_NOT_SUPPORTED);
+		if (frameReader == null)
+			frameReader = createFrameReader();
+		return frameReader.readFrames(startFrame, numFrames, buffer, offset);
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Writes a stream with the specified attributes, private data and compressed data to the output stream of this
+	 * object.  On return, the CRC value of the attributes is that of the sample data.
+	 *
+	 * @param  attributes
+	 *           the attributes of the stream.
+	 * @param  privateData
+	 *           the private data of the stream, or {@code null} if there are no private data.
+	 * @param  encoderOptions
+	 *           the options of the encoder of the sample data.
+	 * @param  dataSource
+	 *           the source of the sample data.
+	 * @throws AppException
+	 *           if an error occurred when getting the sample data or writing the stream.
+	 */
+
+	public void write(
+		OndaFile.Attributes				attributes,
+		PrivateData						privateData,
+		OndaFile.EncoderOptions			encoderOptions,
+		OndaFile.CompressedDataSource	dataSource)
+		throws AppException
+	{
+		// Set instance variables
+		this.attributes = attributes;
+		this.privateData = null;
+
+		// Write stream
+		try
+		{
+			DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(outStream));
+
+			// Write NLF header and header of root list
+			dataOutput.write(Document.FILE_ID);
+			dataOutput.write(NLF_VERSION);
+			dataOutput.writeByte(0);
+			dataOutput.writeByte(0);
+			writeChunkHeader(dataOutput, ChunkList.LIST_ID, UNKNOWN_SIZE);
+			OndaFile.ONDA_ID.write(dataOutput);
+			byte[] namespaceName = NlfUtils.stringToUtf8(OndaFile.NAMESPACE_NAME);
+			dataOutput.writeShort(namespaceName.length);
+			dataOutput.write(namespaceName);
+
+			// Write attributes chunk; the CRC value of the sample data is not yet known
+			byte[] attributesData = attributes.getBytes();
+			writeChunkHeader(dataOutput, OndaFile.ATTRIBUTES_ID, attributesData.length);
+			dataOutput.write(attributesData);
+
+			// Write private data chunk
+			if (privateData != null)
+			{
+				writeChunkHeader(dataOutput, OndaFile.PRIVATE_DATA_ID, privateData.getCompressedDataLength());
+				privateData.writeCompressedData(dataOutput);
+			}
+
+			// Write data chunk
+			writeChunkHeader(dataOutput, OndaFile.DATA_ID, UNKNOWN_SIZE);
+			PieceOutputStream pieceOutStream = new PieceOutputStream(dataOutput);
+			dataSize = OndaFile.encodeData(attributes, encoderOptions, dataSource,
+										   new DataOutputStream(pieceOutStream), null);
+			pieceOutStream.close();
+
+			// Write trailer chunk
+			writeChunkHeader(dataOutput, TRAILER_ID, TRAILER_SIZE);
+			dataOutput.writeLong(dataSize);
+			dataOutput.writeInt((int)attributes.crcValue);
+
+			// Flush output stream
+			dataOutput.flush();
+		}
+		catch (IOException e)
+		{
+			// Throw any underlying AppException
+			if (e.getCause() instanceof AppException appException)
+				throw appException;
+
+			throw new FileException(ErrorId.ERROR_WRITING_STREAM, file, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void writeChunkHeader(
+		DataOutput	dataOutput,
+		Id			id,
+		long		size)
+		throws IOException
+	{
+		id.write(dataOutput);
+		dataOutput.writeLong(size);
+	}
+
+	//------------------------------------------------------------------
+
+	private void read(
+		IByteDataOutputStream	outStream)
+		throws AppException
+	{
+		// Read single-pass input stream
+		if (file == null)
+		{
+			if (dataInput == null)
+			{
+				dataInput = new DataInputStream(inStream);
+				readHeader();
+			}
+			if (outStream != null)
+			{
+				if (dataRead)
+					throw new IllegalStateException();
+				dataRead = true;
+				readCompressedData(outStream);
+			}
+		}
+
+		// Read file
+		else
+		{
+			// Open file
+			try
+			{
+				dataInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			}
+			catch (FileNotFoundException | SecurityException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_OPEN_FILE, file, e);
+			}
+
+			// Read file
+			try
+			{
+				readHeader();
+				if (outStream != null)
+					readCompressedData(outStream);
+			}
+			catch (AppException e)
+			{
+				try
+				{
+					dataInput.close();
+				}
+				catch (IOException e1)
+				{
+					// ignore
+				}
+				dataInput = null;
+				throw e;
+			}
+
+			// Close file
+			try
+			{
+				dataInput.close();
+				dataInput = null;
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_CLOSE_FILE, file, e);
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads the header of the file of this object and locates the data of each piece of its compressed data, and
+	 * returns a reader of the sample frames of the compressed data.
+	 *
+	 * @return a reader of the sample frames of the compressed data.
+	 * @throws AppException
+	 *           if an error occurred when reading the file or the file is malformed.
+	 */
+
+	private FrameReader createFrameReader()
+		throws AppException
+	{
+		FrameReader frameReader = null;
+		RandomAccessFile raFile = null;
+		try
+		{
+			// Open file
+			try
+			{
+				raFile = new RandomAccessFile(file, "r");
+			}
+			catch (FileNotFoundException | SecurityException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_OPEN_FILE, file, e);
+			}
+
+			// Read header with an unbuffered input, so that the file pointer follows it
+			dataInput = new DataInputStream(Channels.newInputStream(raFile.getChannel()));
+			readHeader();
+
+			// Create reader of data chunk of known size
+			long dataOffset = raFile.getFilePointer();
+			if (dataChunkSize != UNKNOWN_SIZE)
+			{
+				dataSize = dataChunkSize;
+				frameReader = new FrameReader(file, attributes, dataOffset, dataChunkSize, null);
+			}
+
+			// Locate pieces of data chunk and create reader of them
+			else
+			{
+				long[] pieceFileOffsets = new long[16];
+				long[] pieceDataOffsets = new long[pieceFileOffsets.length + 1];
+				int numPieces = 0;
+				long length = 0;
+				while (true)
+				{
+					int pieceLength = raFile.readInt();
+					if (littleEndian)
+						pieceLength = Integer.reverseBytes(pieceLength);
+					if (pieceLength < 0)
+						throw new FileException(ErrorId.MALFORMED_STREAM, file);
+					if (pieceLength == 0)
+						break;
+
+					if (numPieces == pieceFileOffsets.length)
+					{
+						pieceFileOffsets = Arrays.copyOf(pieceFileOffsets, 2 * pieceFileOffsets.length);
+						pieceDataOffsets = Arrays.copyOf(pieceDataOffsets, pieceFileOffsets.length + 1);
+					}
+					long pieceOffset = raFile.getFilePointer();
+					pieceFileOffsets[numPieces] = pieceOffset;
+					pieceDataOffsets[numPieces++] = length;
+					length += pieceLength;
+
+					if (pieceOffset + pieceLength > raFile.length())
+						throw new FileException(ErrorId.MALFORMED_STREAM, file);
+					raFile.seek(pieceOffset + pieceLength);
+				}
+				pieceDataOffsets[numPieces] = length;
+				dataSize = length;
+
+				// Read trailer chunk
+				if (!TRAILER_ID.equals(readId()) || (readSize() != TRAILER_SIZE))
+					throw new FileException(ErrorId.NO_TRAILER_CHUNK, file);
+				if (readInteger(DATA_SIZE_SIZE) != dataSize)
+					throw new FileException(ErrorId.INCONSISTENT_DATA_SIZE, file);
+				attributes.crcValue = readInteger(CRC_SIZE);
+
+				frameReader = new FrameReader(file, attributes, Arrays.copyOf(pieceFileOffsets, numPieces),
+											  Arrays.copyOf(pieceDataOffsets, numPieces + 1), null);
+			}
+			dataInput = null;
+
+			// Close file
+			try
+			{
+				raFile.close();
+				raFile = null;
+			}
+			catch (IOException e)
+			{
+				throw new FileException(ErrorId.FAILED_TO_CLOSE_FILE, file, e);
+			}
+		}
+		catch (EOFException e)
+		{
+			closeFile(raFile);
+			throw new FileException(ErrorId.MALFORMED_STREAM, file, e);
+		}
+		catch (IOException e)
+		{
+			closeFile(raFile);
+			throw new FileException(ErrorId.ERROR_READING_STREAM, file, e);
+		}
+		catch (AppException e)
+		{
+			closeFile(raFile);
+			throw e;
+		}
+		return frameReader;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Closes the specified file after an error, ignoring any exception.
+	 *
+	 * @param raFile
+	 *          the file, which may be {@code null}.
+	 */
+
+	private void closeFile(
+		RandomAccessFile	raFile)
+	{
+		dataInput = null;
+		try
+		{
+			if (raFile != null)
+				raFile.close();
+		}
+		catch (IOException e)
+		{
+			// ignore
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void readHeader()
+		throws AppException
+	{
+		// Initialise variables
+		attributes = null;
+		privateData = null;
+
+		try
+		{
+			// Read and validate NLF header
+			byte[] buffer = new byte[NLF_HEADER_SIZE];
+			int b = dataInput.read();
+			if (b < 0)
+				throw new FileException(ErrorId.NOT_AN_ONDA_STREAM, file);
+			buffer[0] = (byte)b;
+			dataInput.readFully(buffer, 1, buffer.length - 1);
+			if (!Arrays.equals(buffer, 0, Document.FILE_ID.length, Document.FILE_ID, 0, Document.FILE_ID.length))
+				throw new FileException(ErrorId.NOT_AN_ONDA_STREAM, file);
+			int offset = Document.FILE_ID.length;
+			if (!Arrays.equals(buffer, offset, offset + NLF_VERSION.length, NLF_VERSION, 0, NLF_VERSION.length))
+				throw new FileException(ErrorId.UNSUPPORTED_NLF_VERSION, file);
+			offset += NLF_VERSION.length;
+			littleEndian = ((buffer[offset] & BYTE_ORDER_MASK) != 0);
+
+			// Read and validate header of root list
+			if (!ChunkList.LIST_ID.equals(readId()))
+				throw new FileException(ErrorId.NOT_AN_ONDA_STREAM, file);
+			readSize();
+			if (!OndaFile.ONDA_ID.equals(readId()))
+				throw new FileException(ErrorId.NOT_AN_ONDA_STREAM, file);
+			byte[] namespaceName = new byte[(int)readInteger(ChunkList.NAMESPACE_NAME_SIZE_SIZE)];
+			dataInput.readFully(namespaceName);
+			if (!NlfUtils.utf8ToString(namespaceName).matches(OndaFile.NAMESPACE_NAME_REGEX))
+				throw new FileException(ErrorId.NOT_AN_ONDA_STREAM, file);
+
+			// Read chunks up to the data chunk
+			while (true)
+			{
+				// Read chunk header
+				Id id = readId();
+				if (id == null)
+					throw new FileException(ErrorId.NO_DATA_CHUNK, file);
+				long size = readSize();
+				if ((size == UNKNOWN_SIZE) && !id.equals(OndaFile.DATA_ID))
+					throw new FileException(ErrorId.MALFORMED_STREAM, file);
+
+				// Read attributes chunk
+				if (id.equals(OndaFile.ATTRIBUTES_ID))
+				{
+					if (attributes != null)
+						throw new FileException(ErrorId.MULTIPLE_ATTRIBUTES_CHUNKS, file);
+					readAttributes(size);
+				}
+
+				// Read private data chunk
+				else if (id.equals(OndaFile.PRIVATE_DATA_ID))
+				{
+					if (privateData != null)
+						throw new FileException(ErrorId.MULTIPLE_PRIVATE_CHUNKS, file);
+					if (size > Integer.MAX_VALUE)
+						throw new FileException(ErrorId.PRIVATE_DATA_ARE_TOO_LARGE, file);
+					privateData = new byte[(int)size];
+					dataInput.readFully(privateData);
+				}
+
+				// Stop at data chunk
+				else if (id.equals(OndaFile.DATA_ID))
+				{
+					if (attributes == null)
+						throw new FileException(ErrorId.NO_ATTRIBUTES_CHUNK_BEFORE_DATA_CHUNK, file);
+					dataChunkSize = size;
+					break;
+				}
+
+				// Skip any other chunk
+				else
+					dataInput.skipNBytes(size);
+			}
+		}
+		catch (EOFException e)
+		{
+			throw new FileException(ErrorId.MALFORMED_STREAM, file, e);
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.ERROR_READING_STREAM, file, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void readAttributes(
+		long	size)
+		throws AppException, IOException
+	{
+		if ((size < OndaFile.Attributes.VERSION_SIZE) || (size > OndaFile.Attributes.MAX_SIZE))
+			throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
+		byte[] buffer = new byte[(int)size];
+		dataInput.readFully(buffer);
+		try
+		{
+			attributes = new OndaFile.Attributes(buffer, 0);
+		}
+		catch (AppException e)
+		{
+			throw new FileException(e, file);
+		}
+		if (size != OndaFile.Attributes.getSize(attributes.version))
+			throw new FileException(ErrorId.INVALID_ATTRIBUTES_CHUNK, file);
+	}
+
+	//------------------------------------------------------------------
+
+	private void readCompressedData(
+		IByteDataOutputStream	outStream)
+		throws AppException
+	{
+		try
+		{
+			// Read data chunk of known size
+			if (dataChunkSize != UNKNOWN_SIZE)
+			{
+				OndaDataInput compressedDataInput =
+						new OndaDataInput(dataChunkSize, attributes.numChannels, attributes.getValueLength(),
+										  attributes.keyLength, dataInput);
+				OndaFile.decodeData(attributes, compressedDataInput, outStream, file, parallelDecoding);
+				dataSize = dataChunkSize;
+				return;
+			}
+
+			// Read pieces of data chunk
+			PieceInputStream pieceInStream = new PieceInputStream(dataInput, littleEndian);
+			OndaDataInput compressedDataInput = new OndaDataInput(attributes.numChannels, attributes.getValueLength(),
+																  attributes.keyLength, pieceInStream);
+			OndaFile.decodeData(attributes, compressedDataInput, outStream, file, parallelDecoding);
+			pieceInStream.skipToEnd();
+			dataSize = pieceInStream.length;
+
+			// Read trailer chunk
+			if (!TRAILER_ID.equals(readId()) || (readSize() != TRAILER_SIZE))
+				throw new FileException(ErrorId.NO_TRAILER_CHUNK, file);
+			if (readInteger(DATA_SIZE_SIZE) != dataSize)
+				throw new FileException(ErrorId.INCONSISTENT_DATA_SIZE, file);
+			attributes.crcValue = readInteger(CRC_SIZE);
+		}
+		catch (EOFException e)
+		{
+			throw new FileException(ErrorId.MALFORMED_STREAM, file, e);
+		}
+		catch (IOException e)
+		{
+			throw new FileException(ErrorId.ERROR_READING_STREAM, file, e);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads a chunk identifier from the input.
+	 *
+	 * @return the chunk identifier, or {@code null} if the end of the input was reached before the identifier.
+	 * @throws AppException
+	 *           if the identifier is invalid.
+	 * @throws IOException
+	 *           if an error occurred when reading the input.
+	 */
+
+	private Id readId()
+		throws AppException, IOException
+	{
+		int size = dataInput.read();
+		if (size < 0)
+			return null;
+		byte[] buffer = new byte[Id.SIZE_SIZE + size];
+		buffer[0] = (byte)size;
+		dataInput.readFully(buffer, Id.SIZE_SIZE, size);
+		try
+		{
+			return new Id(buffer, 0);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new FileException(ErrorId.MALFORMED_STREAM, file);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private long readSize()
+		throws AppException, IOException
+	{
+		long size = readInteger(Chunk.SIZE_SIZE);
+		if ((size < 0) && (size != UNKNOWN_SIZE))
+			throw new FileException(ErrorId.MALFORMED_STREAM, file);
+		return size;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Reads an unsigned integer of the specified length in the byte order of the stream from the input.
+	 *
+	 * @param  numBytes
+	 *           the length (in bytes) of the integer.
+	 * @return the integer.
+	 * @throws IOException
+	 *           if an error occurred when reading the input.
+	 */
+
+	private long readInteger(
+		int	numBytes)
+		throws IOException
+	{
+		long value = 0;
+		for (int i = 0; i < numBytes; i++)
+		{
+			long b = dataInput.readUnsignedByte();
+			value = littleEndian ? value | b << (i << 3) : value << 8 | b;
+		}
+		return value;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	File				file;
+	private	InputStream			inStream;
+	private	OutputStream		outStream;
+	private	DataInputStream		dataInput;
+	private	boolean				littleEndian;
+	private	boolean				dataRead;
+	private	long				dataChunkSize;
+	private	long				dataSize;
+	private	OndaFile.Attributes	attributes;
+	private	byte[]				privateData;
+	private	boolean				parallelDecoding;
+	private	FrameReader			frameReader;
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,348 @@
+/*====================================================================*\
+
+PredictorSelector.java
+
+Predictor selector class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.util.Arrays;
+
+//----------------------------------------------------------------------
+
+
+// PREDICTOR SELECTOR CLASS
+
+
+/**
+ * This class selects the order of the {@linkplain FixedPredictor fixed predictor} and the coding of a channel of a
+ * block.  For each order of predictor, the residuals are derived from those of the next lower order by a first-order
+ * difference, and the optimum encoding length and the resulting length of the encoded values are determined from a
+ * histogram of the bit lengths of the residuals.  If Rice coding is enabled, the estimated length of the residuals
+ * when they are encoded with {@linkplain RiceCode Rice codes} is also determined for each order.  The order and coding
+ * with the smallest encoded length are selected; of orders with equal lengths, the lowest is selected.
+ * <p>
+ * A selector has its own buffers, so different selectors may be used concurrently for different channels.
+ * </p>
+ */
+
+class PredictorSelector
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of a predictor selector for blocks of the specified length.
+	 *
+	 * @param numChannels
+	 *          the number of channels in a block.
+	 * @param sampleLength
+	 *          the length (in bits) of a sample value.
+	 * @param keyLength
+	 *          the length (in bits) of an encoding key.
+	 * @param numSampleFrames
+	 *          the maximum number of sample frames in a block.
+	 */
+
+	public PredictorSelector(
+		int	numChannels,
+		int	sampleLength,
+		int	keyLength,
+		int	numSampleFrames)
+	{
+		// Initialise instance variables
+		this.numChannels = numChannels;
+		this.keyLength = keyLength;
+		residuals = new int[numSampleFrames];
+		bitLengthCounts = new int[Integer.SIZE + 1];
+		excessCounts = new int[sampleLength + 1];
+		history = new int[FixedPredictor.MAX_ORDER];
+		ricePartitioner = new RicePartitioner();
+		riceParameters = new int[1 << RiceCode.MAX_PARTITION_ORDER];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the order of the predictor that was selected by the last call to {@link #select(int[], int, int, int,
+	 * int, int, int[], boolean, boolean, boolean, boolean)}.
+	 *
+	 * @return the order of the selected predictor, or {@link FixedPredictor#CONSTANT_CODE} if the values of the channel
+	 *         are all equal.
+	 */
+
+	public int getOrder()
+	{
+		return order;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the number of wasted bits of the channel whose predictor was last selected.
+	 *
+	 * @return the number of bits by which the values of the channel were shifted right.
+	 */
+
+	public int getShift()
+	{
+		return shift;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the optimum encoding length of the residuals of the selected predictor when they are encoded with
+	 * fixed-width codes.
+	 *
+	 * @return the encoding length of the channel whose predictor was last selected.
+	 */
+
+	public int getEncodingLength()
+	{
+		return encodingLength;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns {@code true} if the residuals of the channel whose predictor was last selected are to be encoded with
+	 * Rice codes.
+	 *
+	 * @return {@code true} if Rice codes were selected for the channel.
+	 */
+
+	public boolean isRiceCoded()
+	{
+		return riceCoded;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the partition order of the Rice codes of the channel whose predictor was last selected.  The value is
+	 * valid only if {@link #isRiceCoded()} returns {@code true}.
+	 *
+	 * @return the partition order of the Rice codes of the channel.
+	 */
+
+	public int getPartitionOrder()
+	{
+		return partitionOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the Rice parameters of the partitions of the channel whose predictor was last selected.  The values are
+	 * valid only if {@link #isRiceCoded()} returns {@code true}.
+	 *
+	 * @return the Rice parameters of the partitions of the channel.
+	 */
+
+	public int[] getRiceParameters()
+	{
+		return riceParameters;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the residuals of the selected predictor of the channel whose predictor was last selected.  The residuals
+	 * are not valid if the channel is constant.
+	 *
+	 * @return the residuals of the selected predictor.
+	 */
+
+	public int[] getResiduals()
+	{
+		return residuals;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Selects the order of the predictor and the coding of a channel of a block, and computes the residuals of the
+	 * selected predictor.  If constant channels are enabled and the values of the channel are all equal, the channel
+	 * is not analysed.  If the removal of wasted bits is enabled, the values of the channel are first shifted right by
+	 * the number of its wasted bits.
+	 *
+	 * @param data
+	 *          the interleaved values of the block.
+	 * @param offset
+	 *          the start offset of the values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the block.
+	 * @param channel
+	 *          the index of the channel.
+	 * @param valueLength
+	 *          the length (in bits) of a full value of the channel.
+	 * @param startIndex
+	 *          the index of the first residual that is encoded; the values before it are written in full.
+	 * @param historyValues
+	 *          the interleaved values that precede the block, oldest first, if the block continues from the preceding
+	 *          block; {@code null} otherwise.
+	 * @param constantChannels
+	 *          if {@code true}, a channel whose values are all equal will be denoted as constant.
+	 * @param wastedBits
+	 *          if {@code true}, the wasted bits of the channel will be removed.
+	 * @param predictorSelection
+	 *          if {@code true}, every order of predictor will be evaluated; otherwise, only the default order will be.
+	 * @param riceCoding
+	 *          if {@code true}, Rice codes will be evaluated for each order of predictor.
+	 */
+
+	public void select(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames,
+		int		channel,
+		int		valueLength,
+		int		startIndex,
+		int[]	historyValues,
+		boolean	constantChannels,
+		boolean	wastedBits,
+		boolean	predictorSelection,
+		boolean	riceCoding)
+	{
+		// De-interleave values of channel
+		for (int j = 0, k = offset + channel; j < numSampleFrames; j++, k += numChannels)
+			residuals[j] = data[k];
+
+		// If constant channels are enabled and the values of the channel are all equal, don't analyse the channel
+		if (constantChannels && EncodingCost.isConstant(residuals, 0, numSampleFrames))
+		{
+			order = FixedPredictor.CONSTANT_CODE;
+			return;
+		}
+
+		// If removal of wasted bits is enabled, shift values of channel right by number of wasted bits
+		shift = 0;
+		if (wastedBits)
+		{
+			shift = WastedBits.getShift(residuals, numSampleFrames, valueLength);
+			if (shift > 0)
+			{
+				for (int j = 0; j < numSampleFrames; j++)
+					residuals[j] >>= shift;
+			}
+		}
+
+		// Find order of predictor and encoding length that give smallest encoded length
+		valueLength -= shift;
+		loadHistory(historyValues, channel);
+		order = FixedPredictor.MIN_ORDER;
+		encodingLength = valueLength;
+		riceCoded = false;
+		long minOutputLength = Long.MAX_VALUE;
+		int minOrder = predictorSelection ? FixedPredictor.MIN_ORDER : FixedPredictor.DEFAULT_ORDER;
+		int maxOrder = predictorSelection ? FixedPredictor.MAX_ORDER : FixedPredictor.DEFAULT_ORDER;
+		for (int i = FixedPredictor.MIN_ORDER; i <= maxOrder; i++)
+		{
+			if (i > FixedPredictor.MIN_ORDER)
+				FixedPredictor.difference(residuals, numSampleFrames, history);
+			if (i < minOrder)
+				continue;
+			EncodingCost.countBitLengths(residuals, startIndex, numSampleFrames, bitLengthCounts);
+			EncodingCost.setExcessCounts(bitLengthCounts, valueLength, keyLength, excessCounts);
+			int length = EncodingCost.getOptimumEncodingLength(excessCounts, valueLength, keyLength, numSampleFrames);
+			int numValues = Math.max(0, numSampleFrames - startIndex);
+			long outputLength = keyLength + EncodingCost.getEncodedLength(excessCounts, valueLength, numValues, length);
+			if (minOutputLength > outputLength)
+			{
+				minOutputLength = outputLength;
+				order = i;
+				encodingLength = length;
+				riceCoded = false;
+			}
+
+			if (riceCoding)
+			{
+				outputLength = ricePartitioner.getLength(residuals, startIndex, numSampleFrames, valueLength);
+				if (minOutputLength > outputLength)
+				{
+					minOutputLength = outputLength;
+					order = i;
+					riceCoded = true;
+					partitionOrder = ricePartitioner.getPartitionOrder();
+					System.arraycopy(ricePartitioner.getParameters(), 0, riceParameters, 0, 1 << partitionOrder);
+				}
+			}
+		}
+
+		// Recompute residuals of selected predictor
+		for (int j = 0, k = offset + channel; j < numSampleFrames; j++, k += numChannels)
+			residuals[j] = data[k] >> shift;
+		loadHistory(historyValues, channel);
+		for (int i = FixedPredictor.MIN_ORDER; i < order; i++)
+			FixedPredictor.difference(residuals, numSampleFrames, history);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Loads the values of a channel that precede a block into the history buffer.  If the block continues from the
+	 * preceding block, the values are those of the specified history, shifted right by the number of wasted bits of the
+	 * channel; otherwise, they are zero.
+	 *
+	 * @param historyValues
+	 *          the interleaved values that precede the block, or {@code null} if the block does not continue from the
+	 *          preceding block.
+	 * @param channel
+	 *          the index of the channel.
+	 */
+
+	private void loadHistory(
+		int[]	historyValues,
+		int		channel)
+	{
+		if (historyValues == null)
+			Arrays.fill(history, 0);
+		else
+		{
+			for (int i = 0, j = channel; i < history.length; i++, j += numChannels)
+				history[i] = historyValues[j] >> shift;
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	int				numChannels;
+	private	int				keyLength;
+	private	int[]			residuals;
+	private	int[]			bitLengthCounts;
+	private	int[]			excessCounts;
+	private	int[]			history;
+	private	RicePartitioner	ricePartitioner;
+	private	int				order;
+	private	int				shift;
+	private	int				encodingLength;
+	private	boolean			riceCoded;
+	private	int				partitionOrder;
+	private	int[]			riceParameters;
+
+}
+
+//----------------------------------------------------------------------
@@ -131,9 +131,25 @@ class PreferencesDialog
 	private static final	String	NO_LOOK_AND_FEELS_STR		= "<no look-and-feels>";
 
 	// Compression panel
-	private static final	int		BLOCK_LENGTH_FIELD_LENGTH	= 5;
-
-	private static final	String	BLOCK_LENGTH_STR	= "Block length";
+	private static final	int		BLOCK_LENGTH_FIELD_LENGTH				= 5;
+	private static final	int		PRIVATE_DATA_COMPRESSION_LEVEL_FIELD_LENGTH	= 1;
+	private static final	int		BACK_REFERENCE_SIZE_FIELD_LENGTH			= 4;
+
+	private static final	String	BLOCK_LENGTH_STR					= "Block length";
+	private static final	String	PRIVATE_DATA_COMPRESSION_LEVEL_STR	= "Ancillary-chunk compression level";
+	private static final	String	ARRAY_ANALYSIS_STR					= "Array analysis kernel";
+	private static final	String	PARALLEL_ENCODING_STR				= "Parallel coding of channels";
+	private static final	String	CHANNEL_DECORRELATION_STR			= "Decorrelate pairs of channels";
+	private static final	String	PREDICTOR_SELECTION_STR				= "Select predictor of each channel";
+	private static final	String	RICE_CODING_STR						= "Rice coding of residuals";
+	private static final	String	VARIABLE_BLOCK_LENGTH_STR			= "Variable block length";
+	private static final	String	CONSTANT_CHANNELS_STR				= "Constant channels";
+	private static final	String	WASTED_BITS_STR						= "Remove wasted bits";
+	private static final	String	BLOCK_CONTINUITY_STR				= "Block continuity";
+	private static final	String	BACK_REFERENCES_STR					= "Back references";
+	private static final	String	BACK_REFERENCE_WINDOW_SIZE_STR		= "Back-reference window (MiB)";
+	private static final	String	BACK_REFERENCE_TABLE_SIZE_STR		= "Back-reference hash table (MiB)";
+	private static final	String	EFFORT_STR							= "Effort";
 
 	// Chunk filters panel
 	private static final	Insets	EDIT_BUTTON_MARGINS	= new Insets(2, 4, 2, 4);
@@ -182,6 +198,20 @@ class PreferencesDialog
 
 	// Compression panel
 	private	FIntegerSpinner								blockLengthSpinner;
+	private	FIntegerSpinner								privateDataCompressionLevelSpinner;
+	private	BooleanComboBox								arrayAnalysisComboBox;
+	private	BooleanComboBox								parallelEncodingComboBox;
+	private	BooleanComboBox								channelDecorrelationComboBox;
+	private	BooleanComboBox								predictorSelectionComboBox;
+	private	BooleanComboBox								riceCodingComboBox;
+	private	BooleanComboBox								variableBlockLengthComboBox;
+	private	BooleanComboBox								constantChannelsComboBox;
+	private	BooleanComboBox								wastedBitsComboBox;
+	private	BooleanComboBox								blockContinuityComboBox;
+	private	BooleanComboBox								backReferencesComboBox;
+	private	FIntegerSpinner								backReferenceWindowSizeSpinner;
+	private	FIntegerSpinner								backReferenceTableSizeSpinner;
+	private	FComboBox<Effort>							effortComboBox;
 
 	// Chunk filters panel
 	private	Map<AudioFileKind, JComboBox<ChunkFilter>>	chunkFilterComboBoxes;
@@ -855,6 +885,434 @@ class PreferencesDialog
 		gridBag.setConstraints(blockLengthSpinner, gbc);
 		controlPanel.add(blockLengthSpinner);
 
+		// Label: compression level of private data
+		JLabel privateDataCompressionLevelLabel = new FLabel(PRIVATE_DATA_COMPRESSION_LEVEL_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(privateDataCompressionLevelLabel, gbc);
+		controlPanel.add(privateDataCompressionLevelLabel);
+
+		// Spinner: compression level of private data
+		privateDataCompressionLevelSpinner =
+				new FIntegerSpinner(config.getPrivateDataCompressionLevel(), PrivateData.MIN_COMPRESSION_LEVEL,
+									PrivateData.MAX_COMPRESSION_LEVEL, PRIVATE_DATA_COMPRESSION_LEVEL_FIELD_LENGTH);
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(privateDataCompressionLevelSpinner, gbc);
+		controlPanel.add(privateDataCompressionLevelSpinner);
+
+		// Label: array analysis kernel
+		JLabel arrayAnalysisLabel = new FLabel(ARRAY_ANALYSIS_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(arrayAnalysisLabel, gbc);
+		controlPanel.add(arrayAnalysisLabel);
+
+		// Combo box: array analysis kernel
+		arrayAnalysisComboBox = new BooleanComboBox(config.isArrayAnalysis());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(arrayAnalysisComboBox, gbc);
+		controlPanel.add(arrayAnalysisComboBox);
+
+		// Label: parallel coding of channels
+		JLabel parallelEncodingLabel = new FLabel(PARALLEL_ENCODING_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(parallelEncodingLabel, gbc);
+		controlPanel.add(parallelEncodingLabel);
+
+		// Combo box: parallel coding of channels
+		parallelEncodingComboBox = new BooleanComboBox(config.isParallelEncoding());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(parallelEncodingComboBox, gbc);
+		controlPanel.add(parallelEncodingComboBox);
+
+		// Label: decorrelation of pairs of channels
+		JLabel channelDecorrelationLabel = new FLabel(CHANNEL_DECORRELATION_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(channelDecorrelationLabel, gbc);
+		controlPanel.add(channelDecorrelationLabel);
+
+		// Combo box: decorrelation of pairs of channels
+		channelDecorrelationComboBox = new BooleanComboBox(config.isChannelDecorrelation());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(channelDecorrelationComboBox, gbc);
+		controlPanel.add(channelDecorrelationComboBox);
+
+		// Label: selection of predictors
+		JLabel predictorSelectionLabel = new FLabel(PREDICTOR_SELECTION_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(predictorSelectionLabel, gbc);
+		controlPanel.add(predictorSelectionLabel);
+
+		// Combo box: selection of predictors
+		predictorSelectionComboBox = new BooleanComboBox(config.isPredictorSelection());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(predictorSelectionComboBox, gbc);
+		controlPanel.add(predictorSelectionComboBox);
+
+		// Label: Rice coding of residuals
+		JLabel riceCodingLabel = new FLabel(RICE_CODING_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(riceCodingLabel, gbc);
+		controlPanel.add(riceCodingLabel);
+
+		// Combo box: Rice coding of residuals
+		riceCodingComboBox = new BooleanComboBox(config.isRiceCoding());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(riceCodingComboBox, gbc);
+		controlPanel.add(riceCodingComboBox);
+
+		// Label: variable block length
+		JLabel variableBlockLengthLabel = new FLabel(VARIABLE_BLOCK_LENGTH_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(variableBlockLengthLabel, gbc);
+		controlPanel.add(variableBlockLengthLabel);
+
+		// Combo box: variable block length
+		variableBlockLengthComboBox = new BooleanComboBox(config.isVariableBlockLength());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(variableBlockLengthComboBox, gbc);
+		controlPanel.add(variableBlockLengthComboBox);
+
+		// Label: constant channels
+		JLabel constantChannelsLabel = new FLabel(CONSTANT_CHANNELS_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(constantChannelsLabel, gbc);
+		controlPanel.add(constantChannelsLabel);
+
+		// Combo box: constant channels
+		constantChannelsComboBox = new BooleanComboBox(config.isConstantChannels());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(constantChannelsComboBox, gbc);
+		controlPanel.add(constantChannelsComboBox);
+
+		// Label: remove wasted bits
+		JLabel wastedBitsLabel = new FLabel(WASTED_BITS_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(wastedBitsLabel, gbc);
+		controlPanel.add(wastedBitsLabel);
+
+		// Combo box: remove wasted bits
+		wastedBitsComboBox = new BooleanComboBox(config.isWastedBits());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(wastedBitsComboBox, gbc);
+		controlPanel.add(wastedBitsComboBox);
+
+		// Label: block continuity
+		JLabel blockContinuityLabel = new FLabel(BLOCK_CONTINUITY_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(blockContinuityLabel, gbc);
+		controlPanel.add(blockContinuityLabel);
+
+		// Combo box: block continuity
+		blockContinuityComboBox = new BooleanComboBox(config.isBlockContinuity());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(blockContinuityComboBox, gbc);
+		controlPanel.add(blockContinuityComboBox);
+
+		// Label: back references
+		JLabel backReferencesLabel = new FLabel(BACK_REFERENCES_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferencesLabel, gbc);
+		controlPanel.add(backReferencesLabel);
+
+		// Combo box: back references
+		backReferencesComboBox = new BooleanComboBox(config.isBackReferences());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferencesComboBox, gbc);
+		controlPanel.add(backReferencesComboBox);
+
+		// Label: size of back-reference window
+		JLabel backReferenceWindowSizeLabel = new FLabel(BACK_REFERENCE_WINDOW_SIZE_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferenceWindowSizeLabel, gbc);
+		controlPanel.add(backReferenceWindowSizeLabel);
+
+		// Spinner: size of back-reference window
+		backReferenceWindowSizeSpinner = new FIntegerSpinner(config.getBackReferenceWindowSize(),
+															 BackReference.MIN_WINDOW_SIZE,
+															 BackReference.MAX_WINDOW_SIZE,
+															 BACK_REFERENCE_SIZE_FIELD_LENGTH);
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferenceWindowSizeSpinner, gbc);
+		controlPanel.add(backReferenceWindowSizeSpinner);
+
+		// Label: size of back-reference hash table
+		JLabel backReferenceTableSizeLabel = new FLabel(BACK_REFERENCE_TABLE_SIZE_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferenceTableSizeLabel, gbc);
+		controlPanel.add(backReferenceTableSizeLabel);
+
+		// Spinner: size of back-reference hash table
+		backReferenceTableSizeSpinner = new FIntegerSpinner(config.getBackReferenceTableSize(),
+															BackReference.MIN_TABLE_SIZE, BackReference.MAX_TABLE_SIZE,
+															BACK_REFERENCE_SIZE_FIELD_LENGTH);
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(backReferenceTableSizeSpinner, gbc);
+		controlPanel.add(backReferenceTableSizeSpinner);
+
+		// Label: effort
+		JLabel effortLabel = new FLabel(EFFORT_STR);
+
+		gbc.gridx = 0;
+		gbc.gridy = gridY;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_END;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(effortLabel, gbc);
+		controlPanel.add(effortLabel);
+
+		// Combo box: effort
+		effortComboBox = new FComboBox<>(Effort.values());
+		effortComboBox.setSelectedValue(config.getEffort());
+
+		gbc.gridx = 1;
+		gbc.gridy = gridY++;
+		gbc.gridwidth = 1;
+		gbc.gridheight = 1;
+		gbc.weightx = 0.0;
+		gbc.weighty = 0.0;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.insets = AppConstants.COMPONENT_INSETS;
+		gridBag.setConstraints(effortComboBox, gbc);
+		controlPanel.add(effortComboBox);
+
 
 		//----  Outer panel
 
@@ -1167,6 +1625,20 @@ class PreferencesDialog
 	{
 		AppConfig config = AppConfig.INSTANCE;
 		config.setBlockLength(blockLengthSpinner.getIntValue());
+		config.setPrivateDataCompressionLevel(privateDataCompressionLevelSpinner.getIntValue());
+		config.setArrayAnalysis(arrayAnalysisComboBox.getSelectedValue());
+		config.setParallelEncoding(parallelEncodingComboBox.getSelectedValue());
+		config.setChannelDecorrelation(channelDecorrelationComboBox.getSelectedValue());
+		config.setPredictorSelection(predictorSelectionComboBox.getSelectedValue());
+		config.setRiceCoding(riceCodingComboBox.getSelectedValue());
+		config.setVariableBlockLength(variableBlockLengthComboBox.getSelectedValue());
+		config.setConstantChannels(constantChannelsComboBox.getSelectedValue());
+		config.setWastedBits(wastedBitsComboBox.getSelectedValue());
+		config.setBlockContinuity(blockContinuityComboBox.getSelectedValue());
+		config.setBackReferences(backReferencesComboBox.getSelectedValue());
+		config.setBackReferenceWindowSize(backReferenceWindowSizeSpinner.getIntValue());
+		config.setBackReferenceTableSize(backReferenceTableSizeSpinner.getIntValue());
+		config.setEffort(effortComboBox.getSelectedValue());
 	}
 
 	//------------------------------------------------------------------
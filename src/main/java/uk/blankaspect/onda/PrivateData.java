@@ -18,12 +18,15 @@ package uk.blankaspect.onda;
 // IMPORTS
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import java.util.function.BooleanSupplier;
+
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -50,30 +53,43 @@ class PrivateData
 //  Constants
 ////////////////////////////////////////////////////////////////////////
 
+	public static final	int	MIN_COMPRESSION_LEVEL		= Deflater.NO_COMPRESSION;
+	public static final	int	MAX_COMPRESSION_LEVEL		= Deflater.BEST_COMPRESSION;
+	public static final	int	DEFAULT_COMPRESSION_LEVEL	= Deflater.BEST_COMPRESSION;
+
 	private static final	int	SOURCE_KIND_SIZE	= 2;
 	private static final	int	ADLER32_SIZE		= 4;
 	private static final	int	NUM_CHUNKS_SIZE		= 4;
 	private static final	int	HEADER_SIZE			= SOURCE_KIND_SIZE + ADLER32_SIZE + NUM_CHUNKS_SIZE;
 
-	private static final	int	BLOCK_SIZE	= 1 << 12;  // 4096
+	private static final	int	BUFFER_SIZE	= 1 << 16;  // 65536
 
 ////////////////////////////////////////////////////////////////////////
 //  Instance variables
 ////////////////////////////////////////////////////////////////////////
 
 	private	AudioFileKind	sourceKind;
+	private	int				compressionLevel;
 	private	int				adler32;
 	private	List<ChunkInfo>	sourceChunks;
 	private	List<byte[]>	compressedDataBlocks;
-	private	byte[]			decompressedData;
+	private	int				compressedDataLength;
+	private	byte[]			data;
+	private	int				dataOffset;
+	private	long[]			chunkOffsets;
+	private	Inflater		decompressor;
+	private	long			decompressedLength;
+	private	byte[]			buffer;
 
 ////////////////////////////////////////////////////////////////////////
 //  Constructors
 ////////////////////////////////////////////////////////////////////////
 
-	public PrivateData(AudioFileKind sourceKind)
+	public PrivateData(AudioFileKind sourceKind,
+					   int           compressionLevel)
 	{
 		this.sourceKind = sourceKind;
+		this.compressionLevel = compressionLevel;
 		sourceChunks = new ArrayList<>();
 		compressedDataBlocks = new ArrayList<>();
 	}
@@ -121,15 +137,28 @@ class PrivateData
 
 	//------------------------------------------------------------------
 
-	public byte[] getCompressedData()
+	public int getCompressedDataLength()
 	{
-		// Allocate buffer for data
-		int length = HEADER_SIZE + sourceChunks.size() * Chunk.HEADER_SIZE;
-		for (byte[] data : compressedDataBlocks)
-			length += data.length;
-		byte[] buffer = new byte[length];
+		return HEADER_SIZE + sourceChunks.size() * Chunk.HEADER_SIZE + compressedDataLength;
+	}
+
+	//------------------------------------------------------------------
 
-		// Set header in buffer
+	/**
+	 * Writes the header, the list of chunks and the compressed chunk data to the specified data output.  The blocks of
+	 * compressed data are written as they are, without first being concatenated.
+	 *
+	 * @param dataOutput
+	 *          the data output to which the compressed data will be written.
+	 * @throws IOException
+	 *           if an error occurred when writing the data.
+	 */
+
+	public void writeCompressedData(DataOutput dataOutput)
+		throws IOException
+	{
+		// Write header and list of chunks
+		byte[] buffer = new byte[HEADER_SIZE + sourceChunks.size() * Chunk.HEADER_SIZE];
 		int offset = 0;
 		NumberCodec.uIntToBytesBE(sourceKind.ordinal(), buffer, offset, SOURCE_KIND_SIZE);
 		offset += SOURCE_KIND_SIZE;
@@ -138,7 +167,6 @@ class PrivateData
 		NumberCodec.uIntToBytesBE(sourceChunks.size(), buffer, offset, NUM_CHUNKS_SIZE);
 		offset += NUM_CHUNKS_SIZE;
 
-		// Set list of chunks in buffer
 		for (ChunkInfo chunk : sourceChunks)
 		{
 			chunk.id.put(buffer, offset);
@@ -146,33 +174,109 @@ class PrivateData
 			NumberCodec.uIntToBytesBE(chunk.size, buffer, offset, Chunk.SIZE_SIZE);
 			offset += Chunk.SIZE_SIZE;
 		}
+		dataOutput.write(buffer);
 
-		// Set compressed chunk data in buffer
+		// Write compressed chunk data
+		int length = compressedDataLength;
 		for (byte[] data : compressedDataBlocks)
 		{
-			System.arraycopy(data, 0, buffer, offset, data.length);
-			offset += data.length;
+			int blockLength = Math.min(data.length, length);
+			dataOutput.write(data, 0, blockLength);
+			length -= blockLength;
 		}
+	}
+
+	//------------------------------------------------------------------
 
-		return buffer;
+	/**
+	 * Returns a chunk reader that compresses the data of the ancillary chunks that are accepted by the specified filter
+	 * and, optionally, the data of the format chunk.  The data of other critical chunks are never stored.
+	 *
+	 * @param  filter
+	 *           the filter that selects the ancillary chunks whose data will be stored.
+	 * @param  preserveFormat
+	 *           if {@code true}, the data of the format chunk will be stored.
+	 * @return a chunk reader for the private data.
+	 */
+
+	public Reader getReader(ChunkFilter filter,
+							boolean     preserveFormat)
+	{
+		return new Reader(filter, () -> preserveFormat);
 	}
 
 	//------------------------------------------------------------------
 
-	public Reader getReader(ChunkFilter filter)
+	/**
+	 * Returns a chunk reader that compresses the data of the ancillary chunks that are accepted by the specified filter
+	 * and, optionally, the data of the format chunk.  Whether the format chunk is stored is decided when the chunk is
+	 * read, so that the decision may depend on a format chunk that has been parsed by an audio file that is read in
+	 * the same pass.
+	 *
+	 * @param  filter
+	 *           the filter that selects the ancillary chunks whose data will be stored.
+	 * @param  preserveFormat
+	 *           the supplier of the flag that denotes whether the data of the format chunk will be stored.
+	 * @return a chunk reader for the private data.
+	 */
+
+	public Reader getReader(ChunkFilter     filter,
+							BooleanSupplier preserveFormat)
 	{
-		return new Reader(filter);
+		return new Reader(filter, preserveFormat);
 	}
 
 	//------------------------------------------------------------------
 
+	/**
+	 * Sets the ID of the specified chunk to that of the chunk at the specified index in the private data, and sets the
+	 * source of the chunk's data.  The data are not decompressed until they are loaded from the chunk, so, if the
+	 * chunks are loaded in order, only the data of one chunk are held at any time.
+	 *
+	 * @param index
+	 *          the index of the chunk in the private data.
+	 * @param chunk
+	 *          the chunk that will be set.
+	 */
+
 	public void setChunk(int   index,
 						 Chunk chunk)
 	{
-		int offset = 0;
-		for (int i = 0; i < index; i++)
-			offset += sourceChunks.get(i).size;
-		chunk.set(sourceChunks.get(index).id, decompressedData, offset, sourceChunks.get(index).size);
+		ChunkInfo chunkInfo = sourceChunks.get(index);
+		chunk.set(chunkInfo.id, chunkInfo.size, () -> decompressChunk(index));
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Decompresses all the chunk data with a fixed-size buffer, and verifies their length and checksum.
+	 *
+	 * @throws AppException
+	 *           if the chunk data are invalid.
+	 */
+
+	public void validate()
+		throws AppException
+	{
+		try
+		{
+			resetDecompressor();
+			skipDecompressedData(chunkOffsets[chunkOffsets.length - 1]);
+			if (decompressor.inflate(buffer) > 0)
+				throw new AppException(ErrorId.INVALID_DATA);
+			if (!decompressor.finished())
+				throw new AppException(ErrorId.INVALID_DATA);
+			if (decompressor.getAdler() != adler32)
+				throw new AppException(ErrorId.INCORRECT_ADLER32);
+		}
+		catch (DataFormatException e)
+		{
+			throw new AppException(ErrorId.INVALID_DATA);
+		}
+		finally
+		{
+			endDecompressor();
+		}
 	}
 
 	//------------------------------------------------------------------
@@ -191,7 +295,7 @@ class PrivateData
 			throw new AppException(ErrorId.UNRECOGNISED_SOURCE_FILE_KIND);
 		sourceKind = AudioFileKind.values()[sourceKindIndex];
 
-		int adler32 = NumberCodec.bytesToUIntBE(data, offset, ADLER32_SIZE);
+		adler32 = NumberCodec.bytesToUIntBE(data, offset, ADLER32_SIZE);
 		offset += ADLER32_SIZE;
 
 		int numChunks = NumberCodec.bytesToUIntBE(data, offset, NUM_CHUNKS_SIZE);
@@ -199,46 +303,110 @@ class PrivateData
 		if (numChunks < 0)
 			throw new AppException(ErrorId.INVALID_NUM_CHUNKS);
 
-		if (data.length < HEADER_SIZE + numChunks * Chunk.HEADER_SIZE)
+		if (data.length < HEADER_SIZE + (long)numChunks * Chunk.HEADER_SIZE)
 			throw new AppException(ErrorId.MALFORMED_DATA);
 
-		// Parse list of chunks
-		int length = 0;
+		// Parse list of chunks; create table of offsets of chunks in decompressed data
+		chunkOffsets = new long[numChunks + 1];
 		for (int i = 0; i < numChunks; i++)
 		{
 			IffId id = new IffId(data, offset);
 			offset += IffId.SIZE;
 			int size = NumberCodec.bytesToUIntBE(data, offset, Chunk.SIZE_SIZE);
 			offset += Chunk.SIZE_SIZE;
+			if (size < 0)
+				throw new AppException(ErrorId.MALFORMED_DATA);
 			sourceChunks.add(new ChunkInfo(id, size));
-			length += size;
+			chunkOffsets[i + 1] = chunkOffsets[i] + size;
 		}
 
-		// Decompress data
-		decompressedData = new byte[length];
-		Inflater decompressor = new Inflater();
+		// Set compressed data
+		this.data = data;
+		dataOffset = offset;
+	}
+
+	//------------------------------------------------------------------
+
+	private byte[] decompressChunk(int index)
+		throws AppException
+	{
 		try
 		{
-			// Decompress data
-			decompressor.setInput(data, offset, data.length - offset);
-			try
-			{
-				length = decompressor.inflate(decompressedData);
-			}
-			catch (DataFormatException e)
+			// If chunk precedes current position in decompressed data, start again from beginning
+			if ((decompressor == null) || (chunkOffsets[index] < decompressedLength))
+				resetDecompressor();
+
+			// Skip data of preceding chunks
+			skipDecompressedData(chunkOffsets[index]);
+
+			// Decompress data of chunk
+			byte[] chunkData = new byte[sourceChunks.get(index).size];
+			int offset = 0;
+			while (offset < chunkData.length)
 			{
-				throw new AppException(ErrorId.INVALID_DATA);
+				int length = decompressor.inflate(chunkData, offset, chunkData.length - offset);
+				if (length == 0)
+				{
+					if (decompressor.finished() || decompressor.needsInput() || decompressor.needsDictionary())
+						throw new AppException(ErrorId.INVALID_DATA);
+				}
+				offset += length;
 			}
+			decompressedLength += offset;
 
-			// Validate data
-			if (!decompressor.finished() || (length < decompressedData.length))
-				throw new AppException(ErrorId.INVALID_DATA);
-			if (decompressor.getAdler() != adler32)
-				throw new AppException(ErrorId.INCORRECT_ADLER32);
+			// Release decompressor after last chunk
+			if (decompressedLength >= chunkOffsets[chunkOffsets.length - 1])
+				endDecompressor();
+
+			return chunkData;
 		}
-		finally
+		catch (DataFormatException e)
+		{
+			endDecompressor();
+			throw new AppException(ErrorId.INVALID_DATA);
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	private void resetDecompressor()
+	{
+		if (decompressor == null)
+			decompressor = new Inflater();
+		else
+			decompressor.reset();
+		decompressor.setInput(data, dataOffset, data.length - dataOffset);
+		decompressedLength = 0;
+		if (buffer == null)
+			buffer = new byte[BUFFER_SIZE];
+	}
+
+	//------------------------------------------------------------------
+
+	private void endDecompressor()
+	{
+		if (decompressor != null)
 		{
 			decompressor.end();
+			decompressor = null;
+		}
+		buffer = null;
+	}
+
+	//------------------------------------------------------------------
+
+	private void skipDecompressedData(long endOffset)
+		throws AppException, DataFormatException
+	{
+		while (decompressedLength < endOffset)
+		{
+			int length = decompressor.inflate(buffer, 0, (int)Math.min(buffer.length, endOffset - decompressedLength));
+			if (length == 0)
+			{
+				if (decompressor.finished() || decompressor.needsInput() || decompressor.needsDictionary())
+					throw new AppException(ErrorId.INVALID_DATA);
+			}
+			decompressedLength += length;
 		}
 	}
 
@@ -273,7 +441,13 @@ class PrivateData
 		("The number of chunks specified in the private data is invalid."),
 
 		INCORRECT_ADLER32
-		("The checksum of the private data is incorrect.");
+		("The checksum of the private data is incorrect."),
+
+		CHUNK_TOO_LARGE
+		("The '%1' chunk is too large to be stored in the private data."),
+
+		DATA_TOO_LARGE
+		("The ancillary chunks are too large to be stored in the private data.");
 
 	////////////////////////////////////////////////////////////////////
 	//  Instance variables
@@ -331,6 +505,12 @@ class PrivateData
 	// CHUNK READER CLASS
 
 
+	/**
+	 * This class implements a chunk reader that compresses the data of accepted ancillary chunks as they are read.  The
+	 * data of a chunk are read into a fixed-size buffer, so the memory that is used does not depend on the size of the
+	 * chunk, and the compressed data are collected in fixed-size blocks.
+	 */
+
 	private class Reader
 		implements FormFile.IChunkReader
 	{
@@ -339,19 +519,24 @@ class PrivateData
 	//  Instance variables
 	////////////////////////////////////////////////////////////////////
 
-		private	ChunkFilter	filter;
-		private	byte[]		outBuffer;
-		private	int			outOffset;
-		private	Deflater	compressor;
+		private	ChunkFilter					filter;
+		private	BooleanSupplier				preserveFormat;
+		private	byte[]						inBuffer;
+		private	byte[]						outBuffer;
+		private	int							outOffset;
+		private	Deflater					compressor;
+		private	Events.PrivateDataDeflate	event;
 
 	////////////////////////////////////////////////////////////////////
 	//  Constructors
 	////////////////////////////////////////////////////////////////////
 
-		private Reader(ChunkFilter filter)
+		private Reader(ChunkFilter     filter,
+					   BooleanSupplier preserveFormat)
 		{
 			this.filter = filter;
-			compressor = new Deflater(Deflater.BEST_COMPRESSION);
+			this.preserveFormat = preserveFormat;
+			compressor = new Deflater(compressionLevel);
 		}
 
 		//--------------------------------------------------------------
@@ -361,39 +546,36 @@ class PrivateData
 	////////////////////////////////////////////////////////////////////
 
 		@Override
-		public void beginReading(RandomAccessFile raFile,
-								 IffId            typeId,
-								 int              size)
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
 		{
 			sourceChunks.clear();
 			compressedDataBlocks.clear();
-			outBuffer = new byte[BLOCK_SIZE];
+			compressedDataLength = 0;
+			inBuffer = new byte[BUFFER_SIZE];
+			outBuffer = new byte[BUFFER_SIZE];
 			outOffset = 0;
 			compressor.reset();
+			event = new Events.PrivateDataDeflate();
+			event.begin();
 		}
 
 		//--------------------------------------------------------------
 
 		@Override
-		public void read(RandomAccessFile raFile,
-						 IffId            id,
-						 int              size)
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
 			throws AppException, IOException
 		{
 			if (Utils.indexOf(id, sourceKind.getCriticalIds()) < 0)
 			{
 				if (filter.accept(id))
-				{
-					sourceChunks.add(new ChunkInfo(id, size));
-					if (size > 0)
-					{
-						byte[] buffer = new byte[size];
-						raFile.readFully(buffer);
-						compressor.setInput(buffer);
-						updateCompressedData();
-					}
-				}
+					addChunk(dataInput, id, size);
 			}
+			else if (id.equals(sourceKind.getFormatId()) && preserveFormat.getAsBoolean())
+				addChunk(dataInput, id, size);
 			else
 				sourceChunks.add(new ChunkInfo(id, 0));
 		}
@@ -401,18 +583,35 @@ class PrivateData
 		//--------------------------------------------------------------
 
 		@Override
-		public void endReading(RandomAccessFile raFile)
+		public void endReading(DataInput dataInput)
+			throws AppException
 		{
 			compressor.finish();
 			updateCompressedData();
 			if (outOffset > 0)
+				compressedDataBlocks.add(outBuffer);
+			try
+			{
+				compressedDataLength = Math.toIntExact(compressor.getBytesWritten());
+			}
+			catch (ArithmeticException e)
 			{
-				byte[] buffer = new byte[outOffset];
-				System.arraycopy(outBuffer, 0, buffer, 0, buffer.length);
-				compressedDataBlocks.add(buffer);
+				compressor.end();
+				throw new AppException(ErrorId.DATA_TOO_LARGE);
 			}
 			adler32 = compressor.getAdler();
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.sourceKind = sourceKind.getKey();
+				event.numChunks = sourceChunks.size();
+				event.inSize = compressor.getBytesRead();
+				event.outSize = compressor.getBytesWritten();
+				event.commit();
+			}
 			compressor.end();
+			inBuffer = null;
+			outBuffer = null;
 		}
 
 		//--------------------------------------------------------------
@@ -421,20 +620,48 @@ class PrivateData
 	//  Instance methods
 	////////////////////////////////////////////////////////////////////
 
+		/**
+		 * Adds a chunk to the list of chunks, and compresses its data.
+		 */
+
+		private void addChunk(DataInput dataInput,
+							  IffId     id,
+							  long      size)
+			throws AppException, IOException
+		{
+			if (size > Integer.MAX_VALUE)
+				throw new AppException(ErrorId.CHUNK_TOO_LARGE, id.toString());
+			sourceChunks.add(new ChunkInfo(id, (int)size));
+			while (size > 0)
+			{
+				int length = (int)Math.min(size, inBuffer.length);
+				dataInput.readFully(inBuffer, 0, length);
+				compressor.setInput(inBuffer, 0, length);
+				updateCompressedData();
+				size -= length;
+			}
+		}
+
+		//--------------------------------------------------------------
+
+		/**
+		 * Compresses all the pending input of the compressor.
+		 */
+
 		private void updateCompressedData()
 		{
 			while (true)
 			{
 				int length = compressor.deflate(outBuffer, outOffset, outBuffer.length - outOffset);
-				if (length == 0)
-					break;
 				outOffset += length;
 				if (outOffset >= outBuffer.length)
 				{
 					compressedDataBlocks.add(outBuffer);
-					outBuffer = new byte[BLOCK_SIZE];
+					outBuffer = new byte[BUFFER_SIZE];
 					outOffset = 0;
 				}
+				else if (length == 0)
+					break;
 			}
 		}
 
@@ -0,0 +1,185 @@
+/*====================================================================*\
+
+ReferenceMatcher.java
+
+Back reference matcher class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// BACK REFERENCE MATCHER CLASS
+
+
+/**
+ * This class finds the runs of earlier sample frames to which the segments of the sample data of a file may be
+ * encoded as {@linkplain BackReference back references}.  A matcher holds the reference window of the encoder and the
+ * hash table of the anchors of the window; the sample frames of each segment are added to the window after the segment
+ * has been encoded.
+ */
+
+class ReferenceMatcher
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of a back reference matcher.
+	 *
+	 * @param windowOrder
+	 *          the binary logarithm of the length (in sample frames) of the reference window, or 0 if the window is
+	 *          empty.
+	 * @param tableSize
+	 *          the maximum size (in MiB) of the hash table of anchors.
+	 * @param numChannels
+	 *          the number of channels in the sample data.
+	 */
+
+	public ReferenceMatcher(
+		int	windowOrder,
+		int	tableSize,
+		int	numChannels)
+	{
+		// Initialise instance variables
+		this.windowOrder = windowOrder;
+		this.numChannels = numChannels;
+
+		// Create hash table of anchors
+		if (windowOrder > 0)
+		{
+			tableOrder = BackReference.getTableOrder(tableSize);
+			table = new int[1 << tableOrder];
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the binary logarithm of the length of the reference window.
+	 *
+	 * @return the binary logarithm of the length (in sample frames) of the reference window, or 0 if the window is
+	 *         empty.
+	 */
+
+	public int getWindowOrder()
+	{
+		return windowOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the distance to a run of sample frames within the reference window that is identical to a segment.  The
+	 * distance of the last back reference is tried first, followed by the positions in the hash table of the anchors
+	 * that start at each of the first {@link BackReference#ANCHOR_INTERVAL} frames of the segment.  If identical frames
+	 * are found, their distance is retained as that of the last back reference.
+	 *
+	 * @param  data
+	 *           the interleaved sample values of the segment.
+	 * @param  offset
+	 *           the start offset of the sample values in {@code data}.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return the distance (in sample frames) from the start of the referenced frames to the start of the segment, or
+	 *         0 if no identical frames were found.
+	 */
+
+	public int find(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames)
+	{
+		// Try distance of last back reference
+		long maxDistance = Math.min(position, 1L << windowOrder);
+		if ((distance > 0) && (distance <= maxDistance)
+				&& BackReference.matches(window, position, distance, data, offset, numSampleFrames, numChannels))
+			return distance;
+
+		// Try positions of anchors of segment in hash table
+		int numAnchors = Math.min(numSampleFrames - BackReference.ANCHOR_LENGTH + 1, BackReference.ANCHOR_INTERVAL);
+		for (int i = 0; i < numAnchors; i++)
+		{
+			long hash = BackReference.getAnchorHash(data, offset, i, -1, numChannels);
+			int candidate = (int)(position + i) - table[BackReference.getTableIndex(hash, tableOrder)];
+			if ((candidate > 0) && (candidate <= maxDistance)
+					&& BackReference.matches(window, position, candidate, data, offset, numSampleFrames, numChannels))
+			{
+				distance = candidate;
+				return distance;
+			}
+		}
+		return 0;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Adds the sample frames of a segment to the reference window, and adds the anchors that end in the segment to the
+	 * hash table of anchors.  If the reference window is empty, this method has no effect.
+	 *
+	 * @param data
+	 *          the interleaved sample values of the segment.
+	 * @param offset
+	 *          the start offset of the sample values in {@code data}.
+	 * @param numSampleFrames
+	 *          the number of sample frames in the segment.
+	 */
+
+	public void add(
+		int[]	data,
+		int		offset,
+		int		numSampleFrames)
+	{
+		// If reference window is empty, stop
+		if (windowOrder == 0)
+			return;
+
+		// Add frames to reference window
+		long endPosition = position + numSampleFrames;
+		window = BackReference.ensureCapacity(window, endPosition, windowOrder, numChannels);
+		BackReference.append(window, position, data, offset, numSampleFrames, numChannels);
+
+		// Add anchors that end in segment and start within window to hash table
+		int frameMask = window.length / numChannels - 1;
+		long anchorPosition = Math.max(position - BackReference.ANCHOR_LENGTH + 1, endPosition - frameMask - 1);
+		anchorPosition = Math.max(0, anchorPosition + BackReference.ANCHOR_INTERVAL - 1)
+							/ BackReference.ANCHOR_INTERVAL * BackReference.ANCHOR_INTERVAL;
+		for ( ; anchorPosition + BackReference.ANCHOR_LENGTH <= endPosition;
+			 anchorPosition += BackReference.ANCHOR_INTERVAL)
+		{
+			long hash = BackReference.getAnchorHash(window, 0, anchorPosition, frameMask, numChannels);
+			table[BackReference.getTableIndex(hash, tableOrder)] = (int)anchorPosition;
+		}
+		position = endPosition;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	int		windowOrder;
+	private	int		numChannels;
+	private	int[]	window;
+	private	int[]	table;
+	private	int		tableOrder;
+	private	long	position;
+	private	int		distance;
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,750 @@
+/*====================================================================*\
+
+Report.java
+
+Class: machine-readable report.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.List;
+
+import uk.blankaspect.common.exception.AppException;
+import uk.blankaspect.common.exception.FileException;
+
+import uk.blankaspect.common.iff.IffId;
+
+//----------------------------------------------------------------------
+
+
+// CLASS: MACHINE-READABLE REPORT
+
+
+/**
+ * This class implements a report of the files that are processed by a subcommand in console mode.  The report is
+ * written in the <i>JSON Lines</i> format: there is a JSON object on each line of the report file for each file that
+ * is processed, and the report ends with an object that contains the totals for all the files.
+ * <p>
+ * Each record is written to the file as soon as it is available, so the memory that is used by the report does not
+ * depend on the number of files that are processed.
+ * </p>
+ */
+
+class Report
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	public static final		Report	INSTANCE	= new Report();
+
+	private static final	double	NANOSECONDS_TO_SECONDS	= 1.0e-9;
+
+	/** Keys of JSON properties. */
+	private interface Key
+	{
+		String	BITS_PER_SAMPLE			= "bitsPerSample";
+		String	CHUNKS					= "chunks";
+		String	COMPRESSED_DATA_SIZE	= "compressedDataSize";
+		String	COMPRESSION_PERCENT		= "compressionPercent";
+		String	CPU_TIME				= "cpuTime";
+		String	CRC						= "crc";
+		String	ELAPSED_TIME			= "elapsedTime";
+		String	ERROR					= "error";
+		String	INPUT					= "input";
+		String	INPUT_SIZE				= "inputSize";
+		String	NUM_CHANNELS			= "channels";
+		String	NUM_FAILED				= "numFailed";
+		String	NUM_FILES				= "numFiles";
+		String	NUM_SAMPLE_FRAMES		= "sampleFrames";
+		String	NUM_SUCCEEDED			= "numSucceeded";
+		String	OPERATION				= "operation";
+		String	OUTPUT					= "output";
+		String	OUTPUT_SIZE				= "outputSize";
+		String	SAMPLE_DATA_SIZE		= "sampleDataSize";
+		String	SAMPLE_RATE				= "sampleRate";
+		String	THROUGHPUT				= "throughput";
+		String	TYPE					= "type";
+		String	WALL_TIME				= "wallTime";
+	}
+
+	/** Values of the 'type' property of a record. */
+	private interface RecordType
+	{
+		String	FILE	= "file";
+		String	SUMMARY	= "summary";
+	}
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	File			file;
+	private	BufferedWriter	writer;
+	private	IOException		writeException;
+	private	Totals			totals;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private Report()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the CPU time of the current thread.
+	 *
+	 * @return the CPU time (in nanoseconds) of the current thread, or -1 if the CPU time is not available.
+	 */
+
+	public static long getCurrentThreadCpuTime()
+	{
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1;
+	}
+
+	//------------------------------------------------------------------
+
+	private static void appendString(
+		StringBuilder	buffer,
+		String			str)
+	{
+		buffer.append('"');
+		for (int i = 0; i < str.length(); i++)
+		{
+			char ch = str.charAt(i);
+			switch (ch)
+			{
+				case '"':
+				case '\\':
+					buffer.append('\\');
+					buffer.append(ch);
+					break;
+
+				case '\n':
+					buffer.append("\\n");
+					break;
+
+				case '\r':
+					buffer.append("\\r");
+					break;
+
+				case '\t':
+					buffer.append("\\t");
+					break;
+
+				default:
+					if (ch < ' ')
+						buffer.append(String.format("\\u%04x", (int)ch));
+					else
+						buffer.append(ch);
+					break;
+			}
+		}
+		buffer.append('"');
+	}
+
+	//------------------------------------------------------------------
+
+	private static void appendKey(
+		StringBuilder	buffer,
+		String			key)
+	{
+		if (buffer.length() > 1)
+			buffer.append(',');
+		appendString(buffer, key);
+		buffer.append(':');
+	}
+
+	//------------------------------------------------------------------
+
+	private static void appendProperty(
+		StringBuilder	buffer,
+		String			key,
+		String			value)
+	{
+		appendKey(buffer, key);
+		if (value == null)
+			buffer.append("null");
+		else
+			appendString(buffer, value);
+	}
+
+	//------------------------------------------------------------------
+
+	private static void appendProperty(
+		StringBuilder	buffer,
+		String			key,
+		long			value)
+	{
+		appendKey(buffer, key);
+		if (value < 0)
+			buffer.append("null");
+		else
+			buffer.append(value);
+	}
+
+	//------------------------------------------------------------------
+
+	private static void appendProperty(
+		StringBuilder	buffer,
+		String			key,
+		double			value)
+	{
+		appendKey(buffer, key);
+		if (Double.isFinite(value))
+			buffer.append(value);
+		else
+			buffer.append("null");
+	}
+
+	//------------------------------------------------------------------
+
+	private static double nanosecondsToSeconds(
+		long	value)
+	{
+		return (value < 0) ? Double.NaN : (double)value * NANOSECONDS_TO_SECONDS;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the specified time in seconds, rounded to the nearest millisecond.
+	 *
+	 * @param  value
+	 *           the time (in nanoseconds).
+	 * @return the time (in seconds) rounded to the nearest millisecond, or {@code NaN} if {@code value} is negative.
+	 */
+
+	private static double roundedSeconds(
+		long	value)
+	{
+		return (value < 0) ? Double.NaN : (double)Math.round((double)value * NANOSECONDS_TO_SECONDS * 1000.0) / 1000.0;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the size of the compressed data as a percentage of the size of the sample data, rounded to one decimal
+	 * place, as it is in the log.
+	 *
+	 * @param  compressedDataSize
+	 *           the size of the compressed data.
+	 * @param  sampleDataSize
+	 *           the size of the sample data.
+	 * @return the size of the compressed data as a percentage of the size of the sample data, or {@code NaN} if either
+	 *         size is not known.
+	 */
+
+	private static double compressionPercent(
+		long	compressedDataSize,
+		long	sampleDataSize)
+	{
+		return ((compressedDataSize < 0) || (sampleDataSize <= 0))
+						? Double.NaN
+						: (double)Math.round((double)compressedDataSize / (double)sampleDataSize * 1000.0) / 10.0;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the rate at which sample data were processed, rounded to a whole number of bytes per second.
+	 *
+	 * @param  sampleDataSize
+	 *           the size of the sample data.
+	 * @param  time
+	 *           the time (in nanoseconds) taken to process the sample data.
+	 * @return the rate (in bytes per second) at which the sample data were processed, or -1 if the size or the time is
+	 *         not known.
+	 */
+
+	private static long throughput(
+		long	sampleDataSize,
+		long	time)
+	{
+		return ((sampleDataSize < 0) || (time <= 0)) ? -1
+													 : Math.round((double)sampleDataSize / nanosecondsToSeconds(time));
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	public boolean isOpen()
+	{
+		return (writer != null);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Opens the specified file for writing a report.  Any existing file is replaced.
+	 *
+	 * @param  file
+	 *           the file to which the report will be written.
+	 * @throws AppException
+	 *           if the file could not be opened.
+	 */
+
+	public void open(
+		File	file)
+		throws AppException
+	{
+		try
+		{
+			writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+		}
+		catch (IOException | SecurityException e)
+		{
+			throw new FileException(ErrorId.FAILED_TO_OPEN_FILE, file, e);
+		}
+		this.file = file;
+		writeException = null;
+		totals = new Totals(System.nanoTime());
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes a summary record for all the files that have been reported, and closes the report file.  This method
+	 * does nothing if the report is not open.
+	 *
+	 * @throws AppException
+	 *           if an error occurred when writing or closing the report file.
+	 */
+
+	public void close()
+		throws AppException
+	{
+		// Test whether report is open
+		if (writer == null)
+			return;
+
+		// Write summary record and close file
+		writeLine(totals.toJson(System.nanoTime()));
+		try
+		{
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			if (writeException == null)
+				writeException = e;
+		}
+		writer = null;
+		totals = null;
+
+		// Report any error that occurred while writing the file
+		if (writeException != null)
+			throw new FileException(ErrorId.ERROR_WRITING_FILE, file, writeException);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes a record for the specified file to the report, if the report is open.  If an error occurs when writing the
+	 * record, no more records are written, and the error is reported when the report is closed.
+	 *
+	 * @param entry
+	 *          the entry for the file.
+	 */
+
+	public void write(
+		Entry	entry)
+	{
+		if (writer != null)
+		{
+			totals.add(entry);
+			writeLine(entry.toJson());
+		}
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Writes a record for the specified file to the report, if the report is open, with the specified exception as the
+	 * error that prevented the file from being processed.
+	 *
+	 * @param entry
+	 *          the entry for the file.
+	 * @param exception
+	 *          the exception that prevented the file from being processed.
+	 */
+
+	public void write(
+		Entry			entry,
+		AppException	exception)
+	{
+		entry.error = exception.toString();
+		write(entry);
+	}
+
+	//------------------------------------------------------------------
+
+	private void writeLine(
+		String	line)
+	{
+		if (writeException == null)
+		{
+			try
+			{
+				writer.write(line);
+				writer.newLine();
+				writer.flush();
+			}
+			catch (IOException e)
+			{
+				writeException = e;
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Enumerated types
+////////////////////////////////////////////////////////////////////////
+
+
+	// ENUMERATION: OPERATIONS
+
+
+	enum Operation
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		COMPRESS
+		(
+			"compress"
+		),
+
+		EXPAND
+		(
+			"expand"
+		),
+
+		VALIDATE
+		(
+			"validate"
+		);
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	key;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private Operation(
+			String	key)
+		{
+			this.key = key;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+
+	// ENUMERATION: ERROR IDENTIFIERS
+
+
+	private enum ErrorId
+		implements AppException.IId
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constants
+	////////////////////////////////////////////////////////////////////
+
+		FAILED_TO_OPEN_FILE
+		("Failed to open the report file."),
+
+		ERROR_WRITING_FILE
+		("An error occurred when writing the report file.");
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	String	message;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private ErrorId(
+			String	message)
+		{
+			this.message = message;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : AppException.IId interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public String getMessage()
+		{
+			return message;
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: REPORT ENTRY
+
+
+	/**
+	 * This class encapsulates the information about a single file that is written to a report.  Its fields are set by
+	 * the {@link FileProcessor} as the file is processed; fields whose values are not known when the record is written
+	 * (for example, the audio attributes of a file that could not be read) are written as {@code null}, so that every
+	 * record of a file has the same properties.
+	 */
+
+	public static class Entry
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		Operation	operation;
+		File		inFile;
+		File		outFile;
+		int			numChannels;
+		int			bitsPerSample;
+		int			sampleRate;
+		long		numSampleFrames;
+		long		sampleDataSize;
+		long		compressedDataSize;
+		long		crc;
+		List<IffId>	chunkIds;
+		long		wallTime;
+		long		cpuTime;
+		String		error;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		public Entry(
+			Operation	operation,
+			File		inFile)
+		{
+			this.operation = operation;
+			this.inFile = inFile;
+			numSampleFrames = -1;
+			sampleDataSize = -1;
+			compressedDataSize = -1;
+			crc = -1;
+			wallTime = -1;
+			cpuTime = -1;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		private boolean isFailed()
+		{
+			return (error != null);
+		}
+
+		//--------------------------------------------------------------
+
+		private String toJson()
+		{
+			StringBuilder buffer = new StringBuilder(512);
+			buffer.append('{');
+			appendProperty(buffer, Key.TYPE, RecordType.FILE);
+			appendProperty(buffer, Key.OPERATION, operation.key);
+			appendProperty(buffer, Key.INPUT, Utils.getPathname(inFile));
+			appendProperty(buffer, Key.OUTPUT, Utils.getPathname(outFile));
+			appendProperty(buffer, Key.INPUT_SIZE, inFile.isFile() ? inFile.length() : -1);
+			appendProperty(buffer, Key.OUTPUT_SIZE, ((outFile != null) && outFile.isFile()) ? outFile.length() : -1);
+			boolean hasAttributes = (numChannels > 0);
+			appendProperty(buffer, Key.NUM_CHANNELS, hasAttributes ? numChannels : -1);
+			appendProperty(buffer, Key.BITS_PER_SAMPLE, hasAttributes ? bitsPerSample : -1);
+			appendProperty(buffer, Key.SAMPLE_RATE, hasAttributes ? sampleRate : -1);
+			appendProperty(buffer, Key.NUM_SAMPLE_FRAMES, hasAttributes ? numSampleFrames : -1);
+			appendProperty(buffer, Key.SAMPLE_DATA_SIZE, sampleDataSize);
+			appendProperty(buffer, Key.COMPRESSED_DATA_SIZE, compressedDataSize);
+			appendProperty(buffer, Key.COMPRESSION_PERCENT, compressionPercent(compressedDataSize, sampleDataSize));
+			appendProperty(buffer, Key.CRC, (crc < 0) ? null : String.format("%08X", crc));
+			appendKey(buffer, Key.CHUNKS);
+			if (chunkIds == null)
+				buffer.append("null");
+			else
+			{
+				buffer.append('[');
+				for (int i = 0; i < chunkIds.size(); i++)
+				{
+					if (i > 0)
+						buffer.append(',');
+					appendString(buffer, chunkIds.get(i).toString());
+				}
+				buffer.append(']');
+			}
+			appendProperty(buffer, Key.WALL_TIME, roundedSeconds(wallTime));
+			appendProperty(buffer, Key.CPU_TIME, roundedSeconds(cpuTime));
+			appendProperty(buffer, Key.THROUGHPUT, throughput(sampleDataSize, wallTime));
+			appendProperty(buffer, Key.ERROR, error);
+			buffer.append('}');
+			return buffer.toString();
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+
+	// CLASS: TOTALS
+
+
+	private static class Totals
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance variables
+	////////////////////////////////////////////////////////////////////
+
+		private	long	startTime;
+		private	int		numFiles;
+		private	int		numFailed;
+		private	long	inputSize;
+		private	long	outputSize;
+		private	long	sampleDataSize;
+		private	long	compressedDataSize;
+		private	long	wallTime;
+		private	long	cpuTime;
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private Totals(
+			long	startTime)
+		{
+			this.startTime = startTime;
+			outputSize = -1;
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods
+	////////////////////////////////////////////////////////////////////
+
+		private void add(
+			Entry	entry)
+		{
+			++numFiles;
+			if (entry.isFailed())
+				++numFailed;
+			else
+			{
+				if (entry.inFile.isFile())
+					inputSize += entry.inFile.length();
+				// The output size is null, as it is in the records of the files, unless an output file was written
+				if ((entry.outFile != null) && entry.outFile.isFile())
+					outputSize = Math.max(0, outputSize) + entry.outFile.length();
+				if (entry.sampleDataSize > 0)
+					sampleDataSize += entry.sampleDataSize;
+				if (entry.compressedDataSize > 0)
+					compressedDataSize += entry.compressedDataSize;
+			}
+			if (entry.wallTime > 0)
+				wallTime += entry.wallTime;
+			if (entry.cpuTime > 0)
+				cpuTime += entry.cpuTime;
+		}
+
+		//--------------------------------------------------------------
+
+		private String toJson(
+			long	endTime)
+		{
+			long elapsedTime = endTime - startTime;
+			StringBuilder buffer = new StringBuilder(256);
+			buffer.append('{');
+			appendProperty(buffer, Key.TYPE, RecordType.SUMMARY);
+			appendProperty(buffer, Key.NUM_FILES, numFiles);
+			appendProperty(buffer, Key.NUM_SUCCEEDED, numFiles - numFailed);
+			appendProperty(buffer, Key.NUM_FAILED, numFailed);
+			appendProperty(buffer, Key.INPUT_SIZE, inputSize);
+			appendProperty(buffer, Key.OUTPUT_SIZE, outputSize);
+			appendProperty(buffer, Key.SAMPLE_DATA_SIZE, sampleDataSize);
+			appendProperty(buffer, Key.COMPRESSED_DATA_SIZE, compressedDataSize);
+			appendProperty(buffer, Key.COMPRESSION_PERCENT, compressionPercent(compressedDataSize, sampleDataSize));
+			appendProperty(buffer, Key.WALL_TIME, roundedSeconds(wallTime));
+			appendProperty(buffer, Key.CPU_TIME, roundedSeconds(cpuTime));
+			appendProperty(buffer, Key.ELAPSED_TIME, roundedSeconds(elapsedTime));
+			appendProperty(buffer, Key.THROUGHPUT, throughput(sampleDataSize, elapsedTime));
+			buffer.append('}');
+			return buffer.toString();
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,127 @@
+/*====================================================================*\
+
+RiceCode.java
+
+Rice code class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// RICE CODE CLASS
+
+
+/**
+ * This class provides the constants and conversions of the Rice codes with which the residuals of a channel of a block
+ * may be encoded.  The residuals of the channel are divided into 2<sup><i>p</i></sup> partitions of nearly equal
+ * length, where <i>p</i> is the partition order, and each partition has its own Rice parameter <i>k</i>.
+ * <p>
+ * A residual is mapped to an unsigned value <i>u</i> by interleaving non-negative and negative values (0, &minus;1, 1,
+ * &minus;2, 2, &hellip;).  The Rice code of <i>u</i> is the quotient <i>u</i> &gt;&gt;&gt; <i>k</i> in unary (that
+ * number of 0 bits, followed by a 1 bit), followed by the <i>k</i> low-order bits of <i>u</i>.  A quotient of at least
+ * {@link #ESCAPE_QUOTIENT} is not encoded: it is replaced by {@code ESCAPE_QUOTIENT} in unary, followed by the full
+ * value.
+ * </p>
+ */
+
+class RiceCode
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The maximum partition order. */
+	public static final	int	MAX_PARTITION_ORDER	= 7;
+
+	/** The length (in bits) of the partition order of a channel in a block. */
+	public static final	int	PARTITION_ORDER_LENGTH	= 3;
+
+	/** The length (in bits) of the Rice parameter of a partition in a block. */
+	public static final	int	PARAMETER_LENGTH	= 5;
+
+	/** The quotient that denotes that a full value follows. */
+	public static final	int	ESCAPE_QUOTIENT	= 24;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private RiceCode()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Maps the specified residual to an unsigned value.
+	 *
+	 * @param  residual
+	 *           the residual.
+	 * @return the unsigned value of {@code residual}.
+	 */
+
+	public static int toUnsigned(
+		int	residual)
+	{
+		return residual << 1 ^ residual >> 31;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Maps the specified unsigned value to a residual.  This method is the inverse of {@link #toUnsigned(int)}.
+	 *
+	 * @param  value
+	 *           the unsigned value.
+	 * @return the residual whose unsigned value is {@code value}.
+	 */
+
+	public static int toResidual(
+		int	value)
+	{
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the first sample frame of a partition of a channel of a block.
+	 *
+	 * @param  partition
+	 *           the index of the partition; the index after the last partition gives the end of the block.
+	 * @param  partitionOrder
+	 *           the partition order of the channel.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @return the index of the first sample frame of the partition whose index is {@code partition}.
+	 */
+
+	public static int getPartitionStart(
+		int	partition,
+		int	partitionOrder,
+		int	numSampleFrames)
+	{
+		return (int)((long)partition * numSampleFrames >> partitionOrder);
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
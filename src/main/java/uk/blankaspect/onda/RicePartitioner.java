@@ -0,0 +1,241 @@
+/*====================================================================*\
+
+RicePartitioner.java
+
+Rice code partitioner class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// RICE CODE PARTITIONER CLASS
+
+
+/**
+ * This class selects the partition order and the Rice parameters of the partitions with which the residuals of a
+ * channel of a block are encoded with {@linkplain RiceCode Rice codes}, and estimates the resulting length of the
+ * residuals.
+ * <p>
+ * A partitioner has its own buffers, so different partitioners may be used concurrently for different channels.
+ * </p>
+ */
+
+class RicePartitioner
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The minimum number of sample frames in a partition of a channel whose residuals are encoded with Rice codes. */
+	private static final	int	MIN_PARTITION_LENGTH	= 16;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates a new instance of a Rice code partitioner.
+	 */
+
+	public RicePartitioner()
+	{
+		// Initialise instance variables
+		int maxNumPartitions = 1 << RiceCode.MAX_PARTITION_ORDER;
+		partitionSums = new long[maxNumPartitions];
+		partitionParameters = new int[maxNumPartitions];
+		parameters = new int[maxNumPartitions];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the Rice parameter that minimises the estimated length of the residuals of a partition.  The parameter is
+	 * chosen from the integer part of the base-2 logarithm of the mean unsigned value of the residuals and its two
+	 * neighbours.
+	 *
+	 * @param  sum
+	 *           the sum of the unsigned values of the residuals of the partition.
+	 * @param  numValues
+	 *           the number of residuals in the partition.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel.
+	 * @return the Rice parameter of the partition, which is between 0 and {@code valueLength} &minus; 1 inclusive.
+	 */
+
+	private static int getParameter(
+		long	sum,
+		int		numValues,
+		int		valueLength)
+	{
+		if (numValues == 0)
+			return 0;
+		long mean = sum / numValues;
+		int log = (mean == 0) ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(mean);
+		int parameter = 0;
+		long minLength = Long.MAX_VALUE;
+		for (int i = Math.max(0, log - 1); i <= Math.min(log + 1, valueLength - 1); i++)
+		{
+			long length = (long)numValues * (i + 1) + (sum >> i);
+			if (minLength > length)
+			{
+				minLength = length;
+				parameter = i;
+			}
+		}
+		return parameter;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the partition order that was selected by the last call to {@link #getLength(int[], int, int, int)}.
+	 *
+	 * @return the partition order of the Rice codes that give the smallest estimated length.
+	 */
+
+	public int getPartitionOrder()
+	{
+		return partitionOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the Rice parameters of the partitions that were selected by the last call to {@link #getLength(int[],
+	 * int, int, int)}.  Only the first 2<sup><i>p</i></sup> elements of the array are valid, where <i>p</i> is the
+	 * {@linkplain #getPartitionOrder() partition order}.
+	 *
+	 * @return the Rice parameters of the partitions for the selected partition order.
+	 */
+
+	public int[] getParameters()
+	{
+		return parameters;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the estimated length (in bits) of the residuals of a channel of a block, including the coding fields of
+	 * the channel, when they are encoded with Rice codes.  The length is estimated for each partition order from the
+	 * sums of the unsigned values of the residuals of the partitions: a partition of <i>m</i> residuals whose sum is
+	 * <i>s</i> has an estimated length of <i>m</i>(<i>k</i> + 1) + (<i>s</i> &gt;&gt; <i>k</i>) for the Rice parameter
+	 * <i>k</i>, which is chosen to minimise the length.  The sums for each partition order are obtained by merging
+	 * those of the next higher order.  The partition order with the smallest estimated length and the Rice parameters
+	 * of its partitions are retained by this partitioner, and the exact length for them is returned.
+	 *
+	 * @param  residuals
+	 *           the residuals of the channel.
+	 * @param  startIndex
+	 *           the index of the first residual that is encoded; the residuals before it are written in full.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the block.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value of the channel.
+	 * @return the length of the Rice-coded residuals and coding fields of the channel.
+	 */
+
+	public long getLength(
+		int[]	residuals,
+		int		startIndex,
+		int		numSampleFrames,
+		int		valueLength)
+	{
+		// Get maximum partition order, for which each partition contains at least the minimum number of sample frames
+		int numMinPartitions = numSampleFrames / MIN_PARTITION_LENGTH;
+		int maxPartitionOrder = (numMinPartitions == 0)
+										? 0
+										: Math.min(RiceCode.MAX_PARTITION_ORDER,
+												   Integer.SIZE - 1 - Integer.numberOfLeadingZeros(numMinPartitions));
+
+		// Sum unsigned values of residuals of each partition of maximum partition order
+		long[] sums = partitionSums;
+		int numPartitions = 1 << maxPartitionOrder;
+		for (int i = 0; i < numPartitions; i++)
+		{
+			long sum = 0;
+			int end = RiceCode.getPartitionStart(i + 1, maxPartitionOrder, numSampleFrames);
+			for (int j = Math.max(startIndex, RiceCode.getPartitionStart(i, maxPartitionOrder, numSampleFrames));
+				 j < end; j++)
+				sum += RiceCode.toUnsigned(residuals[j]) & 0xFFFFFFFFL;
+			sums[i] = sum;
+		}
+
+		// Estimate length for each partition order, merging sums of pairs of partitions for each lower order
+		long minOutputLength = Long.MAX_VALUE;
+		for (int order = maxPartitionOrder; order >= 0; order--)
+		{
+			numPartitions = 1 << order;
+			if (order < maxPartitionOrder)
+			{
+				for (int i = 0; i < numPartitions; i++)
+					sums[i] = sums[2 * i] + sums[2 * i + 1];
+			}
+
+			long outputLength = 1 + RiceCode.PARTITION_ORDER_LENGTH + numPartitions * RiceCode.PARAMETER_LENGTH;
+			for (int i = 0; i < numPartitions; i++)
+			{
+				int start = Math.max(startIndex, RiceCode.getPartitionStart(i, order, numSampleFrames));
+				int numValues = Math.max(0, RiceCode.getPartitionStart(i + 1, order, numSampleFrames) - start);
+				int parameter = getParameter(sums[i], numValues, valueLength);
+				partitionParameters[i] = parameter;
+				outputLength += (long)numValues * (parameter + 1) + (sums[i] >> parameter);
+			}
+
+			if (minOutputLength > outputLength)
+			{
+				minOutputLength = outputLength;
+				partitionOrder = order;
+				System.arraycopy(partitionParameters, 0, parameters, 0, numPartitions);
+			}
+		}
+
+		// Return exact length for selected partition order
+		numPartitions = 1 << partitionOrder;
+		long outputLength = 1 + RiceCode.PARTITION_ORDER_LENGTH + numPartitions * RiceCode.PARAMETER_LENGTH;
+		for (int i = 0; i < numPartitions; i++)
+		{
+			int parameter = parameters[i];
+			int end = RiceCode.getPartitionStart(i + 1, partitionOrder, numSampleFrames);
+			for (int j = Math.max(startIndex, RiceCode.getPartitionStart(i, partitionOrder, numSampleFrames));
+				 j < end; j++)
+			{
+				int quotient = RiceCode.toUnsigned(residuals[j]) >>> parameter;
+				outputLength += (quotient < RiceCode.ESCAPE_QUOTIENT)
+									? quotient + 1 + parameter
+									: RiceCode.ESCAPE_QUOTIENT + 1 + valueLength;
+			}
+		}
+		return outputLength;
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	private	long[]	partitionSums;
+	private	int[]	partitionParameters;
+	private	int		partitionOrder;
+	private	int[]	parameters;
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,138 @@
+/*====================================================================*\
+
+Segment.java
+
+Segment of sample data class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// SEGMENT OF SAMPLE DATA CLASS
+
+
+/**
+ * This class provides the constants and division of the segments of sample data from which the blocks of a file of
+ * version 5 are formed.  A segment has the block length of the file, except that the last segment may be shorter.
+ * It is divided into 2<sup><i>s</i></sup> blocks of nearly equal length, where <i>s</i> is the split order of the
+ * segment, which is chosen by the encoder and written before the first block of the segment.
+ * <p>
+ * The block length of a file of version 5 is a multiple of the block length of the configuration, so that a segment
+ * may be encoded as blocks that are longer or shorter than those of a file of an earlier version.  The blocks of a
+ * segment whose split order is {@link #NOMINAL_SPLIT_ORDER} have the block length of the configuration.
+ * </p>
+ */
+
+class Segment
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The maximum split order. */
+	public static final	int	MAX_SPLIT_ORDER	= 3;
+
+	/** The split order whose blocks have the block length of the configuration. */
+	public static final	int	NOMINAL_SPLIT_ORDER	= 2;
+
+	/** The length (in bits) of the split order of a segment. */
+	public static final	int	SPLIT_ORDER_LENGTH	= 2;
+
+	/** The minimum number of sample frames in a block of a segment whose split order is greater than zero. */
+	public static final	int	MIN_BLOCK_LENGTH	= 16;
+
+	/**
+	 * The number of segments from one sync segment to the next in a file of version 8.  The first block of a sync
+	 * segment does not continue the predictors of the preceding block, so that decoding may start at it.  In a file
+	 * of version 9, a segment that is a back reference is not a sync segment, and the next segment that is not a back
+	 * reference is a sync segment in its place.
+	 */
+	public static final	int	SYNC_INTERVAL	= 16;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private Segment()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the length of a segment of a file of version 5 for the specified block length of the configuration.
+	 *
+	 * @param  blockLength
+	 *           the block length of the configuration.
+	 * @return the number of sample frames in a segment for {@code blockLength}.
+	 */
+
+	public static int getSegmentLength(
+		int	blockLength)
+	{
+		return (int)Math.min((long)blockLength << NOMINAL_SPLIT_ORDER, OndaFile.MAX_BLOCK_LENGTH);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the maximum split order of a segment of the specified length.  The blocks of a segment that is split
+	 * have at least {@link #MIN_BLOCK_LENGTH} sample frames.
+	 *
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return the maximum split order of a segment of {@code numSampleFrames} sample frames.
+	 */
+
+	public static int getMaxSplitOrder(
+		int	numSampleFrames)
+	{
+		int splitOrder = 0;
+		while ((splitOrder < MAX_SPLIT_ORDER) && ((numSampleFrames >> splitOrder + 1) >= MIN_BLOCK_LENGTH))
+			++splitOrder;
+		return splitOrder;
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the first sample frame of a block of a segment.
+	 *
+	 * @param  block
+	 *           the index of the block; the index after the last block gives the end of the segment.
+	 * @param  splitOrder
+	 *           the split order of the segment.
+	 * @param  numSampleFrames
+	 *           the number of sample frames in the segment.
+	 * @return the index of the first sample frame of the block whose index is {@code block}.
+	 */
+
+	public static int getBlockStart(
+		int	block,
+		int	splitOrder,
+		int	numSampleFrames)
+	{
+		return (int)((long)block * numSampleFrames >> splitOrder);
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
@@ -19,6 +19,7 @@ package uk.blankaspect.onda;
 
 
 import java.io.File;
+import java.io.OutputStream;
 
 import java.util.List;
 
@@ -58,11 +59,13 @@ abstract class Task
 
 		public Compress(List<InputOutput> inputsOutputs,
 						ChunkFilter[]     chunkFilters,
-						boolean           recursive)
+						boolean           recursive,
+						Effort            effort)
 		{
 			this.inputsOutputs = inputsOutputs;
 			this.chunkFilters = chunkFilters;
 			this.recursive = recursive;
+			this.effort = effort;
 		}
 
 		//--------------------------------------------------------------
@@ -76,7 +79,7 @@ abstract class Task
 			// Perform task
 			try
 			{
-				OndaApp.INSTANCE.compress(inputsOutputs, chunkFilters, recursive);
+				OndaApp.INSTANCE.compress(inputsOutputs, chunkFilters, recursive, effort);
 			}
 			catch (TaskCancelledException e)
 			{
@@ -99,6 +102,7 @@ abstract class Task
 		private	List<InputOutput>	inputsOutputs;
 		private	ChunkFilter[]		chunkFilters;
 		private	boolean				recursive;
+		private	Effort				effort;
 
 	}
 
@@ -225,7 +229,7 @@ abstract class Task
 
 		public WriteCompressed(FileProcessor fileProcessor,
 							   File          file,
-							   byte[]        privateData)
+							   PrivateData   privateData)
 		{
 			this.fileProcessor = fileProcessor;
 			this.file = file;
@@ -234,6 +238,17 @@ abstract class Task
 
 		//--------------------------------------------------------------
 
+		public WriteCompressed(FileProcessor fileProcessor,
+							   OutputStream  outStream,
+							   PrivateData   privateData)
+		{
+			this.fileProcessor = fileProcessor;
+			this.outStream = outStream;
+			this.privateData = privateData;
+		}
+
+		//--------------------------------------------------------------
+
 	////////////////////////////////////////////////////////////////////
 	//  Instance methods : Runnable interface
 	////////////////////////////////////////////////////////////////////
@@ -243,7 +258,10 @@ abstract class Task
 			// Perform task
 			try
 			{
-				fileProcessor.writeCompressedFile(file, privateData);
+				if (outStream == null)
+					fileProcessor.writeCompressedFile(file, privateData);
+				else
+					fileProcessor.writeCompressedStream(outStream, privateData);
 			}
 			catch (TaskCancelledException e)
 			{
@@ -266,7 +284,8 @@ abstract class Task
 
 		private	FileProcessor	fileProcessor;
 		private	File			file;
-		private	byte[]			privateData;
+		private	OutputStream	outStream;
+		private	PrivateData		privateData;
 
 	}
 
@@ -297,6 +316,19 @@ abstract class Task
 
 		//--------------------------------------------------------------
 
+		public WriteExpanded(FileProcessor  fileProcessor,
+							 OutputStream   outStream,
+							 AudioFileKind  fileKind,
+							 List<Chunk>    chunks)
+		{
+			this.fileProcessor = fileProcessor;
+			this.outStream = outStream;
+			this.fileKind = fileKind;
+			this.chunks = chunks;
+		}
+
+		//--------------------------------------------------------------
+
 	////////////////////////////////////////////////////////////////////
 	//  Instance methods : Runnable interface
 	////////////////////////////////////////////////////////////////////
@@ -306,7 +338,10 @@ abstract class Task
 			// Perform task
 			try
 			{
-				fileProcessor.writeExpandedFile(file, fileKind, chunks);
+				if (outStream == null)
+					fileProcessor.writeExpandedFile(file, fileKind, chunks);
+				else
+					fileProcessor.writeExpandedStream(outStream, fileKind, chunks);
 			}
 			catch (TaskCancelledException e)
 			{
@@ -329,6 +364,7 @@ abstract class Task
 
 		private	FileProcessor	fileProcessor;
 		private	File			file;
+		private	OutputStream	outStream;
 		private	AudioFileKind	fileKind;
 		private	List<Chunk>		chunks;
 
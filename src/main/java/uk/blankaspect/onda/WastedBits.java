@@ -0,0 +1,119 @@
+/*====================================================================*\
+
+WastedBits.java
+
+Wasted bits of a channel class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// WASTED BITS OF A CHANNEL CLASS
+
+
+/**
+ * This class provides the constants and detection of the <i>wasted bits</i> of a channel of a block of a file of
+ * version 7.  The wasted bits of a channel are the low-order bits that are zero in every value of the channel, such as
+ * those of 16-bit sample data that are stored in a 24-bit container.  The values of a channel with wasted bits are
+ * shifted right by the number of wasted bits before they are encoded, so that their full values, residuals and
+ * coding parameters are shorter, and they are shifted left again after they are decoded.
+ * <p>
+ * In a file of version 7, the order of the predictor of a channel that is not constant is followed by a flag that
+ * denotes whether the channel has wasted bits.  If the flag is set, it is followed by the number of wasted bits, which
+ * is between 1 and {@link #MAX_SHIFT} inclusive.
+ * </p>
+ */
+
+class WastedBits
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The length (in bits) of the number of wasted bits of a channel. */
+	public static final	int	SHIFT_LENGTH	= 5;
+
+	/** The maximum number of wasted bits of a channel. */
+	public static final	int	MAX_SHIFT	= (1 << SHIFT_LENGTH) - 1;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Prevents this class from being instantiated externally.
+	 */
+
+	private WastedBits()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the number of wasted bits of the specified values, which is the number of trailing zero bits of the
+	 * bitwise OR of the values.  The number is limited so that at least one bit of a full value remains.
+	 *
+	 * @param  values
+	 *           the values.
+	 * @param  numValues
+	 *           the number of values.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value.
+	 * @return the number of low-order bits that are zero in each of the values, from 0 to the lesser of
+	 *         {@link #MAX_SHIFT} and {@code valueLength} &minus; 1 inclusive.
+	 */
+
+	public static int getShift(
+		int[]	values,
+		int		numValues,
+		int		valueLength)
+	{
+		int bits = 0;
+		for (int i = 0; i < numValues; i++)
+		{
+			bits |= values[i];
+			if ((bits & 1) != 0)
+				return 0;
+		}
+		return getShift(bits, valueLength);
+	}
+
+	//------------------------------------------------------------------
+
+	/**
+	 * Returns the number of wasted bits of values whose bitwise OR is the specified value.  The number is limited so
+	 * that at least one bit of a full value remains.
+	 *
+	 * @param  bits
+	 *           the bitwise OR of the values.
+	 * @param  valueLength
+	 *           the length (in bits) of a full value.
+	 * @return the number of trailing zero bits of {@code bits}, from 0 to the lesser of {@link #MAX_SHIFT} and
+	 *         {@code valueLength} &minus; 1 inclusive, or 0 if {@code bits} is zero.
+	 */
+
+	public static int getShift(
+		int	bits,
+		int	valueLength)
+	{
+		return (bits == 0) ? 0 : Math.min(Integer.numberOfTrailingZeros(bits), Math.min(MAX_SHIFT, valueLength - 1));
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------
@@ -0,0 +1,270 @@
+/*====================================================================*\
+
+WaveStreamTest.java
+
+Class: WAVE stream test.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.common.audio;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import uk.blankaspect.common.exception.AppException;
+
+import uk.blankaspect.common.iff.FormFile;
+import uk.blankaspect.common.iff.IffId;
+
+//----------------------------------------------------------------------
+
+
+// CLASS: WAVE STREAM TEST
+
+
+/**
+ * This class tests the reading of a WAVE file from a pipe in a single pass with {@link AudioFile#readStream(
+ * uk.blankaspect.common.bytedata.IByteDataOutputStream, FormFile.IChunkReader) readStream}.  It is not part of the
+ * application; it is compiled from the {@code streamTest} source set and run with the {@code runStreamTest} task of the
+ * Gradle build script, on which the {@code check} task depends.
+ * <p>
+ * Each case writes a WAVE file to a pipe from another thread, as a program that writes to standard output does, and
+ * checks the number of sample frames, the sample data and the identifiers of the chunks that follow the sample data
+ * that are read from the pipe.  The cases are a file whose RIFF and data sizes are unknown (0xFFFFFFFF), a file whose
+ * sizes are the placeholders written by SoX, and a file whose sizes are known and whose data chunk is followed by
+ * another chunk.  The test fails with an exception.
+ * </p>
+ */
+
+class WaveStreamTest
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The number of channels of the sample data. */
+	private static final	int	NUM_CHANNELS	= 2;
+
+	/** The number of bytes per sample. */
+	private static final	int	BYTES_PER_SAMPLE	= 2;
+
+	/** The number of sample frames of the sample data. */
+	private static final	int	NUM_SAMPLE_FRAMES	= 10007;
+
+	/** The size of the data chunk that is written by SoX when the length of the sample data is not known. */
+	private static final	long	SOX_DATA_SIZE	= 0x7FFFF000L;
+
+	/** The size of the fields of a format chunk for PCM data. */
+	private static final	int	FORMAT_SIZE	= 16;
+
+	private static final	String	PASSED_STR	= "passed";
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	private WaveStreamTest()
+	{
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Class methods
+////////////////////////////////////////////////////////////////////////
+
+	public static void main(String[] args)
+		throws Exception
+	{
+		// Create sample data
+		byte[] sampleData = new byte[NUM_SAMPLE_FRAMES * NUM_CHANNELS * BYTES_PER_SAMPLE];
+		for (int i = 0; i < sampleData.length; i++)
+			sampleData[i] = (byte)(i * 31 + (i >>> 7));
+
+		// Unknown sizes, as written by FFmpeg
+		test("unknown sizes", sampleData, FormFile.MAX_SIZE, FormFile.MAX_SIZE, false);
+
+		// Placeholder sizes, as written by SoX
+		test("placeholder sizes", sampleData, SOX_DATA_SIZE + 36, SOX_DATA_SIZE, false);
+
+		// Known sizes and a chunk that follows the sample data
+		test("known sizes", sampleData, -1, sampleData.length, true);
+	}
+
+	//------------------------------------------------------------------
+
+	private static void test(String  name,
+							 byte[]  sampleData,
+							 long    riffSize,
+							 long    dataSize,
+							 boolean trailingChunk)
+		throws Exception
+	{
+		// Create file
+		byte[] trailer = trailingChunk ? chunk("LIST", "INFO".getBytes()) : new byte[0];
+		ByteBuffer format = ByteBuffer.allocate(FORMAT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		format.putShort((short)1);
+		format.putShort((short)NUM_CHANNELS);
+		format.putInt(44100);
+		format.putInt(44100 * NUM_CHANNELS * BYTES_PER_SAMPLE);
+		format.putShort((short)(NUM_CHANNELS * BYTES_PER_SAMPLE));
+		format.putShort((short)(8 * BYTES_PER_SAMPLE));
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write("WAVE".getBytes());
+		body.write(chunk("fmt ", format.array()));
+		body.write(header("data", dataSize));
+		body.write(sampleData);
+		body.write(trailer);
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		file.write(header("RIFF", (riffSize < 0) ? body.size() : riffSize));
+		body.writeTo(file);
+		byte[] fileData = file.toByteArray();
+
+		// Write file to pipe from another thread
+		PipedInputStream inStream = new PipedInputStream();
+		PipedOutputStream outStream = new PipedOutputStream(inStream);
+		Thread writer = new Thread(() ->
+		{
+			try (outStream)
+			{
+				outStream.write(fileData);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		});
+		writer.start();
+
+		// Read file from pipe
+		WaveFile waveFile = new WaveFile(null);
+		waveFile.setInputStream(inStream);
+		ByteArrayOutputStream outData = new ByteArrayOutputStream();
+		waveFile.readStream((buffer, offset, length) -> outData.write(buffer, offset, length), new HeaderReader());
+		writer.join();
+
+		// Check file
+		if (waveFile.getNumSampleFrames() != NUM_SAMPLE_FRAMES)
+			throw new AssertionError(name + ": number of sample frames = " + waveFile.getNumSampleFrames());
+		if (!Arrays.equals(outData.toByteArray(), sampleData))
+			throw new AssertionError(name + ": the sample data differ from the original data.");
+		List<IffId> expectedIds = trailingChunk ? List.of(new IffId("LIST")) : List.of();
+		if (!waveFile.getTrailingChunkIds().equals(expectedIds))
+			throw new AssertionError(name + ": trailing chunks = " + waveFile.getTrailingChunkIds());
+
+		System.out.println(name + ": " + PASSED_STR);
+	}
+
+	//------------------------------------------------------------------
+
+	private static byte[] header(String id,
+								 long   size)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(id.getBytes());
+		buffer.putInt((int)size);
+		return buffer.array();
+	}
+
+	//------------------------------------------------------------------
+
+	private static byte[] chunk(String id,
+								byte[] data)
+		throws IOException
+	{
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		outStream.write(header(id, data.length));
+		outStream.write(data);
+		if ((data.length & 1) != 0)
+			outStream.write(0);
+		return outStream.toByteArray();
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Member classes : non-inner classes
+////////////////////////////////////////////////////////////////////////
+
+
+	// CLASS: HEADER READER
+
+
+	/**
+	 * This class implements a reader of the chunks that precede the sample data that ignores them.
+	 */
+
+	private static class HeaderReader
+		implements FormFile.IChunkReader
+	{
+
+	////////////////////////////////////////////////////////////////////
+	//  Constructors
+	////////////////////////////////////////////////////////////////////
+
+		private HeaderReader()
+		{
+		}
+
+		//--------------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////
+	//  Instance methods : FormFile.IChunkReader interface
+	////////////////////////////////////////////////////////////////////
+
+		@Override
+		public void beginReading(DataInput dataInput,
+								 IffId     typeId,
+								 long      size)
+		{
+			// do nothing
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void read(DataInput dataInput,
+						 IffId     id,
+						 long      size)
+			throws AppException, IOException
+		{
+			// do nothing
+		}
+
+		//--------------------------------------------------------------
+
+		@Override
+		public void endReading(DataInput dataInput)
+		{
+			// do nothing
+		}
+
+		//--------------------------------------------------------------
+
+	}
+
+	//==================================================================
+
+}
+
+//----------------------------------------------------------------------
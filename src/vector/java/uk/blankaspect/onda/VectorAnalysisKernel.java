@@ -0,0 +1,166 @@
+/*====================================================================*\
+
+VectorAnalysisKernel.java
+
+Vector API analysis kernel class.
+
+\*====================================================================*/
+
+
+// PACKAGE
+
+
+package uk.blankaspect.onda;
+
+//----------------------------------------------------------------------
+
+
+// IMPORTS
+
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//----------------------------------------------------------------------
+
+
+// VECTOR API ANALYSIS KERNEL CLASS
+
+
+/**
+ * This class implements an {@linkplain AnalysisKernel analysis kernel} with the Vector API of the incubator module
+ * {@code jdk.incubator.vector}.  It is compiled from the {@code vector} source set, and is loaded by {@link
+ * AnalysisKernel#getInstance()} only if the module is present in the boot layer.
+ * <p>
+ * The second-order differences are computed a vector at a time from the end of the array backwards, as they are by the
+ * scalar kernel; the values that a vector of differences depends on lie below it and have not yet been overwritten.
+ * The Vector API of Java 17 has no operation that counts leading zeros, so the bit length of the magnitude of a
+ * difference is obtained from the exponent of a {@code float}: the highest set bit of the magnitude is isolated by
+ * smearing it into the lower bits and subtracting the smeared value shifted right by one, and the power of two that
+ * results is converted exactly to a {@code float}.  The histogram is then updated from the bit lengths of each vector
+ * in turn.
+ * </p>
+ */
+
+class VectorAnalysisKernel
+	implements AnalysisKernel
+{
+
+////////////////////////////////////////////////////////////////////////
+//  Constants
+////////////////////////////////////////////////////////////////////////
+
+	/** The preferred species of vectors of {@code int} values. */
+	private static final	VectorSpecies<Integer>	SPECIES	= IntVector.SPECIES_PREFERRED;
+
+	/** The number of bits in the significand field of a {@code float}. */
+	private static final	int	SIGNIFICAND_LENGTH	= 23;
+
+	/** The value that is subtracted from the biased exponent of a power of two to obtain its bit length. */
+	private static final	int	EXPONENT_OFFSET	= 126;
+
+////////////////////////////////////////////////////////////////////////
+//  Instance variables
+////////////////////////////////////////////////////////////////////////
+
+	/** The bit lengths of a vector of differences.  The buffer is not shared because each thread has its own kernel. */
+	private	int[]	bitLengths;
+
+////////////////////////////////////////////////////////////////////////
+//  Constructors
+////////////////////////////////////////////////////////////////////////
+
+	VectorAnalysisKernel()
+	{
+		bitLengths = new int[SPECIES.length()];
+	}
+
+	//------------------------------------------------------------------
+
+////////////////////////////////////////////////////////////////////////
+//  Instance methods : AnalysisKernel interface
+////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public void computeEpsilons(
+		int[]	values,
+		int		numValues)
+	{
+		// Compute differences a vector at a time from the end of the array
+		int length = SPECIES.length();
+		int index = numValues - length;
+		for (; index >= 2; index -= length)
+		{
+			IntVector value0 = IntVector.fromArray(SPECIES, values, index);
+			IntVector value1 = IntVector.fromArray(SPECIES, values, index - 1);
+			IntVector value2 = IntVector.fromArray(SPECIES, values, index - 2);
+			value0.sub(value1.add(value1)).add(value2).intoArray(values, index);
+		}
+
+		// Compute remaining differences
+		for (int i = index + length - 1; i >= 2; i--)
+			values[i] = values[i] - 2 * values[i - 1] + values[i - 2];
+		if (numValues > 1)
+			values[1] -= 2 * values[0];
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public void countBitLengths(
+		int[]	epsilons,
+		int		startIndex,
+		int		endIndex,
+		int[]	counts)
+	{
+		Arrays.fill(counts, 0);
+
+		// Count bit lengths a vector at a time
+		int length = SPECIES.length();
+		int[] bitLengths = this.bitLengths;
+		int index = startIndex;
+		for (int bound = endIndex - length; index <= bound; index += length)
+		{
+			// Smear highest set bit of magnitude into lower bits
+			IntVector value = IntVector.fromArray(SPECIES, epsilons, index).abs();
+			value = value.or(value.lanewise(VectorOperators.LSHR, 1));
+			value = value.or(value.lanewise(VectorOperators.LSHR, 2));
+			value = value.or(value.lanewise(VectorOperators.LSHR, 4));
+			value = value.or(value.lanewise(VectorOperators.LSHR, 8));
+			value = value.or(value.lanewise(VectorOperators.LSHR, 16));
+
+			// Isolate highest set bit, and get bit length from exponent of its floating-point value
+			value = value.sub(value.lanewise(VectorOperators.LSHR, 1));
+			value = value.convert(VectorOperators.I2F, 0).reinterpretAsInts()
+						.lanewise(VectorOperators.LSHR, SIGNIFICAND_LENGTH)
+						.sub(EXPONENT_OFFSET)
+						.max(0)
+						.min(Integer.SIZE);
+			value.intoArray(bitLengths, 0);
+
+			// Update histogram
+			for (int i = 0; i < length; i++)
+				++counts[bitLengths[i]];
+		}
+
+		// Count remaining bit lengths
+		for (; index < endIndex; index++)
+			++counts[EncodingCost.getBitLength(epsilons[index])];
+	}
+
+	//------------------------------------------------------------------
+
+	@Override
+	public String getName()
+	{
+		return "vector";
+	}
+
+	//------------------------------------------------------------------
+
+}
+
+//----------------------------------------------------------------------